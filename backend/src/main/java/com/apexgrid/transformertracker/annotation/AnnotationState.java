@@ -0,0 +1,138 @@
+package com.apexgrid.transformertracker.annotation;
+
+import com.apexgrid.transformertracker.model.InspectionBox;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The per-box annotation columns of one inspection state, as aligned arrays: box {@code k} is
+ * {@code geometry[4k..4k+3]} plus element {@code k} of every other column. Severity is a
+ * primitive array with NaN for "no score". A column that was not loaded or not sent is null and
+ * reads as null for every box (fault type reads as "none").
+ */
+public final class AnnotationState {
+    private static final AnnotationState EMPTY = new AnnotationState(0, new double[0],
+            null, null, null, null, null, null, null);
+
+    private final int size;
+    private final double[] geometry;
+    private final String[] ids;
+    private final String[] faultTypes;
+    private final String[] annotatedBy;
+    private final double[] severity;
+    private final String[] comments;
+    private final String[] recentStatus;
+    private final Instant[] createdAt;
+
+    AnnotationState(int size, double[] geometry, String[] ids, String[] faultTypes, String[] annotatedBy,
+                    double[] severity, String[] comments, String[] recentStatus, Instant[] createdAt) {
+        this.size = size;
+        this.geometry = geometry;
+        this.ids = ids;
+        this.faultTypes = faultTypes;
+        this.annotatedBy = annotatedBy;
+        this.severity = severity;
+        this.comments = comments;
+        this.recentStatus = recentStatus;
+        this.createdAt = createdAt;
+    }
+
+    public static AnnotationState empty() {
+        return EMPTY;
+    }
+
+    /** Every column of the given rows, in list order. */
+    public static AnnotationState of(List<InspectionBox> boxes) {
+        return of(boxes, AnnotationStateCodec.BoxColumn.values());
+    }
+
+    /** Only the requested columns of the given rows; the others stay null. */
+    public static AnnotationState of(List<InspectionBox> boxes, AnnotationStateCodec.BoxColumn... columns) {
+        int n = boxes.size();
+        if (n == 0) {
+            return EMPTY;
+        }
+        double[] geometry = null;
+        String[] ids = null;
+        String[] faultTypes = null;
+        String[] annotatedBy = null;
+        double[] severity = null;
+        String[] comments = null;
+        String[] recentStatus = null;
+        Instant[] createdAt = null;
+        for (AnnotationStateCodec.BoxColumn column : columns) {
+            switch (column) {
+                case BOUNDING_BOXES -> {
+                    geometry = new double[n * 4];
+                    for (int k = 0; k < n; k++) {
+                        InspectionBox box = boxes.get(k);
+                        geometry[k * 4] = box.getX();
+                        geometry[k * 4 + 1] = box.getY();
+                        geometry[k * 4 + 2] = box.getW();
+                        geometry[k * 4 + 3] = box.getH();
+                    }
+                }
+                case BOX_IDS -> {
+                    ids = new String[n];
+                    for (int k = 0; k < n; k++) ids[k] = boxes.get(k).getId();
+                }
+                case FAULT_TYPES -> {
+                    faultTypes = new String[n];
+                    for (int k = 0; k < n; k++) faultTypes[k] = boxes.get(k).getFaultType();
+                }
+                case ANNOTATED_BY -> {
+                    annotatedBy = new String[n];
+                    for (int k = 0; k < n; k++) annotatedBy[k] = boxes.get(k).getAnnotatedBy();
+                }
+                case SEVERITY -> {
+                    severity = new double[n];
+                    for (int k = 0; k < n; k++) {
+                        Double value = boxes.get(k).getSeverity();
+                        severity[k] = value == null ? Double.NaN : value;
+                    }
+                }
+                case COMMENTS -> {
+                    comments = new String[n];
+                    for (int k = 0; k < n; k++) comments[k] = boxes.get(k).getComment();
+                }
+                case RECENT_STATUS -> {
+                    recentStatus = new String[n];
+                    for (int k = 0; k < n; k++) recentStatus[k] = boxes.get(k).getRecentStatus();
+                }
+                case BOX_CREATED_AT -> {
+                    createdAt = new Instant[n];
+                    for (int k = 0; k < n; k++) createdAt[k] = boxes.get(k).getCreatedAt();
+                }
+            }
+        }
+        return new AnnotationState(n, geometry, ids, faultTypes, annotatedBy, severity, comments, recentStatus, createdAt);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public double x(int k) { return geometry[k * 4]; }
+    public double y(int k) { return geometry[k * 4 + 1]; }
+    public double w(int k) { return geometry[k * 4 + 2]; }
+    public double h(int k) { return geometry[k * 4 + 3]; }
+
+    public String id(int k) { return ids == null ? null : ids[k]; }
+
+    public String faultType(int k) {
+        String value = faultTypes == null ? null : faultTypes[k];
+        return value == null ? "none" : value;
+    }
+
+    String rawFaultType(int k) { return faultTypes == null ? null : faultTypes[k]; }
+
+    public String annotatedBy(int k) { return annotatedBy == null ? null : annotatedBy[k]; }
+
+    public Double severity(int k) {
+        return severity == null || Double.isNaN(severity[k]) ? null : severity[k];
+    }
+
+    public String comment(int k) { return comments == null ? null : comments[k]; }
+    public String recentStatus(int k) { return recentStatus == null ? null : recentStatus[k]; }
+    public Instant createdAt(int k) { return createdAt == null ? null : createdAt[k]; }
+}
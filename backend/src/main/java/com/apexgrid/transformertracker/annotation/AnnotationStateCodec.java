@@ -0,0 +1,295 @@
+package com.apexgrid.transformertracker.annotation;
+
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and writes the per-box JSON columns ({@code boundingBoxes}, {@code faultTypes}, ...)
+ * token by token, without building a tree. The written shapes are the ones the inspection API
+ * has always exposed: every column is null when there are no boxes, and {@code comments} and
+ * {@code recentStatus} are also null unless at least one box has a non-blank value.
+ */
+public final class AnnotationStateCodec {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    public enum BoxColumn {
+        BOX_IDS("boxIds"),
+        BOUNDING_BOXES("boundingBoxes"),
+        FAULT_TYPES("faultTypes"),
+        ANNOTATED_BY("annotatedBy"),
+        SEVERITY("severity"),
+        COMMENTS("comments"),
+        RECENT_STATUS("recentStatus"),
+        BOX_CREATED_AT("boxCreatedAt");
+
+        private final String field;
+
+        BoxColumn(String field) {
+            this.field = field;
+        }
+
+        /** Field name used in request and response bodies. */
+        public String field() { return field; }
+
+        public static BoxColumn forField(String field) {
+            for (BoxColumn column : values()) {
+                if (column.field.equals(field)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    private AnnotationStateCodec() { }
+
+    /** One column of the given rows as JSON text, or null per the rules above. */
+    public static String toJson(List<InspectionBox> boxes, BoxColumn column) {
+        return toJson(AnnotationState.of(boxes, column), column);
+    }
+
+    /** One column as JSON text, or null per the rules above. */
+    public static String toJson(AnnotationState state, BoxColumn column) {
+        if (isNull(state, column)) {
+            return null;
+        }
+        StringWriter out = new StringWriter(state.size() * (column == BoxColumn.BOUNDING_BOXES ? 24 : 12));
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            writeColumn(gen, state, column);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toString();
+    }
+
+    /** Write each column as a field named after it. */
+    public static void writeFields(JsonGenerator gen, AnnotationState state, BoxColumn... columns) throws IOException {
+        for (BoxColumn column : columns) {
+            gen.writeFieldName(column.field());
+            writeColumn(gen, state, column);
+        }
+    }
+
+    /** Write one column's value (an array, or null per the rules above). */
+    public static void writeColumn(JsonGenerator gen, AnnotationState state, BoxColumn column) throws IOException {
+        if (isNull(state, column)) {
+            gen.writeNull();
+            return;
+        }
+        int n = state.size();
+        gen.writeStartArray(state, n);
+        for (int k = 0; k < n; k++) {
+            switch (column) {
+                case BOUNDING_BOXES -> {
+                    gen.writeStartArray(state, 4);
+                    gen.writeNumber(state.x(k));
+                    gen.writeNumber(state.y(k));
+                    gen.writeNumber(state.w(k));
+                    gen.writeNumber(state.h(k));
+                    gen.writeEndArray();
+                }
+                case BOX_IDS -> writeString(gen, state.id(k));
+                case FAULT_TYPES -> writeString(gen, state.rawFaultType(k));
+                case ANNOTATED_BY -> writeString(gen, state.annotatedBy(k));
+                case SEVERITY -> {
+                    Double severity = state.severity(k);
+                    if (severity == null) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(severity);
+                    }
+                }
+                case COMMENTS -> writeString(gen, state.comment(k));
+                case RECENT_STATUS -> writeString(gen, state.recentStatus(k));
+                case BOX_CREATED_AT -> {
+                    Instant createdAt = state.createdAt(k);
+                    writeString(gen, createdAt == null ? null : createdAt.toString());
+                }
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    private static boolean isNull(AnnotationState state, BoxColumn column) {
+        if (state.isEmpty()) {
+            return true;
+        }
+        if (column == BoxColumn.COMMENTS || column == BoxColumn.RECENT_STATUS) {
+            for (int k = 0; k < state.size(); k++) {
+                String value = column == BoxColumn.COMMENTS ? state.comment(k) : state.recentStatus(k);
+                if (value != null && !value.isBlank()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeString(JsonGenerator gen, String value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(value);
+        }
+    }
+
+    /**
+     * Collects columns from a request body as the parser reaches them, in any order, then aligns
+     * them to the boxes: entries of {@code boundingBoxes} that are not at least four numbers are
+     * dropped, shorter columns are padded and longer ones cut. Comments are trimmed, with blank
+     * ones read as null.
+     */
+    public static final class Reader {
+        private double[] geometry = new double[64];
+        private int boxCount;
+        private String[] ids;
+        private String[] faultTypes;
+        private String[] annotatedBy;
+        private double[] severity;
+        private String[] comments;
+        private String[] recentStatus;
+        private Instant[] createdAt;
+
+        /** Read the value the parser is positioned on (just after the column's field name). */
+        public void readColumn(JsonParser parser, BoxColumn column) throws IOException {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return;
+            }
+            switch (column) {
+                case BOUNDING_BOXES -> readGeometry(parser);
+                case BOX_IDS -> ids = readStrings(parser, false);
+                case FAULT_TYPES -> faultTypes = readStrings(parser, false);
+                case ANNOTATED_BY -> annotatedBy = readStrings(parser, false);
+                case SEVERITY -> severity = readNumbers(parser);
+                case COMMENTS -> comments = readStrings(parser, true);
+                case RECENT_STATUS -> recentStatus = readStrings(parser, false);
+                case BOX_CREATED_AT -> createdAt = readInstants(parser);
+            }
+        }
+
+        public AnnotationState finish() {
+            int n = boxCount;
+            if (n == 0) {
+                return AnnotationState.empty();
+            }
+            double[] scores = null;
+            if (severity != null) {
+                scores = Arrays.copyOf(severity, n);
+                if (severity.length < n) {
+                    Arrays.fill(scores, severity.length, n, Double.NaN);
+                }
+            }
+            return new AnnotationState(n, Arrays.copyOf(geometry, n * 4), align(ids, n), align(faultTypes, n),
+                    align(annotatedBy, n), scores, align(comments, n), align(recentStatus, n), align(createdAt, n));
+        }
+
+        private static <T> T[] align(T[] column, int n) {
+            return column == null || column.length == n ? column : Arrays.copyOf(column, n);
+        }
+
+        private void readGeometry(JsonParser parser) throws IOException {
+            boxCount = 0;
+            double[] box = new double[4];
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int found = 0;
+                boolean numeric = true;
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token.isNumeric()) {
+                        if (found < 4) {
+                            box[found] = parser.getDoubleValue();
+                        }
+                        found++;
+                    } else {
+                        if (found < 4) {
+                            numeric = false;
+                        }
+                        parser.skipChildren();
+                    }
+                }
+                if (!numeric || found < 4) {
+                    continue;
+                }
+                if ((boxCount + 1) * 4 > geometry.length) {
+                    geometry = Arrays.copyOf(geometry, geometry.length * 2);
+                }
+                System.arraycopy(box, 0, geometry, boxCount * 4, 4);
+                boxCount++;
+            }
+        }
+
+        private static String[] readStrings(JsonParser parser, boolean trim) throws IOException {
+            String[] values = new String[16];
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                String value = null;
+                if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                    value = parser.getText();
+                    if (trim) {
+                        value = value.trim();
+                        if (value.isEmpty()) {
+                            value = null;
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = value;
+            }
+            return Arrays.copyOf(values, count);
+        }
+
+        private static double[] readNumbers(JsonParser parser) throws IOException {
+            double[] values = new double[16];
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                double value = Double.NaN;
+                if (token.isNumeric()) {
+                    value = parser.getDoubleValue();
+                } else {
+                    parser.skipChildren();
+                }
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = value;
+            }
+            return Arrays.copyOf(values, count);
+        }
+
+        private static Instant[] readInstants(JsonParser parser) throws IOException {
+            String[] text = readStrings(parser, true);
+            Instant[] values = new Instant[text.length];
+            for (int k = 0; k < text.length; k++) {
+                if (text[k] != null) {
+                    try {
+                        values[k] = Instant.parse(text[k]);
+                    } catch (DateTimeParseException ignore) { }
+                }
+            }
+            return values;
+        }
+    }
+}
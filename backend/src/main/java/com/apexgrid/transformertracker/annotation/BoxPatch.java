@@ -0,0 +1,229 @@
+package com.apexgrid.transformertracker.annotation;
+
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Box edits addressed by stable box id, checked as a whole before any of them is applied, so a
+ * patch either applies completely or not at all. Only the boxes it names are looked at: nothing
+ * is re-matched by geometry, which is what makes the cost follow the size of the edit rather
+ * than the number of boxes.
+ * <p>
+ * Operations: {@code add} (x, y, w, h, optional faultType and comment), {@code move} or its
+ * alias {@code resize} (any of x, y, w, h), {@code relabel} (faultType), {@code comment}
+ * (blank clears it) and {@code delete}. After the patch, added boxes are flagged {@code added},
+ * boxes whose values changed {@code edited}, and every other box has no recent status, as after
+ * a bulk update.
+ */
+public final class BoxPatch {
+    public record Operation(String op, String id, Double x, Double y, Double w, Double h,
+                            String faultType, String comment) { }
+
+    private enum Kind { ADD, MOVE, RELABEL, COMMENT, DELETE }
+
+    private record Step(Kind kind, Operation operation, InspectionBox box) { }
+
+    private final List<Step> steps;
+    private final String[] historyStatus;
+    private final boolean annotationsChanged;
+
+    private BoxPatch(List<Step> steps, String[] historyStatus, boolean annotationsChanged) {
+        this.steps = steps;
+        this.historyStatus = historyStatus;
+        this.annotationsChanged = annotationsChanged;
+    }
+
+    /**
+     * Check every operation against the current boxes.
+     *
+     * @throws IllegalArgumentException naming the first invalid operation
+     */
+    public static BoxPatch plan(List<InspectionBox> boxes, List<Operation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("No operations");
+        }
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int idx = 0; idx < boxes.size(); idx++) {
+            indexById.put(boxes.get(idx).getId(), idx);
+        }
+        // Box values as they will be after the patch, to flag only boxes that really change
+        Map<String, InspectionBox> after = new LinkedHashMap<>();
+        List<Step> steps = new ArrayList<>(operations.size());
+        boolean annotationsChanged = false;
+        for (int n = 0; n < operations.size(); n++) {
+            Operation op = operations.get(n);
+            Kind kind = kindOf(op, n);
+            if (kind == Kind.ADD) {
+                requireFinite(n, op.x(), op.y(), op.w(), op.h());
+                if (op.x() == null || op.y() == null || op.w() == null || op.h() == null) {
+                    throw invalid(n, "add needs x, y, w and h");
+                }
+                steps.add(new Step(kind, op, null));
+                annotationsChanged = true;
+                continue;
+            }
+            Integer index = op.id() == null ? null : indexById.get(op.id());
+            if (index == null) {
+                throw invalid(n, "unknown box id " + op.id());
+            }
+            InspectionBox box = boxes.get(index);
+            if (after.containsKey(box.getId()) && after.get(box.getId()) == null) {
+                throw invalid(n, "box " + op.id() + " is already deleted");
+            }
+            InspectionBox next = after.computeIfAbsent(box.getId(), key -> copyOf(box));
+            switch (kind) {
+                case MOVE -> {
+                    requireFinite(n, op.x(), op.y(), op.w(), op.h());
+                    if (op.x() == null && op.y() == null && op.w() == null && op.h() == null) {
+                        throw invalid(n, "move needs at least one of x, y, w and h");
+                    }
+                    next.setX(op.x() != null ? op.x() : next.getX());
+                    next.setY(op.y() != null ? op.y() : next.getY());
+                    next.setW(op.w() != null ? op.w() : next.getW());
+                    next.setH(op.h() != null ? op.h() : next.getH());
+                    annotationsChanged = true;
+                }
+                case RELABEL -> {
+                    if (op.faultType() == null || op.faultType().isBlank()) {
+                        throw invalid(n, "relabel needs a faultType");
+                    }
+                    next.setFaultType(op.faultType().trim());
+                    annotationsChanged = true;
+                }
+                case COMMENT -> next.setComment(trimToNull(op.comment()));
+                case DELETE -> {
+                    after.put(box.getId(), null);
+                    annotationsChanged = true;
+                }
+                default -> throw new IllegalStateException();
+            }
+            steps.add(new Step(kind, op, box));
+        }
+
+        String[] historyStatus = new String[boxes.size()];
+        after.forEach((id, next) -> {
+            int index = indexById.get(id);
+            if (next == null) {
+                historyStatus[index] = "deleted";
+            } else if (!sameValues(boxes.get(index), next)) {
+                historyStatus[index] = "edited";
+            }
+        });
+        return new BoxPatch(steps, historyStatus, annotationsChanged);
+    }
+
+    /** Statuses of the current boxes for the snapshot archived before the patch: edited or deleted. */
+    public String[] historyStatus() {
+        return historyStatus.clone();
+    }
+
+    /** Whether the patch adds, moves, relabels or deletes a box, as opposed to only commenting. */
+    public boolean changesAnnotations() {
+        return annotationsChanged;
+    }
+
+    /** Apply the operations in order to the inspection's boxes (the ones it was planned against). */
+    public void applyTo(Inspection inspection, String actor, Instant now) {
+        List<InspectionBox> boxes = inspection.getBoxes();
+        Map<InspectionBox, String> status = new HashMap<>();
+        for (int idx = 0; idx < boxes.size(); idx++) {
+            String flag = historyStatus[idx];
+            if ("edited".equals(flag)) {
+                status.put(boxes.get(idx), "edited");
+            }
+        }
+        for (Step step : steps) {
+            Operation op = step.operation();
+            InspectionBox box = step.box();
+            switch (step.kind()) {
+                case ADD -> {
+                    InspectionBox added = new InspectionBox(op.x(), op.y(), op.w(), op.h());
+                    added.setFaultType(op.faultType() == null || op.faultType().isBlank() ? "none" : op.faultType().trim());
+                    added.setComment(trimToNull(op.comment()));
+                    added.setAnnotatedBy(actor);
+                    added.setCreatedAt(now);
+                    inspection.addBox(added);
+                    status.put(added, "added");
+                }
+                case MOVE -> {
+                    box.setX(op.x() != null ? op.x() : box.getX());
+                    box.setY(op.y() != null ? op.y() : box.getY());
+                    box.setW(op.w() != null ? op.w() : box.getW());
+                    box.setH(op.h() != null ? op.h() : box.getH());
+                    if (status.containsKey(box)) {
+                        box.setAnnotatedBy(actor);
+                    }
+                }
+                case RELABEL -> {
+                    box.setFaultType(op.faultType().trim());
+                    if (status.containsKey(box)) {
+                        box.setAnnotatedBy(actor);
+                    }
+                }
+                case COMMENT -> box.setComment(trimToNull(op.comment()));
+                case DELETE -> inspection.removeBoxAt(boxes.indexOf(box));
+                default -> throw new IllegalStateException();
+            }
+        }
+        // Recent statuses describe this patch only; other boxes' flags from earlier edits are cleared
+        for (InspectionBox box : boxes) {
+            String flag = status.get(box);
+            if (!Objects.equals(box.getRecentStatus(), flag)) {
+                box.setRecentStatus(flag);
+            }
+        }
+        inspection.setContentUpdatedAt(now);
+    }
+
+    private static Kind kindOf(Operation op, int n) {
+        String name = op == null || op.op() == null ? "" : op.op().trim().toLowerCase();
+        return switch (name) {
+            case "add" -> Kind.ADD;
+            case "move", "resize" -> Kind.MOVE;
+            case "relabel" -> Kind.RELABEL;
+            case "comment" -> Kind.COMMENT;
+            case "delete" -> Kind.DELETE;
+            default -> throw invalid(n, "unknown op '" + name + "'");
+        };
+    }
+
+    private static void requireFinite(int n, Double... values) {
+        for (Double value : values) {
+            if (value != null && !Double.isFinite(value)) {
+                throw invalid(n, "coordinates must be finite numbers");
+            }
+        }
+    }
+
+    private static IllegalArgumentException invalid(int n, String reason) {
+        return new IllegalArgumentException("Operation " + n + ": " + reason);
+    }
+
+    private static InspectionBox copyOf(InspectionBox box) {
+        InspectionBox copy = new InspectionBox(box.getX(), box.getY(), box.getW(), box.getH());
+        copy.setFaultType(box.getFaultType());
+        copy.setComment(box.getComment());
+        return copy;
+    }
+
+    private static boolean sameValues(InspectionBox a, InspectionBox b) {
+        return a.getX() == b.getX() && a.getY() == b.getY() && a.getW() == b.getW() && a.getH() == b.getH()
+                && Objects.equals(a.getFaultType(), b.getFaultType()) && Objects.equals(a.getComment(), b.getComment());
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
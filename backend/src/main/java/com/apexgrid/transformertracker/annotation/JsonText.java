@@ -0,0 +1,92 @@
+package com.apexgrid.transformertracker.annotation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writing of values that are already JSON text, such as the box columns and history arrays. JSON
+ * responses keep the shapes the API has always had. The binary encodings (CBOR, Smile) cannot
+ * carry raw JSON, so there the text is re-encoded token by token and the client receives native
+ * arrays and numbers, with nothing left to parse.
+ */
+public final class JsonText {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonText() { }
+
+    /** {@code json} as a value for maps and trees: raw in JSON, native in the binary encodings. */
+    public static Object value(String json) {
+        return new Value(json);
+    }
+
+    private static void copy(JsonGenerator gen, String json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            parser.nextToken();
+            gen.copyCurrentStructure(parser);
+        }
+    }
+
+    private static boolean binary(JsonGenerator gen) {
+        return gen.canWriteBinaryNatively();
+    }
+
+    /** For a {@code String} property holding JSON: written raw, in place of {@code @JsonRawValue}. */
+    public static final class Raw extends StdSerializer<String> {
+        private static final long serialVersionUID = 1L;
+
+        public Raw() {
+            super(String.class);
+        }
+
+        @Override
+        public void serialize(String value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (binary(gen)) {
+                copy(gen, value);
+            } else {
+                gen.writeRawValue(value);
+            }
+        }
+    }
+
+    /** For a {@code String} property holding JSON that JSON responses carry as a string, like the inspection's box arrays. */
+    public static final class Embedded extends StdSerializer<String> {
+        private static final long serialVersionUID = 1L;
+
+        public Embedded() {
+            super(String.class);
+        }
+
+        @Override
+        public void serialize(String value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (binary(gen)) {
+                copy(gen, value);
+            } else {
+                gen.writeString(value);
+            }
+        }
+    }
+
+    private record Value(String json) implements JsonSerializable {
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            if (binary(gen)) {
+                copy(gen, json);
+            } else {
+                gen.writeRawValue(json);
+            }
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+                throws IOException {
+            serialize(gen, serializers);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.apexgrid.transformertracker.annotation;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "app.overlay")
+public class OverlayProperties {
+    /**
+     * Heap kept for rendered overlays; the least recently used ones are evicted beyond it.
+     * Zero disables the cache.
+     */
+    private DataSize cacheSize = DataSize.ofMegabytes(32);
+
+    public DataSize getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(DataSize cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+}
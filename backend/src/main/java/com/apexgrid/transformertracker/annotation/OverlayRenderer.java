@@ -0,0 +1,248 @@
+package com.apexgrid.transformertracker.annotation;
+
+import com.apexgrid.transformertracker.image.DataUrls;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Draws an inspection's current boxes onto its stored image as a PNG: one outline per box, a
+ * label with the fault type and severity, and a severity colour scale when any box is scored.
+ * AI boxes are coloured by severity (green to red over 0..1). User boxes have no severity and
+ * use the fault colours of {@code plot_bounding_boxes.py}.
+ * <p>
+ * Rendered PNGs are cached by (image hash, annotation version). The annotation version is a
+ * digest of the drawn box fields, so it changes exactly when the overlay would. The cache is an
+ * LRU bounded by {@code app.overlay.cache-size}. Rendering is thread-safe, so exports render
+ * overlays on their worker threads.
+ */
+@Component
+public class OverlayRenderer {
+    private static final Map<String, Color> FAULT_COLORS = Map.of(
+            "loose joint", new Color(239, 68, 68),
+            "point overload", new Color(245, 158, 11),
+            "wire overload", new Color(59, 130, 246));
+    private static final Color DEFAULT_COLOR = new Color(16, 185, 129);
+
+    private record Key(String imageHash, String annotationVersion) { }
+
+    private final OverlayProperties properties;
+    private final LinkedHashMap<Key, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+
+    public OverlayRenderer(OverlayProperties properties) {
+        this.properties = properties;
+    }
+
+    /** The overlay as PNG bytes, or null when the inspection has no readable image. */
+    public byte[] render(Inspection inspection) throws IOException {
+        Key key = inspection.getImageHash() != null
+                ? new Key(inspection.getImageHash(), annotationVersion(inspection.getBoxes()))
+                : null; // images stored before hashing was added are rendered every time
+        byte[] png = key != null ? cached(key) : null;
+        if (png != null) {
+            hits.increment();
+            return png;
+        }
+        misses.increment();
+        long started = System.nanoTime();
+        BufferedImage image = decode(inspection.getImageUrl());
+        if (image == null) {
+            return null;
+        }
+        draw(image, inspection.getBoxes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        png = out.toByteArray();
+        renderNanos.add(System.nanoTime() - started);
+        if (key != null) {
+            store(key, png);
+        }
+        return png;
+    }
+
+    /** Digest of the box fields the overlay draws, in drawing order. */
+    public static String annotationVersion(List<InspectionBox> boxes) {
+        StringBuilder fields = new StringBuilder();
+        for (InspectionBox box : boxes) {
+            fields.append(box.getX()).append(',').append(box.getY()).append(',')
+                    .append(box.getW()).append(',').append(box.getH()).append(',')
+                    .append(box.getFaultType()).append(',').append(box.getSeverity()).append(';');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fields.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    public Stats stats() {
+        long rendered = misses.sum();
+        synchronized (cache) {
+            return new Stats(cache.size(), cachedBytes, hits.sum(), rendered,
+                    rendered == 0 ? 0 : renderNanos.sum() / rendered / 1_000_000.0);
+        }
+    }
+
+    private byte[] cached(Key key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private void store(Key key, byte[] png) {
+        long limit = properties.getCacheSize() == null ? 0 : properties.getCacheSize().toBytes();
+        if (png.length > limit) {
+            return;
+        }
+        synchronized (cache) {
+            byte[] previous = cache.put(key, png);
+            cachedBytes += png.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> eldest = cache.values().iterator();
+            while (cachedBytes > limit && eldest.hasNext()) {
+                cachedBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static BufferedImage decode(String dataUrl) throws IOException {
+        InputStream in = DataUrls.open(dataUrl);
+        if (in == null) {
+            return null;
+        }
+        BufferedImage decoded;
+        try (in) {
+            decoded = ImageIO.read(in);
+        } catch (IllegalArgumentException ex) {
+            return null; // malformed base64
+        }
+        if (decoded == null) {
+            return null;
+        }
+        BufferedImage canvas = new BufferedImage(decoded.getWidth(), decoded.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = canvas.createGraphics();
+        g.drawImage(decoded, 0, 0, null);
+        g.dispose();
+        return canvas;
+    }
+
+    private static void draw(BufferedImage image, List<InspectionBox> boxes) {
+        int shortSide = Math.min(image.getWidth(), image.getHeight());
+        float stroke = Math.max(2f, shortSide / 250f);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(11, shortSide / 40)));
+            FontMetrics metrics = g.getFontMetrics();
+            boolean scored = false;
+            for (InspectionBox box : boxes) {
+                Color color = box.getSeverity() != null ? severityColor(box.getSeverity()) : faultColor(box.getFaultType());
+                scored |= box.getSeverity() != null;
+                int x = (int) Math.round(box.getX());
+                int y = (int) Math.round(box.getY());
+                int w = (int) Math.round(box.getW());
+                int h = (int) Math.round(box.getH());
+                g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 48));
+                g.fillRect(x, y, w, h);
+                g.setColor(color);
+                g.setStroke(new BasicStroke(stroke));
+                g.drawRect(x, y, w, h);
+
+                String label = label(box);
+                int textWidth = metrics.stringWidth(label) + 6;
+                int textHeight = metrics.getHeight();
+                // Above the box, or inside its top edge when there is no room
+                int labelY = y - textHeight >= 0 ? y - textHeight : y;
+                int labelX = Math.max(0, Math.min(x, image.getWidth() - textWidth));
+                g.fillRect(labelX, labelY, textWidth, textHeight);
+                g.setColor(contrast(color));
+                g.drawString(label, labelX + 3, labelY + metrics.getAscent());
+            }
+            if (scored) {
+                drawScale(g, image, metrics);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /** Horizontal severity scale, 0 to 1, in the bottom-right corner. */
+    private static void drawScale(Graphics2D g, BufferedImage image, FontMetrics metrics) {
+        int width = Math.max(80, image.getWidth() / 5);
+        int height = Math.max(8, metrics.getHeight() / 2);
+        int margin = Math.max(4, metrics.getHeight() / 3);
+        int x = image.getWidth() - width - margin;
+        int y = image.getHeight() - height - metrics.getHeight() - margin;
+        g.setColor(new Color(0, 0, 0, 160));
+        g.fillRect(x - margin, y - margin, width + 2 * margin, height + metrics.getHeight() + 2 * margin);
+        int half = width / 2;
+        g.setPaint(new GradientPaint(x, 0, severityColor(0), x + half, 0, severityColor(0.5)));
+        g.fillRect(x, y, half, height);
+        g.setPaint(new GradientPaint(x + half, 0, severityColor(0.5), x + width, 0, severityColor(1)));
+        g.fillRect(x + half, y, width - half, height);
+        g.setColor(Color.WHITE);
+        int baseline = y + height + metrics.getAscent();
+        g.drawString("0", x, baseline);
+        String title = "severity";
+        g.drawString(title, x + (width - metrics.stringWidth(title)) / 2, baseline);
+        g.drawString("1", x + width - metrics.stringWidth("1"), baseline);
+    }
+
+    private static String label(InspectionBox box) {
+        String fault = box.getFaultType() == null || box.getFaultType().isBlank() ? "unknown" : box.getFaultType();
+        return box.getSeverity() == null ? fault : String.format(Locale.ROOT, "%s (%.2f)", fault, box.getSeverity());
+    }
+
+    /** Green at 0 through yellow to red at 1. */
+    private static Color severityColor(double severity) {
+        double clamped = Double.isNaN(severity) ? 0 : Math.max(0, Math.min(1, severity));
+        return Color.getHSBColor((float) ((1 - clamped) / 3), 0.85f, 0.95f);
+    }
+
+    private static Color faultColor(String faultType) {
+        if (faultType == null) {
+            return DEFAULT_COLOR;
+        }
+        return FAULT_COLORS.getOrDefault(faultType.trim().toLowerCase(Locale.ROOT), DEFAULT_COLOR);
+    }
+
+    private static Color contrast(Color background) {
+        double luminance = 0.299 * background.getRed() + 0.587 * background.getGreen() + 0.114 * background.getBlue();
+        return luminance > 150 ? Color.BLACK : Color.WHITE;
+    }
+
+    /**
+     * @param rendered renders since startup (cache misses)
+     * @param meanRenderMillis mean time to decode, draw and encode one overlay
+     */
+    public record Stats(int cached, long cachedBytes, long hits, long rendered, double meanRenderMillis) { }
+}
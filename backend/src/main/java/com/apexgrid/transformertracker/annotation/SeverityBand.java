@@ -0,0 +1,29 @@
+package com.apexgrid.transformertracker.annotation;
+
+import java.util.Locale;
+
+/**
+ * Coarse severity of a box, with the thresholds of {@code severity_label} in the analyzer.
+ * User-drawn boxes have no severity and are {@link #UNSCORED}.
+ */
+public enum SeverityBand {
+    LOW, MODERATE, HIGH, CRITICAL, UNSCORED;
+
+    public static SeverityBand of(Double severity) {
+        if (severity == null || severity.isNaN()) {
+            return UNSCORED;
+        }
+        if (severity >= 0.80) {
+            return CRITICAL;
+        }
+        if (severity >= 0.50) {
+            return HIGH;
+        }
+        return severity >= 0.20 ? MODERATE : LOW;
+    }
+
+    /** The lower-case name used in requests and responses. */
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,5 +1,6 @@
 package com.apexgrid.transformertracker.auth;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -36,6 +37,9 @@ public class SecurityConfig {
             .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(reg -> reg
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // Streamed and long-polled responses finish on an async dispatch, and failures are
+                // rendered on an error dispatch, both after the request itself was authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/api/login").permitAll()
                 .anyRequest().authenticated()
             )
@@ -0,0 +1,214 @@
+package com.apexgrid.transformertracker.baseline;
+
+import com.apexgrid.transformertracker.changelog.ChangeLogRecorder;
+import com.apexgrid.transformertracker.image.ImageIngestService;
+import com.apexgrid.transformertracker.image.ImageNormalizer;
+import com.apexgrid.transformertracker.image.IngestedImage;
+import com.apexgrid.transformertracker.image.NormalizedImage;
+import com.apexgrid.transformertracker.model.BaselineSummary;
+import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.model.TransformerBaseline;
+import com.apexgrid.transformertracker.repo.TransformerBaselineRepo;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+@Service
+public class BaselineService {
+    /** Fallback order when no baseline exists for the requested weather. */
+    public static final List<String> DEFAULT_WEATHER_ORDER = List.of("sunny", "cloudy", "rainy");
+
+    private static final Pattern WEATHER_KEY = Pattern.compile("[a-z0-9_-]{1,32}");
+    private static final int VERSION_RETRIES = 3;
+
+    private final TransformerBaselineRepo repo;
+    private final ImageIngestService imageIngestService;
+    private final ImageNormalizer imageNormalizer;
+    private final TransactionTemplate transactions;
+    private final ChangeLogRecorder changeLogRecorder;
+
+    public BaselineService(TransformerBaselineRepo repo,
+                           ImageIngestService imageIngestService,
+                           ImageNormalizer imageNormalizer,
+                           TransactionTemplate transactions,
+                           ChangeLogRecorder changeLogRecorder) {
+        this.repo = repo;
+        this.imageIngestService = imageIngestService;
+        this.imageNormalizer = imageNormalizer;
+        this.transactions = transactions;
+        this.changeLogRecorder = changeLogRecorder;
+    }
+
+    /**
+     * Lower-case and validate a weather key. "windy" is accepted as the legacy name for "rainy".
+     * Returns {@code null} for blank or malformed input.
+     */
+    public static String normalizeWeather(String weather) {
+        if (!StringUtils.hasText(weather)) {
+            return null;
+        }
+        String key = weather.trim().toLowerCase(Locale.ROOT);
+        if ("windy".equals(key)) {
+            key = "rainy";
+        }
+        return WEATHER_KEY.matcher(key).matches() ? key : null;
+    }
+
+    /**
+     * Store an ingested upload as the next baseline version for the given weather.
+     */
+    public TransformerBaseline store(Transformer transformer, String weather, IngestedImage upload, String uploader) throws IOException {
+        NormalizedImage normalized = imageNormalizer.normalize(upload);
+        TransformerBaseline baseline = new TransformerBaseline();
+        baseline.setTransformer(transformer);
+        baseline.setWeather(weather);
+        baseline.setImageUrl(normalized.toDataUrl());
+        baseline.setImageHash(normalized.getSha256());
+        baseline.setImageScale(normalized.getScale());
+        baseline.setOriginalImageUrl(imageNormalizer.keepOriginal() && normalized.isRewritten() ? upload.toDataUrl() : null);
+        baseline.setUploadedBy(uploader);
+        baseline.setUploadedAt(Instant.now());
+        return saveNextVersion(baseline);
+    }
+
+    /**
+     * Apply the legacy {@code sunnyImage}/{@code cloudyImage}/{@code windyImage} properties of a
+     * create/update body. Unchanged images are ignored; explicit nulls remove that weather.
+     * Each version is saved in its own transaction so a version clash can be retried.
+     */
+    public void applySubmittedBaselines(Transformer target, Map<String, String> submitted, String uploader) throws IOException {
+        for (Map.Entry<String, String> entry : submitted.entrySet()) {
+            String weather = entry.getKey();
+            String dataUrl = entry.getValue();
+            if (!StringUtils.hasText(dataUrl)) {
+                deleteWeather(target.getId(), weather);
+                continue;
+            }
+            try (IngestedImage upload = ingestDataUrl(dataUrl)) {
+                if (upload == null) {
+                    continue;
+                }
+                Optional<TransformerBaseline> latest = repo.findFirstByTransformer_IdAndWeatherOrderByVersionDesc(target.getId(), weather);
+                if (latest.isPresent() && Objects.equals(latest.get().getImageHash(), upload.getSha256())) {
+                    continue; // client echoed the stored image back
+                }
+                store(target, weather, upload, uploader);
+            }
+        }
+    }
+
+    public Optional<TransformerBaseline> findLatest(String transformerId, String weather) {
+        String key = normalizeWeather(weather);
+        if (transformerId == null || key == null) {
+            return Optional.empty();
+        }
+        return repo.findFirstByTransformer_IdAndWeatherOrderByVersionDesc(transformerId, key);
+    }
+
+    public Optional<TransformerBaseline> findVersion(String transformerId, String weather, int version) {
+        String key = normalizeWeather(weather);
+        if (transformerId == null || key == null) {
+            return Optional.empty();
+        }
+        return repo.findByTransformer_IdAndWeatherAndVersion(transformerId, key, version);
+    }
+
+    /**
+     * Latest baseline for the preferred weather, falling back to {@link #DEFAULT_WEATHER_ORDER}
+     * and then to whichever weather was uploaded most recently.
+     */
+    public Optional<TransformerBaseline> resolve(String transformerId, String preferredWeather) {
+        Optional<TransformerBaseline> preferred = findLatest(transformerId, preferredWeather);
+        if (preferred.isPresent()) {
+            return preferred;
+        }
+        for (String weather : DEFAULT_WEATHER_ORDER) {
+            Optional<TransformerBaseline> candidate = findLatest(transformerId, weather);
+            if (candidate.isPresent()) {
+                return candidate;
+            }
+        }
+        return listSummaries(transformerId).stream()
+                .max((a, b) -> a.uploadedAt().compareTo(b.uploadedAt()))
+                .flatMap(summary -> repo.findById(summary.id()));
+    }
+
+    public List<BaselineSummary> listSummaries(String transformerId) {
+        return repo.findSummariesByTransformerId(transformerId);
+    }
+
+    /**
+     * Populate the legacy per-weather fields with the latest sunny/cloudy/rainy baselines.
+     */
+    public Transformer withBaselineView(Transformer transformer) {
+        for (String weather : DEFAULT_WEATHER_ORDER) {
+            repo.findFirstByTransformer_IdAndWeatherOrderByVersionDesc(transformer.getId(), weather)
+                    .ifPresent(b -> transformer.applyBaselineView(weather, b.getImageUrl(), b.getUploadedBy(), b.getUploadedAt()));
+        }
+        return transformer;
+    }
+
+    public int delete(String transformerId, String weather) {
+        String key = normalizeWeather(weather);
+        return key == null ? 0 : deleteWeather(transformerId, key);
+    }
+
+    public int deleteAll(String transformerId) {
+        return repo.deleteByTransformerId(transformerId);
+    }
+
+    /** The bulk delete bypasses the change log listener, so its entry is recorded in the same transaction. */
+    private int deleteWeather(String transformerId, String weather) {
+        Integer removed = transactions.execute(status -> {
+            int count = repo.deleteByTransformerIdAndWeather(transformerId, weather);
+            if (count > 0) {
+                changeLogRecorder.record(ChangeLogRecorder.TRANSFORMER, transformerId, transformerId, ChangeLogRecorder.BASELINES);
+            }
+            return count;
+        });
+        return removed == null ? 0 : removed;
+    }
+
+    private TransformerBaseline saveNextVersion(TransformerBaseline baseline) {
+        String transformerId = baseline.getTransformer().getId();
+        for (int attempt = 1; ; attempt++) {
+            baseline.setVersion(repo.findMaxVersion(transformerId, baseline.getWeather()) + 1);
+            try {
+                return repo.saveAndFlush(baseline);
+            } catch (DataIntegrityViolationException ex) {
+                // Concurrent upload took the same version number; pick the next one
+                if (attempt >= VERSION_RETRIES) {
+                    throw ex;
+                }
+                baseline.setId(null);
+            }
+        }
+    }
+
+    private IngestedImage ingestDataUrl(String dataUrl) throws IOException {
+        int comma = dataUrl.indexOf(',');
+        if (!dataUrl.startsWith("data:") || comma < 0) {
+            return null;
+        }
+        int semi = dataUrl.indexOf(';');
+        String mime = semi > 5 && semi < comma ? dataUrl.substring(5, semi) : null;
+        byte[] base64 = dataUrl.substring(comma + 1).getBytes(StandardCharsets.ISO_8859_1);
+        try (InputStream in = Base64.getMimeDecoder().wrap(new ByteArrayInputStream(base64))) {
+            return imageIngestService.ingest(in, -1, mime);
+        }
+    }
+}
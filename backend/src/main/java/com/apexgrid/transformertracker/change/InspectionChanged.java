@@ -0,0 +1,35 @@
+package com.apexgrid.transformertracker.change;
+
+import com.apexgrid.transformertracker.model.Inspection;
+
+/**
+ * Published after an inspection or its boxes were saved or it was deleted. Listeners run on the
+ * request thread once the change is committed.
+ *
+ * @param transformerId the inspection's transformer
+ * @param inspection    the saved state with its boxes, or null when the inspection was deleted
+ * @param cause         what the request changed, for listeners that tell clients about it
+ */
+public record InspectionChanged(String id, String transformerId, Inspection inspection, Cause cause) {
+    public enum Cause {
+        CREATED, UPDATED, IMAGE, ANALYZED, ANALYSIS_CLEARED, BOXES, DELETED;
+
+        /** Lower-case name, as sent to clients. */
+        public String label() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    public static InspectionChanged saved(Inspection inspection, Cause cause) {
+        String transformerId = inspection.getTransformer() != null ? inspection.getTransformer().getId() : null;
+        return new InspectionChanged(inspection.getId(), transformerId, inspection, cause);
+    }
+
+    public static InspectionChanged deleted(String id, String transformerId) {
+        return new InspectionChanged(id, transformerId, null, Cause.DELETED);
+    }
+
+    public boolean isDeleted() {
+        return inspection == null;
+    }
+}
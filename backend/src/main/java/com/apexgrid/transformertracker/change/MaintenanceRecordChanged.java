@@ -0,0 +1,24 @@
+package com.apexgrid.transformertracker.change;
+
+import com.apexgrid.transformertracker.model.MaintenanceRecord;
+
+/**
+ * Published after an inspection's maintenance record was saved or deleted.
+ *
+ * @param inspectionId  the inspection the record belongs to (one record per inspection)
+ * @param transformerId the inspection's transformer
+ * @param record        the saved record, or null when it was deleted
+ */
+public record MaintenanceRecordChanged(String inspectionId, String transformerId, MaintenanceRecord record) {
+    public static MaintenanceRecordChanged saved(String transformerId, MaintenanceRecord record) {
+        return new MaintenanceRecordChanged(record.getInspection().getId(), transformerId, record);
+    }
+
+    public static MaintenanceRecordChanged deleted(String inspectionId, String transformerId) {
+        return new MaintenanceRecordChanged(inspectionId, transformerId, null);
+    }
+
+    public boolean isDeleted() {
+        return record == null;
+    }
+}
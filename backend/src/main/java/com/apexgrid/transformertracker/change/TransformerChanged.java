@@ -0,0 +1,33 @@
+package com.apexgrid.transformertracker.change;
+
+import com.apexgrid.transformertracker.model.Transformer;
+
+/**
+ * Published after a transformer or its baselines were saved or it was deleted. Deleting a
+ * transformer also deletes its inspections, which get no events of their own.
+ *
+ * @param transformer the saved state, or null when the transformer was deleted
+ * @param cause       what the request changed, for listeners that tell clients about it
+ */
+public record TransformerChanged(String id, Transformer transformer, Cause cause) {
+    public enum Cause {
+        CREATED, UPDATED, BASELINES, DELETED;
+
+        /** Lower-case name, as sent to clients. */
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    public static TransformerChanged saved(Transformer transformer, Cause cause) {
+        return new TransformerChanged(transformer.getId(), transformer, cause);
+    }
+
+    public static TransformerChanged deleted(String id) {
+        return new TransformerChanged(id, null, Cause.DELETED);
+    }
+
+    public boolean isDeleted() {
+        return transformer == null;
+    }
+}
@@ -0,0 +1,291 @@
+package com.apexgrid.transformertracker.changelog;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The feed side of the change log. Rows written by {@link ChangeLogRecorder} are numbered by a
+ * relay: under a lock on the single {@code change_log_state} row it gives every committed,
+ * unnumbered row the next position, in id order. Relays on different instances take turns on
+ * that lock, so a position is only ever handed out after every lower one has committed, and a
+ * consumer that has read up to a cursor can never be missing a row below it.
+ * <p>
+ * This instance's commits trigger a relay straight away; a pass every {@code relay-every} also
+ * numbers rows committed through other instances and notices their new positions, waking long
+ * polls. Entries older than {@code retention} are pruned in batches; {@code pruned_through}
+ * remembers how far, so a cursor from before it is reported as expired instead of silently
+ * skipping what was pruned.
+ */
+@Component
+public class ChangeLog {
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeLog.class);
+
+    private static final String HAS_PENDING = "select id from change_log where position is null limit 1";
+    private static final String PENDING = "select id from change_log where position is null order by id limit ?";
+    private static final String STATE = "select last_position, pruned_through from change_log_state where id = 1";
+    private static final String READ = "select position, entity, entity_id, transformer_id, op, version, changed_at "
+            + "from change_log where position > ? order by position limit ?";
+    private static final String PRUNABLE = "select position from change_log where position is not null and changed_at < ? "
+            + "order by position limit ?";
+
+    public record Change(String cursor, String entity, String id, String transformerId, String op, Long version,
+                         Instant changedAt) { }
+
+    /** @param cursor the last change's position, or the requested one when there are no changes */
+    public record Page(List<Change> changes, String cursor, boolean more) { }
+
+    private record State(long lastPosition, long prunedThrough) { }
+
+    private record Waiter(long since, CompletableFuture<Void> ready) { }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final ChangeLogProperties properties;
+    private final ExecutorService relayThread;
+    private final AtomicBoolean relayQueued = new AtomicBoolean();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    // -1 until the first relay pass has read the state row
+    private volatile long head = -1;
+    private volatile long prunedThrough;
+    private volatile long relayed;
+    private volatile long relayPasses;
+    private volatile long pruned;
+    private volatile Instant lastPrunedAt;
+
+    public ChangeLog(JdbcTemplate jdbc, TransactionTemplate transactions, ChangeLogProperties properties) {
+        this.jdbc = jdbc;
+        this.transactions = transactions;
+        this.properties = properties;
+        this.relayThread = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "change-log-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Ask for a relay pass soon; called after this instance commits entries. */
+    void nudge() {
+        if (!relayQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            relayThread.execute(() -> {
+                relayQueued.set(false);
+                relay();
+            });
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            relayQueued.set(false);
+        }
+    }
+
+    @Scheduled(initialDelayString = "#{@changeLogProperties.relayEvery.toMillis()}",
+            fixedDelayString = "#{@changeLogProperties.relayEvery.toMillis()}")
+    public void scheduledRelay() {
+        relay();
+    }
+
+    /** Number every committed, unnumbered entry and wake the long polls it satisfies. */
+    public synchronized void relay() {
+        try {
+            if (head < 0) {
+                ensureState();
+            }
+            State state;
+            if (jdbc.queryForList(HAS_PENDING, Long.class).isEmpty()) {
+                state = readState();
+            } else {
+                int batchSize = Math.max(1, properties.getRelayBatchSize());
+                int[] numbered = new int[1];
+                do {
+                    state = transactions.execute(status -> number(batchSize, numbered));
+                } while (numbered[0] == batchSize);
+            }
+            relayPasses++;
+            if (state != null) {
+                advance(state);
+            }
+        } catch (RuntimeException ex) {
+            LOG.warn("Change log relay failed", ex);
+        }
+    }
+
+    private State number(int batchSize, int[] numbered) {
+        State state = jdbc.queryForObject(STATE + " for update",
+                (rs, rowNum) -> new State(rs.getLong(1), rs.getLong(2)));
+        List<Long> ids = jdbc.queryForList(PENDING, Long.class, batchSize);
+        long position = state.lastPosition();
+        List<Object[]> updates = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            updates.add(new Object[]{++position, id});
+        }
+        if (!updates.isEmpty()) {
+            jdbc.batchUpdate("update change_log set position = ? where id = ?", updates);
+            jdbc.update("update change_log_state set last_position = ? where id = 1", position);
+            relayed += ids.size();
+        }
+        numbered[0] = ids.size();
+        return new State(position, state.prunedThrough());
+    }
+
+    private void ensureState() {
+        if (readState() != null) {
+            return;
+        }
+        try {
+            jdbc.update("insert into change_log_state (id, last_position, pruned_through) values (1, 0, 0)");
+        } catch (DataIntegrityViolationException ex) {
+            // Another instance created it first
+        }
+    }
+
+    private State readState() {
+        List<State> rows = jdbc.query(STATE, (rs, rowNum) -> new State(rs.getLong(1), rs.getLong(2)));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void advance(State state) {
+        prunedThrough = state.prunedThrough();
+        if (state.lastPosition() <= head) {
+            return;
+        }
+        head = state.lastPosition();
+        for (Waiter waiter : waiters) {
+            if (waiter.since() < head) {
+                waiter.ready().complete(null);
+                waiters.remove(waiter);
+            }
+        }
+    }
+
+    /**
+     * Up to {@code limit} changes after {@code since}, oldest first.
+     *
+     * @return the page, or null when entries after {@code since} have been pruned
+     */
+    public Page read(long since, int limit) {
+        List<Change> changes = jdbc.query(READ, (rs, rowNum) -> new Change(Long.toString(rs.getLong("position")),
+                rs.getString("entity"), rs.getString("entity_id"), rs.getString("transformer_id"), rs.getString("op"),
+                rs.getObject("version", Long.class), rs.getTimestamp("changed_at").toInstant()), since, limit + 1);
+        // Checked after reading, so a prune that ran meanwhile is reported rather than skipped
+        State state = readState();
+        if (state != null && since < state.prunedThrough()) {
+            return null;
+        }
+        boolean more = changes.size() > limit;
+        if (more) {
+            changes = changes.subList(0, limit);
+        }
+        String cursor = changes.isEmpty() ? Long.toString(since) : changes.get(changes.size() - 1).cursor();
+        return new Page(changes, cursor, more);
+    }
+
+    /** The oldest retained changes, for a consumer starting without a cursor. */
+    public Page readRetained(int limit) {
+        State state = readState();
+        long since = state == null ? 0 : state.prunedThrough();
+        Page page = read(since, limit);
+        // Pruned again between the two reads: start after that prune instead
+        return page != null ? page : readRetained(limit);
+    }
+
+    /** Completes once a change after {@code since} has been numbered; cancel it to stop waiting. */
+    public CompletableFuture<Void> changedAfter(long since) {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        if (head > since) {
+            ready.complete(null);
+            return ready;
+        }
+        waiters.removeIf(waiter -> waiter.ready().isDone());
+        waiters.add(new Waiter(since, ready));
+        // The relay may have moved past since between the check and the add
+        if (head > since) {
+            ready.complete(null);
+        }
+        return ready;
+    }
+
+    @Scheduled(initialDelayString = "#{@changeLogProperties.pruneEvery.toMillis()}",
+            fixedDelayString = "#{@changeLogProperties.pruneEvery.toMillis()}")
+    public void scheduledPrune() {
+        prune();
+    }
+
+    /** Delete entries older than {@code retention}; returns the number deleted, or -1 when a prune is already running. */
+    public long prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return -1;
+        }
+        long removed = 0;
+        try {
+            Timestamp cutoff = Timestamp.from(Instant.now().minus(properties.getRetention()));
+            int batchSize = Math.max(1, properties.getPruneBatchSize());
+            while (true) {
+                Integer deleted = transactions.execute(status -> {
+                    List<Long> positions = jdbc.queryForList(PRUNABLE, Long.class, cutoff, batchSize);
+                    if (positions.isEmpty()) {
+                        return 0;
+                    }
+                    long through = positions.get(positions.size() - 1);
+                    jdbc.update("update change_log_state set pruned_through = ? where id = 1 and pruned_through < ?",
+                            through, through);
+                    return jdbc.update("delete from change_log where position is not null and position <= ?", through);
+                });
+                removed += deleted == null ? 0 : deleted;
+                if (deleted == null || deleted < batchSize) {
+                    break;
+                }
+            }
+            State state = readState();
+            if (state != null) {
+                prunedThrough = state.prunedThrough();
+            }
+        } catch (RuntimeException ex) {
+            LOG.warn("Change log prune stopped after {} entries", removed, ex);
+        } finally {
+            pruned += removed;
+            lastPrunedAt = Instant.now();
+            pruning.set(false);
+        }
+        if (removed > 0) {
+            LOG.info("Pruned {} change log entries", removed);
+        }
+        return removed;
+    }
+
+    public Stats stats() {
+        return new Stats(head, prunedThrough, relayed, relayPasses, pruned, lastPrunedAt, waiters.size());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        relayThread.shutdownNow();
+    }
+
+    /**
+     * @param head     the highest position this instance has seen numbered
+     * @param relayed  entries this instance numbered since startup
+     * @param waiting  long polls currently waiting for a change
+     */
+    public record Stats(long head, long prunedThrough, long relayed, long relayPasses, long pruned,
+                        Instant lastPrunedAt, int waiting) { }
+}
@@ -0,0 +1,79 @@
+package com.apexgrid.transformertracker.changelog;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.change-log")
+public class ChangeLogProperties {
+    /**
+     * Delay between relay passes, which number entries committed through other instances (this
+     * instance's own commits are numbered right away). Also bounds how late a long poll on one
+     * instance hears of a write made through another.
+     */
+    private Duration relayEvery = Duration.ofSeconds(1);
+
+    /** Entries numbered per relay transaction. */
+    private int relayBatchSize = 500;
+
+    /** Longest a {@code GET /api/changes} long poll may wait for a change. */
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    /** Entries older than this are pruned; consumers further behind get 410 and resync. */
+    private Duration retention = Duration.ofDays(7);
+
+    private Duration pruneEvery = Duration.ofHours(1);
+
+    /** Entries deleted per prune transaction. */
+    private int pruneBatchSize = 1000;
+
+    public Duration getRelayEvery() {
+        return relayEvery;
+    }
+
+    public void setRelayEvery(Duration relayEvery) {
+        this.relayEvery = relayEvery;
+    }
+
+    public int getRelayBatchSize() {
+        return relayBatchSize;
+    }
+
+    public void setRelayBatchSize(int relayBatchSize) {
+        this.relayBatchSize = relayBatchSize;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    public Duration getPruneEvery() {
+        return pruneEvery;
+    }
+
+    public void setPruneEvery(Duration pruneEvery) {
+        this.pruneEvery = pruneEvery;
+    }
+
+    public int getPruneBatchSize() {
+        return pruneBatchSize;
+    }
+
+    public void setPruneBatchSize(int pruneBatchSize) {
+        this.pruneBatchSize = pruneBatchSize;
+    }
+}
@@ -0,0 +1,213 @@
+package com.apexgrid.transformertracker.changelog;
+
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.MaintenanceRecord;
+import com.apexgrid.transformertracker.model.ModelParameter;
+import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.model.TransformerBaseline;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The outbox side of the change log: a Hibernate listener that notes every insert, update and
+ * delete of an inspection, transformer (including a new baseline), maintenance record or model
+ * parameter, and writes the notes as {@code change_log} rows just before the transaction
+ * commits, on the same connection. The rows commit or roll back with the writes they describe,
+ * whichever repository or service made them. Several writes to one entity in a transaction
+ * become one row.
+ * <p>
+ * Bulk statements bypass the listener; code that runs one calls {@link #record} in the same
+ * transaction.
+ */
+@Component
+public class ChangeLogRecorder implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    public static final String INSPECTION = "inspection";
+    public static final String TRANSFORMER = "transformer";
+    public static final String MAINTENANCE_RECORD = "maintenance-record";
+    public static final String PARAMETER = "parameter";
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String BASELINES = "baselines";
+    public static final String DELETED = "deleted";
+
+    // A maintenance record's transformer is looked up by its inspection when the record only holds a proxy
+    private static final String INSERT = "insert into change_log (entity, entity_id, transformer_id, op, version, changed_at) "
+            + "values (?, ?, coalesce(?, (select i.transformer_id from inspections i where i.id = ?)), ?, ?, ?)";
+
+    private record Entry(String entity, String entityId, String transformerId, String inspectionId, String op, Long version) {
+        String key() {
+            return entity + '\u0000' + entityId;
+        }
+
+        /** This entry followed by a later write to the same entity in the same transaction. */
+        Entry then(Entry later) {
+            if (DELETED.equals(later.op)) {
+                return later;
+            }
+            // A create or update also covers new baselines; the latest version wins
+            String merged = CREATED.equals(op) || BASELINES.equals(later.op) && UPDATED.equals(op) ? op : later.op;
+            return new Entry(entity, entityId, later.transformerId, later.inspectionId, merged,
+                    later.version != null ? later.version : version);
+        }
+    }
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ChangeLog changeLog;
+    private final Map<SessionImplementor, Map<String, Entry>> pending = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public ChangeLogRecorder(EntityManagerFactory entityManagerFactory, ChangeLog changeLog) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.changeLog = changeLog;
+    }
+
+    // Only once injection is done, so no write can reach the listener before em is set
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * Note a change made by a bulk statement; must run in the statement's transaction.
+     *
+     * @throws IllegalStateException when no transaction is active
+     */
+    public void record(String entity, String entityId, String transformerId, String op) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Change log entries must be recorded in the change's transaction");
+        }
+        add(em.unwrap(SessionImplementor.class), new Entry(entity, entityId, transformerId, null, op, null));
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Entry entry = entryFor(event.getEntity(), version(event.getPersister(), event.getState()), CREATED);
+        if (entry != null) {
+            add(event.getSession(), entry);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Entry entry = entryFor(event.getEntity(), version(event.getPersister(), event.getState()), UPDATED);
+        if (entry != null) {
+            add(event.getSession(), entry);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Entry entry = entryFor(event.getEntity(), null, DELETED);
+        if (entry != null) {
+            add(event.getSession(), entry);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private static Entry entryFor(Object entity, Long version, String op) {
+        if (entity instanceof Inspection inspection) {
+            String transformerId = inspection.getTransformer() != null ? inspection.getTransformer().getId() : null;
+            return new Entry(INSPECTION, inspection.getId(), transformerId, null, op, version);
+        }
+        if (entity instanceof Transformer transformer) {
+            return new Entry(TRANSFORMER, transformer.getId(), transformer.getId(), null, op, version);
+        }
+        if (entity instanceof TransformerBaseline baseline) {
+            String transformerId = baseline.getTransformer().getId();
+            return new Entry(TRANSFORMER, transformerId, transformerId, null, BASELINES, null);
+        }
+        if (entity instanceof MaintenanceRecord record) {
+            String inspectionId = record.getInspection().getId();
+            return new Entry(MAINTENANCE_RECORD, inspectionId, null, inspectionId, op, version);
+        }
+        if (entity instanceof ModelParameter parameter) {
+            return new Entry(PARAMETER, parameter.getKey(), null, null, op, null);
+        }
+        return null;
+    }
+
+    private static Long version(EntityPersister persister, Object[] state) {
+        if (!persister.isVersioned() || state == null) {
+            return null;
+        }
+        return state[persister.getVersionProperty()] instanceof Number number ? number.longValue() : null;
+    }
+
+    private void add(SessionImplementor session, Entry entry) {
+        Map<String, Entry> entries = pending.computeIfAbsent(session, key -> {
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::write);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, done) -> {
+                pending.remove(session);
+                if (success) {
+                    changeLog.nudge();
+                }
+            });
+            return new LinkedHashMap<>();
+        });
+        entries.merge(entry.key(), entry, Entry::then);
+    }
+
+    /** Runs after the final flush, inside the transaction. */
+    private void write(SessionImplementor session) {
+        Map<String, Entry> entries = pending.get(session);
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        session.doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                for (Entry entry : entries.values()) {
+                    insert.setString(1, entry.entity());
+                    insert.setString(2, entry.entityId());
+                    insert.setString(3, entry.transformerId());
+                    insert.setString(4, entry.inspectionId());
+                    insert.setString(5, entry.op());
+                    if (entry.version() != null) {
+                        insert.setLong(6, entry.version());
+                    } else {
+                        insert.setNull(6, Types.BIGINT);
+                    }
+                    insert.setTimestamp(7, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+}
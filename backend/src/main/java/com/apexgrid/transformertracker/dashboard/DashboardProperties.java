@@ -0,0 +1,24 @@
+package com.apexgrid.transformertracker.dashboard;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.dashboard")
+public class DashboardProperties {
+    /**
+     * Delay between full recounts from the database, which correct any drift in the counters
+     * (e.g. from changes made by another instance or directly in SQL).
+     */
+    private Duration rebuildEvery = Duration.ofMinutes(15);
+
+    public Duration getRebuildEvery() {
+        return rebuildEvery;
+    }
+
+    public void setRebuildEvery(Duration rebuildEvery) {
+        this.rebuildEvery = rebuildEvery;
+    }
+}
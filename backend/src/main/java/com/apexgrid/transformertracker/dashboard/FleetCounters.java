@@ -0,0 +1,306 @@
+package com.apexgrid.transformertracker.dashboard;
+
+import com.apexgrid.transformertracker.annotation.SeverityBand;
+import com.apexgrid.transformertracker.change.InspectionChanged;
+import com.apexgrid.transformertracker.change.TransformerChanged;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Fleet dashboard numbers, kept as counters so reading them never touches the database. Each
+ * inspection's contribution (status, analyzed or not, its fault boxes by type and severity band)
+ * is remembered; an {@link InspectionChanged} event subtracts the old contribution and adds the
+ * new one, and a {@link TransformerChanged} event moves the transformer's open faults to its new
+ * region. Open faults are boxes with a real fault type on inspections not yet "Completed".
+ * <p>
+ * A full recount from three column-only queries runs after startup and every
+ * {@code app.dashboard.rebuild-every}. Events arriving during a recount are replayed onto the
+ * new counts before they replace the old ones, so no change is lost; the number of counters that
+ * differed is reported as drift.
+ */
+@Component
+public class FleetCounters {
+    private static final Logger LOG = LoggerFactory.getLogger(FleetCounters.class);
+
+    static final String COMPLETED = "Completed";
+    static final String UNSET = "unset";
+
+    private final JdbcTemplate jdbc;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final List<Consumer<Counts>> pending = new ArrayList<>();
+
+    private Counts counts = new Counts();
+    private volatile Instant rebuiltAt;
+    private volatile long rebuildMillis;
+    private volatile long lastDrift;
+    private volatile long rebuilds;
+    private volatile long updates;
+
+    public FleetCounters(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "#{@dashboardProperties.rebuildEvery.toMillis()}",
+            fixedDelayString = "#{@dashboardProperties.rebuildEvery.toMillis()}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /** Recount everything from the database; returns false when a recount is already running. */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        long started = System.nanoTime();
+        try {
+            Counts fresh = new Counts();
+            jdbc.query("select id, region from transformers", rs -> {
+                fresh.putTransformer(rs.getString(1), rs.getString(2));
+            });
+            Map<String, List<InspectionBox>> boxes = new HashMap<>();
+            jdbc.query("select inspection_id, faulttype, severity from inspection_box", rs -> {
+                InspectionBox box = new InspectionBox();
+                box.setFaultType(rs.getString(2));
+                double severity = rs.getDouble(3);
+                box.setSeverity(rs.wasNull() ? null : severity);
+                boxes.computeIfAbsent(rs.getString(1), key -> new ArrayList<>()).add(box);
+            });
+            jdbc.query("select id, transformer_id, status, lastanalysisweather from inspections", rs -> {
+                String id = rs.getString(1);
+                fresh.putInspection(id, Contribution.of(rs.getString(2), rs.getString(3), rs.getString(4) != null,
+                        boxes.getOrDefault(id, List.of())));
+            });
+            synchronized (this) {
+                pending.forEach(change -> change.accept(fresh));
+                lastDrift = counts.differences(fresh);
+                counts = fresh;
+                pending.clear();
+                rebuiltAt = Instant.now();
+                rebuilds++;
+            }
+            rebuildMillis = (System.nanoTime() - started) / 1_000_000;
+            if (lastDrift > 0) {
+                LOG.info("Dashboard recount corrected {} counters", lastDrift);
+            }
+            return true;
+        } catch (RuntimeException ex) {
+            LOG.warn("Dashboard recount failed", ex);
+            synchronized (this) {
+                pending.clear();
+            }
+            return false;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    @EventListener
+    public void onInspectionChanged(InspectionChanged change) {
+        if (change.isDeleted()) {
+            apply(target -> target.removeInspection(change.id()));
+            return;
+        }
+        Inspection i = change.inspection();
+        Contribution contribution = Contribution.of(i.getTransformer() != null ? i.getTransformer().getId() : null,
+                i.getStatus(), i.getLastAnalysisWeather() != null, i.getBoxes());
+        apply(target -> target.putInspection(change.id(), contribution));
+    }
+
+    @EventListener
+    public void onTransformerChanged(TransformerChanged change) {
+        if (change.isDeleted()) {
+            apply(target -> target.removeTransformer(change.id()));
+        } else {
+            String region = change.transformer().getRegion();
+            apply(target -> target.putTransformer(change.id(), region));
+        }
+    }
+
+    public synchronized Dashboard dashboard() {
+        return counts.dashboard(rebuiltAt);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(rebuiltAt, rebuildMillis, rebuilds, lastDrift, updates, rebuilding.get());
+    }
+
+    private synchronized void apply(Consumer<Counts> change) {
+        change.accept(counts);
+        if (rebuilding.get()) {
+            pending.add(change);
+        }
+        updates++;
+    }
+
+    /** What one inspection adds to the counters. */
+    private record Contribution(
+            String transformerId,
+            String status,
+            boolean analyzed,
+            boolean open,
+            int faults,
+            Map<String, Integer> faultTypes,
+            Map<String, Integer> severityBands
+    ) {
+        static Contribution of(String transformerId, String status, boolean analyzed, List<InspectionBox> boxes) {
+            String statusKey = status == null || status.isBlank() ? UNSET : status.trim();
+            Map<String, Integer> faultTypes = new HashMap<>();
+            Map<String, Integer> bands = new HashMap<>();
+            int faults = 0;
+            for (InspectionBox box : boxes) {
+                if (InspectionBox.isFault(box.getFaultType())) {
+                    faults++;
+                    faultTypes.merge(box.getFaultType().trim(), 1, Integer::sum);
+                    bands.merge(SeverityBand.of(box.getSeverity()).label(), 1, Integer::sum);
+                }
+            }
+            return new Contribution(transformerId, statusKey, analyzed, !COMPLETED.equalsIgnoreCase(statusKey),
+                    faults, faultTypes, bands);
+        }
+    }
+
+    /** The counters themselves plus what is needed to undo each contribution; not thread-safe. */
+    private static final class Counts {
+        final Map<String, String> regions = new HashMap<>();
+        final Map<String, Contribution> inspections = new HashMap<>();
+        final Map<String, Long> openFaultsByTransformer = new HashMap<>();
+        final Map<String, Long> openFaultsByRegion = new TreeMap<>();
+        final Map<String, Long> openFaultsByFaultType = new TreeMap<>();
+        final Map<String, Long> openFaultsBySeverity = new TreeMap<>();
+        final Map<String, Long> inspectionsByStatus = new TreeMap<>();
+        long inspectionCount;
+        long unanalyzed;
+        long openFaults;
+
+        void putTransformer(String id, String region) {
+            String previous = regions.put(id, regionKey(region));
+            long open = openFaultsByTransformer.getOrDefault(id, 0L);
+            if (previous != null) {
+                add(openFaultsByRegion, previous, -open);
+            }
+            add(openFaultsByRegion, regionKey(region), open);
+        }
+
+        void removeTransformer(String id) {
+            // The database cascade deleted its inspections along with it
+            List<String> children = new ArrayList<>();
+            inspections.forEach((inspectionId, contribution) -> {
+                if (id.equals(contribution.transformerId())) {
+                    children.add(inspectionId);
+                }
+            });
+            children.forEach(this::removeInspection);
+            regions.remove(id);
+        }
+
+        void putInspection(String id, Contribution contribution) {
+            removeInspection(id);
+            inspections.put(id, contribution);
+            count(contribution, 1);
+        }
+
+        void removeInspection(String id) {
+            Contribution previous = inspections.remove(id);
+            if (previous != null) {
+                count(previous, -1);
+            }
+        }
+
+        private void count(Contribution contribution, int sign) {
+            inspectionCount += sign;
+            add(inspectionsByStatus, contribution.status(), sign);
+            if (!contribution.analyzed()) {
+                unanalyzed += sign;
+            }
+            if (!contribution.open() || contribution.faults() == 0) {
+                return;
+            }
+            long faults = (long) sign * contribution.faults();
+            openFaults += faults;
+            contribution.faultTypes().forEach((type, n) -> add(openFaultsByFaultType, type, (long) sign * n));
+            contribution.severityBands().forEach((band, n) -> add(openFaultsBySeverity, band, (long) sign * n));
+            if (contribution.transformerId() != null) {
+                add(openFaultsByTransformer, contribution.transformerId(), faults);
+                add(openFaultsByRegion, regionKey(regions.get(contribution.transformerId())), faults);
+            }
+        }
+
+        Dashboard dashboard(Instant rebuiltAt) {
+            return new Dashboard(inspectionCount, unanalyzed, openFaults,
+                    new TreeMap<>(openFaultsByRegion), new TreeMap<>(openFaultsByFaultType), new TreeMap<>(openFaultsBySeverity),
+                    new TreeMap<>(inspectionsByStatus), rebuiltAt);
+        }
+
+        /** Number of dashboard counters whose values differ from the other's. */
+        long differences(Counts other) {
+            long differences = 0;
+            differences += inspectionCount != other.inspectionCount ? 1 : 0;
+            differences += unanalyzed != other.unanalyzed ? 1 : 0;
+            differences += openFaults != other.openFaults ? 1 : 0;
+            differences += differences(openFaultsByRegion, other.openFaultsByRegion);
+            differences += differences(openFaultsByFaultType, other.openFaultsByFaultType);
+            differences += differences(openFaultsBySeverity, other.openFaultsBySeverity);
+            differences += differences(inspectionsByStatus, other.inspectionsByStatus);
+            return differences;
+        }
+
+        private static long differences(Map<String, Long> a, Map<String, Long> b) {
+            Map<String, Long> all = new HashMap<>(a);
+            b.forEach((key, value) -> all.merge(key, -value, Long::sum));
+            return all.values().stream().filter(value -> value != 0).count();
+        }
+
+        private static void add(Map<String, Long> counters, String key, long delta) {
+            if (delta != 0) {
+                counters.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+            }
+        }
+
+        private static String regionKey(String region) {
+            return region == null || region.isBlank() ? UNSET : region.trim();
+        }
+    }
+
+    /**
+     * @param openFaultsBySeverity keyed by {@link SeverityBand#label()}; user-drawn boxes are "unscored"
+     * @param inspectionsByStatus inspections without a status count as "unset"
+     * @param rebuiltAt time of the last full recount
+     */
+    public record Dashboard(
+            long inspections,
+            long unanalyzed,
+            long openFaults,
+            Map<String, Long> openFaultsByRegion,
+            Map<String, Long> openFaultsByFaultType,
+            Map<String, Long> openFaultsBySeverity,
+            Map<String, Long> inspectionsByStatus,
+            Instant rebuiltAt
+    ) { }
+
+    /**
+     * @param lastDrift counters the last recount found off, after replaying changes made during it
+     * @param updates changes applied incrementally since startup
+     */
+    public record Stats(Instant rebuiltAt, long rebuildMillis, long rebuilds, long lastDrift, long updates, boolean rebuilding) { }
+}
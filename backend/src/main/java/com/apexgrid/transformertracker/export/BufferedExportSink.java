@@ -0,0 +1,52 @@
+package com.apexgrid.transformertracker.export;
+
+import com.apexgrid.transformertracker.image.SpillBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds entries until {@link #replayTo} copies them, in order, into another sink. Each entry
+ * keeps at most {@code memoryCeiling} bytes on the heap and spills the rest to a temporary
+ * file, so preparing entries ahead of the writer costs bounded memory.
+ */
+final class BufferedExportSink implements ExportSink, Closeable {
+    private record Held(String name, boolean compressible, SpillBuffer buffer) { }
+
+    private final long memoryCeiling;
+    private final Path spillDirectory;
+    private final List<Held> entries = new ArrayList<>();
+
+    BufferedExportSink(long memoryCeiling, Path spillDirectory) {
+        this.memoryCeiling = memoryCeiling;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public void entry(String name, boolean compressible, Content content) throws IOException {
+        SpillBuffer buffer = new SpillBuffer(memoryCeiling, spillDirectory, 0);
+        entries.add(new Held(name, compressible, buffer));
+        content.writeTo(buffer.outputStream());
+        buffer.seal();
+    }
+
+    void replayTo(ExportSink target) throws IOException {
+        for (Held held : entries) {
+            target.entry(held.name(), held.compressible(), out -> {
+                try (InputStream in = held.buffer().openStream()) {
+                    in.transferTo(out);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        entries.forEach(held -> held.buffer().close());
+        entries.clear();
+    }
+}
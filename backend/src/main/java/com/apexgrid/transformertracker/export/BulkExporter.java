@@ -0,0 +1,65 @@
+package com.apexgrid.transformertracker.export;
+
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.repo.InspectionFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Streams every inspection matching a filter into one ZIP, each under its own folder with the
+ * entries of the single-inspection export. Inspections are prepared into spill-backed
+ * {@link BufferedExportSink}s by the {@link ExportPipeline} and copied into the stream in order.
+ */
+@Component
+public class BulkExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkExporter.class);
+
+    private final ExportPipeline pipeline;
+    private final InspectionExporter exporter;
+
+    BulkExporter(ExportPipeline pipeline, InspectionExporter exporter) {
+        this.pipeline = pipeline;
+        this.exporter = exporter;
+    }
+
+    /**
+     * Write the matching inspections, then the shared tools, into {@code sink}.
+     *
+     * @return the number of inspections written
+     */
+    public long export(InspectionFilter filter, ExportSink sink) throws IOException {
+        Instant generatedAt = Instant.now();
+        long written = pipeline.run(filter, inspection -> prepare(inspection, generatedAt),
+                prepared -> prepared.replayTo(sink));
+        exporter.writeTools(sink, "tools/");
+        LOG.info("Bulk export wrote {} inspections", written);
+        return written;
+    }
+
+    private BufferedExportSink prepare(Inspection inspection, Instant generatedAt) throws IOException {
+        BufferedExportSink prepared = new BufferedExportSink(pipeline.entryMemory(), pipeline.spillDirectory());
+        try {
+            exporter.write(inspection, prepared, folderOf(inspection), generatedAt);
+            return prepared;
+        } catch (IOException | RuntimeException ex) {
+            prepared.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * The inspection's folder, named after its (unique) inspection number; the id is appended
+     * when sanitizing changed the number, since two numbers could then map to the same name.
+     */
+    private static String folderOf(Inspection inspection) {
+        String name = InspectionExporter.baseName(inspection);
+        if (!name.equals(inspection.getInspectionNumber()) && !name.equals(inspection.getId())) {
+            name = name + "-" + inspection.getId();
+        }
+        return name + "/";
+    }
+}
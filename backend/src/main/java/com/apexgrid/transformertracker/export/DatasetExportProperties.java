@@ -0,0 +1,54 @@
+package com.apexgrid.transformertracker.export;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "app.export.dataset")
+public class DatasetExportProperties {
+    /**
+     * Fault types exported as classes, in class-id order (YOLO ids start at 0, COCO category ids
+     * at 1). Matching ignores case. Boxes of any other fault type are left out. Only append to
+     * this list, so that ids stay the same across incremental exports.
+     */
+    private List<String> classes = new ArrayList<>(List.of("loose joint", "point overload", "wire overload"));
+
+    /**
+     * Export images that have no box of a listed class, as negative samples.
+     */
+    private boolean includeUnlabeled = true;
+
+    /**
+     * How far before its start an export's cursor points. Edits that were still being committed
+     * while the export read past them are picked up by the next incremental export.
+     */
+    private Duration cursorOverlap = Duration.ofMinutes(1);
+
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    public void setClasses(List<String> classes) {
+        this.classes = classes;
+    }
+
+    public boolean isIncludeUnlabeled() {
+        return includeUnlabeled;
+    }
+
+    public void setIncludeUnlabeled(boolean includeUnlabeled) {
+        this.includeUnlabeled = includeUnlabeled;
+    }
+
+    public Duration getCursorOverlap() {
+        return cursorOverlap;
+    }
+
+    public void setCursorOverlap(Duration cursorOverlap) {
+        this.cursorOverlap = cursorOverlap;
+    }
+}
@@ -0,0 +1,411 @@
+package com.apexgrid.transformertracker.export;
+
+import com.apexgrid.transformertracker.image.DataUrls;
+import com.apexgrid.transformertracker.image.ImageNormalizer;
+import com.apexgrid.transformertracker.image.SpillBuffer;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.apexgrid.transformertracker.repo.InspectionFilter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the current boxes of every inspection matching a filter as a training dataset, in COCO
+ * or YOLO layout. Images go to {@code images/<sha-256>.<ext>}, so an image shared by several
+ * inspections is written once, with the labels of the first of them in id order. Fault types
+ * map to class ids through {@code app.export.dataset.classes}; boxes of other types are left
+ * out, and boxes are clipped to the image.
+ * <p>
+ * Inspections are decoded, hashed and measured on the {@link ExportPipeline}. COCO needs all
+ * images and annotations in one JSON document, so their entries are collected in spill-backed
+ * buffers while the images stream and assembled into {@code annotations.json} at the end.
+ * Every export ends with {@code dataset.json}, whose {@code cursor} passed back as
+ * {@code since} exports only inspections whose image or boxes changed since.
+ */
+@Component
+public class DatasetExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(DatasetExporter.class);
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final ExportPipeline pipeline;
+    private final DatasetExportProperties properties;
+
+    DatasetExporter(ExportPipeline pipeline, DatasetExportProperties properties) {
+        this.pipeline = pipeline;
+        this.properties = properties;
+    }
+
+    /** The {@code since} value for the export after one starting at {@code startedAt}. */
+    public Instant cursorFor(Instant startedAt) {
+        Duration overlap = properties.getCursorOverlap();
+        return overlap == null ? startedAt : startedAt.minus(overlap);
+    }
+
+    /**
+     * Write the dataset for the inspections matching {@code filter} (with its
+     * {@code changedSince} for an incremental export) into {@code sink}.
+     */
+    public Summary export(DatasetFormat format, InspectionFilter filter, ExportSink sink, Instant startedAt) throws IOException {
+        List<String> classes = properties.getClasses() == null ? List.of() : List.copyOf(properties.getClasses());
+        Map<String, Integer> classIds = new LinkedHashMap<>();
+        for (String name : classes) {
+            classIds.putIfAbsent(classKey(name), classIds.size());
+        }
+        try (Run run = new Run(format, sink, classes)) {
+            pipeline.run(filter, inspection -> prepare(inspection, classIds), run::write);
+            run.finish();
+            Summary summary = run.summary();
+            writeManifest(sink, format, filter, startedAt, classes, summary);
+            LOG.info("Dataset export ({}) wrote {} images with {} boxes from {} inspections",
+                    format, summary.images(), summary.annotations(), summary.inspections());
+            return summary;
+        }
+    }
+
+    private Item prepare(Inspection inspection, Map<String, Integer> classIds) throws IOException {
+        Item item = new Item(inspection.getId(), inspection.getInspectionNumber());
+        String dataUrl = inspection.getImageUrl();
+        InputStream image = DataUrls.open(dataUrl);
+        if (image == null) {
+            return item;
+        }
+        SpillBuffer buffer = new SpillBuffer(pipeline.entryMemory(), pipeline.spillDirectory(), 0);
+        MessageDigest sha = sha256();
+        int[] size;
+        try (image; OutputStream out = new DigestOutputStream(buffer.outputStream(), sha)) {
+            image.transferTo(out);
+            buffer.seal();
+            try (InputStream in = buffer.openStream()) {
+                size = ImageNormalizer.readDimensions(in);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            // A corrupt stored image skips the inspection rather than failing the export
+            LOG.warn("Dataset export skipped inspection {}: unreadable image", inspection.getId(), ex);
+            buffer.close();
+            return item;
+        }
+        if (size == null || size[0] <= 0 || size[1] <= 0) {
+            buffer.close();
+            return item;
+        }
+        item.image = buffer;
+        item.hash = HexFormat.of().formatHex(sha.digest());
+        item.extension = DataUrls.extension(dataUrl);
+        item.compressed = DataUrls.isCompressed(dataUrl);
+        item.width = size[0];
+        item.height = size[1];
+        for (InspectionBox box : inspection.getBoxes()) {
+            Integer classId = classIds.get(classKey(box.getFaultType()));
+            double x0 = Math.max(0, box.getX());
+            double y0 = Math.max(0, box.getY());
+            double x1 = Math.min(item.width, box.getX() + box.getW());
+            double y1 = Math.min(item.height, box.getY() + box.getH());
+            if (classId == null || x1 <= x0 || y1 <= y0) {
+                item.skippedBoxes++;
+                continue;
+            }
+            item.labels.add(new Label(classId, x0, y0, x1 - x0, y1 - y0, box.getSeverity(), box.getAnnotatedBy()));
+        }
+        return item;
+    }
+
+    private void writeManifest(ExportSink sink, DatasetFormat format, InspectionFilter filter, Instant startedAt,
+                               List<String> classes, Summary summary) throws IOException {
+        sink.entry("dataset.json", true, out -> {
+            JsonGenerator gen = JSON.createGenerator(out);
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+            gen.writeStringField("format", format.name().toLowerCase(Locale.ROOT));
+            gen.writeStringField("generatedAt", startedAt.toString());
+            gen.writeStringField("since", filter.changedSince() != null ? filter.changedSince().toString() : null);
+            gen.writeStringField("cursor", cursorFor(startedAt).toString());
+            gen.writeObjectFieldStart("filter");
+            gen.writeStringField("transformerId", filter.transformerId());
+            gen.writeStringField("region", filter.region());
+            gen.writeStringField("from", filter.from() != null ? filter.from().toString() : null);
+            gen.writeStringField("to", filter.to() != null ? filter.to().toString() : null);
+            gen.writeStringField("faultType", filter.faultType());
+            gen.writeEndObject();
+            gen.writeArrayFieldStart("classes");
+            for (String name : classes) {
+                gen.writeString(name);
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("inspections", summary.inspections());
+            gen.writeNumberField("images", summary.images());
+            gen.writeNumberField("annotations", summary.annotations());
+            gen.writeNumberField("duplicateImages", summary.duplicateImages());
+            gen.writeNumberField("skippedInspections", summary.skippedInspections());
+            gen.writeNumberField("skippedBoxes", summary.skippedBoxes());
+            gen.writeEndObject();
+            gen.close();
+        });
+    }
+
+    private static String classKey(String faultType) {
+        return faultType == null ? "" : faultType.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    /** A box in image pixels, clipped to the image. */
+    private record Label(int classId, double x, double y, double w, double h, Double severity, String annotatedBy) { }
+
+    /** One inspection, decoded and measured; {@code image} is null when it has none that can be read. */
+    private static final class Item implements Closeable {
+        final String inspectionId;
+        final String inspectionNumber;
+        final List<Label> labels = new ArrayList<>();
+        SpillBuffer image;
+        String hash;
+        String extension;
+        boolean compressed;
+        int width;
+        int height;
+        int skippedBoxes;
+
+        Item(String inspectionId, String inspectionNumber) {
+            this.inspectionId = inspectionId;
+            this.inspectionNumber = inspectionNumber;
+        }
+
+        String fileName() {
+            return hash + "." + extension;
+        }
+
+        @Override
+        public void close() {
+            if (image != null) {
+                image.close();
+            }
+        }
+    }
+
+    /** Writer-side state of one export; only ever touched by the writing thread. */
+    private final class Run implements Closeable {
+        private final DatasetFormat format;
+        private final ExportSink sink;
+        private final List<String> classes;
+        private final Set<String> written = new HashSet<>();
+        private SpillBuffer cocoImages;
+        private SpillBuffer cocoAnnotations;
+        private JsonGenerator imagesGen;
+        private JsonGenerator annotationsGen;
+        private long inspections;
+        private long images;
+        private long annotations;
+        private long duplicateImages;
+        private long skippedInspections;
+        private long skippedBoxes;
+
+        Run(DatasetFormat format, ExportSink sink, List<String> classes) throws IOException {
+            this.format = format;
+            this.sink = sink;
+            this.classes = classes;
+            if (format == DatasetFormat.COCO) {
+                cocoImages = new SpillBuffer(pipeline.entryMemory(), pipeline.spillDirectory(), 0);
+                cocoAnnotations = new SpillBuffer(pipeline.entryMemory(), pipeline.spillDirectory(), 0);
+                imagesGen = elementWriter(cocoImages);
+                annotationsGen = elementWriter(cocoAnnotations);
+            }
+        }
+
+        void write(Item item) throws IOException {
+            inspections++;
+            if (item.image == null) {
+                skippedInspections++;
+                return;
+            }
+            skippedBoxes += item.skippedBoxes;
+            if (item.labels.isEmpty() && !properties.isIncludeUnlabeled()) {
+                return;
+            }
+            if (!written.add(item.hash)) {
+                duplicateImages++;
+                return;
+            }
+            sink.entry("images/" + item.fileName(), !item.compressed, out -> {
+                try (InputStream in = item.image.openStream()) {
+                    in.transferTo(out);
+                }
+            });
+            images++;
+            annotations += item.labels.size();
+            if (format == DatasetFormat.COCO) {
+                writeCoco(item);
+            } else {
+                sink.entry("labels/" + item.hash + ".txt", true, out -> writeYolo(item, out));
+            }
+        }
+
+        private void writeCoco(Item item) throws IOException {
+            long imageId = images;
+            imagesGen.writeStartObject();
+            imagesGen.writeNumberField("id", imageId);
+            imagesGen.writeStringField("file_name", item.fileName());
+            imagesGen.writeNumberField("width", item.width);
+            imagesGen.writeNumberField("height", item.height);
+            imagesGen.writeStringField("inspection_id", item.inspectionId);
+            imagesGen.writeStringField("inspection_number", item.inspectionNumber);
+            imagesGen.writeEndObject();
+            long annotationId = annotations - item.labels.size();
+            for (Label label : item.labels) {
+                annotationsGen.writeStartObject();
+                annotationsGen.writeNumberField("id", ++annotationId);
+                annotationsGen.writeNumberField("image_id", imageId);
+                annotationsGen.writeNumberField("category_id", label.classId() + 1);
+                annotationsGen.writeArrayFieldStart("bbox");
+                annotationsGen.writeNumber(label.x());
+                annotationsGen.writeNumber(label.y());
+                annotationsGen.writeNumber(label.w());
+                annotationsGen.writeNumber(label.h());
+                annotationsGen.writeEndArray();
+                annotationsGen.writeNumberField("area", label.w() * label.h());
+                annotationsGen.writeNumberField("iscrowd", 0);
+                if (label.severity() != null) {
+                    annotationsGen.writeNumberField("severity", label.severity());
+                } else {
+                    annotationsGen.writeNullField("severity");
+                }
+                annotationsGen.writeStringField("annotated_by", label.annotatedBy());
+                annotationsGen.writeEndObject();
+            }
+        }
+
+        /** One line per box: class id, then centre x/y and width/height as fractions of the image. */
+        private static void writeYolo(Item item, OutputStream out) throws IOException {
+            Writer txt = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (Label label : item.labels) {
+                txt.write(String.format(Locale.ROOT, "%d %.6f %.6f %.6f %.6f%n", label.classId(),
+                        (label.x() + label.w() / 2) / item.width, (label.y() + label.h() / 2) / item.height,
+                        label.w() / item.width, label.h() / item.height));
+            }
+            txt.flush();
+        }
+
+        void finish() throws IOException {
+            if (format == DatasetFormat.COCO) {
+                imagesGen.close();
+                annotationsGen.close();
+                cocoImages.seal();
+                cocoAnnotations.seal();
+                sink.entry("annotations.json", true, this::writeCocoDocument);
+            } else {
+                sink.entry("classes.txt", true, out -> out.write(String.join("\n", classes).concat("\n")
+                        .getBytes(StandardCharsets.UTF_8)));
+                sink.entry("data.yaml", true, this::writeYoloConfig);
+            }
+        }
+
+        /** The collected image and annotation objects are copied into their arrays as written. */
+        private void writeCocoDocument(OutputStream out) throws IOException {
+            JsonGenerator gen = JSON.createGenerator(out);
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("info");
+            gen.writeStringField("description", "Transformer thermal inspection faults");
+            gen.writeEndObject();
+            gen.writeArrayFieldStart("categories");
+            for (int idx = 0; idx < classes.size(); idx++) {
+                gen.writeStartObject();
+                gen.writeNumberField("id", idx + 1);
+                gen.writeStringField("name", classes.get(idx));
+                gen.writeStringField("supercategory", "fault");
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("images");
+            copyElements(gen, cocoImages, out);
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("annotations");
+            copyElements(gen, cocoAnnotations, out);
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.close();
+        }
+
+        private void writeYoloConfig(OutputStream out) throws IOException {
+            StringBuilder yaml = new StringBuilder()
+                    .append("# Every image is listed for both splits; split them before training\n")
+                    .append("path: .\ntrain: images\nval: images\n")
+                    .append("nc: ").append(classes.size()).append('\n')
+                    .append("names:\n");
+            for (int idx = 0; idx < classes.size(); idx++) {
+                yaml.append("  ").append(idx).append(": \"")
+                        .append(classes.get(idx).replace("\\", "\\\\").replace("\"", "\\\"")).append("\"\n");
+            }
+            out.write(yaml.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        Summary summary() {
+            return new Summary(inspections, images, annotations, duplicateImages, skippedInspections, skippedBoxes);
+        }
+
+        @Override
+        public void close() {
+            if (cocoImages != null) {
+                cocoImages.close();
+                cocoAnnotations.close();
+            }
+        }
+
+        /** Comma-separated JSON values, to be placed inside an array later. */
+        private static JsonGenerator elementWriter(SpillBuffer buffer) throws IOException {
+            JsonGenerator gen = JSON.createGenerator(buffer.outputStream());
+            gen.setRootValueSeparator(new SerializedString(","));
+            return gen;
+        }
+
+        /** Flush what the generator holds, then copy the buffered elements straight after it. */
+        private static void copyElements(JsonGenerator gen, SpillBuffer elements, OutputStream out) throws IOException {
+            gen.flush();
+            try (InputStream in = elements.openStream()) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    /**
+     * @param inspections matching inspections read
+     * @param images distinct images written
+     * @param annotations boxes written
+     * @param duplicateImages images skipped because an identical one was written already
+     * @param skippedInspections inspections without a readable image
+     * @param skippedBoxes boxes of an unlisted fault type, or outside the image
+     */
+    public record Summary(long inspections, long images, long annotations, long duplicateImages,
+                          long skippedInspections, long skippedBoxes) { }
+}
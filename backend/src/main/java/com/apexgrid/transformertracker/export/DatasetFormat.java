@@ -0,0 +1,23 @@
+package com.apexgrid.transformertracker.export;
+
+import java.util.Locale;
+
+/** Label layouts a training-dataset export can be written in. */
+public enum DatasetFormat {
+    /** One {@code annotations.json} with images, annotations and categories; boxes in pixels. */
+    COCO,
+    /** One {@code labels/<image>.txt} per image with normalized centre/size boxes, plus {@code data.yaml}. */
+    YOLO;
+
+    /** The format named by {@code value} (any case), or null. */
+    public static DatasetFormat parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.apexgrid.transformertracker.export;
+
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.repo.InspectionFilter;
+import com.apexgrid.transformertracker.repo.InspectionRepo;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs an export over every inspection matching a filter. Matching ids are read a page at a
+ * time; each inspection is loaded and prepared on a shared, fixed-size pool, while the calling
+ * thread writes the prepared inspections strictly in id order. At most {@code max-in-flight}
+ * inspections per export are prepared ahead of the writer, and what they hold is released as
+ * soon as they are written (or when the export fails), so memory stays bounded however many
+ * inspections match.
+ */
+@Component
+class ExportPipeline {
+    /** Prepares one inspection off the writer thread; null skips it. */
+    @FunctionalInterface
+    interface Preparer<T extends Closeable> {
+        T prepare(Inspection inspection) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(T prepared) throws IOException;
+    }
+
+    private final InspectionRepo repo;
+    private final ExportProperties properties;
+    private final ThreadPoolExecutor workers;
+
+    ExportPipeline(InspectionRepo repo, ExportProperties properties) {
+        this.repo = repo;
+        this.properties = properties;
+        int threads = Math.max(1, properties.getParallelism());
+        AtomicInteger counter = new AtomicInteger();
+        // A full queue runs the task on the writer's thread, which throttles the export that overflowed it
+        this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * Math.max(1, properties.getMaxInFlight())),
+                task -> {
+                    Thread thread = new Thread(task, "export-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /** @return the number of inspections written */
+    <T extends Closeable> long run(InspectionFilter filter, Preparer<T> preparer, Writer<T> writer) throws IOException {
+        int maxInFlight = Math.max(1, properties.getMaxInFlight());
+        int batchSize = Math.max(1, properties.getBatchSize());
+        AtomicBoolean aborted = new AtomicBoolean();
+        Deque<Future<T>> window = new ArrayDeque<>();
+        long written = 0;
+        String lastId = "";
+        try {
+            while (true) {
+                List<String> ids = repo.findIdsAfter(filter, lastId, batchSize);
+                for (String id : ids) {
+                    if (window.size() >= maxInFlight) {
+                        written += drain(window.removeFirst(), writer);
+                    }
+                    window.addLast(workers.submit(() -> prepare(id, preparer, aborted)));
+                }
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+            }
+            while (!window.isEmpty()) {
+                written += drain(window.removeFirst(), writer);
+            }
+        } finally {
+            if (!window.isEmpty()) {
+                aborted.set(true);
+                discard(window);
+            }
+        }
+        return written;
+    }
+
+    /** Heap bytes a prepared entry may hold before spilling. */
+    long entryMemory() {
+        return properties.getEntryMemory().toBytes();
+    }
+
+    Path spillDirectory() {
+        String dir = properties.getSpillDirectory();
+        return StringUtils.hasText(dir) ? Path.of(dir) : null;
+    }
+
+    private <T extends Closeable> T prepare(String id, Preparer<T> preparer, AtomicBoolean aborted) throws IOException {
+        if (aborted.get()) {
+            return null;
+        }
+        Inspection inspection = repo.findById(id).orElse(null);
+        return inspection == null ? null : preparer.prepare(inspection); // null: deleted since its id was read
+    }
+
+    /** Wait for the oldest prepared inspection and write it. */
+    private static <T extends Closeable> int drain(Future<T> next, Writer<T> writer) throws IOException {
+        T prepared = await(next);
+        if (prepared == null) {
+            return 0;
+        }
+        try (prepared) {
+            writer.write(prepared);
+        }
+        return 1;
+    }
+
+    /** Let the remaining tasks finish (they skip their work once aborted) and release what they prepared. */
+    private static <T extends Closeable> void discard(Deque<Future<T>> window) {
+        for (Future<T> future : window) {
+            try {
+                T prepared = await(future);
+                if (prepared != null) {
+                    prepared.close();
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // the export has failed already
+            }
+        }
+        window.clear();
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
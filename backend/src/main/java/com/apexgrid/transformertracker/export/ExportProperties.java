@@ -0,0 +1,75 @@
+package com.apexgrid.transformertracker.export;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "app.export")
+public class ExportProperties {
+    /**
+     * Threads preparing inspections for bulk exports, shared by all exports in progress.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Inspections a single bulk export prepares ahead of the one being written. Together with
+     * {@code entryMemory} this bounds the memory an export holds, whatever the fleet size.
+     */
+    private int maxInFlight = 8;
+
+    /**
+     * Bytes of one prepared entry kept on the heap; the rest is spilled to a temporary file.
+     */
+    private DataSize entryMemory = DataSize.ofMegabytes(1);
+
+    /**
+     * Matching inspection ids read per query.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Directory used for spill files. Defaults to the JVM temp directory when blank.
+     */
+    private String spillDirectory;
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public DataSize getEntryMemory() {
+        return entryMemory;
+    }
+
+    public void setEntryMemory(DataSize entryMemory) {
+        this.entryMemory = entryMemory;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+}
@@ -0,0 +1,22 @@
+package com.apexgrid.transformertracker.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination for export entries, which are written one at a time in full: straight into a ZIP
+ * stream ({@link ZipExportSink}) or held for later ({@link BufferedExportSink}).
+ */
+public interface ExportSink {
+    /** Writes the content of one entry; the stream must not be closed. */
+    @FunctionalInterface
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * @param compressible false for content that is compressed already (PNG, JPEG, ...), which is
+     *                     stored rather than deflated again
+     */
+    void entry(String name, boolean compressible, Content content) throws IOException;
+}
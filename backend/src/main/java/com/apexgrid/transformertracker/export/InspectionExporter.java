@@ -0,0 +1,304 @@
+package com.apexgrid.transformertracker.export;
+
+import com.apexgrid.transformertracker.annotation.AnnotationState;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec.BoxColumn;
+import com.apexgrid.transformertracker.annotation.OverlayRenderer;
+import com.apexgrid.transformertracker.baseline.BaselineService;
+import com.apexgrid.transformertracker.history.InspectionHistoryService;
+import com.apexgrid.transformertracker.image.DataUrls;
+import com.apexgrid.transformertracker.model.HistoryEntry;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.model.TransformerBaseline;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Writes one inspection's export entries (metadata.json, history.csv, its images and the
+ * annotated overlay) into an {@link ExportSink} as they are produced. Nothing is assembled in
+ * memory first: the JSON goes through a {@link JsonGenerator} and the CSV through a writer
+ * straight into their entries, history is read a page at a time (once per entry), and images
+ * are decoded from their stored data URLs while being copied. Only the overlay PNG is held
+ * whole, as {@link OverlayRenderer} produces and caches it.
+ */
+@Component
+public class InspectionExporter {
+    private static final int HISTORY_BATCH = 100;
+    private static final BoxColumn[] COLUMNS = {
+            BoxColumn.BOUNDING_BOXES, BoxColumn.FAULT_TYPES, BoxColumn.ANNOTATED_BY,
+            BoxColumn.SEVERITY, BoxColumn.COMMENTS, BoxColumn.BOX_CREATED_AT
+    };
+    private static final String CSV_HEADER = "timestamp,isCurrent,boundingBoxes,faultTypes,annotatedBy,severity,comments\n";
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final InspectionHistoryService historyService;
+    private final BaselineService baselineService;
+    private final OverlayRenderer overlayRenderer;
+
+    public InspectionExporter(InspectionHistoryService historyService, BaselineService baselineService,
+                              OverlayRenderer overlayRenderer) {
+        this.historyService = historyService;
+        this.baselineService = baselineService;
+        this.overlayRenderer = overlayRenderer;
+    }
+
+    /**
+     * Write the inspection's entries, each name prefixed with {@code prefix} ("" or a folder
+     * ending in "/"). The caller owns the sink and adds any shared entries.
+     */
+    public void write(Inspection inspection, ExportSink sink, String prefix, Instant generatedAt) throws IOException {
+        TransformerBaseline baseline = resolveBaseline(inspection);
+        String currentTimestamp = inspection.getImageUploadedAt() != null
+                ? inspection.getImageUploadedAt().toString()
+                : generatedAt.toString();
+        AnnotationState current = AnnotationState.of(inspection.getBoxes());
+
+        sink.entry(prefix + "metadata.json", true,
+                out -> writeMetadata(inspection, baseline, current, currentTimestamp, generatedAt, out));
+        sink.entry(prefix + "history.csv", true,
+                out -> writeHistoryCsv(inspection, current, currentTimestamp, out));
+
+        writeImage(sink, prefix + "image-original", inspection.getImageUrl());
+        writeImage(sink, prefix + "image-source", inspection.getOriginalImageUrl());
+        byte[] overlay = renderOverlay(inspection);
+        if (overlay != null) {
+            sink.entry(prefix + "annotated.png", false, out -> out.write(overlay));
+        }
+        if (baseline != null) {
+            String weatherLabel = baseline.getWeather() != null ? sanitizeFilename(baseline.getWeather()) : "baseline";
+            writeImage(sink, prefix + "baseline-" + weatherLabel, baseline.getImageUrl());
+        }
+    }
+
+    /** The plotting script and its README, under {@code prefix}. */
+    public void writeTools(ExportSink sink, String prefix) throws IOException {
+        writeResource(sink, "export/plot_bounding_boxes.py", prefix + "plot_bounding_boxes.py");
+        writeResource(sink, "export/README.md", prefix + "README.md");
+    }
+
+    /** File-name-safe inspection number (or id) to name downloads and folders after. */
+    public static String baseName(Inspection inspection) {
+        String name = inspection.getInspectionNumber();
+        return sanitizeFilename(name == null || name.isBlank() ? inspection.getId() : name);
+    }
+
+    public static String sanitizeFilename(String value) {
+        if (value == null || value.isBlank()) {
+            return "inspection";
+        }
+        String sanitized = value.replaceAll("[^A-Za-z0-9._-]", "_");
+        return sanitized.isBlank() ? "inspection" : sanitized;
+    }
+
+    private void writeMetadata(Inspection inspection, TransformerBaseline baseline, AnnotationState current,
+                               String currentTimestamp, Instant generatedAt, OutputStream out) throws IOException {
+        JsonGenerator gen = JSON.createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.useDefaultPrettyPrinter();
+        gen.writeStartObject();
+        gen.writeStringField("exportGeneratedAt", generatedAt.toString());
+
+        gen.writeObjectFieldStart("inspection");
+        gen.writeStringField("id", inspection.getId());
+        gen.writeStringField("inspectionNumber", inspection.getInspectionNumber());
+        gen.writeStringField("branch", inspection.getBranch());
+        gen.writeStringField("status", inspection.getStatus());
+        gen.writeStringField("inspectedDate", inspection.getInspectedDate());
+        gen.writeStringField("maintainanceDate", inspection.getMaintainanceDate());
+        gen.writeStringField("uploadedBy", inspection.getUploadedBy());
+        gen.writeStringField("imageUploadedBy", inspection.getImageUploadedBy());
+        gen.writeStringField("imageUploadedAt",
+                inspection.getImageUploadedAt() != null ? inspection.getImageUploadedAt().toString() : null);
+        if (inspection.getImageScale() != null) {
+            gen.writeNumberField("imageScale", inspection.getImageScale());
+        } else {
+            gen.writeNullField("imageScale");
+        }
+        gen.writeStringField("weather", inspection.getWeather());
+        gen.writeStringField("lastAnalysisWeather", inspection.getLastAnalysisWeather());
+        gen.writeBooleanField("favourite", inspection.isFavourite());
+        Transformer transformer = inspection.getTransformer();
+        if (transformer != null) {
+            gen.writeObjectFieldStart("transformer");
+            gen.writeStringField("id", transformer.getId());
+            gen.writeStringField("transformerNumber", transformer.getTransformerNumber());
+            gen.writeStringField("poleNumber", transformer.getPoleNumber());
+            gen.writeStringField("region", transformer.getRegion());
+            gen.writeStringField("type", transformer.getType());
+            gen.writeEndObject();
+        } else {
+            gen.writeNullField("transformer");
+        }
+        gen.writeStringField("baselineWeather", baseline != null ? baseline.getWeather() : null);
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("current");
+        gen.writeStringField("timestamp", currentTimestamp);
+        AnnotationStateCodec.writeFields(gen, current, COLUMNS);
+        gen.writeEndObject();
+
+        gen.writeArrayFieldStart("history");
+        historyService.forEach(inspection.getId(), HISTORY_BATCH, snapshot -> {
+            try {
+                gen.writeStartObject();
+                gen.writeStringField("timestamp", timestampOf(snapshot));
+                gen.writeBooleanField("isCurrent", false);
+                copyJsonField(gen, "boundingBoxes", snapshot.boundingBoxes());
+                copyJsonField(gen, "faultTypes", snapshot.faultTypes());
+                copyJsonField(gen, "annotatedBy", snapshot.annotatedBy());
+                copyJsonField(gen, "severity", snapshot.severity());
+                copyJsonField(gen, "comments", snapshot.comments());
+                copyJsonField(gen, "boxCreatedAt", snapshot.boxCreatedAt());
+                gen.writeEndObject();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        gen.writeStartObject();
+        gen.writeStringField("timestamp", currentTimestamp);
+        gen.writeBooleanField("isCurrent", true);
+        AnnotationStateCodec.writeFields(gen, current, COLUMNS);
+        gen.writeEndObject();
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.close();
+    }
+
+    private void writeHistoryCsv(Inspection inspection, AnnotationState current, String currentTimestamp,
+                                 OutputStream out) throws IOException {
+        Writer csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        csv.write(CSV_HEADER);
+        historyService.forEach(inspection.getId(), HISTORY_BATCH, snapshot -> {
+            try {
+                writeCsvRow(csv, timestampOf(snapshot), false, snapshot.boundingBoxes(), snapshot.faultTypes(),
+                        snapshot.annotatedBy(), snapshot.severity(), snapshot.comments());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        writeCsvRow(csv, currentTimestamp, true,
+                AnnotationStateCodec.toJson(current, BoxColumn.BOUNDING_BOXES),
+                AnnotationStateCodec.toJson(current, BoxColumn.FAULT_TYPES),
+                AnnotationStateCodec.toJson(current, BoxColumn.ANNOTATED_BY),
+                AnnotationStateCodec.toJson(current, BoxColumn.SEVERITY),
+                AnnotationStateCodec.toJson(current, BoxColumn.COMMENTS));
+        csv.flush(); // the entry stream is closed by the sink
+    }
+
+    private static String timestampOf(HistoryEntry snapshot) {
+        return snapshot.archivedAt() != null ? snapshot.archivedAt().toString() : null;
+    }
+
+    /** Write a stored JSON value as a field, token by token; null or unreadable values become null. */
+    private static void copyJsonField(JsonGenerator gen, String field, String json) throws IOException {
+        gen.writeFieldName(field);
+        if (json == null || json.isBlank()) {
+            gen.writeNull();
+            return;
+        }
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() == null) {
+                gen.writeNull();
+            } else {
+                gen.copyCurrentStructure(parser);
+            }
+        } catch (JsonProcessingException ex) {
+            gen.writeNull();
+        }
+    }
+
+    /** One history.csv row; the JSON columns are written compact, "null" when absent. */
+    private static void writeCsvRow(Writer csv, String timestamp, boolean isCurrent, String boxesJson,
+                                    String faultsJson, String annotatedJson, String severityJson,
+                                    String commentsJson) throws IOException {
+        csv.append('"').append(csvEscape(timestamp)).append('"').append(',');
+        csv.append(isCurrent ? "true" : "false").append(',');
+        csv.append('"').append(csvEscape(jsonOrNull(boxesJson))).append('"').append(',');
+        csv.append('"').append(csvEscape(jsonOrNull(faultsJson))).append('"').append(',');
+        csv.append('"').append(csvEscape(jsonOrNull(annotatedJson))).append('"').append(',');
+        csv.append('"').append(csvEscape(jsonOrNull(severityJson))).append('"').append(',');
+        csv.append('"').append(csvEscape(jsonOrNull(commentsJson))).append('"').append('\n');
+    }
+
+    private static String jsonOrNull(String json) {
+        return json == null || json.isBlank() ? "null" : json;
+    }
+
+    private static String csvEscape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\"", "\"\"")
+                .replace('\n', ' ')
+                .replace('\r', ' ');
+    }
+
+    /**
+     * Pipe a stored image into {@code name}.{ext}; skipped when there is no image. Formats that
+     * are compressed already are stored at deflate level 0.
+     */
+    private static void writeImage(ExportSink sink, String name, String dataUrl) throws IOException {
+        InputStream image = DataUrls.open(dataUrl);
+        if (image == null) {
+            return;
+        }
+        try (image) {
+            sink.entry(name + "." + DataUrls.extension(dataUrl), !DataUrls.isCompressed(dataUrl), image::transferTo);
+        }
+    }
+
+    /** The overlay, or null when it cannot be drawn; a bad image never fails the export. */
+    private byte[] renderOverlay(Inspection inspection) {
+        try {
+            return overlayRenderer.render(inspection);
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static void writeResource(ExportSink sink, String resourcePath, String entryName) throws IOException {
+        ClassPathResource resource = new ClassPathResource(resourcePath);
+        if (!resource.exists()) {
+            return;
+        }
+        try (InputStream is = resource.getInputStream()) {
+            sink.entry(entryName, true, is::transferTo);
+        }
+    }
+
+    private TransformerBaseline resolveBaseline(Inspection inspection) {
+        Transformer transformer = inspection.getTransformer();
+        if (transformer == null) {
+            return null;
+        }
+        return baselineService.resolve(transformer.getId(), preferredWeather(inspection)).orElse(null);
+    }
+
+    private static String preferredWeather(Inspection inspection) {
+        String weather = inspection.getLastAnalysisWeather();
+        if (!StringUtils.hasText(weather)) {
+            weather = inspection.getWeather();
+        }
+        if (!StringUtils.hasText(weather)) {
+            return null;
+        }
+        return weather.trim().toLowerCase(Locale.ROOT);
+    }
+}
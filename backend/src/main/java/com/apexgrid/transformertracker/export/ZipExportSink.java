@@ -0,0 +1,27 @@
+package com.apexgrid.transformertracker.export;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes entries straight into a ZIP stream owned by the caller. */
+public final class ZipExportSink implements ExportSink {
+    private final ZipOutputStream zos;
+
+    public ZipExportSink(ZipOutputStream zos) {
+        this.zos = zos;
+    }
+
+    @Override
+    public void entry(String name, boolean compressible, Content content) throws IOException {
+        try {
+            zos.setLevel(compressible ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION);
+            zos.putNextEntry(new ZipEntry(name));
+            content.writeTo(zos);
+            zos.closeEntry();
+        } finally {
+            zos.setLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+    }
+}
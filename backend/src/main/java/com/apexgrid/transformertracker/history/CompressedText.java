@@ -0,0 +1,72 @@
+package com.apexgrid.transformertracker.history;
+
+import java.util.Arrays;
+
+/**
+ * Immutable history value that keeps the stored bytes as loaded and only inflates them the
+ * first time {@link #text()} is called, so reads that never touch history pay nothing.
+ */
+public final class CompressedText {
+    private final HistoryCodec codec;
+    private volatile byte[] stored;
+    private volatile String text;
+
+    private CompressedText(HistoryCodec codec, byte[] stored, String text) {
+        this.codec = codec;
+        this.stored = stored;
+        this.text = text;
+    }
+
+    public static CompressedText of(String text) {
+        return text == null ? null : new CompressedText(null, null, text);
+    }
+
+    static CompressedText fromStored(HistoryCodec codec, byte[] stored) {
+        return stored == null ? null : new CompressedText(codec, stored, null);
+    }
+
+    /** Value of a nullable attribute, inflating on first access. */
+    public static String textOf(CompressedText value) {
+        return value == null ? null : value.text();
+    }
+
+    public String text() {
+        String current = text;
+        if (current == null) {
+            current = codec.decode(stored);
+            text = current;
+        }
+        return current;
+    }
+
+    byte[] toStored(HistoryCodec encoder) {
+        byte[] current = stored;
+        if (current == null) {
+            current = encoder.encode(text);
+            stored = current;
+        }
+        return current;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompressedText other)) return false;
+        byte[] mine = stored;
+        byte[] theirs = other.stored;
+        if (mine != null && theirs != null && Arrays.equals(mine, theirs)) {
+            return true;
+        }
+        return text().equals(other.text());
+    }
+
+    @Override
+    public int hashCode() {
+        return text().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+}
@@ -0,0 +1,29 @@
+package com.apexgrid.transformertracker.history;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Maps {@link CompressedText} attributes to bytea columns. Hibernate obtains converters
+ * from the Spring bean container, so the codec is injected.
+ */
+@Converter
+@Immutable // values are never mutated in place, so dirty checking can compare references
+public class CompressedTextConverter implements AttributeConverter<CompressedText, byte[]> {
+    private final HistoryCodec codec;
+
+    public CompressedTextConverter(HistoryCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(CompressedText attribute) {
+        return attribute == null ? null : attribute.toStored(codec);
+    }
+
+    @Override
+    public CompressedText convertToEntityAttribute(byte[] dbData) {
+        return CompressedText.fromStored(codec, dbData);
+    }
+}
@@ -0,0 +1,116 @@
+package com.apexgrid.transformertracker.history;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Byte encoding for history columns. Values are either plain UTF-8 (legacy rows and short
+ * values) or a 7-byte header followed by a zlib stream:
+ * <pre>0x00 'Z' version  uncompressed-length (int32, big-endian)  zlib data...</pre>
+ * A leading NUL never starts a JSON document, so both forms can share one column.
+ */
+@Component
+public class HistoryCodec {
+    private static final byte MAGIC_0 = 0x00;
+    private static final byte MAGIC_1 = 'Z';
+    private static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = 7;
+
+    private final HistoryCompressionProperties properties;
+    private final HistoryCompressionStats stats;
+
+    public HistoryCodec(HistoryCompressionProperties properties, HistoryCompressionStats stats) {
+        this.properties = properties;
+        this.stats = stats;
+    }
+
+    public static boolean isCompressed(byte[] stored) {
+        return stored != null && stored.length >= HEADER_LENGTH
+                && stored[0] == MAGIC_0 && stored[1] == MAGIC_1 && stored[2] == VERSION;
+    }
+
+    public byte[] encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (!properties.isEnabled() || raw.length < properties.getMinBytes()) {
+            stats.recordStoredRaw(raw.length);
+            return raw;
+        }
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(Math.max(1, Math.min(9, properties.getLevel())));
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[HEADER_LENGTH + raw.length];
+            out[0] = MAGIC_0;
+            out[1] = MAGIC_1;
+            out[2] = VERSION;
+            writeInt(out, 3, raw.length);
+            int length = HEADER_LENGTH;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            if (!deflater.finished()) {
+                // Incompressible; the header would only add overhead
+                stats.recordStoredRaw(raw.length);
+                return raw;
+            }
+            stats.recordCompression(raw.length, length, System.nanoTime() - start);
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public String decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (!isCompressed(stored)) {
+            return new String(stored, StandardCharsets.UTF_8);
+        }
+        long start = System.nanoTime();
+        int length = readInt(stored, 3);
+        byte[] raw = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH);
+            int filled = 0;
+            while (filled < length) {
+                int n = inflater.inflate(raw, filled, length - filled);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                filled += n;
+            }
+            if (filled != length) {
+                throw new IllegalStateException("Corrupt compressed history value");
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt compressed history value", ex);
+        } finally {
+            inflater.end();
+        }
+        stats.recordDecompression(System.nanoTime() - start);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] source, int offset) {
+        return ((source[offset] & 0xFF) << 24) | ((source[offset + 1] & 0xFF) << 16)
+                | ((source[offset + 2] & 0xFF) << 8) | (source[offset + 3] & 0xFF);
+    }
+}
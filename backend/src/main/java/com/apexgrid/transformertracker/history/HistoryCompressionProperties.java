@@ -0,0 +1,48 @@
+package com.apexgrid.transformertracker.history;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.history.compression")
+public class HistoryCompressionProperties {
+    /**
+     * Compress history columns on write. When disabled new values are stored as plain UTF-8,
+     * which every reader still understands.
+     */
+    private boolean enabled = true;
+
+    /**
+     * DEFLATE level, 1 (fastest) to 9 (smallest).
+     */
+    private int level = 6;
+
+    /**
+     * Values shorter than this many UTF-8 bytes are stored uncompressed.
+     */
+    private int minBytes = 256;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
+
+    public void setMinBytes(int minBytes) {
+        this.minBytes = minBytes;
+    }
+}
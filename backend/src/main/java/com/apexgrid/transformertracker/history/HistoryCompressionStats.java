@@ -0,0 +1,69 @@
+package com.apexgrid.transformertracker.history;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters for history compression, exposed through the admin API.
+ */
+@Component
+public class HistoryCompressionStats {
+    private final LongAdder compressedValues = new LongAdder();
+    private final LongAdder rawValues = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressedValues = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    void recordCompression(int uncompressed, int compressed, long nanos) {
+        compressedValues.increment();
+        bytesIn.add(uncompressed);
+        bytesOut.add(compressed);
+        compressNanos.add(nanos);
+    }
+
+    void recordStoredRaw(int length) {
+        rawValues.increment();
+        bytesIn.add(length);
+        bytesOut.add(length);
+    }
+
+    void recordDecompression(long nanos) {
+        decompressedValues.increment();
+        decompressNanos.add(nanos);
+    }
+
+    public Snapshot snapshot() {
+        long in = bytesIn.sum();
+        long out = bytesOut.sum();
+        long compressed = compressedValues.sum();
+        long decompressed = decompressedValues.sum();
+        return new Snapshot(
+                compressed,
+                rawValues.sum(),
+                in,
+                out,
+                out == 0 ? 0 : (double) in / out,
+                compressed == 0 ? 0 : compressNanos.sum() / 1000.0 / compressed,
+                decompressed,
+                decompressed == 0 ? 0 : decompressNanos.sum() / 1000.0 / decompressed);
+    }
+
+    /**
+     * @param compressionRatio uncompressed bytes / stored bytes for values written since startup
+     * @param avgCompressMicros mean time spent deflating one value
+     * @param avgDecompressMicros mean time spent inflating one value
+     */
+    public record Snapshot(
+            long compressedValues,
+            long rawValues,
+            long bytesIn,
+            long bytesOut,
+            double compressionRatio,
+            double avgCompressMicros,
+            long decompressedValues,
+            double avgDecompressMicros
+    ) { }
+}
@@ -0,0 +1,46 @@
+package com.apexgrid.transformertracker.history;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Open edit sessions per (inspection, user), held in memory. A session remembers the seq of the
+ * snapshot archived when it opened and the time of its latest edit; it is over once the quiet
+ * period passes without an edit. Sessions are per instance: an edit served by another instance
+ * simply opens its own session there, which at worst archives one extra snapshot.
+ */
+final class HistoryEditSessions {
+    private record Key(String inspectionId, String user) { }
+
+    private record Session(int seq, Instant lastEdit) { }
+
+    private final ConcurrentHashMap<Key, Session> sessions = new ConcurrentHashMap<>();
+
+    /** Seq of the session's snapshot when the user's previous edit was within the quiet period, else null. */
+    Integer open(String inspectionId, String user, Duration quietPeriod, Instant now) {
+        Session session = sessions.get(new Key(inspectionId, user));
+        return session == null || expired(session, quietPeriod, now) ? null : session.seq();
+    }
+
+    /** Record an edit in the session whose snapshot is {@code seq}, starting it if needed. */
+    void touch(String inspectionId, String user, int seq, Duration quietPeriod, Instant now) {
+        Key key = new Key(inspectionId, user);
+        if (!sessions.containsKey(key)) {
+            sessions.values().removeIf(session -> expired(session, quietPeriod, now));
+        }
+        sessions.put(key, new Session(seq, now));
+    }
+
+    void close(String inspectionId, String user) {
+        sessions.remove(new Key(inspectionId, user));
+    }
+
+    void closeAll(String inspectionId) {
+        sessions.keySet().removeIf(key -> key.inspectionId().equals(inspectionId));
+    }
+
+    private static boolean expired(Session session, Duration quietPeriod, Instant now) {
+        return session.lastEdit().plus(quietPeriod).isBefore(now);
+    }
+}
@@ -0,0 +1,50 @@
+package com.apexgrid.transformertracker.history;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.history.migration")
+public class HistoryMigrationProperties {
+    /**
+     * Move history still held in the legacy inspections.*history columns into inspection_snapshot
+     * rows in the background after startup. Does nothing once those columns are dropped.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Inspections read per migration batch.
+     */
+    private int batchSize = 50;
+
+    /**
+     * Pause between migration batches so the move never competes with request traffic.
+     */
+    private Duration pause = Duration.ofMillis(250);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getPause() {
+        return pause;
+    }
+
+    public void setPause(Duration pause) {
+        this.pause = pause;
+    }
+}
@@ -0,0 +1,11 @@
+package com.apexgrid.transformertracker.history;
+
+import com.apexgrid.transformertracker.model.HistoryEntry;
+
+import java.util.List;
+
+/**
+ * A page of reconstructed snapshots, newest first. {@code nextCursor} is passed back to fetch the
+ * next (older) page and is null when there are no older snapshots.
+ */
+public record HistoryPage(List<HistoryEntry> items, Integer nextCursor) { }
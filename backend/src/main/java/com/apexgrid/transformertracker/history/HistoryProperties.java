@@ -0,0 +1,38 @@
+package com.apexgrid.transformertracker.history;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.history")
+public class HistoryProperties {
+    /**
+     * Every n-th snapshot of an inspection stores its full state; the ones in between store
+     * box-level deltas. Reconstructing any snapshot reads at most this many rows.
+     */
+    private int keyframeInterval = 16;
+
+    /**
+     * Single-box edits by the same user on the same inspection that follow each other within
+     * this long form one edit session, archived as one snapshot. Zero archives every edit.
+     */
+    private Duration editQuietPeriod = Duration.ofSeconds(30);
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public void setKeyframeInterval(int keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    public Duration getEditQuietPeriod() {
+        return editQuietPeriod;
+    }
+
+    public void setEditQuietPeriod(Duration editQuietPeriod) {
+        this.editQuietPeriod = editQuietPeriod;
+    }
+}
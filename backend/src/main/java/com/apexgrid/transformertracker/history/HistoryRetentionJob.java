@@ -0,0 +1,238 @@
+package com.apexgrid.transformertracker.history;
+
+import com.apexgrid.transformertracker.model.HistoryEntry;
+import com.apexgrid.transformertracker.model.InspectionSnapshot;
+import com.apexgrid.transformertracker.repo.InspectionSnapshotRepo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Enforces {@link HistoryRetentionPolicy} across every inspection on a fixed delay. Candidates
+ * (inspections with more than {@code keep-latest} snapshots) are read in keyset-paged batches
+ * with a pause in between, and each one is compacted in its own transaction under a row lock on
+ * the inspection. Removing a snapshot would break the deltas that follow it, so every survivor
+ * after a gap is re-encoded against the previous survivor, and keyframes that are no longer
+ * needed for the keyframe interval become deltas. Per-run counts, including the stored bytes
+ * reclaimed, are kept for the admin API.
+ */
+@Component
+public class HistoryRetentionJob {
+    private static final Logger LOG = LoggerFactory.getLogger(HistoryRetentionJob.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String CANDIDATES = "select inspection_id from inspection_snapshot where inspection_id > ? "
+            + "group by inspection_id having count(*) > ? order by inspection_id limit ?";
+    private static final String STORED_BYTES = "select coalesce(sum(coalesce(octet_length(boxids), 0) "
+            + "+ coalesce(octet_length(boundingboxes), 0) + coalesce(octet_length(faulttypes), 0) "
+            + "+ coalesce(octet_length(annotatedby), 0) + coalesce(octet_length(severity), 0) "
+            + "+ coalesce(octet_length(comments), 0) + coalesce(octet_length(recentstatus), 0) "
+            + "+ coalesce(octet_length(boxcreatedat), 0) + coalesce(octet_length(delta), 0)), 0) "
+            + "from inspection_snapshot where inspection_id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final InspectionSnapshotRepo repo;
+    private final HistoryProperties historyProperties;
+    private final HistoryRetentionProperties properties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile String state = "idle";
+    private volatile Run lastRun;
+    private volatile long runs;
+    private volatile long totalSnapshotsRemoved;
+    private volatile long totalBytesReclaimed;
+
+    public HistoryRetentionJob(JdbcTemplate jdbc,
+                               TransactionTemplate transactions,
+                               InspectionSnapshotRepo repo,
+                               HistoryProperties historyProperties,
+                               HistoryRetentionProperties properties) {
+        this.jdbc = jdbc;
+        this.transactions = transactions;
+        this.repo = repo;
+        this.historyProperties = historyProperties;
+        this.properties = properties;
+    }
+
+    @Scheduled(initialDelayString = "#{@historyRetentionProperties.initialDelay.toMillis()}",
+            fixedDelayString = "#{@historyRetentionProperties.runEvery.toMillis()}")
+    public void scheduledRun() {
+        if (properties.isEnabled()) {
+            runOnce();
+        }
+    }
+
+    /** One pass over every inspection; returns null when a pass is already in progress. */
+    public Run runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        state = "running";
+        Instant started = Instant.now();
+        long examined = 0;
+        long compacted = 0;
+        long removed = 0;
+        long reencoded = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+        int keepLatest = Math.max(1, properties.getKeepLatest());
+        int batchSize = Math.max(1, properties.getBatchSize());
+        String lastId = "";
+        try {
+            while (true) {
+                List<String> batch = jdbc.queryForList(CANDIDATES, String.class, lastId, keepLatest, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (String id : batch) {
+                    examined++;
+                    Compaction result = transactions.execute(status -> compact(id, started));
+                    if (result != null) {
+                        compacted++;
+                        removed += result.removed();
+                        reencoded += result.reencoded();
+                        bytesBefore += result.bytesBefore();
+                        bytesAfter += result.bytesAfter();
+                    }
+                }
+                lastId = batch.get(batch.size() - 1);
+                if (batch.size() < batchSize) {
+                    break;
+                }
+                Thread.sleep(properties.getPause().toMillis());
+            }
+            state = "done";
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            state = "interrupted";
+        } catch (RuntimeException ex) {
+            state = "failed";
+            LOG.warn("History retention stopped after {} inspections", examined, ex);
+        } finally {
+            Run run = new Run(started, Instant.now(), examined, compacted, removed, reencoded,
+                    bytesBefore, bytesAfter, bytesBefore - bytesAfter);
+            lastRun = run;
+            runs++;
+            totalSnapshotsRemoved += removed;
+            totalBytesReclaimed += run.bytesReclaimed();
+            running.set(false);
+        }
+        if (removed > 0) {
+            LOG.info("History retention removed {} snapshots of {} inspections, reclaiming {} bytes",
+                    removed, compacted, bytesBefore - bytesAfter);
+        }
+        return lastRun;
+    }
+
+    public Status status() {
+        return new Status(state, lastRun, runs, totalSnapshotsRemoved, totalBytesReclaimed);
+    }
+
+    private Compaction compact(String inspectionId, Instant now) {
+        if (jdbc.queryForList("select id from inspections where id = ? for update", String.class, inspectionId).isEmpty()) {
+            return null;
+        }
+        List<HistoryRetentionPolicy.Stamp> stamps = jdbc.query(
+                "select seq, archivedat from inspection_snapshot where inspection_id = ? order by seq",
+                (rs, rowNum) -> {
+                    Timestamp archivedAt = rs.getTimestamp(2);
+                    return new HistoryRetentionPolicy.Stamp(rs.getInt(1), archivedAt == null ? null : archivedAt.toInstant());
+                },
+                inspectionId);
+        Set<Integer> expired = HistoryRetentionPolicy.expired(stamps, properties, now);
+        if (expired.isEmpty()) {
+            return null;
+        }
+        long bytesBefore = storedBytes(inspectionId);
+
+        List<InspectionSnapshot> rows = repo.findByInspectionId(inspectionId);
+        List<HistoryEntry> entries = InspectionHistoryService.reconstruct(rows);
+        int interval = Math.max(1, historyProperties.getKeyframeInterval());
+        List<InspectionSnapshot> removed = new ArrayList<>();
+        int reencoded = 0;
+        int previous = -1;
+        int deltas = 0;
+        for (int idx = 0; idx < rows.size(); idx++) {
+            InspectionSnapshot row = rows.get(idx);
+            if (expired.contains(row.getSeq())) {
+                removed.add(row);
+                continue;
+            }
+            boolean room = previous >= 0 && deltas + 1 < interval;
+            boolean intact = previous == idx - 1;
+            // A delta needs its own predecessor; a keyframe is only worth rewriting when a delta can replace it
+            if (row.isKeyframe() ? room : !(room && intact)) {
+                List<ObjectNode> previousState = room ? SnapshotDeltaCodec.stateOf(entries.get(previous)) : null;
+                boolean wasKeyframe = row.isKeyframe();
+                HistoryEntry entry = entries.get(idx);
+                boolean delta = InspectionHistoryService.encode(row, previousState,
+                        SnapshotDeltaCodec.stateOf(entry), statusOf(entry), entry);
+                if (delta || !wasKeyframe) {
+                    reencoded++;
+                }
+            }
+            deltas = row.isKeyframe() ? 0 : deltas + 1;
+            previous = idx;
+        }
+        repo.deleteAll(removed);
+        repo.flush();
+        return new Compaction(removed.size(), reencoded, bytesBefore, storedBytes(inspectionId));
+    }
+
+    private long storedBytes(String inspectionId) {
+        Long bytes = jdbc.queryForObject(STORED_BYTES, Long.class, inspectionId);
+        return bytes == null ? 0 : bytes;
+    }
+
+    private static ArrayNode statusOf(HistoryEntry entry) {
+        if (entry.recentStatus() == null) {
+            return null;
+        }
+        try {
+            JsonNode node = MAPPER.readTree(entry.recentStatus());
+            return node instanceof ArrayNode array ? array : null;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private record Compaction(int removed, int reencoded, long bytesBefore, long bytesAfter) { }
+
+    /**
+     * @param inspectionsExamined inspections with more than {@code keep-latest} snapshots
+     * @param inspectionsCompacted inspections that had snapshots removed
+     * @param snapshotsReencoded surviving snapshots rewritten against a new predecessor
+     * @param bytesBefore stored snapshot bytes of the compacted inspections before the run
+     */
+    public record Run(
+            Instant startedAt,
+            Instant finishedAt,
+            long inspectionsExamined,
+            long inspectionsCompacted,
+            long snapshotsRemoved,
+            long snapshotsReencoded,
+            long bytesBefore,
+            long bytesAfter,
+            long bytesReclaimed
+    ) { }
+
+    /**
+     * @param state idle, running, done, interrupted or failed
+     */
+    public record Status(String state, Run lastRun, long runs, long snapshotsRemoved, long bytesReclaimed) { }
+}
@@ -0,0 +1,59 @@
+package com.apexgrid.transformertracker.history;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.IsoFields;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Which snapshots of one inspection retention removes, decided from archive times alone. The
+ * newest {@code keepLatest} always stay. Every older snapshot is kept only if it is the newest
+ * of its bucket: its UTC day within {@code dailyFor}, its ISO week within {@code weeklyFor}
+ * (or forever when unset), otherwise nothing. Snapshots without a timestamp (some migrated
+ * legacy ones) share a single bucket. A kept latest snapshot also represents its bucket.
+ */
+final class HistoryRetentionPolicy {
+    record Stamp(int seq, Instant archivedAt) { }
+
+    private HistoryRetentionPolicy() { }
+
+    /**
+     * @param stamps the inspection's snapshots, oldest first
+     * @return seqs of the snapshots to remove
+     */
+    static Set<Integer> expired(List<Stamp> stamps, HistoryRetentionProperties properties, Instant now) {
+        int keepLatest = Math.max(1, properties.getKeepLatest());
+        Duration dailyFor = properties.getDailyFor() == null ? Duration.ZERO : properties.getDailyFor();
+        Duration weeklyFor = properties.getWeeklyFor();
+        Set<String> represented = new HashSet<>();
+        Set<Integer> expired = new HashSet<>();
+        for (int idx = stamps.size() - 1, rank = 0; idx >= 0; idx--, rank++) {
+            Stamp stamp = stamps.get(idx);
+            String bucket = bucket(stamp.archivedAt(), now, dailyFor, weeklyFor);
+            boolean firstOfBucket = bucket != null && represented.add(bucket);
+            if (rank >= keepLatest && !firstOfBucket) {
+                expired.add(stamp.seq());
+            }
+        }
+        return expired;
+    }
+
+    private static String bucket(Instant archivedAt, Instant now, Duration dailyFor, Duration weeklyFor) {
+        if (archivedAt == null) {
+            return "undated";
+        }
+        Duration age = Duration.between(archivedAt, now);
+        LocalDate day = LocalDate.ofInstant(archivedAt, ZoneOffset.UTC);
+        if (age.compareTo(dailyFor) <= 0) {
+            return "d" + day;
+        }
+        if (weeklyFor == null || age.compareTo(weeklyFor) <= 0) {
+            return "w" + day.get(IsoFields.WEEK_BASED_YEAR) + "-" + day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+        }
+        return null;
+    }
+}
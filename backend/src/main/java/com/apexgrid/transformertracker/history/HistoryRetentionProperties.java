@@ -0,0 +1,116 @@
+package com.apexgrid.transformertracker.history;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.history.retention")
+public class HistoryRetentionProperties {
+    /**
+     * Periodically thin out old snapshots across all inspections.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Snapshots always kept per inspection, newest first, regardless of age.
+     */
+    private int keepLatest = 50;
+
+    /**
+     * Beyond the latest ones, keep the newest snapshot of each day (UTC) archived within this
+     * long of the run.
+     */
+    private Duration dailyFor = Duration.ofDays(30);
+
+    /**
+     * Older than {@code dailyFor}, keep the newest snapshot of each ISO week archived within this
+     * long of the run. Unset keeps weekly snapshots forever; anything older is removed.
+     */
+    private Duration weeklyFor;
+
+    /**
+     * Delay between the end of one run and the start of the next.
+     */
+    private Duration runEvery = Duration.ofHours(6);
+
+    /**
+     * Delay before the first run after startup.
+     */
+    private Duration initialDelay = Duration.ofMinutes(10);
+
+    /**
+     * Inspections examined per batch.
+     */
+    private int batchSize = 50;
+
+    /**
+     * Pause between batches so a run never competes with request traffic.
+     */
+    private Duration pause = Duration.ofMillis(250);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getKeepLatest() {
+        return keepLatest;
+    }
+
+    public void setKeepLatest(int keepLatest) {
+        this.keepLatest = keepLatest;
+    }
+
+    public Duration getDailyFor() {
+        return dailyFor;
+    }
+
+    public void setDailyFor(Duration dailyFor) {
+        this.dailyFor = dailyFor;
+    }
+
+    public Duration getWeeklyFor() {
+        return weeklyFor;
+    }
+
+    public void setWeeklyFor(Duration weeklyFor) {
+        this.weeklyFor = weeklyFor;
+    }
+
+    public Duration getRunEvery() {
+        return runEvery;
+    }
+
+    public void setRunEvery(Duration runEvery) {
+        this.runEvery = runEvery;
+    }
+
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    public void setInitialDelay(Duration initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getPause() {
+        return pause;
+    }
+
+    public void setPause(Duration pause) {
+        this.pause = pause;
+    }
+}
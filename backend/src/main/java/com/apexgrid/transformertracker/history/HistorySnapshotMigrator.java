@@ -0,0 +1,197 @@
+package com.apexgrid.transformertracker.history;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Moves history out of the legacy inspections.*history columns (eight parallel arrays of
+ * snapshots, plain or compressed) into inspection_snapshot rows. Runs once per startup on a
+ * daemon thread in small keyset-paged batches. Each inspection is moved in its own transaction
+ * under a row lock, and its legacy columns are cleared in the same transaction, so a second
+ * instance running the migration concurrently never duplicates snapshots. Once the legacy
+ * columns have been dropped the migration finds nothing to do.
+ */
+@Component
+public class HistorySnapshotMigrator {
+    private static final Logger LOG = LoggerFactory.getLogger(HistorySnapshotMigrator.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Legacy column order; index 6 (timestamps) becomes archivedat rather than a JSON column
+    static final List<String> LEGACY_COLUMNS = List.of(
+            "boundingboxhistory", "faulttypehistory", "annotatedbyhistory", "severityhistory",
+            "commenthistory", "recentstatushistory", "timestamphistory", "boxcreatedathistory");
+    private static final int TIMESTAMP_COLUMN = 6;
+
+    private static final String INSERT = "insert into inspection_snapshot (id, inspection_id, seq, archivedat, "
+            + "boundingboxes, faulttypes, annotatedby, severity, comments, recentstatus, boxcreatedat) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final HistoryCodec codec;
+    private final HistoryMigrationProperties properties;
+
+    private final LongAdder migratedInspections = new LongAdder();
+    private final LongAdder migratedSnapshots = new LongAdder();
+    private volatile String state = "idle";
+
+    public HistorySnapshotMigrator(JdbcTemplate jdbc,
+                                   TransactionTemplate transactions,
+                                   HistoryCodec codec,
+                                   HistoryMigrationProperties properties) {
+        this.jdbc = jdbc;
+        this.transactions = transactions;
+        this.codec = codec;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startInBackground() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Thread worker = new Thread(this::migrateAll, "history-snapshot-migrator");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    public void migrateAll() {
+        state = "running";
+        String pending = LEGACY_COLUMNS.stream().map(c -> c + " is not null").collect(Collectors.joining(" or "));
+        String select = "select id from inspections where id > ? and (" + pending + ") order by id limit ?";
+        String lastId = "";
+        int batchSize = Math.max(1, properties.getBatchSize());
+        try {
+            while (true) {
+                List<String> batch;
+                try {
+                    batch = jdbc.queryForList(select, String.class, lastId, batchSize);
+                } catch (BadSqlGrammarException ex) {
+                    state = "not-needed"; // legacy columns are gone
+                    return;
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (String id : batch) {
+                    Integer moved = transactions.execute(status -> migrateInspection(id));
+                    if (moved != null && moved > 0) {
+                        migratedInspections.increment();
+                        migratedSnapshots.add(moved);
+                    }
+                }
+                lastId = batch.get(batch.size() - 1);
+                if (batch.size() < batchSize) {
+                    break;
+                }
+                Thread.sleep(properties.getPause().toMillis());
+            }
+            state = "done";
+            if (migratedInspections.sum() > 0) {
+                LOG.info("Moved {} history snapshots of {} inspections into inspection_snapshot",
+                        migratedSnapshots.sum(), migratedInspections.sum());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            state = "interrupted";
+        } catch (RuntimeException ex) {
+            state = "failed";
+            LOG.warn("History snapshot migration stopped after {} inspections", migratedInspections.sum(), ex);
+        }
+    }
+
+    public Status status() {
+        return new Status(state, migratedInspections.sum(), migratedSnapshots.sum());
+    }
+
+    private int migrateInspection(String id) {
+        String select = "select " + String.join(", ", LEGACY_COLUMNS) + " from inspections where id = ? for update";
+        List<JsonNode[]> rows = jdbc.query(select, this::mapRow, id);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        JsonNode[] columns = rows.get(0);
+        int count = 0;
+        for (JsonNode column : columns) {
+            count = Math.max(count, column.size());
+        }
+        if (count > 0) {
+            // Legacy snapshots predate anything archived since the upgrade, so they sort first
+            Integer min = jdbc.queryForObject(
+                    "select min(seq) from inspection_snapshot where inspection_id = ?", Integer.class, id);
+            int firstSeq = (min == null ? 0 : min) - count;
+            for (int idx = 0; idx < count; idx++) {
+                jdbc.update(INSERT,
+                        UUID.randomUUID().toString(), id, firstSeq + idx,
+                        timestampAt(columns[TIMESTAMP_COLUMN], idx),
+                        encodedAt(columns[0], idx), encodedAt(columns[1], idx), encodedAt(columns[2], idx),
+                        encodedAt(columns[3], idx), encodedAt(columns[4], idx), encodedAt(columns[5], idx),
+                        encodedAt(columns[7], idx));
+            }
+        }
+        String clear = LEGACY_COLUMNS.stream().map(c -> c + " = null").collect(Collectors.joining(", "));
+        jdbc.update("update inspections set " + clear + " where id = ?", id);
+        return count;
+    }
+
+    private JsonNode[] mapRow(ResultSet rs, int rowNum) throws SQLException {
+        JsonNode[] columns = new JsonNode[LEGACY_COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = parseArray(codec.decode(rs.getBytes(i + 1)));
+        }
+        return columns;
+    }
+
+    private static JsonNode parseArray(String json) {
+        if (json == null || json.isBlank()) {
+            return MAPPER.createArrayNode();
+        }
+        try {
+            JsonNode node = MAPPER.readTree(json);
+            return node != null && node.isArray() ? node : MAPPER.createArrayNode();
+        } catch (Exception ex) {
+            return MAPPER.createArrayNode();
+        }
+    }
+
+    private byte[] encodedAt(JsonNode array, int index) {
+        JsonNode value = array.get(index);
+        return value == null || value.isNull() ? null : codec.encode(value.toString());
+    }
+
+    private static Timestamp timestampAt(JsonNode array, int index) {
+        JsonNode value = array.get(index);
+        if (value == null || !value.isTextual()) {
+            return null;
+        }
+        try {
+            return Timestamp.from(Instant.parse(value.asText()));
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @param state idle, running, done, not-needed (legacy columns dropped), interrupted or failed
+     */
+    public record Status(String state, long migratedInspections, long migratedSnapshots) { }
+}
@@ -0,0 +1,43 @@
+package com.apexgrid.transformertracker.history;
+
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.repo.InspectionRepo;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Edits of an inspection's boxes and image together with the history they archive. The
+ * inspection is read under a row lock, and the snapshot, the edit and the save commit in one
+ * transaction, so a save that fails leaves no snapshot of an edit that never happened. Edits of
+ * one inspection run one after another, as do the retention job and the migrator, which take the
+ * same lock, so they do not fail each other's {@code @Version} check.
+ */
+@Service
+public class InspectionEdits {
+    private final InspectionRepo repo;
+    private final TransactionTemplate transactions;
+
+    public InspectionEdits(InspectionRepo repo, TransactionTemplate transactions) {
+        this.repo = repo;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Read the inspection, let {@code edit} archive through {@link InspectionHistoryService} and
+     * change it, then save it. An exception from {@code edit}, such as an
+     * {@link IllegalArgumentException} for an edit that does not apply to the current boxes,
+     * rolls back whatever it archived.
+     *
+     * @return the saved inspection, or empty when there is none with that id
+     */
+    public Optional<Inspection> apply(String inspectionId, Consumer<Inspection> edit) {
+        Optional<Inspection> saved = transactions.execute(status -> repo.findForUpdate(inspectionId).map(inspection -> {
+            edit.accept(inspection);
+            return repo.saveAndFlush(inspection);
+        }));
+        return saved == null ? Optional.empty() : saved;
+    }
+}
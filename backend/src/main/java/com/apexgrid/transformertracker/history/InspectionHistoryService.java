@@ -0,0 +1,364 @@
+package com.apexgrid.transformertracker.history;
+
+import com.apexgrid.transformertracker.model.HistoryEntry;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.apexgrid.transformertracker.model.InspectionSnapshot;
+import com.apexgrid.transformertracker.repo.InspectionSnapshotRepo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Append-only history of an inspection's boxes. Archiving writes a single inspection_snapshot
+ * row regardless of how long the history already is: a full keyframe every
+ * {@code app.history.keyframe-interval} snapshots and box-level deltas in between. Reads are
+ * paged by seq and only replay the deltas back to the nearest keyframe of each page.
+ */
+@Service
+public class InspectionHistoryService {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final InspectionSnapshotRepo repo;
+    private final HistoryProperties properties;
+    private final HistoryEditSessions sessions = new HistoryEditSessions();
+
+    public InspectionHistoryService(InspectionSnapshotRepo repo, HistoryProperties properties) {
+        this.repo = repo;
+        this.properties = properties;
+    }
+
+    /**
+     * Record the inspection's current boxes as the newest snapshot, before they are replaced.
+     * Call it from an {@link InspectionEdits} edit, so the snapshot commits with the change and
+     * the row lock keeps concurrent edits from numbering the same seq.
+     *
+     * @param actor          "AI" or the user making the change
+     * @param statusSnapshot per-box added/edited/deleted flags describing the change; when null the
+     *                       boxes' current recent statuses are archived instead
+     * @return the stored snapshot, or null when there were no boxes to archive
+     */
+    public InspectionSnapshot archive(Inspection inspection, String actor, String[] statusSnapshot) {
+        if (inspection.getBoxes().isEmpty()) {
+            return null;
+        }
+        InspectionSnapshot snapshot = new InspectionSnapshot();
+        snapshot.setInspection(inspection);
+        snapshot.setArchivedAt(Instant.now());
+        snapshot.setArchivedBy(actor);
+        ArrayNode status = statusSnapshot != null ? statusArray(statusSnapshot) : currentStatus(inspection);
+        if (!hasMeaningfulStatus(status)) {
+            status = null;
+        }
+        encodeAgainstLatest(snapshot, inspection, SnapshotDeltaCodec.stateOf(inspection.getBoxes()), status);
+        return repo.saveAndFlush(snapshot);
+    }
+
+    /**
+     * Archive before a single-box edit, folding a user's rapid edits into one snapshot. The first
+     * edit of a session archives as {@link #archive} does; later edits by the same user within
+     * {@code app.history.edit-quiet-period} of the previous one archive nothing, since the state
+     * before the session is already stored, as long as that snapshot is still the inspection's
+     * latest. A box deleted later in the session is flagged as deleted on that snapshot.
+     *
+     * @param deletedBoxId id of the box the edit removes, or null
+     * @return true when the edit starts a new session (so earlier recent statuses are stale),
+     *         false when it continues one
+     */
+    public boolean archiveEdit(Inspection inspection, String actor, String[] statusSnapshot, String deletedBoxId) {
+        Duration quietPeriod = properties.getEditQuietPeriod();
+        if (quietPeriod == null || quietPeriod.isZero() || quietPeriod.isNegative()) {
+            archive(inspection, actor, statusSnapshot);
+            return true;
+        }
+        Instant now = Instant.now();
+        Integer seq = sessions.open(inspection.getId(), actor, quietPeriod, now);
+        if (seq != null && seq.equals(repo.findLatestSeq(inspection.getId()))) {
+            afterCommit(() -> sessions.touch(inspection.getId(), actor, seq, quietPeriod, now));
+            if (deletedBoxId != null) {
+                flagDeleted(inspection.getId(), seq, deletedBoxId);
+            }
+            return false;
+        }
+        InspectionSnapshot archived = archive(inspection, actor, statusSnapshot);
+        if (archived == null) {
+            afterCommit(() -> sessions.close(inspection.getId(), actor));
+        } else {
+            afterCommit(() -> sessions.touch(inspection.getId(), actor, archived.getSeq(), quietPeriod, now));
+        }
+        return true;
+    }
+
+    // Sessions are in memory, so they only follow snapshots that were committed
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * One page of snapshots, newest first. {@code cursor} is the {@code nextCursor} of the
+     * previous page (null for the newest page). Only the page's rows are read, plus the rows back
+     * to the keyframe when the oldest one on the page is a delta.
+     */
+    public HistoryPage page(String inspectionId, Integer cursor, int limit) {
+        PageRequest request = PageRequest.of(0, limit + 1);
+        List<InspectionSnapshot> rows = new ArrayList<>(cursor == null
+                ? repo.findLatest(inspectionId, request)
+                : repo.findBefore(inspectionId, cursor, request));
+        boolean more = rows.size() > limit;
+        if (more) {
+            rows.subList(limit, rows.size()).clear();
+        }
+        Collections.reverse(rows);
+        List<HistoryEntry> entries = new ArrayList<>(reconstruct(inspectionId, rows));
+        Collections.reverse(entries);
+        return new HistoryPage(entries, more ? rows.get(0).getSeq() : null);
+    }
+
+    /** Visit every snapshot oldest first, reading {@code batch} rows at a time. */
+    public void forEach(String inspectionId, int batch, Consumer<HistoryEntry> action) {
+        int after = Integer.MIN_VALUE;
+        while (true) {
+            List<InspectionSnapshot> rows = repo.findAfter(inspectionId, after, PageRequest.of(0, batch));
+            reconstruct(inspectionId, rows).forEach(action);
+            if (rows.size() < batch) {
+                return;
+            }
+            after = rows.get(rows.size() - 1).getSeq();
+        }
+    }
+
+    /**
+     * One snapshot by its sequence number. Reads the snapshot and the rows back to its keyframe,
+     * so the cost is bounded by the keyframe interval rather than the history length.
+     */
+    public Optional<HistoryEntry> find(String inspectionId, int seq) {
+        List<InspectionSnapshot> chain = repo.findChain(inspectionId, seq);
+        if (chain.isEmpty() || chain.get(chain.size() - 1).getSeq() != seq) {
+            return Optional.empty();
+        }
+        List<HistoryEntry> entries = reconstruct(chain);
+        return Optional.of(entries.get(entries.size() - 1));
+    }
+
+    public void deleteAll(String inspectionId) {
+        sessions.closeAll(inspectionId);
+        repo.deleteByInspectionId(inspectionId);
+    }
+
+    /** Set one box's recent status to "deleted" on a stored snapshot; a no-op if the box is not in it. */
+    private void flagDeleted(String inspectionId, int seq, String boxId) {
+        List<InspectionSnapshot> chain = repo.findChain(inspectionId, seq);
+        if (chain.isEmpty() || chain.get(chain.size() - 1).getSeq() != seq) {
+            return;
+        }
+        InspectionSnapshot row = chain.get(chain.size() - 1);
+        List<HistoryEntry> entries = reconstruct(chain);
+        HistoryEntry entry = entries.get(entries.size() - 1);
+        JsonNode ids = parse(entry.boxIds());
+        int index = -1;
+        for (int k = 0; k < ids.size(); k++) {
+            if (boxId.equals(ids.get(k).textValue())) {
+                index = k;
+                break;
+            }
+        }
+        if (index < 0) {
+            return;
+        }
+        JsonNode stored = parse(entry.recentStatus());
+        ArrayNode status = MAPPER.createArrayNode();
+        for (int k = 0; k < ids.size(); k++) {
+            JsonNode value = stored.get(k);
+            status.add(k == index ? TextNode.valueOf("deleted") : value == null ? NullNode.getInstance() : value);
+        }
+        if (!row.isKeyframe() && row.getRecentStatus() == null
+                && parse(row.getDelta()) instanceof ObjectNode delta
+                && SnapshotDeltaCodec.embedStatus(delta, status, ids.size())) {
+            row.setDelta(delta.toString());
+        } else {
+            row.setRecentStatus(status.toString());
+        }
+        repo.save(row);
+    }
+
+    /**
+     * Number the snapshot after the latest one and store it as a delta against that snapshot's
+     * state, or as a keyframe when the interval is due or there is nothing to diff against.
+     */
+    private void encodeAgainstLatest(InspectionSnapshot snapshot, Inspection inspection,
+                                     List<ObjectNode> state, ArrayNode status) {
+        int interval = Math.max(1, properties.getKeyframeInterval());
+        List<InspectionSnapshot> latest = new ArrayList<>(repo.findLatest(inspection.getId(), PageRequest.of(0, interval)));
+        Collections.reverse(latest);
+        snapshot.setSeq(latest.isEmpty() ? 0 : latest.get(latest.size() - 1).getSeq() + 1);
+
+        int keyframe = -1;
+        for (int idx = latest.size() - 1; idx >= 0; idx--) {
+            if (latest.get(idx).isKeyframe()) {
+                keyframe = idx;
+                break;
+            }
+        }
+        List<ObjectNode> previous = null;
+        if (keyframe >= 0 && latest.size() - keyframe < interval) {
+            previous = SnapshotDeltaCodec.stateOf(latest.get(keyframe));
+            for (InspectionSnapshot row : latest.subList(keyframe + 1, latest.size())) {
+                previous = SnapshotDeltaCodec.apply(previous, parse(row.getDelta()));
+            }
+        }
+        HistoryEntry full = new HistoryEntry(snapshot.getSeq(), snapshot.getArchivedAt(), snapshot.getArchivedBy(),
+                inspection.getBoxIds(), inspection.getBoundingBoxes(), inspection.getFaultTypes(),
+                inspection.getAnnotatedBy(), inspection.getSeverity(), inspection.getComment(),
+                null, inspection.getBoxCreatedAt());
+        encode(snapshot, previous, state, status, full);
+    }
+
+    /**
+     * Fill the row's columns: a delta from {@code previous} when one is given and the delta is
+     * smaller than the full boxes array, otherwise a keyframe of {@code full}'s arrays.
+     *
+     * @return whether the row was stored as a delta
+     */
+    static boolean encode(InspectionSnapshot snapshot, List<ObjectNode> previous, List<ObjectNode> state,
+                          ArrayNode status, HistoryEntry full) {
+        ObjectNode delta = previous == null ? null : SnapshotDeltaCodec.diff(previous, state);
+        boolean statusInDelta = delta != null && status != null && SnapshotDeltaCodec.embedStatus(delta, status, state.size());
+        String deltaJson = delta == null ? null : delta.toString();
+
+        String boxes = full.boundingBoxes();
+        if (deltaJson != null && boxes != null && deltaJson.length() < boxes.length()) {
+            snapshot.setDelta(deltaJson);
+            snapshot.setRecentStatus(statusInDelta || status == null ? null : status.toString());
+            setKeyframeColumns(snapshot, null, null, null, null, null, null, null);
+            return true;
+        }
+        snapshot.setDelta(null);
+        snapshot.setRecentStatus(status == null ? null : status.toString());
+        setKeyframeColumns(snapshot, full.boxIds(), boxes, full.faultTypes(), full.annotatedBy(),
+                full.severity(), full.comments(), full.boxCreatedAt());
+        return false;
+    }
+
+    private static void setKeyframeColumns(InspectionSnapshot snapshot, String boxIds, String boxes, String faults,
+                                           String annotatedBy, String severity, String comments, String createdAt) {
+        snapshot.setBoxIds(boxIds);
+        snapshot.setBoundingBoxes(boxes);
+        snapshot.setFaultTypes(faults);
+        snapshot.setAnnotatedBy(annotatedBy);
+        snapshot.setSeverity(severity);
+        snapshot.setComments(comments);
+        snapshot.setBoxCreatedAt(createdAt);
+    }
+
+    /**
+     * A consecutive run of rows in seq order. When it starts on a delta, the rows back to that
+     * delta's keyframe are read first and replayed, but not returned.
+     */
+    private List<HistoryEntry> reconstruct(String inspectionId, List<InspectionSnapshot> rows) {
+        if (rows.isEmpty() || rows.get(0).isKeyframe()) {
+            return reconstruct(rows);
+        }
+        int first = rows.get(0).getSeq();
+        List<InspectionSnapshot> all = new ArrayList<>();
+        for (InspectionSnapshot row : repo.findChain(inspectionId, first)) {
+            if (row.getSeq() < first) {
+                all.add(row);
+            }
+        }
+        int skip = all.size();
+        all.addAll(rows);
+        List<HistoryEntry> entries = reconstruct(all);
+        return entries.subList(skip, entries.size());
+    }
+
+    /** Rows of one inspection in seq order; keyframes are returned as stored, deltas are replayed. */
+    static List<HistoryEntry> reconstruct(List<InspectionSnapshot> rows) {
+        List<HistoryEntry> entries = new ArrayList<>(rows.size());
+        List<ObjectNode> state = null;
+        for (InspectionSnapshot row : rows) {
+            if (row.isKeyframe()) {
+                state = null; // parsed only if a delta follows
+                entries.add(SnapshotDeltaCodec.keyframeEntry(row));
+                continue;
+            }
+            if (state == null) {
+                InspectionSnapshot keyframe = lastKeyframe(rows, row);
+                state = keyframe == null ? List.of() : SnapshotDeltaCodec.stateOf(keyframe);
+            }
+            JsonNode delta = parse(row.getDelta());
+            state = SnapshotDeltaCodec.apply(state, delta);
+            entries.add(SnapshotDeltaCodec.render(row, delta, state));
+        }
+        return entries;
+    }
+
+    private static InspectionSnapshot lastKeyframe(List<InspectionSnapshot> rows, InspectionSnapshot before) {
+        InspectionSnapshot keyframe = null;
+        for (InspectionSnapshot row : rows) {
+            if (row == before) {
+                break;
+            }
+            if (row.isKeyframe()) {
+                keyframe = row;
+            }
+        }
+        return keyframe;
+    }
+
+    private static ArrayNode currentStatus(Inspection inspection) {
+        ArrayNode status = MAPPER.createArrayNode();
+        for (InspectionBox box : inspection.getBoxes()) {
+            status.add(box.getRecentStatus());
+        }
+        return status;
+    }
+
+    private static ArrayNode statusArray(String[] flags) {
+        ArrayNode status = MAPPER.createArrayNode();
+        for (String flag : flags) {
+            status.add(flag);
+        }
+        return status;
+    }
+
+    private static JsonNode parse(String json) {
+        try {
+            return json == null ? MAPPER.createObjectNode() : MAPPER.readTree(json);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Corrupt history delta", ex);
+        }
+    }
+
+    private static boolean hasMeaningfulStatus(ArrayNode node) {
+        for (JsonNode entry : node) {
+            if (entry != null && !entry.isNull() && !entry.asText("").isBlank()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,293 @@
+package com.apexgrid.transformertracker.history;
+
+import com.apexgrid.transformertracker.model.HistoryEntry;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.apexgrid.transformertracker.model.InspectionSnapshot;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Box-level encoding of history snapshots. A snapshot's state is a list of box objects
+ * <pre>{"id", "box": [x,y,w,h], "fault", "by", "sev", "comment", "createdAt"}</pre>
+ * and a delta turns the previous snapshot's state into the next one:
+ * <pre>{"runs": [[start, length], ...], "set": {"index": {field: value, ...}}}</pre>
+ * The runs list the next state's boxes in order: {@code length} consecutive previous boxes
+ * from {@code start}, or {@code length} new boxes when {@code start} is -1. {@code set} then
+ * overwrites changed fields (all fields of a new box). A delta row may also carry its
+ * per-box recent statuses sparsely as {@code "status": {"index": "edited", ...}}.
+ *
+ * <p>Boxes are matched by this class's own {@code match}: by stable id first, then, for
+ * snapshots archived before boxes had ids, by identical content. It does not share the
+ * geometric matching of the bulk edit's {@code computeStatusDiff}; a box kept by a bulk edit
+ * keeps its row and id, so matching by id pairs the same boxes. Any pairing yields a correct
+ * delta, since {@code set} carries whatever differs. Removed boxes are simply never referenced.
+ */
+final class SnapshotDeltaCodec {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private SnapshotDeltaCodec() { }
+
+    static List<ObjectNode> stateOf(List<InspectionBox> boxes) {
+        List<ObjectNode> state = new ArrayList<>(boxes.size());
+        for (InspectionBox b : boxes) {
+            ObjectNode node = NODES.objectNode();
+            node.put("id", b.getId());
+            node.putArray("box").add(b.getX()).add(b.getY()).add(b.getW()).add(b.getH());
+            node.put("fault", b.getFaultType());
+            node.put("by", b.getAnnotatedBy());
+            node.put("sev", b.getSeverity());
+            node.put("comment", b.getComment());
+            node.put("createdAt", b.getCreatedAt() == null ? null : b.getCreatedAt().toString());
+            state.add(node);
+        }
+        return state;
+    }
+
+    /** State of a keyframe row; fields whose column was null are left out of every box. */
+    static List<ObjectNode> stateOf(InspectionSnapshot keyframe) {
+        return stateOf(keyframeEntry(keyframe));
+    }
+
+    /** State of a reconstructed snapshot, read from its arrays like a keyframe's. */
+    static List<ObjectNode> stateOf(HistoryEntry keyframe) {
+        JsonNode boxes = parse(keyframe.boundingBoxes());
+        List<ObjectNode> state = new ArrayList<>(boxes.size());
+        for (JsonNode box : boxes) {
+            state.add(NODES.objectNode().set("box", box));
+        }
+        copyInto(state, "id", parse(keyframe.boxIds()));
+        copyInto(state, "fault", parse(keyframe.faultTypes()));
+        copyInto(state, "by", parse(keyframe.annotatedBy()));
+        copyInto(state, "sev", parse(keyframe.severity()));
+        JsonNode comments = parse(keyframe.comments());
+        if (comments.isEmpty()) {
+            // The comments column is sparse: null means every box had no comment
+            state.forEach(box -> box.putNull("comment"));
+        }
+        copyInto(state, "comment", comments);
+        copyInto(state, "createdAt", parse(keyframe.boxCreatedAt()));
+        return state;
+    }
+
+    /**
+     * Returns null when the change cannot be expressed as a delta (a matched box lost a field,
+     * which only happens between snapshots of different vintages); store a keyframe instead.
+     */
+    static ObjectNode diff(List<ObjectNode> previous, List<ObjectNode> next) {
+        int[] from = match(previous, next);
+        ObjectNode delta = NODES.objectNode();
+        ArrayNode runs = delta.putArray("runs");
+        for (int k = 0; k < from.length; ) {
+            int length = 1;
+            while (k + length < from.length
+                    && (from[k] < 0 ? from[k + length] < 0 : from[k + length] == from[k] + length)) {
+                length++;
+            }
+            runs.addArray().add(from[k] < 0 ? -1 : from[k]).add(length);
+            k += length;
+        }
+        ObjectNode set = NODES.objectNode();
+        for (int k = 0; k < next.size(); k++) {
+            ObjectNode changes = changedFields(from[k] >= 0 ? previous.get(from[k]) : null, next.get(k));
+            if (changes == null) {
+                return null;
+            }
+            if (!changes.isEmpty()) {
+                set.set(Integer.toString(k), changes);
+            }
+        }
+        if (!set.isEmpty()) {
+            delta.set("set", set);
+        }
+        return delta;
+    }
+
+    static List<ObjectNode> apply(List<ObjectNode> previous, JsonNode delta) {
+        List<ObjectNode> next = new ArrayList<>();
+        for (JsonNode run : delta.path("runs")) {
+            int start = run.path(0).asInt(-1);
+            int length = run.path(1).asInt(0);
+            for (int k = 0; k < length; k++) {
+                int source = start < 0 ? -1 : start + k;
+                next.add(source >= 0 && source < previous.size() ? previous.get(source).deepCopy() : NODES.objectNode());
+            }
+        }
+        Iterator<Map.Entry<String, JsonNode>> changes = delta.path("set").fields();
+        while (changes.hasNext()) {
+            Map.Entry<String, JsonNode> change = changes.next();
+            int k = Integer.parseInt(change.getKey());
+            if (k >= 0 && k < next.size() && change.getValue() instanceof ObjectNode fields) {
+                next.get(k).setAll(fields);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Move a status array aligned with {@code state} into the delta as a sparse object.
+     * Returns false (leaving the delta untouched) when the array does not line up with the boxes.
+     */
+    static boolean embedStatus(ObjectNode delta, ArrayNode status, int boxCount) {
+        if (status.size() != boxCount) {
+            return false;
+        }
+        ObjectNode sparse = NODES.objectNode();
+        for (int k = 0; k < status.size(); k++) {
+            JsonNode value = status.get(k);
+            if (value != null && !value.isNull()) {
+                sparse.set(Integer.toString(k), value);
+            }
+        }
+        delta.set("status", sparse);
+        return true;
+    }
+
+    /** Render a reconstructed state as the same arrays a keyframe stores. */
+    static HistoryEntry render(InspectionSnapshot row, JsonNode delta, List<ObjectNode> state) {
+        String status = row.getRecentStatus();
+        if (status == null && delta.has("status")) {
+            ArrayNode expanded = NODES.arrayNode(state.size());
+            for (int k = 0; k < state.size(); k++) {
+                expanded.add(delta.path("status").path(Integer.toString(k)).isMissingNode()
+                        ? NODES.nullNode() : delta.path("status").get(Integer.toString(k)));
+            }
+            status = expanded.toString();
+        }
+        return new HistoryEntry(
+                row.getSeq(),
+                row.getArchivedAt(),
+                row.getArchivedBy(),
+                column(state, "id", false),
+                column(state, "box", false),
+                column(state, "fault", false),
+                column(state, "by", false),
+                column(state, "sev", false),
+                column(state, "comment", true),
+                status,
+                column(state, "createdAt", false));
+    }
+
+    static HistoryEntry keyframeEntry(InspectionSnapshot row) {
+        return new HistoryEntry(row.getSeq(), row.getArchivedAt(), row.getArchivedBy(),
+                row.getBoxIds(), row.getBoundingBoxes(), row.getFaultTypes(), row.getAnnotatedBy(),
+                row.getSeverity(), row.getComments(), row.getRecentStatus(), row.getBoxCreatedAt());
+    }
+
+    /**
+     * Array of one field across boxes; null when no box has the field (or, if sparse, no
+     * non-blank value).
+     */
+    static String column(List<ObjectNode> state, String field, boolean sparse) {
+        if (state.isEmpty()) {
+            return null;
+        }
+        boolean any = false;
+        ArrayNode out = NODES.arrayNode(state.size());
+        for (ObjectNode box : state) {
+            JsonNode value = box.get(field);
+            if (value != null && (!sparse || (!value.isNull() && !value.asText("").isBlank()))) {
+                any = true;
+            }
+            out.add(value == null ? NODES.nullNode() : value);
+        }
+        return any ? out.toString() : null;
+    }
+
+    private static int[] match(List<ObjectNode> previous, List<ObjectNode> next) {
+        boolean[] used = new boolean[previous.size()];
+        Map<String, Integer> byId = new HashMap<>();
+        for (int j = 0; j < previous.size(); j++) {
+            String id = previous.get(j).path("id").textValue();
+            if (id != null) {
+                byId.putIfAbsent(id, j);
+            }
+        }
+        int[] from = new int[next.size()];
+        for (int k = 0; k < next.size(); k++) {
+            String id = next.get(k).path("id").textValue();
+            Integer j = id == null ? null : byId.get(id);
+            if (j != null && !used[j]) {
+                used[j] = true;
+                from[k] = j;
+            } else {
+                from[k] = -1;
+            }
+        }
+        for (int k = 0; k < next.size(); k++) {
+            if (from[k] >= 0) {
+                continue;
+            }
+            for (int j = 0; j < previous.size(); j++) {
+                if (!used[j] && sameContent(previous.get(j), next.get(k))) {
+                    used[j] = true;
+                    from[k] = j;
+                    break;
+                }
+            }
+        }
+        return from;
+    }
+
+    private static boolean sameContent(ObjectNode a, ObjectNode b) {
+        Iterator<Map.Entry<String, JsonNode>> fields = b.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!"id".equals(field.getKey()) && !field.getValue().equals(a.get(field.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ObjectNode changedFields(ObjectNode previous, ObjectNode next) {
+        if (previous != null) {
+            Iterator<String> names = previous.fieldNames();
+            while (names.hasNext()) {
+                if (!next.has(names.next())) {
+                    return null;
+                }
+            }
+        }
+        ObjectNode changes = NODES.objectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = next.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (previous == null || !field.getValue().equals(previous.get(field.getKey()))) {
+                changes.set(field.getKey(), field.getValue());
+            }
+        }
+        return changes;
+    }
+
+    private static void copyInto(List<ObjectNode> state, String field, JsonNode values) {
+        if (!values.isArray() || values.isEmpty()) {
+            return;
+        }
+        for (int k = 0; k < state.size(); k++) {
+            JsonNode value = values.get(k);
+            state.get(k).set(field, value == null ? NODES.nullNode() : value);
+        }
+    }
+
+    private static JsonNode parse(String json) {
+        if (json == null || json.isBlank()) {
+            return NODES.arrayNode();
+        }
+        try {
+            JsonNode node = MAPPER.readTree(json);
+            return node != null && node.isArray() ? node : NODES.arrayNode();
+        } catch (Exception ex) {
+            return NODES.arrayNode();
+        }
+    }
+}
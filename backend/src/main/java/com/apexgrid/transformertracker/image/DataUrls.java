@@ -0,0 +1,86 @@
+package com.apexgrid.transformertracker.image;
+
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Reads the {@code data:<mime>;base64,<payload>} URLs that images are stored as. The payload is
+ * decoded as it is read, straight from the stored string, so piping an image somewhere never
+ * holds a second copy of it in memory.
+ */
+public final class DataUrls {
+    private DataUrls() { }
+
+    /** Decoded content of the URL, or null when it is blank, malformed or empty. */
+    public static InputStream open(String dataUrl) {
+        if (dataUrl == null) {
+            return null;
+        }
+        int comma = dataUrl.indexOf(',');
+        if (comma < 0 || comma == dataUrl.length() - 1) {
+            return null;
+        }
+        return Base64.getMimeDecoder().wrap(new CharsInputStream(dataUrl, comma + 1));
+    }
+
+    /** The declared MIME type, or null when there is none. */
+    public static String mimeType(String dataUrl) {
+        if (dataUrl == null || !dataUrl.startsWith("data:")) {
+            return null;
+        }
+        int semi = dataUrl.indexOf(';');
+        int comma = dataUrl.indexOf(',');
+        return semi > 5 && (comma < 0 || semi < comma) ? dataUrl.substring(5, semi) : null;
+    }
+
+    /** File extension for the declared format, "bin" when it is unknown. */
+    public static String extension(String dataUrl) {
+        ImageFormat format = ImageFormat.fromMimeType(mimeType(dataUrl));
+        return format != null ? format.getExtension() : "bin";
+    }
+
+    /** Whether the declared format is compressed already (PNG, JPEG, GIF, WebP), so deflating it gains nothing. */
+    public static boolean isCompressed(String dataUrl) {
+        ImageFormat format = ImageFormat.fromMimeType(mimeType(dataUrl));
+        return format == ImageFormat.PNG || format == ImageFormat.JPEG
+                || format == ImageFormat.GIF || format == ImageFormat.WEBP;
+    }
+
+    /** The ASCII characters of a string from an offset, as bytes. */
+    private static final class CharsInputStream extends InputStream {
+        private final String text;
+        private int position;
+
+        CharsInputStream(String text, int position) {
+            this.text = text;
+            this.position = position;
+        }
+
+        @Override
+        public int read() {
+            return position < text.length() ? text.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int end = Math.min(text.length(), position + length);
+            if (position >= end) {
+                return -1;
+            }
+            int count = end - position;
+            for (int k = 0; k < count; k++) {
+                buffer[offset + k] = (byte) text.charAt(position + k);
+            }
+            position = end;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return text.length() - position;
+        }
+    }
+}
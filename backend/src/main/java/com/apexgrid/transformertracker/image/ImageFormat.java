@@ -0,0 +1,77 @@
+package com.apexgrid.transformertracker.image;
+
+import java.util.Locale;
+
+/**
+ * Image container formats recognised from their leading magic bytes.
+ */
+public enum ImageFormat {
+    PNG("image/png", "png"),
+    JPEG("image/jpeg", "jpg"),
+    GIF("image/gif", "gif"),
+    BMP("image/bmp", "bmp"),
+    WEBP("image/webp", "webp"),
+    TIFF("image/tiff", "tiff");
+
+    /** Number of leading bytes {@link #sniff(byte[], int)} needs to decide. */
+    public static final int SNIFF_LENGTH = 12;
+
+    private final String mimeType;
+    private final String extension;
+
+    ImageFormat(String mimeType, String extension) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static ImageFormat sniff(byte[] head, int length) {
+        if (head == null || length < 3) {
+            return null;
+        }
+        if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            return PNG;
+        }
+        if ((head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return JPEG;
+        }
+        if (length >= 6 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8') {
+            return GIF;
+        }
+        if (head[0] == 'B' && head[1] == 'M') {
+            return BMP;
+        }
+        if (length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return WEBP;
+        }
+        if (length >= 4 && ((head[0] == 'I' && head[1] == 'I' && head[2] == 42 && head[3] == 0)
+                || (head[0] == 'M' && head[1] == 'M' && head[2] == 0 && head[3] == 42))) {
+            return TIFF;
+        }
+        return null;
+    }
+
+    public static ImageFormat fromMimeType(String mimeType) {
+        if (mimeType == null) {
+            return null;
+        }
+        String normalized = mimeType.trim().toLowerCase(Locale.ROOT);
+        if ("image/jpg".equals(normalized)) {
+            return JPEG;
+        }
+        for (ImageFormat format : values()) {
+            if (format.mimeType.equals(normalized)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.apexgrid.transformertracker.image;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "app.ingest")
+public class ImageIngestProperties {
+    /**
+     * Maximum number of upload bytes a single request may hold on the heap.
+     * Larger uploads are spilled to a temporary file while they are hashed and sniffed.
+     */
+    private DataSize memoryCeiling = DataSize.ofMegabytes(4);
+
+    /**
+     * Directory used for spill files. Defaults to the JVM temp directory when blank.
+     */
+    private String spillDirectory;
+
+    public DataSize getMemoryCeiling() {
+        return memoryCeiling;
+    }
+
+    public void setMemoryCeiling(DataSize memoryCeiling) {
+        this.memoryCeiling = memoryCeiling;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+}
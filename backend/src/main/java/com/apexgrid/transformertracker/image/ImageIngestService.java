@@ -0,0 +1,80 @@
+package com.apexgrid.transformertracker.image;
+
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@Service
+public class ImageIngestService {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ImageIngestProperties properties;
+
+    public ImageIngestService(ImageIngestProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Copy a multipart upload off the request in fixed-size chunks, hashing it and sniffing its
+     * format on the way. At most {@code app.ingest.memory-ceiling} bytes stay on the heap.
+     */
+    public IngestedImage ingest(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return ingest(in, file.getSize(), file.getContentType());
+        }
+    }
+
+    public IngestedImage ingest(InputStream in, long expectedSize, String declaredContentType) throws IOException {
+        MessageDigest digest = newDigest();
+        SpillBuffer buffer = new SpillBuffer(properties.getMemoryCeiling().toBytes(), spillDirectory(), expectedSize);
+        byte[] head = new byte[ImageFormat.SNIFF_LENGTH];
+        int headLength = 0;
+        try {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (headLength < head.length) {
+                    int take = Math.min(head.length - headLength, read);
+                    System.arraycopy(chunk, 0, head, headLength, take);
+                    headLength += take;
+                }
+                digest.update(chunk, 0, read);
+                buffer.write(chunk, 0, read);
+            }
+            buffer.seal();
+        } catch (IOException | RuntimeException ex) {
+            buffer.close();
+            throw ex;
+        }
+        ImageFormat format = ImageFormat.sniff(head, headLength);
+        String mime;
+        if (format != null) {
+            mime = format.getMimeType();
+        } else if (StringUtils.hasText(declaredContentType)) {
+            mime = declaredContentType;
+        } else {
+            mime = "application/octet-stream";
+        }
+        return new IngestedImage(buffer, format, mime, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private Path spillDirectory() {
+        String dir = properties.getSpillDirectory();
+        return StringUtils.hasText(dir) ? Path.of(dir) : null;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.apexgrid.transformertracker.image;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.ingest.normalize")
+public class ImageNormalizationProperties {
+    /**
+     * When disabled, uploads are stored exactly as received.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Longest edge (pixels) kept for analysis. Larger images are downscaled to fit.
+     */
+    private int maxDimension = 2048;
+
+    /**
+     * Keep the untouched upload alongside the normalized image when it had to be rewritten.
+     */
+    private boolean keepOriginal = false;
+
+    /**
+     * Quality used when a downscaled JPEG is written back as JPEG (lossless sources stay PNG).
+     */
+    private float jpegQuality = 0.92f;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public void setMaxDimension(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public boolean isKeepOriginal() {
+        return keepOriginal;
+    }
+
+    public void setKeepOriginal(boolean keepOriginal) {
+        this.keepOriginal = keepOriginal;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    public void setJpegQuality(float jpegQuality) {
+        this.jpegQuality = jpegQuality;
+    }
+}
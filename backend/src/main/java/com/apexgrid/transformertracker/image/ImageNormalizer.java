@@ -0,0 +1,289 @@
+package com.apexgrid.transformertracker.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Set;
+
+@Service
+public class ImageNormalizer {
+    private static final Logger LOG = LoggerFactory.getLogger(ImageNormalizer.class);
+
+    // Ancillary PNG chunks that change how pixels render; everything else ancillary is metadata
+    private static final Set<String> PNG_RENDERING_CHUNKS = Set.of("tRNS", "gAMA", "cHRM", "sRGB", "iCCP", "sBIT");
+
+    private final ImageNormalizationProperties properties;
+
+    public ImageNormalizer(ImageNormalizationProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean keepOriginal() {
+        return properties.isKeepOriginal();
+    }
+
+    /**
+     * Cap the resolution at {@code app.ingest.normalize.max-dimension}, drop metadata and
+     * recompress losslessly. Downscaled JPEGs are the one lossy rewrite; images that cannot
+     * be decoded are passed through untouched.
+     */
+    public NormalizedImage normalize(IngestedImage upload) throws IOException {
+        ImageFormat format = upload.getFormat();
+        if (!properties.isEnabled() || format == null) {
+            return NormalizedImage.passThrough(upload, 0, 0);
+        }
+        int[] size = readDimensions(upload);
+        if (size == null) {
+            return NormalizedImage.passThrough(upload, 0, 0);
+        }
+        int width = size[0];
+        int height = size[1];
+        int maxDimension = Math.max(1, properties.getMaxDimension());
+        int longest = Math.max(width, height);
+
+        if (longest > maxDimension) {
+            BufferedImage source = upload.readImage();
+            if (source == null) {
+                return NormalizedImage.passThrough(upload, width, height);
+            }
+            double ratio = maxDimension / (double) longest;
+            int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+            int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+            BufferedImage scaled = downscale(source, targetWidth, targetHeight);
+            double scale = targetWidth / (double) width;
+            if (format == ImageFormat.JPEG && !scaled.getColorModel().hasAlpha()) {
+                // Re-encoding a lossy source as PNG would inflate it several times over
+                byte[] jpeg = encodeJpeg(scaled, properties.getJpegQuality());
+                return rewritten(upload, jpeg, ImageFormat.JPEG, scale, width, height, scaled);
+            }
+            return rewritten(upload, encodePng(scaled), ImageFormat.PNG, scale, width, height, scaled);
+        }
+
+        try {
+            switch (format) {
+                case JPEG -> {
+                    byte[] original = readAll(upload);
+                    byte[] stripped = stripJpegMetadata(original);
+                    if (stripped.length < original.length) {
+                        return rewritten(upload, stripped, ImageFormat.JPEG, 1.0, width, height, null);
+                    }
+                }
+                case PNG -> {
+                    byte[] original = readAll(upload);
+                    byte[] best = stripPngMetadata(original);
+                    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(original));
+                    if (decoded != null) {
+                        byte[] reencoded = encodePng(decoded);
+                        if (reencoded.length < best.length) {
+                            best = reencoded;
+                        }
+                    }
+                    if (best.length < original.length) {
+                        return rewritten(upload, best, ImageFormat.PNG, 1.0, width, height, decoded);
+                    }
+                }
+                case BMP, TIFF, GIF -> {
+                    BufferedImage decoded = upload.readImage();
+                    if (decoded != null) {
+                        byte[] png = encodePng(decoded);
+                        if (png.length < upload.getSize() || format == ImageFormat.TIFF) {
+                            return rewritten(upload, png, ImageFormat.PNG, 1.0, width, height, decoded);
+                        }
+                    }
+                }
+                default -> { }
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOG.debug("Lossless recompression failed; storing upload unchanged", ex);
+        }
+        return NormalizedImage.passThrough(upload, width, height);
+    }
+
+    private static NormalizedImage rewritten(IngestedImage upload, byte[] bytes, ImageFormat format, double scale,
+                                             int width, int height, BufferedImage decoded) {
+        return new NormalizedImage(upload, bytes, format, sha256(bytes), scale, width, height, decoded);
+    }
+
+    private static int[] readDimensions(IngestedImage upload) {
+        try (InputStream in = upload.openStream()) {
+            return readDimensions(in);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /** Width and height from the image header, without decoding pixels; null when unreadable. */
+    public static int[] readDimensions(InputStream in) {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            if (iis == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Downscale by repeated halving before the final bilinear step so large reductions
+     * average neighbouring pixels instead of skipping them.
+     */
+    private static BufferedImage downscale(BufferedImage src, int targetWidth, int targetHeight) {
+        int type = src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = Math.max(targetWidth, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+        return current;
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", out)) {
+            throw new IOException("No PNG writer available");
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0.1f, Math.min(1.0f, quality)));
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(IngestedImage upload) throws IOException {
+        try (InputStream in = upload.openStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Drop EXIF/XMP (APP1), IPTC and other application segments and comments from a JPEG
+     * without touching the entropy-coded data. JFIF (APP0), ICC (APP2) and Adobe (APP14)
+     * segments are kept because decoders rely on them for colour interpretation.
+     */
+    static byte[] stripJpegMetadata(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+            return jpeg;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(jpeg.length);
+        out.write(jpeg, 0, 2);
+        int pos = 2;
+        while (pos + 4 <= jpeg.length) {
+            if ((jpeg[pos] & 0xFF) != 0xFF) {
+                return jpeg;
+            }
+            int marker = jpeg[pos + 1] & 0xFF;
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            if (marker == 0xDA) {
+                out.write(jpeg, pos, jpeg.length - pos);
+                return out.toByteArray();
+            }
+            int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+            if (length < 2 || pos + 2 + length > jpeg.length) {
+                return jpeg;
+            }
+            boolean appSegment = marker >= 0xE0 && marker <= 0xEF;
+            boolean keep = !(marker == 0xFE || (appSegment && marker != 0xE0 && marker != 0xE2 && marker != 0xEE));
+            if (keep) {
+                out.write(jpeg, pos, 2 + length);
+            }
+            pos += 2 + length;
+        }
+        return jpeg;
+    }
+
+    /**
+     * Remove textual, timestamp, EXIF and other metadata chunks from a PNG, keeping critical
+     * chunks and the ancillary chunks that affect rendering.
+     */
+    static byte[] stripPngMetadata(byte[] png) {
+        if (png.length < 8) {
+            return png;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(png.length);
+        out.write(png, 0, 8);
+        int pos = 8;
+        while (pos + 12 <= png.length) {
+            long length = ((png[pos] & 0xFFL) << 24) | ((png[pos + 1] & 0xFF) << 16) | ((png[pos + 2] & 0xFF) << 8) | (png[pos + 3] & 0xFF);
+            long total = 12 + length;
+            if (pos + total > png.length) {
+                return png;
+            }
+            String type = new String(png, pos + 4, 4, StandardCharsets.ISO_8859_1);
+            boolean critical = Character.isUpperCase(type.charAt(0));
+            if (critical || PNG_RENDERING_CHUNKS.contains(type)) {
+                out.write(png, pos, (int) total);
+            }
+            pos += (int) total;
+            if ("IEND".equals(type)) {
+                return out.toByteArray();
+            }
+        }
+        return png;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
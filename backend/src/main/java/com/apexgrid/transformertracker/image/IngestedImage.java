@@ -0,0 +1,105 @@
+package com.apexgrid.transformertracker.image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An upload that has been copied off the request, hashed and format-sniffed.
+ * Content lives in a {@link SpillBuffer}; callers must close the instance when done.
+ */
+public final class IngestedImage implements AutoCloseable {
+    private final SpillBuffer content;
+    private final ImageFormat format;
+    private final String mimeType;
+    private final String sha256;
+
+    IngestedImage(SpillBuffer content, ImageFormat format, String mimeType, String sha256) {
+        this.content = content;
+        this.format = format;
+        this.mimeType = mimeType;
+        this.sha256 = sha256;
+    }
+
+    /** Sniffed container format, or {@code null} when the bytes were not recognised. */
+    public ImageFormat getFormat() {
+        return format;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /** Lower-case hex SHA-256 of the uploaded bytes. */
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return content.size();
+    }
+
+    public boolean isSpilled() {
+        return content.isSpilled();
+    }
+
+    public InputStream openStream() throws IOException {
+        return content.openStream();
+    }
+
+    public BufferedImage readImage() throws IOException {
+        try (InputStream in = content.openStream()) {
+            return ImageIO.read(in);
+        }
+    }
+
+    /**
+     * Encode the content as a {@code data:} URL. The base64 text is streamed into a single
+     * exactly-sized Latin-1 buffer, so the only full-size heap copies are that buffer and the result.
+     */
+    public String toDataUrl() throws IOException {
+        byte[] prefix = ("data:" + mimeType + ";base64,").getBytes(StandardCharsets.ISO_8859_1);
+        long encodedLength = 4 * ((content.size() + 2) / 3);
+        long total = prefix.length + encodedLength;
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IOException("Image too large to encode as data URL");
+        }
+        byte[] out = new byte[(int) total];
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        try (InputStream in = content.openStream();
+             OutputStream encoder = Base64.getEncoder().wrap(new ArraySink(out, prefix.length))) {
+            in.transferTo(encoder);
+        }
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void close() {
+        content.close();
+    }
+
+    private static final class ArraySink extends OutputStream {
+        private final byte[] target;
+        private int position;
+
+        ArraySink(byte[] target, int position) {
+            this.target = target;
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) {
+            target[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            System.arraycopy(b, off, target, position, len);
+            position += len;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.apexgrid.transformertracker.image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Result of {@link ImageNormalizer}: either rewritten bytes or a pass-through of the ingested upload.
+ */
+public final class NormalizedImage {
+    private final IngestedImage source;
+    private final byte[] bytes;
+    private final ImageFormat format;
+    private final String sha256;
+    private final double scale;
+    private final int originalWidth;
+    private final int originalHeight;
+    private BufferedImage decoded;
+
+    NormalizedImage(IngestedImage source, byte[] bytes, ImageFormat format, String sha256,
+                    double scale, int originalWidth, int originalHeight, BufferedImage decoded) {
+        this.source = source;
+        this.bytes = bytes;
+        this.format = format;
+        this.sha256 = sha256;
+        this.scale = scale;
+        this.originalWidth = originalWidth;
+        this.originalHeight = originalHeight;
+        this.decoded = decoded;
+    }
+
+    static NormalizedImage passThrough(IngestedImage source, int originalWidth, int originalHeight) {
+        return new NormalizedImage(source, null, source.getFormat(), source.getSha256(), 1.0, originalWidth, originalHeight, null);
+    }
+
+    /** True when the stored bytes differ from the upload. */
+    public boolean isRewritten() {
+        return bytes != null;
+    }
+
+    public String getMimeType() {
+        return format != null ? format.getMimeType() : source.getMimeType();
+    }
+
+    /** SHA-256 of the bytes that will be stored. */
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * Stored width divided by original width. Divide stored box coordinates by this
+     * value to map them back onto the original upload.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    public int getOriginalWidth() {
+        return originalWidth;
+    }
+
+    public int getOriginalHeight() {
+        return originalHeight;
+    }
+
+    public String toDataUrl() throws IOException {
+        if (bytes == null) {
+            return source.toDataUrl();
+        }
+        byte[] prefix = ("data:" + getMimeType() + ";base64,").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] encoded = Base64.getEncoder().encode(bytes);
+        byte[] out = new byte[prefix.length + encoded.length];
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        System.arraycopy(encoded, 0, out, prefix.length, encoded.length);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    public BufferedImage decode() throws IOException {
+        if (decoded == null) {
+            decoded = bytes != null ? ImageIO.read(new ByteArrayInputStream(bytes)) : source.readImage();
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,129 @@
+package com.apexgrid.transformertracker.image;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Write-once byte buffer that keeps at most {@code memoryCeiling} bytes on the heap and
+ * transparently moves its content to a temporary file once that ceiling is exceeded.
+ */
+public final class SpillBuffer implements Closeable {
+    private final int memoryCeiling;
+    private final Path spillDirectory;
+
+    private byte[] memory;
+    private int count;
+    private Path file;
+    private OutputStream fileOut;
+    private long size;
+    private boolean sealed;
+
+    public SpillBuffer(long memoryCeiling, Path spillDirectory, long expectedSize) {
+        this.memoryCeiling = (int) Math.max(0, Math.min(memoryCeiling, Integer.MAX_VALUE - 8));
+        this.spillDirectory = spillDirectory;
+        // Size the heap buffer from the declared upload size so small uploads never re-grow it
+        int initial = expectedSize > 0 && expectedSize <= this.memoryCeiling ? (int) expectedSize : Math.min(8192, this.memoryCeiling);
+        this.memory = new byte[Math.max(initial, 0)];
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (sealed) {
+            throw new IllegalStateException("SpillBuffer is sealed");
+        }
+        if (len <= 0) {
+            return;
+        }
+        if (fileOut == null && (long) count + len > memoryCeiling) {
+            spill();
+        }
+        if (fileOut != null) {
+            fileOut.write(b, off, len);
+        } else {
+            if (count + len > memory.length) {
+                int grown = (int) Math.min(memoryCeiling, Math.max((long) memory.length * 2, (long) count + len));
+                memory = Arrays.copyOf(memory, grown);
+            }
+            System.arraycopy(b, off, memory, count, len);
+            count += len;
+        }
+        size += len;
+    }
+
+    /** Writes into this buffer; closing the stream does not seal it. */
+    public OutputStream outputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                SpillBuffer.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                SpillBuffer.this.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Finish writing; the content can be read back any number of times afterwards.
+     */
+    public void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        sealed = true;
+        if (fileOut != null) {
+            fileOut.close();
+            fileOut = null;
+        }
+    }
+
+    public InputStream openStream() throws IOException {
+        if (!sealed) {
+            throw new IllegalStateException("SpillBuffer must be sealed before reading");
+        }
+        if (file != null) {
+            return Files.newInputStream(file);
+        }
+        return new ByteArrayInputStream(memory, 0, count);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    private void spill() throws IOException {
+        file = spillDirectory != null
+                ? Files.createTempFile(spillDirectory, "tt-ingest-", ".bin")
+                : Files.createTempFile("tt-ingest-", ".bin");
+        fileOut = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        fileOut.write(memory, 0, count);
+        memory = new byte[0];
+        count = 0;
+    }
+
+    @Override
+    public void close() {
+        memory = new byte[0];
+        count = 0;
+        if (fileOut != null) {
+            try { fileOut.close(); } catch (IOException ignored) { }
+            fileOut = null;
+        }
+        if (file != null) {
+            try { Files.deleteIfExists(file); } catch (IOException ignored) { }
+            file = null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.apexgrid.transformertracker.model;
+
+import java.time.Instant;
+
+/**
+ * Baseline metadata without the image payload.
+ */
+public record BaselineSummary(
+        String id,
+        String weather,
+        int version,
+        String imageHash,
+        Double imageScale,
+        String uploadedBy,
+        Instant uploadedAt
+) { }
@@ -0,0 +1,21 @@
+package com.apexgrid.transformertracker.model;
+
+import java.time.Instant;
+
+/**
+ * A box found by a fleet-wide search, with just enough of its inspection to link back to it.
+ */
+public record BoxMatch(
+        String boxId,
+        String inspectionId,
+        String inspectionNumber,
+        String transformerNumber,
+        double x,
+        double y,
+        double w,
+        double h,
+        String faultType,
+        Double severity,
+        String annotatedBy,
+        Instant createdAt
+) { }
@@ -0,0 +1,54 @@
+package com.apexgrid.transformertracker.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * One write to an inspection, transformer, maintenance record or model parameter, inserted in
+ * the transaction that made it (see {@code ChangeLogRecorder}). {@code position} is null until
+ * the relay numbers committed rows in the order it sees them; the change feed only serves
+ * numbered rows, so a cursor never skips a row whose transaction committed late. Read and
+ * written through JDBC; the mapping only describes the table.
+ */
+@Entity
+@Table(name = "change_log",
+        uniqueConstraints = @UniqueConstraint(name = "change_log_position_key", columnNames = "position"))
+public class ChangeLogEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "position")
+    private Long position;
+
+    // inspection, transformer, maintenance-record or parameter
+    @Column(name = "entity", nullable = false, length = 32)
+    private String entity;
+
+    // Maintenance records are keyed by their inspection, parameters by their key
+    @Column(name = "entity_id", nullable = false)
+    private String entityId;
+
+    @Column(name = "transformer_id")
+    private String transformerId;
+
+    // created, updated, baselines or deleted
+    @Column(name = "op", nullable = false, length = 16)
+    private String op;
+
+    // The row version after the write; null for deletes and unversioned entities
+    @Column(name = "version")
+    private Long version;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    public Long getId() { return id; }
+    public Long getPosition() { return position; }
+    public String getEntity() { return entity; }
+    public String getEntityId() { return entityId; }
+    public String getTransformerId() { return transformerId; }
+    public String getOp() { return op; }
+    public Long getVersion() { return version; }
+    public Instant getChangedAt() { return changedAt; }
+}
@@ -0,0 +1,28 @@
+package com.apexgrid.transformertracker.model;
+
+import jakarta.persistence.*;
+
+/**
+ * The single row ({@code id = 1}) the change-log relay locks while it numbers entries, so relays
+ * on different instances take turns and positions only ever grow in commit order. Read and
+ * written through JDBC; the mapping only describes the table.
+ */
+@Entity
+@Table(name = "change_log_state")
+public class ChangeLogState {
+    @Id
+    @Column(name = "id")
+    private int id;
+
+    // Highest position handed out
+    @Column(name = "last_position", nullable = false)
+    private long lastPosition;
+
+    // Highest position pruned; cursors below it can no longer be served
+    @Column(name = "pruned_through", nullable = false)
+    private long prunedThrough;
+
+    public int getId() { return id; }
+    public long getLastPosition() { return lastPosition; }
+    public long getPrunedThrough() { return prunedThrough; }
+}
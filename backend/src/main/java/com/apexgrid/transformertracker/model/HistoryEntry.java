@@ -0,0 +1,21 @@
+package com.apexgrid.transformertracker.model;
+
+import java.time.Instant;
+
+/**
+ * A fully reconstructed history snapshot. Every JSON field has the same shape as the matching
+ * current-state array on {@link Inspection} and is null when that snapshot had no value.
+ */
+public record HistoryEntry(
+        int seq,
+        Instant archivedAt,
+        String archivedBy,
+        String boxIds,
+        String boundingBoxes,
+        String faultTypes,
+        String annotatedBy,
+        String severity,
+        String comments,
+        String recentStatus,
+        String boxCreatedAt
+) { }
@@ -1,10 +1,30 @@
 package com.apexgrid.transformertracker.model;
 
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec.BoxColumn;
+import com.apexgrid.transformertracker.annotation.JsonText;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
-@Table(name = "inspections")
+@Table(name = "inspections",
+        indexes = {
+                @Index(name = "idx_inspections_content_updated", columnList = "contentupdatedat, id"),
+                // Keyset list pages: each filter column ahead of the sort key and id
+                @Index(name = "idx_inspections_date", columnList = "inspecteddate, id"),
+                @Index(name = "idx_inspections_transformer_date", columnList = "transformer_id, inspecteddate, id"),
+                @Index(name = "idx_inspections_status_date", columnList = "status, inspecteddate, id")
+        })
+// Sparse reads (fields=...) name the properties to write; everything else writes them all
+@JsonFilter("inspection")
 public class Inspection {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -39,78 +59,44 @@ public class Inspection {
     private String imageUploadedBy;
     @Column(name = "imageuploadedat")
     private Instant imageUploadedAt;
+    // SHA-256 of the uploaded image bytes, computed while the upload is ingested
+    @Column(name = "imagehash", length = 64)
+    private String imageHash;
+    // Stored width / uploaded width after ingest normalization; divide box coordinates by it to map back
+    @Column(name = "imagescale")
+    private Double imageScale;
+    // Untouched upload, only kept when app.ingest.normalize.keep-original is set and the image was rewritten
+    @Column(name = "originalimageurl", columnDefinition = "text")
+    @JsonIgnore
+    private String originalImageUrl;
     @Column(name = "favourite")
     private boolean favourite = false;
-
-    // Persist detected bounding boxes from analysis as JSON (array of [x,y,w,h])
-    // Store as text in DB to avoid dialect-specific JSON types
-    @Column(name = "boundingboxes", columnDefinition = "text")
-    private String boundingBoxes;
-
-
-    // Persist per-box fault types corresponding to boundingBoxes order as JSON array of strings
-    @Column(name = "faulttypes", columnDefinition = "text")
-    private String faultTypes;
-
-    // History of analyses: arrays of snapshots aligned by index.
-    // Each entry in boundingBoxHistory is a JSON array of boxes (same shape as boundingBoxes)
-    @Column(name = "boundingboxhistory", columnDefinition = "text")
-    private String boundingBoxHistory;
-
-    // Each entry in faultTypeHistory is a JSON array of strings (same order as its corresponding bounding boxes)
-    @Column(name = "faulttypehistory", columnDefinition = "text")
-    private String faultTypeHistory;
-
-    // Each entry in annotatedByHistory is a string: "AI" or the username who edited boxes
-    // Shape: outer array of snapshots, each inner array aligns 1:1 with faultTypes/boundingBoxes
-    @Column(name = "annotatedbyhistory", columnDefinition = "text")
-    private String annotatedByHistory;
-
-    // Current per-box annotation source aligned with faultTypes/boundingBoxes (e.g., ["AI", "john", ...])
-    @Column(name = "annotatedby", columnDefinition = "text")
-    private String annotatedBy;
-
-    // Per-box severity scores aligned with boundingBoxes order. JSON array of numbers (e.g., [0.75, 0.32, null, ...])
-    // Only faults annotated by AI have severity values; user-added faults have null severity
-    @Column(name = "severity", columnDefinition = "text")
-    private String severity;
-
-    // Optional per-box comments entered by users
-    @Column(name = "comment", columnDefinition = "text")
-    private String comment;
-
-    // Per-box recent status (e.g., added/edited) aligned with boundingBoxes order
-    @Column(name = "recentstatus", columnDefinition = "text")
-    private String recentStatus;
-
-    // History of per-box severity arrays aligned with boundingBoxHistory/faultTypeHistory snapshots
-    @Column(name = "severityhistory", columnDefinition = "text")
-    private String severityHistory;
-
-    // History of per-box comments aligned with boundingBoxHistory snapshots
-    @Column(name = "commenthistory", columnDefinition = "text")
-    private String commentHistory;
-
-    // History of timestamps (ISO-8601 strings) when each snapshot was archived
-    @Column(name = "timestamphistory", columnDefinition = "text")
-    private String timestampHistory;
-
-    // History of per-box recent statuses aligned with boundingBoxHistory snapshots
-    @Column(name = "recentstatushistory", columnDefinition = "text")
-    private String recentStatusHistory;
-
-    // Per-box timestamps (ISO-8601) aligned with boundingBoxes order
-    @Column(name = "boxcreatedat", columnDefinition = "text")
-    private String boxCreatedAt;
-
-    // History of per-box created-at arrays aligned with boundingBoxHistory snapshots
-    @Column(name = "boxcreatedathistory", columnDefinition = "text")
-    private String boxCreatedAtHistory;
-
+    // Last change to the image or the current boxes, set by the box mutators below and on upload;
+    // incremental dataset exports select on it
+    @Column(name = "contentupdatedat")
+    @JsonIgnore
+    private Instant contentUpdatedAt;
+
+    // Current boxes, one row each in inspection_box. The parallel JSON arrays the API exposes
+    // (boundingBoxes, faultTypes, annotatedBy, ...) are derived from this list.
+    @OneToMany(mappedBy = "inspection", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @OrderBy("position ASC")
+    @JsonIgnore
+    private List<InspectionBox> boxes = new ArrayList<>();
+
+    // Optimistic lock and ETag; every box mutator touches contentUpdatedAt, so box edits bump it too
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long version;
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Transformer getTransformer() { return transformer; }
     public void setTransformer(Transformer transformer) { this.transformer = transformer; }
 
@@ -147,55 +133,83 @@ public class Inspection {
     public Instant getImageUploadedAt() { return imageUploadedAt; }
     public void setImageUploadedAt(Instant imageUploadedAt) { this.imageUploadedAt = imageUploadedAt; }
 
-    public boolean isFavourite() { return favourite; }
-    public void setFavourite(boolean favourite) { this.favourite = favourite; }
-
-    public String getBoundingBoxes() { return boundingBoxes; }
-    public void setBoundingBoxes(String boundingBoxes) { this.boundingBoxes = boundingBoxes; }
+    public String getImageHash() { return imageHash; }
+    public void setImageHash(String imageHash) { this.imageHash = imageHash; }
 
-    // overall faultType column removed; only per-box faultTypes are stored
-
-    public String getFaultTypes() { return faultTypes; }
-    public void setFaultTypes(String faultTypes) { this.faultTypes = faultTypes; }
-
-    // analyzed image dimensions removed; overlay will infer from image at runtime
+    public Double getImageScale() { return imageScale; }
+    public void setImageScale(Double imageScale) { this.imageScale = imageScale; }
 
-    public String getBoundingBoxHistory() { return boundingBoxHistory; }
-    public void setBoundingBoxHistory(String boundingBoxHistory) { this.boundingBoxHistory = boundingBoxHistory; }
+    public String getOriginalImageUrl() { return originalImageUrl; }
+    public void setOriginalImageUrl(String originalImageUrl) { this.originalImageUrl = originalImageUrl; }
 
-    public String getFaultTypeHistory() { return faultTypeHistory; }
-    public void setFaultTypeHistory(String faultTypeHistory) { this.faultTypeHistory = faultTypeHistory; }
-
-    public String getAnnotatedByHistory() { return annotatedByHistory; }
-    public void setAnnotatedByHistory(String annotatedByHistory) { this.annotatedByHistory = annotatedByHistory; }
-
-    public String getAnnotatedBy() { return annotatedBy; }
-    public void setAnnotatedBy(String annotatedBy) { this.annotatedBy = annotatedBy; }
-
-    public String getSeverity() { return severity; }
-    public void setSeverity(String severity) { this.severity = severity; }
-
-    public String getComment() { return comment; }
-    public void setComment(String comment) { this.comment = comment; }
+    public boolean isFavourite() { return favourite; }
+    public void setFavourite(boolean favourite) { this.favourite = favourite; }
 
-    public String getRecentStatus() { return recentStatus; }
-    public void setRecentStatus(String recentStatus) { this.recentStatus = recentStatus; }
+    public Instant getContentUpdatedAt() { return contentUpdatedAt; }
+    public void setContentUpdatedAt(Instant contentUpdatedAt) { this.contentUpdatedAt = contentUpdatedAt; }
 
-    public String getSeverityHistory() { return severityHistory; }
-    public void setSeverityHistory(String severityHistory) { this.severityHistory = severityHistory; }
+    @JsonIgnore
+    public List<InspectionBox> getBoxes() { return boxes; }
 
-    public String getCommentHistory() { return commentHistory; }
-    public void setCommentHistory(String commentHistory) { this.commentHistory = commentHistory; }
+    // Read-only views of the boxes as parallel JSON arrays (null when there are no boxes). JSON responses
+    // carry them as strings; CBOR and Smile as native arrays
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getBoundingBoxes() { return AnnotationStateCodec.toJson(boxes, BoxColumn.BOUNDING_BOXES); }
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getBoxIds() { return AnnotationStateCodec.toJson(boxes, BoxColumn.BOX_IDS); }
 
-    public String getTimestampHistory() { return timestampHistory; }
-    public void setTimestampHistory(String timestampHistory) { this.timestampHistory = timestampHistory; }
+    // overall faultType column removed; only per-box faultTypes are stored
 
-    public String getRecentStatusHistory() { return recentStatusHistory; }
-    public void setRecentStatusHistory(String recentStatusHistory) { this.recentStatusHistory = recentStatusHistory; }
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getFaultTypes() { return AnnotationStateCodec.toJson(boxes, BoxColumn.FAULT_TYPES); }
 
-    public String getBoxCreatedAt() { return boxCreatedAt; }
-    public void setBoxCreatedAt(String boxCreatedAt) { this.boxCreatedAt = boxCreatedAt; }
+    // analyzed image dimensions removed; overlay will infer from image at runtime
 
-    public String getBoxCreatedAtHistory() { return boxCreatedAtHistory; }
-    public void setBoxCreatedAtHistory(String boxCreatedAtHistory) { this.boxCreatedAtHistory = boxCreatedAtHistory; }
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getAnnotatedBy() { return AnnotationStateCodec.toJson(boxes, BoxColumn.ANNOTATED_BY); }
+
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getSeverity() { return AnnotationStateCodec.toJson(boxes, BoxColumn.SEVERITY); }
+
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getComment() { return AnnotationStateCodec.toJson(boxes, BoxColumn.COMMENTS); }
+
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getRecentStatus() { return AnnotationStateCodec.toJson(boxes, BoxColumn.RECENT_STATUS); }
+
+    @JsonSerialize(using = JsonText.Embedded.class)
+    public String getBoxCreatedAt() { return AnnotationStateCodec.toJson(boxes, BoxColumn.BOX_CREATED_AT); }
+
+    /** Append a box after the current last one. */
+    public void addBox(InspectionBox box) {
+        int position = boxes.isEmpty() ? 0 : boxes.get(boxes.size() - 1).getPosition() + 1;
+        box.setInspection(this);
+        box.setPosition(position);
+        boxes.add(box);
+        contentUpdatedAt = Instant.now();
+    }
+
+    /** Remove the box at a list index; remaining boxes keep their positions. */
+    public InspectionBox removeBoxAt(int index) {
+        contentUpdatedAt = Instant.now();
+        return boxes.remove(index);
+    }
+
+    /**
+     * Make {@code next} the current boxes in that order. Boxes already attached keep their ids,
+     * and positions are only rewritten where they changed.
+     */
+    public void replaceBoxes(List<InspectionBox> next) {
+        List<InspectionBox> ordered = new ArrayList<>(next);
+        boxes.clear();
+        for (int idx = 0; idx < ordered.size(); idx++) {
+            InspectionBox box = ordered.get(idx);
+            box.setInspection(this);
+            if (box.getPosition() != idx) {
+                box.setPosition(idx);
+            }
+            boxes.add(box);
+        }
+        contentUpdatedAt = Instant.now();
+    }
 }
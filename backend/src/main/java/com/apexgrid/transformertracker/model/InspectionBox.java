@@ -0,0 +1,113 @@
+package com.apexgrid.transformertracker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "inspection_box",
+        indexes = {
+                @Index(name = "idx_inspection_box_inspection", columnList = "inspection_id, position"),
+                @Index(name = "idx_inspection_box_fault_severity", columnList = "faulttype, severity")
+        })
+public class InspectionBox {
+    // Stable across edits; bulk updates reuse the id of the box they matched
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "inspection_id", nullable = false)
+    @JsonIgnore
+    private Inspection inspection;
+
+    // Sort key within the inspection; gaps are allowed so a delete never renumbers siblings
+    @Column(name = "position", nullable = false)
+    private int position;
+
+    @Column(name = "x", nullable = false)
+    private double x;
+
+    @Column(name = "y", nullable = false)
+    private double y;
+
+    @Column(name = "w", nullable = false)
+    private double w;
+
+    @Column(name = "h", nullable = false)
+    private double h;
+
+    @Column(name = "faulttype", length = 128)
+    private String faultType;
+
+    // Only AI-detected boxes carry a severity score
+    @Column(name = "severity")
+    private Double severity;
+
+    // "AI" or the username that drew/edited the box
+    @Column(name = "annotatedby")
+    private String annotatedBy;
+
+    @Column(name = "comment", columnDefinition = "text")
+    private String comment;
+
+    // added / edited relative to the previous snapshot, null when unchanged
+    @Column(name = "recentstatus", length = 16)
+    private String recentStatus;
+
+    @Column(name = "createdat")
+    private Instant createdAt;
+
+    public InspectionBox() { }
+
+    public InspectionBox(double x, double y, double w, double h) {
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+    }
+
+    /** Whether a fault type names an actual fault, as opposed to blank or "none". */
+    public static boolean isFault(String faultType) {
+        return faultType != null && !faultType.isBlank() && !"none".equalsIgnoreCase(faultType.trim());
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Inspection getInspection() { return inspection; }
+    public void setInspection(Inspection inspection) { this.inspection = inspection; }
+
+    public int getPosition() { return position; }
+    public void setPosition(int position) { this.position = position; }
+
+    public double getX() { return x; }
+    public void setX(double x) { this.x = x; }
+
+    public double getY() { return y; }
+    public void setY(double y) { this.y = y; }
+
+    public double getW() { return w; }
+    public void setW(double w) { this.w = w; }
+
+    public double getH() { return h; }
+    public void setH(double h) { this.h = h; }
+
+    public String getFaultType() { return faultType; }
+    public void setFaultType(String faultType) { this.faultType = faultType; }
+
+    public Double getSeverity() { return severity; }
+    public void setSeverity(Double severity) { this.severity = severity; }
+
+    public String getAnnotatedBy() { return annotatedBy; }
+    public void setAnnotatedBy(String annotatedBy) { this.annotatedBy = annotatedBy; }
+
+    public String getComment() { return comment; }
+    public void setComment(String comment) { this.comment = comment; }
+
+    public String getRecentStatus() { return recentStatus; }
+    public void setRecentStatus(String recentStatus) { this.recentStatus = recentStatus; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
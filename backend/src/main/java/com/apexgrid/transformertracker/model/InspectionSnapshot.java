@@ -0,0 +1,123 @@
+package com.apexgrid.transformertracker.model;
+
+import com.apexgrid.transformertracker.history.CompressedText;
+import com.apexgrid.transformertracker.history.CompressedTextConverter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * One archived state of an inspection's boxes. Edits only ever insert rows; the retention job
+ * removes old ones (re-encoding the survivors) and the rest go with their inspection. A
+ * keyframe row holds the full state, each JSON column in the same shape as the matching
+ * current-state array on {@link Inspection}; a delta row only holds {@code delta} (box-level
+ * changes from the previous snapshot) and {@code recentStatus}.
+ */
+@Entity
+@Table(name = "inspection_snapshot",
+        uniqueConstraints = @UniqueConstraint(name = "inspection_snapshot_key",
+                columnNames = {"inspection_id", "seq"}))
+public class InspectionSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "inspection_id", nullable = false)
+    @JsonIgnore
+    private Inspection inspection;
+
+    // Order within the inspection; migrated legacy snapshots are numbered below existing ones
+    @Column(name = "seq", nullable = false)
+    private int seq;
+
+    @Column(name = "archivedat")
+    private Instant archivedAt;
+
+    // "AI" or the username whose edit replaced this state
+    @Column(name = "archivedby")
+    private String archivedBy;
+
+    // Keyframe columns, null on delta rows
+    @Column(name = "boxids", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText boxIds;
+
+    @Column(name = "boundingboxes", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText boundingBoxes;
+
+    @Column(name = "faulttypes", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText faultTypes;
+
+    @Column(name = "annotatedby", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText annotatedBy;
+
+    @Column(name = "severity", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText severity;
+
+    @Column(name = "comments", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText comments;
+
+    // Null unless at least one box carried an added/edited flag
+    @Column(name = "recentstatus", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText recentStatus;
+
+    @Column(name = "boxcreatedat", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText boxCreatedAt;
+
+    // Changes from the previous snapshot's state (see SnapshotDeltaCodec); null on keyframes
+    @Column(name = "delta", columnDefinition = "bytea")
+    @Convert(converter = CompressedTextConverter.class)
+    private CompressedText delta;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Inspection getInspection() { return inspection; }
+    public void setInspection(Inspection inspection) { this.inspection = inspection; }
+
+    public int getSeq() { return seq; }
+    public void setSeq(int seq) { this.seq = seq; }
+
+    public Instant getArchivedAt() { return archivedAt; }
+    public void setArchivedAt(Instant archivedAt) { this.archivedAt = archivedAt; }
+
+    public String getArchivedBy() { return archivedBy; }
+    public void setArchivedBy(String archivedBy) { this.archivedBy = archivedBy; }
+
+    public String getBoxIds() { return CompressedText.textOf(boxIds); }
+    public void setBoxIds(String boxIds) { this.boxIds = CompressedText.of(boxIds); }
+
+    public String getBoundingBoxes() { return CompressedText.textOf(boundingBoxes); }
+    public void setBoundingBoxes(String boundingBoxes) { this.boundingBoxes = CompressedText.of(boundingBoxes); }
+
+    public String getFaultTypes() { return CompressedText.textOf(faultTypes); }
+    public void setFaultTypes(String faultTypes) { this.faultTypes = CompressedText.of(faultTypes); }
+
+    public String getAnnotatedBy() { return CompressedText.textOf(annotatedBy); }
+    public void setAnnotatedBy(String annotatedBy) { this.annotatedBy = CompressedText.of(annotatedBy); }
+
+    public String getSeverity() { return CompressedText.textOf(severity); }
+    public void setSeverity(String severity) { this.severity = CompressedText.of(severity); }
+
+    public String getComments() { return CompressedText.textOf(comments); }
+    public void setComments(String comments) { this.comments = CompressedText.of(comments); }
+
+    public String getRecentStatus() { return CompressedText.textOf(recentStatus); }
+    public void setRecentStatus(String recentStatus) { this.recentStatus = CompressedText.of(recentStatus); }
+
+    public String getBoxCreatedAt() { return CompressedText.textOf(boxCreatedAt); }
+    public void setBoxCreatedAt(String boxCreatedAt) { this.boxCreatedAt = CompressedText.of(boxCreatedAt); }
+
+    public String getDelta() { return CompressedText.textOf(delta); }
+    public void setDelta(String delta) { this.delta = CompressedText.of(delta); }
+
+    public boolean isKeyframe() { return delta == null; }
+}
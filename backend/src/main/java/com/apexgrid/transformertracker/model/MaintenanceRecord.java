@@ -46,6 +46,11 @@ public class MaintenanceRecord {
     @JsonIgnore
     private Inspection inspection;
 
+    // Optimistic lock and ETag
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     public String getId() {
         return id;
     }
@@ -54,6 +59,14 @@ public class MaintenanceRecord {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getTimestamp() {
         return timestamp;
     }
@@ -1,13 +1,23 @@
 package com.apexgrid.transformertracker.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Entity
-@Table(name = "transformers")
+@Table(name = "transformers",
+        indexes = {
+                // Keyset list pages; transformernumber alone is covered by its unique index
+                @Index(name = "idx_transformers_region", columnList = "region, transformernumber, id"),
+                @Index(name = "idx_transformers_type", columnList = "type, transformernumber, id")
+        })
+// Lets a fields=... read limit the properties written
+@JsonFilter("transformer")
 public class Transformer {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -24,39 +34,53 @@ public class Transformer {
     @Column(length = 2048)
     private String location;
 
-    // Store base64 data URLs as text instead of LOB to prevent streaming issues in Postgres
-    @Column(name = "sunnyimage", columnDefinition = "text")
+    @Column(name = "uploadedby")
+    private String uploadedBy;
+
+    private boolean favourite = false;
+
+    // Optimistic lock and ETag
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long version;
+
+    @OneToMany(mappedBy = "transformer", cascade = CascadeType.REMOVE, orphanRemoval = true)
+    @JsonIgnore // avoid recursion; the frontend fetches inspections separately
+    private List<Inspection> inspections = new ArrayList<>();
+
+    // Legacy per-weather baseline view. Images live in transformer_baselines; these fields are only
+    // filled on single-transformer reads and accepted on create/update for older clients.
+    @Transient
     private String sunnyImage;
-    @Column(name = "cloudyimage", columnDefinition = "text")
+    @Transient
     private String cloudyImage;
-    @Column(name = "windyimage", columnDefinition = "text")
+    @Transient
     private String windyImage;
-
-    @Column(name = "uploadedby")
-    private String uploadedBy;
-    @Column(name = "sunnyimageuploadedby")
+    @Transient
     private String sunnyImageUploadedBy;
-    @Column(name = "cloudyimageuploadedby")
+    @Transient
     private String cloudyImageUploadedBy;
-    @Column(name = "windyimageuploadedby")
+    @Transient
     private String windyImageUploadedBy;
-
-    @Column(name = "sunnyimageuploadedat")
+    @Transient
     private Instant sunnyImageUploadedAt;
-    @Column(name = "cloudyimageuploadedat")
+    @Transient
     private Instant cloudyImageUploadedAt;
-    @Column(name = "windyimageuploadedat")
+    @Transient
     private Instant windyImageUploadedAt;
 
-    private boolean favourite = false;
-
-    @OneToMany(mappedBy = "transformer", cascade = CascadeType.REMOVE, orphanRemoval = true)
-    @JsonIgnore // avoid recursion; the frontend fetches inspections separately
-    private List<Inspection> inspections = new ArrayList<>();
+    // Weather -> image explicitly present in a request body (null means "remove")
+    @Transient
+    @JsonIgnore
+    private final Map<String, String> submittedBaselines = new LinkedHashMap<>();
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public String getRegion() { return region; }
     public void setRegion(String region) { this.region = region; }
 
@@ -72,39 +96,45 @@ public class Transformer {
     public String getLocation() { return location; }
     public void setLocation(String location) { this.location = location; }
 
+    public String getUploadedBy() { return uploadedBy; }
+    public void setUploadedBy(String uploadedBy) { this.uploadedBy = uploadedBy; }
+
+    public boolean isFavourite() { return favourite; }
+    public void setFavourite(boolean favourite) { this.favourite = favourite; }
+
+    public List<Inspection> getInspections() { return inspections; }
+    public void setInspections(List<Inspection> inspections) { this.inspections = inspections; }
+
     public String getSunnyImage() { return sunnyImage; }
-    public void setSunnyImage(String sunnyImage) { this.sunnyImage = sunnyImage; }
+    public void setSunnyImage(String sunnyImage) { this.sunnyImage = sunnyImage; submittedBaselines.put("sunny", sunnyImage); }
 
     public String getCloudyImage() { return cloudyImage; }
-    public void setCloudyImage(String cloudyImage) { this.cloudyImage = cloudyImage; }
+    public void setCloudyImage(String cloudyImage) { this.cloudyImage = cloudyImage; submittedBaselines.put("cloudy", cloudyImage); }
 
+    // "windy" is the historical name of the rainy-weather baseline
     public String getWindyImage() { return windyImage; }
-    public void setWindyImage(String windyImage) { this.windyImage = windyImage; }
-
-    public String getUploadedBy() { return uploadedBy; }
-    public void setUploadedBy(String uploadedBy) { this.uploadedBy = uploadedBy; }
+    public void setWindyImage(String windyImage) { this.windyImage = windyImage; submittedBaselines.put("rainy", windyImage); }
 
     public String getSunnyImageUploadedBy() { return sunnyImageUploadedBy; }
-    public void setSunnyImageUploadedBy(String sunnyImageUploadedBy) { this.sunnyImageUploadedBy = sunnyImageUploadedBy; }
-
     public String getCloudyImageUploadedBy() { return cloudyImageUploadedBy; }
-    public void setCloudyImageUploadedBy(String cloudyImageUploadedBy) { this.cloudyImageUploadedBy = cloudyImageUploadedBy; }
-
     public String getWindyImageUploadedBy() { return windyImageUploadedBy; }
-    public void setWindyImageUploadedBy(String windyImageUploadedBy) { this.windyImageUploadedBy = windyImageUploadedBy; }
 
     public Instant getSunnyImageUploadedAt() { return sunnyImageUploadedAt; }
-    public void setSunnyImageUploadedAt(Instant sunnyImageUploadedAt) { this.sunnyImageUploadedAt = sunnyImageUploadedAt; }
-
     public Instant getCloudyImageUploadedAt() { return cloudyImageUploadedAt; }
-    public void setCloudyImageUploadedAt(Instant cloudyImageUploadedAt) { this.cloudyImageUploadedAt = cloudyImageUploadedAt; }
-
     public Instant getWindyImageUploadedAt() { return windyImageUploadedAt; }
-    public void setWindyImageUploadedAt(Instant windyImageUploadedAt) { this.windyImageUploadedAt = windyImageUploadedAt; }
 
-    public boolean isFavourite() { return favourite; }
-    public void setFavourite(boolean favourite) { this.favourite = favourite; }
-
-    public List<Inspection> getInspections() { return inspections; }
-    public void setInspections(List<Inspection> inspections) { this.inspections = inspections; }
+    @JsonIgnore
+    public Map<String, String> getSubmittedBaselines() { return submittedBaselines; }
+
+    /**
+     * Fill the legacy view from a stored baseline without marking it as submitted.
+     */
+    public void applyBaselineView(String weather, String image, String uploadedBy, Instant uploadedAt) {
+        switch (weather) {
+            case "sunny" -> { sunnyImage = image; sunnyImageUploadedBy = uploadedBy; sunnyImageUploadedAt = uploadedAt; }
+            case "cloudy" -> { cloudyImage = image; cloudyImageUploadedBy = uploadedBy; cloudyImageUploadedAt = uploadedAt; }
+            case "rainy" -> { windyImage = image; windyImageUploadedBy = uploadedBy; windyImageUploadedAt = uploadedAt; }
+            default -> { }
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package com.apexgrid.transformertracker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "transformer_baselines",
+        uniqueConstraints = @UniqueConstraint(name = "transformer_baselines_key",
+                columnNames = {"transformer_id", "weather", "version"}),
+        indexes = @Index(name = "idx_transformer_baselines_lookup", columnList = "transformer_id, weather, version"))
+public class TransformerBaseline {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    // Lazy so loading a baseline never drags the transformer (and vice versa)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "transformer_id", nullable = false)
+    @JsonIgnore
+    private Transformer transformer;
+
+    // Normalized weather key (e.g. sunny, cloudy, rainy)
+    @Column(name = "weather", nullable = false, length = 32)
+    private String weather;
+
+    // 1-based, increases with every upload for the same transformer and weather
+    @Column(name = "version", nullable = false)
+    private int version;
+
+    // Base64 data URL, same storage convention as inspection images
+    @Column(name = "imageurl", nullable = false, columnDefinition = "text")
+    private String imageUrl;
+
+    // Untouched upload, only kept when app.ingest.normalize.keep-original is set
+    @Column(name = "originalimageurl", columnDefinition = "text")
+    @JsonIgnore
+    private String originalImageUrl;
+
+    @Column(name = "imagehash", length = 64)
+    private String imageHash;
+
+    @Column(name = "imagescale")
+    private Double imageScale;
+
+    @Column(name = "uploadedby")
+    private String uploadedBy;
+
+    @Column(name = "uploadedat", nullable = false)
+    private Instant uploadedAt;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Transformer getTransformer() { return transformer; }
+    public void setTransformer(Transformer transformer) { this.transformer = transformer; }
+
+    public String getWeather() { return weather; }
+    public void setWeather(String weather) { this.weather = weather; }
+
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
+    public String getImageUrl() { return imageUrl; }
+    public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+
+    public String getOriginalImageUrl() { return originalImageUrl; }
+    public void setOriginalImageUrl(String originalImageUrl) { this.originalImageUrl = originalImageUrl; }
+
+    public String getImageHash() { return imageHash; }
+    public void setImageHash(String imageHash) { this.imageHash = imageHash; }
+
+    public Double getImageScale() { return imageScale; }
+    public void setImageScale(Double imageScale) { this.imageScale = imageScale; }
+
+    public String getUploadedBy() { return uploadedBy; }
+    public void setUploadedBy(String uploadedBy) { this.uploadedBy = uploadedBy; }
+
+    public Instant getUploadedAt() { return uploadedAt; }
+    public void setUploadedAt(Instant uploadedAt) { this.uploadedAt = uploadedAt; }
+}
@@ -0,0 +1,296 @@
+package com.apexgrid.transformertracker.push;
+
+import com.apexgrid.transformertracker.annotation.AnnotationState;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec.BoxColumn;
+import com.apexgrid.transformertracker.change.InspectionChanged;
+import com.apexgrid.transformertracker.change.MaintenanceRecordChanged;
+import com.apexgrid.transformertracker.change.TransformerChanged;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes change events to clients over server-sent events. Each change is encoded once, as a
+ * small JSON payload (ids, what changed and the new version, plus the box arrays when the boxes
+ * changed), and the same frame is queued to every interested subscriber; publishing never
+ * writes to a socket, so a request that saves something is not slowed down by its listeners.
+ * <p>
+ * Every subscriber has a bounded queue drained by a writer thread only while there is something
+ * to send. A subscriber whose queue is full is too slow to keep up: its queue is dropped, it gets
+ * a final {@code resync} event and its stream is closed, so it reconnects and re-reads what it
+ * shows (cheaply, with the ETags) instead of holding memory for events it cannot take.
+ * <p>
+ * Event ids are a per-instance sequence; they order events but are not a replay cursor.
+ */
+@Component
+public class ChangeBroadcaster {
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeBroadcaster.class);
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final long RECONNECT_MILLIS = 3000;
+
+    static final String INSPECTION = "inspection";
+    static final String TRANSFORMER = "transformer";
+    static final String MAINTENANCE_RECORD = "maintenance-record";
+    static final String RESYNC = "resync";
+
+    /** One encoded event; a null name is a keep-alive comment. */
+    private record Frame(long id, String name, String data, String inspectionId, String transformerId) { }
+
+    private final PushProperties properties;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor writers;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ChangeBroadcaster(PushProperties properties) {
+        this.properties = properties;
+        AtomicInteger counter = new AtomicInteger();
+        // Platform threads: the emitter writes under a monitor, which would pin a virtual thread's carrier
+        // for as long as a slow client keeps the write blocked. Threads exist only while a queue drains.
+        this.writers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "push-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Open a stream of the changes to one inspection, to one transformer and its inspections, or
+     * (both null) to everything.
+     *
+     * @return the emitter, or null when the instance already serves {@code max-subscribers} streams
+     */
+    public SseEmitter subscribe(String inspectionId, String transformerId) {
+        if (subscribers.size() >= Math.max(1, properties.getMaxSubscribers())) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, inspectionId, transformerId, Math.max(1, properties.getBufferSize()));
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> {
+            remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(error -> remove(subscriber));
+        subscribers.add(subscriber);
+        try {
+            // Sent before the handler returns, so proxies see the response start right away
+            emitter.send(SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("connected"));
+        } catch (IOException ex) {
+            remove(subscriber);
+            emitter.completeWithError(ex);
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onInspectionChanged(InspectionChanged change) {
+        Inspection inspection = change.inspection();
+        String transformerId = change.transformerId();
+        String data = encode(gen -> {
+            gen.writeStringField("id", change.id());
+            gen.writeStringField("transformerId", transformerId);
+            gen.writeStringField("change", change.cause().label());
+            if (inspection == null) {
+                return;
+            }
+            gen.writeNumberField("version", inspection.getVersion());
+            gen.writeStringField("status", inspection.getStatus());
+            switch (change.cause()) {
+                // Every box column, so a client can replace the boxes it shows without re-reading them
+                case BOXES, ANALYZED, ANALYSIS_CLEARED -> AnnotationStateCodec.writeFields(gen,
+                        AnnotationState.of(inspection.getBoxes()), BoxColumn.values());
+                default -> { }
+            }
+        });
+        publish(INSPECTION, data, change.id(), transformerId);
+    }
+
+    @EventListener
+    public void onTransformerChanged(TransformerChanged change) {
+        String data = encode(gen -> {
+            gen.writeStringField("id", change.id());
+            gen.writeStringField("change", change.cause().label());
+            if (!change.isDeleted()) {
+                gen.writeNumberField("version", change.transformer().getVersion());
+            }
+        });
+        publish(TRANSFORMER, data, null, change.id());
+    }
+
+    @EventListener
+    public void onMaintenanceRecordChanged(MaintenanceRecordChanged change) {
+        String data = encode(gen -> {
+            gen.writeStringField("inspectionId", change.inspectionId());
+            gen.writeStringField("transformerId", change.transformerId());
+            gen.writeStringField("change", change.isDeleted() ? "deleted" : "saved");
+            if (!change.isDeleted()) {
+                gen.writeNumberField("version", change.record().getVersion());
+                gen.writeStringField("status", change.record().getStatus());
+            }
+        });
+        publish(MAINTENANCE_RECORD, data, change.inspectionId(), change.transformerId());
+    }
+
+    @Scheduled(initialDelayString = "#{@pushProperties.heartbeat.toMillis()}",
+            fixedDelayString = "#{@pushProperties.heartbeat.toMillis()}")
+    public void heartbeat() {
+        Frame ping = new Frame(0, null, null, null, null);
+        for (Subscriber subscriber : subscribers) {
+            offer(subscriber, ping);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(subscribers.size(), properties.getMaxSubscribers(), published.get(), sent.get(), dropped.get());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            remove(subscriber);
+            subscriber.emitter.complete();
+        }
+        writers.shutdownNow();
+    }
+
+    private void publish(String name, String data, String inspectionId, String transformerId) {
+        published.incrementAndGet();
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Frame frame = new Frame(sequence.incrementAndGet(), name, data, inspectionId, transformerId);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.wants(frame)) {
+                offer(subscriber, frame);
+            }
+        }
+    }
+
+    private void offer(Subscriber subscriber, Frame frame) {
+        if (!subscriber.queue.offer(frame)) {
+            // Too slow to keep up: forget what it missed and tell it to re-read instead
+            if (subscriber.closed.compareAndSet(false, true)) {
+                subscribers.remove(subscriber);
+                subscriber.queue.clear();
+                subscriber.queue.offer(new Frame(sequence.incrementAndGet(), RESYNC, "{}", null, null));
+                dropped.incrementAndGet();
+            }
+        }
+        drain(subscriber);
+    }
+
+    private void drain(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writers.execute(() -> write(subscriber));
+        } catch (RuntimeException ex) {
+            // Shutting down
+            subscriber.draining.set(false);
+        }
+    }
+
+    /** Send queued frames until the queue is empty; runs on one writer at a time per subscriber. */
+    private void write(Subscriber subscriber) {
+        try {
+            do {
+                Frame frame;
+                while ((frame = subscriber.queue.poll()) != null) {
+                    subscriber.emitter.send(frame.name() == null
+                            ? SseEmitter.event().comment("ping")
+                            : SseEmitter.event().id(Long.toString(frame.id())).name(frame.name()).data(frame.data()));
+                    sent.incrementAndGet();
+                }
+                if (subscriber.closed.get()) {
+                    subscriber.emitter.complete();
+                    return;
+                }
+                subscriber.draining.set(false);
+                // A frame queued after the last poll but before the flag was cleared found it still set
+            } while (!subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException ex) {
+            // The client went away (or the emitter already completed)
+            LOG.debug("Dropping event stream: {}", ex.getMessage());
+            remove(subscriber);
+            subscriber.queue.clear();
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed.set(true);
+        subscribers.remove(subscriber);
+    }
+
+    @FunctionalInterface
+    private interface Fields {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    private static String encode(Fields fields) {
+        StringWriter out = new StringWriter(128);
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            gen.writeStartObject();
+            fields.write(gen);
+            gen.writeEndObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toString();
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final String inspectionId;
+        final String transformerId;
+        final ArrayBlockingQueue<Frame> queue;
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, String inspectionId, String transformerId, int bufferSize) {
+            this.emitter = emitter;
+            this.inspectionId = inspectionId;
+            this.transformerId = transformerId;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        boolean wants(Frame frame) {
+            if (inspectionId != null) {
+                return inspectionId.equals(frame.inspectionId());
+            }
+            return transformerId == null || transformerId.equals(frame.transformerId());
+        }
+    }
+
+    /**
+     * @param published events encoded since startup, whether or not anyone was subscribed
+     * @param sent      frames written to subscribers, keep-alives included
+     * @param dropped   subscribers disconnected for falling {@code buffer-size} events behind
+     */
+    public record Stats(int subscribers, int maxSubscribers, long published, long sent, long dropped) { }
+}
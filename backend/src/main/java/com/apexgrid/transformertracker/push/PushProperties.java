@@ -0,0 +1,54 @@
+package com.apexgrid.transformertracker.push;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.push")
+public class PushProperties {
+    /** Events queued per subscriber; one that falls further behind is disconnected and told to resync. */
+    private int bufferSize = 256;
+
+    /** Open event streams per instance; further subscribers get 503. */
+    private int maxSubscribers = 1000;
+
+    /** Delay between keep-alive comments, which also detect connections that went away. */
+    private Duration heartbeat = Duration.ofSeconds(20);
+
+    /** Lifetime of one stream; clients reconnect after it ends. */
+    private Duration timeout = Duration.ofMinutes(30);
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public void setMaxSubscribers(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    public Duration getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(Duration heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,33 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.model.BoxMatch;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface InspectionBoxRepo extends JpaRepository<InspectionBox, String> {
+    String MATCH_SELECT = "select new com.apexgrid.transformertracker.model.BoxMatch("
+            + "b.id, i.id, i.inspectionNumber, t.transformerNumber, b.x, b.y, b.w, b.h, "
+            + "b.faultType, b.severity, b.annotatedBy, b.createdAt) "
+            + "from InspectionBox b join b.inspection i join i.transformer t ";
+
+    // Served by idx_inspection_box_fault_severity
+    @Query(MATCH_SELECT + "where b.faultType = :faultType and b.severity >= :minSeverity order by b.severity desc")
+    List<BoxMatch> findMatches(@Param("faultType") String faultType,
+                               @Param("minSeverity") double minSeverity,
+                               Pageable page);
+
+    @Query(MATCH_SELECT + "where b.severity >= :minSeverity order by b.severity desc")
+    List<BoxMatch> findMatches(@Param("minSeverity") double minSeverity, Pageable page);
+
+    // Without a severity floor user-drawn boxes, which have none, match too and sort last
+    @Query(MATCH_SELECT + "where b.faultType = :faultType order by b.severity desc nulls last, b.createdAt desc")
+    List<BoxMatch> findMatches(@Param("faultType") String faultType, Pageable page);
+
+    @Query(MATCH_SELECT + "order by b.severity desc nulls last, b.createdAt desc")
+    List<BoxMatch> findMatches(Pageable page);
+}
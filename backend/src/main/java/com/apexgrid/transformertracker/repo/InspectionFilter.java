@@ -0,0 +1,43 @@
+package com.apexgrid.transformertracker.repo;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Optional criteria selecting inspections; null fields match everything. The date range is
+ * inclusive and applies to {@code inspectedDate} ("YYYY-MM-DD HH:mm", compared as text).
+ * Text criteria match exactly.
+ *
+ * @param region the transformer's region
+ * @param faultType matches inspections with at least one box of that fault type
+ * @param changedSince matches inspections whose image or boxes changed at or after it
+ */
+public record InspectionFilter(
+        String transformerId,
+        String region,
+        LocalDate from,
+        LocalDate to,
+        String faultType,
+        String status,
+        String branch,
+        Boolean favourite,
+        String weather,
+        Instant changedSince
+) {
+    public InspectionFilter(String transformerId, String region, LocalDate from, LocalDate to, String faultType) {
+        this(transformerId, region, from, to, faultType, null, null, null, null, null);
+    }
+
+    public InspectionFilter changedSince(Instant since) {
+        return new InspectionFilter(transformerId, region, from, to, faultType, status, branch, favourite, weather, since);
+    }
+
+    String fromBound() {
+        return from == null ? null : from.toString();
+    }
+
+    /** Exclusive upper bound: the day after {@code to}, which sorts after every time on {@code to}. */
+    String toBound() {
+        return to == null ? null : to.plusDays(1).toString();
+    }
+}
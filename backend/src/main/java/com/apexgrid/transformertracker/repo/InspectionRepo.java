@@ -1,10 +1,63 @@
 package com.apexgrid.transformertracker.repo;
 
 import com.apexgrid.transformertracker.model.Inspection;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
-public interface InspectionRepo extends JpaRepository<Inspection, String> {
-    List<Inspection> findByFavouriteTrue();
+public interface InspectionRepo extends JpaRepository<Inspection, String>, InspectionRepoCustom {
+    /** The inspection's version and its transformer's (whose fields it embeds), dot-joined, without loading either. */
+    @Query("select concat(cast(i.version as String), '.', cast(t.version as String)) "
+            + "from Inspection i join i.transformer t where i.id = :id")
+    Optional<String> findVersionKey(@Param("id") String id);
+
+    /** The inspection with its row locked until the surrounding transaction ends. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Inspection i where i.id = :id")
+    Optional<Inspection> findForUpdate(@Param("id") String id);
+
+    @Query("select i.transformer.id from Inspection i where i.id = :id")
+    Optional<String> findTransformerId(@Param("id") String id);
+
+    // Ids only, so paging through the fleet never loads the image columns
+    @Query("select i.id from Inspection i join i.transformer t where i.id > :afterId "
+            + "and (:transformerId is null or t.id = :transformerId) "
+            + "and (:region is null or t.region = :region) "
+            + "and (:fromDate is null or i.inspectedDate >= :fromDate) "
+            + "and (:toDate is null or i.inspectedDate < :toDate) "
+            + "and (:faultType is null or exists (select b.id from InspectionBox b "
+            + "where b.inspection = i and b.faultType = :faultType)) "
+            + "and (:status is null or i.status = :status) "
+            + "and (:branch is null or i.branch = :branch) "
+            + "and (:favourite is null or i.favourite = :favourite) "
+            + "and (:weather is null or i.weather = :weather) "
+            + "and (:changedSince is null or i.contentUpdatedAt >= :changedSince) "
+            + "order by i.id asc")
+    List<String> findIdsAfter(@Param("afterId") String afterId,
+                              @Param("transformerId") String transformerId,
+                              @Param("region") String region,
+                              @Param("fromDate") String fromDate,
+                              @Param("toDate") String toDate,
+                              @Param("faultType") String faultType,
+                              @Param("status") String status,
+                              @Param("branch") String branch,
+                              @Param("favourite") Boolean favourite,
+                              @Param("weather") String weather,
+                              @Param("changedSince") Instant changedSince,
+                              Pageable page);
+
+    /** Up to {@code limit} ids matching the filter after {@code afterId} ("" for the first page), in id order. */
+    default List<String> findIdsAfter(InspectionFilter filter, String afterId, int limit) {
+        return findIdsAfter(afterId, filter.transformerId(), filter.region(), filter.fromBound(), filter.toBound(),
+                filter.faultType(), filter.status(), filter.branch(), filter.favourite(), filter.weather(),
+                filter.changedSince(), PageRequest.of(0, limit));
+    }
 }
@@ -0,0 +1,59 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.model.Inspection;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface InspectionRepoCustom {
+    /** Sort keys accepted by {@link #findPage} and {@link #streamAll}. */
+    Set<String> SORTS = Set.of("inspectedDate", "inspectionNumber");
+
+    /**
+     * Property names accepted by the {@code fields} variants below: the inspection's JSON
+     * properties, with {@code transformer} for the embedded transformer.
+     */
+    Set<String> FIELDS = InspectionRepoImpl.PROJECTION.names();
+
+    /**
+     * Inspections matching the filter, ordered by {@code sort} then id, starting after
+     * {@code cursor} (null for the first page).
+     *
+     * @param limit page size; 0 or less returns every match in one page
+     * @throws InvalidPageRequestException for an unknown sort key or a cursor from another order
+     */
+    KeysetPage<Inspection> findPage(InspectionFilter filter, String sort, boolean descending, String cursor, int limit);
+
+    /**
+     * Version keys of the page {@link #findPage} would return with the same arguments, and of the
+     * row that starts the next page, each {@code id:version:transformerVersion} since the listed
+     * JSON embeds the transformer.
+     */
+    List<String> findPageVersions(InspectionFilter filter, String sort, boolean descending, String cursor, int limit);
+
+    /**
+     * Every match in the order of {@link #findPage}, read through a database cursor
+     * {@code fetchSize} rows at a time. Consume it inside a read-only transaction and close it;
+     * rows already passed are detached, so memory does not grow with the result.
+     */
+    Stream<Inspection> streamAll(InspectionFilter filter, String sort, boolean descending, int fetchSize);
+
+    /**
+     * As {@link #findPage}, but selecting only the columns behind {@code fields} (plus the id and
+     * sort key) and returning partial, unmanaged inspections holding just those. The transformer
+     * is only read when asked for, and the boxes only when a box array is.
+     *
+     * @throws InvalidPageRequestException also for a name not in {@link #FIELDS}
+     */
+    KeysetPage<Inspection> findPage(InspectionFilter filter, String sort, boolean descending, String cursor, int limit,
+                                    Set<String> fields);
+
+    /** One partial inspection holding {@code fields}, read the way the sparse {@code findPage} reads rows. */
+    Optional<Inspection> findPartialById(String id, Set<String> fields);
+
+    /** As {@link #streamAll}, with rows read the way the sparse {@code findPage} reads them. */
+    Stream<Inspection> streamAll(InspectionFilter filter, String sort, boolean descending, int fetchSize,
+                                 Set<String> fields);
+}
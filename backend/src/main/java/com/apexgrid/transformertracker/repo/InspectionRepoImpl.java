@@ -0,0 +1,147 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.apexgrid.transformertracker.model.Transformer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+class InspectionRepoImpl implements InspectionRepoCustom {
+    // The box arrays are derived from the inspection's boxes, loaded separately when one is asked for
+    private static final Set<String> BOX_FIELDS = Set.of("boundingBoxes", "boxIds", "faultTypes", "annotatedBy",
+            "severity", "comment", "recentStatus", "boxCreatedAt");
+
+    static final Projection<Inspection> PROJECTION = new Projection<>(Inspection::new)
+            .column("id", "i.id", String.class, Inspection::setId)
+            .column("transformer", "t", Transformer.class, Inspection::setTransformer)
+            .column("inspectionNumber", "i.inspectionNumber", String.class, Inspection::setInspectionNumber)
+            .column("inspectedDate", "i.inspectedDate", String.class, Inspection::setInspectedDate)
+            .column("maintainanceDate", "i.maintainanceDate", String.class, Inspection::setMaintainanceDate)
+            .column("branch", "i.branch", String.class, Inspection::setBranch)
+            .column("status", "i.status", String.class, Inspection::setStatus)
+            .column("imageUrl", "i.imageUrl", String.class, Inspection::setImageUrl)
+            .column("weather", "i.weather", String.class, Inspection::setWeather)
+            .column("lastAnalysisWeather", "i.lastAnalysisWeather", String.class, Inspection::setLastAnalysisWeather)
+            .column("uploadedBy", "i.uploadedBy", String.class, Inspection::setUploadedBy)
+            .column("imageUploadedBy", "i.imageUploadedBy", String.class, Inspection::setImageUploadedBy)
+            .column("imageUploadedAt", "i.imageUploadedAt", Instant.class, Inspection::setImageUploadedAt)
+            .column("imageHash", "i.imageHash", String.class, Inspection::setImageHash)
+            .column("imageScale", "i.imageScale", Double.class, Inspection::setImageScale)
+            .column("favourite", "i.favourite", Boolean.class, (i, value) -> i.setFavourite(Boolean.TRUE.equals(value)))
+            .derived("boundingBoxes").derived("boxIds").derived("faultTypes").derived("annotatedBy")
+            .derived("severity").derived("comment").derived("recentStatus").derived("boxCreatedAt");
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public KeysetPage<Inspection> findPage(InspectionFilter filter, String sort, boolean descending, String cursor, int limit) {
+        return query(filter).page(em, Inspection.class, sort, "i." + sort, descending, sortValue(sort),
+                Inspection::getId, cursor, limit);
+    }
+
+    @Override
+    public List<String> findPageVersions(InspectionFilter filter, String sort, boolean descending, String cursor, int limit) {
+        sortValue(sort);
+        return query(filter).versions(em, "i.version, t.version", sort, "i." + sort, descending, cursor, limit);
+    }
+
+    @Override
+    public Stream<Inspection> streamAll(InspectionFilter filter, String sort, boolean descending, int fetchSize) {
+        if (!SORTS.contains(sort)) {
+            throw new InvalidPageRequestException("Unknown sort: " + sort);
+        }
+        return query(filter).stream(em, Inspection.class, sort, "i." + sort, descending, Inspection::getId,
+                " join fetch i.transformer", fetchSize);
+    }
+
+    @Override
+    public KeysetPage<Inspection> findPage(InspectionFilter filter, String sort, boolean descending, String cursor, int limit,
+                                           Set<String> fields) {
+        sortValue(sort);
+        List<String> columns = PROJECTION.columns(fields, "id", sort);
+        KeysetPage<Inspection> page = query(filter).page(em, PROJECTION.select(columns),
+                tuple -> PROJECTION.read(tuple, columns), sort, "i." + sort, descending, sortValue(sort),
+                Inspection::getId, cursor, limit);
+        attachBoxes(page.items(), fields);
+        return page;
+    }
+
+    @Override
+    public Optional<Inspection> findPartialById(String id, Set<String> fields) {
+        List<String> columns = PROJECTION.columns(fields, "id");
+        List<Inspection> rows = em.createQuery("select " + PROJECTION.select(columns)
+                        + " from Inspection i join i.transformer t where i.id = :id", Tuple.class)
+                .setParameter("id", id)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList().stream()
+                .map(tuple -> PROJECTION.read(tuple, columns))
+                .toList();
+        attachBoxes(rows, fields);
+        return rows.stream().findFirst();
+    }
+
+    @Override
+    public Stream<Inspection> streamAll(InspectionFilter filter, String sort, boolean descending, int fetchSize,
+                                        Set<String> fields) {
+        if (!SORTS.contains(sort)) {
+            throw new InvalidPageRequestException("Unknown sort: " + sort);
+        }
+        List<String> columns = PROJECTION.columns(fields, "id");
+        return query(filter).stream(em, PROJECTION.select(columns), tuple -> PROJECTION.read(tuple, columns), sort,
+                "i." + sort, descending, rows -> attachBoxes(rows, fields), fetchSize);
+    }
+
+    /** Give partial inspections their boxes, in one query, when a box array is among {@code fields}. */
+    private void attachBoxes(List<Inspection> rows, Set<String> fields) {
+        if (rows.isEmpty() || fields.stream().noneMatch(BOX_FIELDS::contains)) {
+            return;
+        }
+        Map<String, Inspection> byId = new HashMap<>();
+        for (Inspection row : rows) {
+            byId.put(row.getId(), row);
+        }
+        // The box's inspection is a lazy reference; reading its id does not load it
+        for (InspectionBox box : em.createQuery("select b from InspectionBox b where b.inspection.id in :ids "
+                        + "order by b.position", InspectionBox.class)
+                .setParameter("ids", byId.keySet())
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList()) {
+            byId.get(box.getInspection().getId()).getBoxes().add(box);
+        }
+    }
+
+    private static Function<Inspection, String> sortValue(String sort) {
+        return switch (sort) {
+            case "inspectedDate" -> Inspection::getInspectedDate;
+            case "inspectionNumber" -> Inspection::getInspectionNumber;
+            default -> throw new InvalidPageRequestException("Unknown sort: " + sort);
+        };
+    }
+
+    private static KeysetQuery query(InspectionFilter filter) {
+        return new KeysetQuery("i", "from Inspection i join i.transformer t")
+                .and("t.id = :transformerId", "transformerId", filter.transformerId())
+                .and("t.region = :region", "region", filter.region())
+                .and("i.inspectedDate >= :fromDate", "fromDate", filter.fromBound())
+                .and("i.inspectedDate < :toDate", "toDate", filter.toBound())
+                .and("exists (select b.id from InspectionBox b where b.inspection = i and b.faultType = :faultType)",
+                        "faultType", filter.faultType())
+                .and("i.status = :status", "status", filter.status())
+                .and("i.branch = :branch", "branch", filter.branch())
+                .and("i.favourite = :favourite", "favourite", filter.favourite())
+                .and("i.weather = :weather", "weather", filter.weather())
+                .and("i.contentUpdatedAt >= :changedSince", "changedSince", filter.changedSince());
+    }
+}
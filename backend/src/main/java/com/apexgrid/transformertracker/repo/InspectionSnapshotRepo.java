@@ -0,0 +1,41 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.model.InspectionSnapshot;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface InspectionSnapshotRepo extends JpaRepository<InspectionSnapshot, String> {
+    @Query("select s from InspectionSnapshot s where s.inspection.id = :inspectionId order by s.seq asc")
+    List<InspectionSnapshot> findByInspectionId(@Param("inspectionId") String inspectionId);
+
+    @Query("select s from InspectionSnapshot s where s.inspection.id = :inspectionId order by s.seq desc")
+    List<InspectionSnapshot> findLatest(@Param("inspectionId") String inspectionId, Pageable page);
+
+    @Query("select max(s.seq) from InspectionSnapshot s where s.inspection.id = :inspectionId")
+    Integer findLatestSeq(@Param("inspectionId") String inspectionId);
+
+    // Keyset pages over inspection_snapshot_key: older than a cursor (newest first) or newer (oldest first)
+    @Query("select s from InspectionSnapshot s where s.inspection.id = :inspectionId and s.seq < :before order by s.seq desc")
+    List<InspectionSnapshot> findBefore(@Param("inspectionId") String inspectionId, @Param("before") int before, Pageable page);
+
+    @Query("select s from InspectionSnapshot s where s.inspection.id = :inspectionId and s.seq > :after order by s.seq asc")
+    List<InspectionSnapshot> findAfter(@Param("inspectionId") String inspectionId, @Param("after") int after, Pageable page);
+
+    /** The snapshot at {@code seq} plus every row back to (and including) its keyframe. */
+    @Query("select s from InspectionSnapshot s where s.inspection.id = :inspectionId and s.seq <= :seq "
+            + "and s.seq >= (select max(k.seq) from InspectionSnapshot k "
+            + "where k.inspection.id = :inspectionId and k.seq <= :seq and k.delta is null) "
+            + "order by s.seq asc")
+    List<InspectionSnapshot> findChain(@Param("inspectionId") String inspectionId, @Param("seq") int seq);
+
+    @Modifying
+    @Transactional
+    @Query("delete from InspectionSnapshot s where s.inspection.id = :inspectionId")
+    int deleteByInspectionId(@Param("inspectionId") String inspectionId);
+}
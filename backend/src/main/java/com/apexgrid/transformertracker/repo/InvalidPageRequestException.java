@@ -0,0 +1,13 @@
+package com.apexgrid.transformertracker.repo;
+
+/**
+ * An unknown sort key or field, or a cursor that is malformed or from another sort order. Deliberately not
+ * an {@link IllegalArgumentException}, which repository proxies translate into a data access error.
+ */
+public class InvalidPageRequestException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+}
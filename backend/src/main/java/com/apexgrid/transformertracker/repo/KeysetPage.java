@@ -0,0 +1,10 @@
+package com.apexgrid.transformertracker.repo;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated list.
+ *
+ * @param nextCursor opaque position after the last item, or null on the last page
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor) { }
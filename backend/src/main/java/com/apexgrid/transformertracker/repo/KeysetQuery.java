@@ -0,0 +1,258 @@
+package com.apexgrid.transformertracker.repo;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Builds a filtered JPQL list query that seeks past a cursor instead of skipping rows. Rows are
+ * ordered by one text column then the id, so the order is total and each page is an index range
+ * scan that costs the same however deep it is. Nulls sort after every value (Postgres' own
+ * ordering), so one ascending index serves both directions.
+ * <p>
+ * The cursor is the sort key, direction and last row's (value, id), base64url encoded; a cursor
+ * from a differently sorted list is rejected.
+ */
+final class KeysetQuery {
+    private final String alias;
+    private final String from;
+    private final StringBuilder where = new StringBuilder();
+    private final Map<String, Object> params = new LinkedHashMap<>();
+
+    /**
+     * @param from the JPQL from clause, with {@code alias} for the listed entity
+     */
+    KeysetQuery(String alias, String from) {
+        this.alias = alias;
+        this.from = from;
+    }
+
+    /** Add {@code condition} (using {@code :param}) unless the value is null. */
+    KeysetQuery and(String condition, String param, Object value) {
+        if (value != null) {
+            where.append(" and ").append(condition);
+            params.put(param, value);
+        }
+        return this;
+    }
+
+    /**
+     * @param sortKey   the client-facing sort name, recorded in cursors
+     * @param sortPath  the text column to order by, e.g. {@code i.inspectedDate}
+     * @param value     reads the sort column of a returned row
+     * @param limit     page size; 0 or less lists everything
+     */
+    <T> KeysetPage<T> page(EntityManager em, Class<T> type, String sortKey, String sortPath, boolean descending,
+                           Function<T, String> value, Function<T, String> id, String cursor, int limit) {
+        return page(query(em, type, alias, sortKey, sortPath, descending, cursor), Function.identity(),
+                sortKey, descending, value, id, limit);
+    }
+
+    /**
+     * As {@link #page}, but selecting only {@code select} (which must include the id and sort
+     * columns) as tuples, each turned into a row by {@code read}. No entity is loaded unless the
+     * select list names one.
+     */
+    <T> KeysetPage<T> page(EntityManager em, String select, Function<Tuple, T> read, String sortKey, String sortPath,
+                           boolean descending, Function<T, String> value, Function<T, String> id, String cursor,
+                           int limit) {
+        TypedQuery<Tuple> query = query(em, Tuple.class, select, sortKey, sortPath, descending, cursor)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        return page(query, read, sortKey, descending, value, id, limit);
+    }
+
+    private <R, T> KeysetPage<T> page(TypedQuery<R> query, Function<R, T> read, String sortKey, boolean descending,
+                                      Function<T, String> value, Function<T, String> id, int limit) {
+        if (limit > 0) {
+            query.setMaxResults(limit + 1);
+        }
+        List<T> rows = new ArrayList<>(query.getResultList().stream().map(read).toList());
+        String next = null;
+        if (limit > 0 && rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, limit));
+            T last = rows.get(limit - 1);
+            next = new Position(value.apply(last), id.apply(last)).encode(sortKey, descending);
+        }
+        return new KeysetPage<>(rows, next);
+    }
+
+    /**
+     * Version keys ({@code id:version...}) of the rows {@link #page} would return, plus the row
+     * after them when there is a next page, read as scalars without loading any entity. Together
+     * they identify the page's content, so a digest of them serves as its ETag.
+     *
+     * @param versionPaths the version columns the listed rows' JSON depends on, e.g. {@code i.version, t.version}
+     */
+    List<String> versions(EntityManager em, String versionPaths, String sortKey, String sortPath, boolean descending,
+                          String cursor, int limit) {
+        TypedQuery<Object[]> query = query(em, Object[].class, alias + ".id, " + versionPaths, sortKey, sortPath,
+                descending, cursor);
+        if (limit > 0) {
+            query.setMaxResults(limit + 1);
+        }
+        List<String> keys = new ArrayList<>();
+        for (Object[] row : query.getResultList()) {
+            StringBuilder key = new StringBuilder();
+            for (Object column : row) {
+                key.append(key.isEmpty() ? "" : ":").append(column);
+            }
+            keys.add(key.toString());
+        }
+        return keys;
+    }
+
+    /**
+     * Every matching row in the same order, for lists too large to hold. The matching ids are read
+     * through a database cursor {@code fetchSize} at a time; each such window of entities is then
+     * loaded by id in one query, so eager collections are fetched per window (subselect) rather
+     * than per row, and without repeating each row's columns per collection element. The
+     * persistence context is cleared between windows, so memory stays at one window. Only valid
+     * inside a transaction, and must be closed.
+     *
+     * @param fetchJoins appended to the window query, e.g. {@code join fetch i.transformer}
+     */
+    <T> Stream<T> stream(EntityManager em, Class<T> type, String sortKey, String sortPath, boolean descending,
+                         Function<T, String> id, String fetchJoins, int fetchSize) {
+        Stream<String> ids = query(em, String.class, alias + ".id", sortKey, sortPath, descending, null)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+        Iterator<String> cursor = ids.iterator();
+        String load = "select " + alias + " from " + type.getSimpleName() + " " + alias + fetchJoins
+                + " where " + alias + ".id in :ids";
+        Iterator<List<T>> windows = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                List<String> window = new ArrayList<>(fetchSize);
+                while (window.size() < fetchSize && cursor.hasNext()) {
+                    window.add(cursor.next());
+                }
+                em.clear();
+                Map<String, T> byId = new HashMap<>();
+                for (T row : em.createQuery(load, type)
+                        .setParameter("ids", window)
+                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                        .getResultList()) {
+                    byId.put(id.apply(row), row);
+                }
+                // Rows deleted since the id was read are skipped
+                return window.stream().map(byId::get).filter(Objects::nonNull).toList();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(windows, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(ids::close);
+    }
+
+    /**
+     * As {@link #stream}, but reading only {@code select} as tuples through the cursor, each
+     * turned into a row by {@code read}. Rows are handed out a window of {@code fetchSize} at a
+     * time, after {@code complete} has filled in what the tuples do not hold (such as the boxes)
+     * for the whole window; the persistence context is cleared between windows.
+     */
+    <T> Stream<T> stream(EntityManager em, String select, Function<Tuple, T> read, String sortKey, String sortPath,
+                         boolean descending, Consumer<List<T>> complete, int fetchSize) {
+        Stream<Tuple> tuples = query(em, Tuple.class, select, sortKey, sortPath, descending, null)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+        Iterator<Tuple> cursor = tuples.iterator();
+        Iterator<List<T>> windows = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                em.clear();
+                List<T> window = new ArrayList<>(fetchSize);
+                while (window.size() < fetchSize && cursor.hasNext()) {
+                    window.add(read.apply(cursor.next()));
+                }
+                complete.accept(window);
+                return window;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(windows, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(tuples::close);
+    }
+
+    private <T> TypedQuery<T> query(EntityManager em, Class<T> type, String select, String sortKey, String sortPath,
+                                    boolean descending, String cursor) {
+        StringBuilder jpql = new StringBuilder("select ").append(select).append(' ').append(from)
+                .append(" where 1 = 1").append(where);
+        Map<String, Object> bound = new LinkedHashMap<>(params);
+        if (cursor != null) {
+            Position after = Position.decode(cursor, sortKey, descending);
+            String idPath = alias + ".id";
+            String op = descending ? "<" : ">";
+            bound.put("afterId", after.id());
+            if (after.value() == null) {
+                // Among the nulls: ascending they come last, descending first
+                jpql.append(descending
+                        ? " and (" + sortPath + " is not null or " + idPath + " < :afterId)"
+                        : " and (" + sortPath + " is null and " + idPath + " > :afterId)");
+            } else {
+                bound.put("afterValue", after.value());
+                jpql.append(" and (").append(sortPath).append(' ').append(op).append(" :afterValue")
+                        .append(" or (").append(sortPath).append(" = :afterValue and ").append(idPath).append(' ').append(op).append(" :afterId)");
+                if (!descending) {
+                    jpql.append(" or ").append(sortPath).append(" is null");
+                }
+                jpql.append(')');
+            }
+        }
+        String direction = descending ? " desc nulls first" : " asc nulls last";
+        jpql.append(" order by ").append(sortPath).append(direction).append(", ")
+                .append(alias).append(".id").append(descending ? " desc" : " asc");
+
+        TypedQuery<T> query = em.createQuery(jpql.toString(), type);
+        bound.forEach(query::setParameter);
+        return query;
+    }
+
+    private record Position(String value, String id) {
+        String encode(String sortKey, boolean descending) {
+            String raw = sortKey + '\n' + (descending ? "desc" : "asc") + '\n' + id + '\n'
+                    + (value == null ? "" : "=" + value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Position decode(String cursor, String sortKey, boolean descending) {
+            String raw;
+            try {
+                raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidPageRequestException("Malformed cursor");
+            }
+            String[] parts = raw.split("\n", 4);
+            if (parts.length != 4 || !parts[0].equals(sortKey) || !parts[1].equals(descending ? "desc" : "asc")) {
+                throw new InvalidPageRequestException("Cursor does not belong to this sort order");
+            }
+            return new Position(parts[3].isEmpty() ? null : parts[3].substring(1), parts[2]);
+        }
+    }
+}
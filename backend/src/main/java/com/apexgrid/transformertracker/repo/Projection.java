@@ -0,0 +1,88 @@
+package com.apexgrid.transformertracker.repo;
+
+import jakarta.persistence.Tuple;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The properties of an entity that a sparse read can ask for, by their JSON names. A column
+ * property is read from one JPQL path (a scalar, or a joined entity) into a tuple and set on a
+ * new, partially filled instance; a derived property is worked out in Java from data the caller
+ * loads separately, such as the box arrays. Partial instances are never managed and must not be
+ * saved.
+ */
+final class Projection<T> {
+    private record Column<T>(String path, Class<?> type, BiConsumer<T, Object> set) { }
+
+    private final Supplier<T> create;
+    private final Map<String, Column<T>> columns = new LinkedHashMap<>();
+    private final Set<String> derived = new LinkedHashSet<>();
+
+    Projection(Supplier<T> create) {
+        this.create = create;
+    }
+
+    <V> Projection<T> column(String name, String path, Class<V> type, BiConsumer<T, V> set) {
+        columns.put(name, new Column<>(path, type, (row, value) -> set.accept(row, type.cast(value))));
+        return this;
+    }
+
+    Projection<T> derived(String name) {
+        derived.add(name);
+        return this;
+    }
+
+    /** Every property a sparse read accepts. */
+    Set<String> names() {
+        Set<String> names = new LinkedHashSet<>(columns.keySet());
+        names.addAll(derived);
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * The columns to read for {@code fields}, plus {@code required} ones the query itself needs
+     * (the id, the sort key), in catalog order.
+     *
+     * @throws InvalidPageRequestException for a name that is not a property
+     */
+    List<String> columns(Collection<String> fields, String... required) {
+        Set<String> wanted = new LinkedHashSet<>(List.of(required));
+        for (String field : fields) {
+            if (!columns.containsKey(field) && !derived.contains(field)) {
+                throw new InvalidPageRequestException("Unknown field: " + field);
+            }
+            wanted.add(field);
+        }
+        List<String> selected = new ArrayList<>();
+        for (String name : columns.keySet()) {
+            if (wanted.contains(name)) {
+                selected.add(name);
+            }
+        }
+        return selected;
+    }
+
+    /** The JPQL select list for {@code selected}, one tuple element each. */
+    String select(List<String> selected) {
+        return String.join(", ", selected.stream().map(name -> columns.get(name).path()).toList());
+    }
+
+    /** A partial instance holding the tuple's elements, read in {@code selected} order. */
+    T read(Tuple tuple, List<String> selected) {
+        T row = create.get();
+        for (int idx = 0; idx < selected.size(); idx++) {
+            Column<T> column = columns.get(selected.get(idx));
+            column.set().accept(row, tuple.get(idx, column.type()));
+        }
+        return row;
+    }
+}
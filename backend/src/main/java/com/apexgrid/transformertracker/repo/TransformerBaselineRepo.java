@@ -0,0 +1,35 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.model.BaselineSummary;
+import com.apexgrid.transformertracker.model.TransformerBaseline;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TransformerBaselineRepo extends JpaRepository<TransformerBaseline, String> {
+    Optional<TransformerBaseline> findFirstByTransformer_IdAndWeatherOrderByVersionDesc(String transformerId, String weather);
+
+    Optional<TransformerBaseline> findByTransformer_IdAndWeatherAndVersion(String transformerId, String weather, int version);
+
+    @Query("select new com.apexgrid.transformertracker.model.BaselineSummary(b.id, b.weather, b.version, b.imageHash, b.imageScale, b.uploadedBy, b.uploadedAt) "
+            + "from TransformerBaseline b where b.transformer.id = :transformerId order by b.weather asc, b.version desc")
+    List<BaselineSummary> findSummariesByTransformerId(@Param("transformerId") String transformerId);
+
+    @Query("select coalesce(max(b.version), 0) from TransformerBaseline b where b.transformer.id = :transformerId and b.weather = :weather")
+    int findMaxVersion(@Param("transformerId") String transformerId, @Param("weather") String weather);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TransformerBaseline b where b.transformer.id = :transformerId and b.weather = :weather")
+    int deleteByTransformerIdAndWeather(@Param("transformerId") String transformerId, @Param("weather") String weather);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TransformerBaseline b where b.transformer.id = :transformerId")
+    int deleteByTransformerId(@Param("transformerId") String transformerId);
+}
@@ -0,0 +1,4 @@
+package com.apexgrid.transformertracker.repo;
+
+/** Optional criteria selecting transformers; null fields match everything, text matches exactly. */
+public record TransformerFilter(String region, String type, Boolean favourite) { }
@@ -2,11 +2,14 @@ package com.apexgrid.transformertracker.repo;
 
 import com.apexgrid.transformertracker.model.Transformer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.util.List;
 import java.util.Optional;
 
-public interface TransformerRepo extends JpaRepository<Transformer, String> {
+public interface TransformerRepo extends JpaRepository<Transformer, String>, TransformerRepoCustom {
     Optional<Transformer> findByTransformerNumber(String transformerNumber);
-    List<Transformer> findByFavouriteTrue();
+
+    @Query("select t.version from Transformer t where t.id = :id")
+    Optional<Long> findVersion(@Param("id") String id);
 }
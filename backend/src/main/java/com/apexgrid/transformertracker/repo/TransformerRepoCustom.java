@@ -0,0 +1,57 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.model.Transformer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface TransformerRepoCustom {
+    /** Sort keys accepted by {@link #findPage} and {@link #streamAll}. */
+    Set<String> SORTS = Set.of("transformerNumber", "region");
+
+    /**
+     * Property names accepted by the {@code fields} variants below. The legacy baseline view
+     * properties are accepted but left empty; only a single read fills them in.
+     */
+    Set<String> FIELDS = TransformerRepoImpl.PROJECTION.names();
+
+    /**
+     * Transformers matching the filter, ordered by {@code sort} then id, starting after
+     * {@code cursor} (null for the first page).
+     *
+     * @param limit page size; 0 or less returns every match in one page
+     * @throws InvalidPageRequestException for an unknown sort key or a cursor from another order
+     */
+    KeysetPage<Transformer> findPage(TransformerFilter filter, String sort, boolean descending, String cursor, int limit);
+
+    /**
+     * Version keys ({@code id:version}) of the page {@link #findPage} would return with the same
+     * arguments, and of the row that starts the next page.
+     */
+    List<String> findPageVersions(TransformerFilter filter, String sort, boolean descending, String cursor, int limit);
+
+    /**
+     * Every match in the order of {@link #findPage}, read through a database cursor
+     * {@code fetchSize} rows at a time. Consume it inside a read-only transaction and close it;
+     * rows already passed are detached, so memory does not grow with the result.
+     */
+    Stream<Transformer> streamAll(TransformerFilter filter, String sort, boolean descending, int fetchSize);
+
+    /**
+     * As {@link #findPage}, but selecting only the columns behind {@code fields} (plus the id and
+     * sort key) and returning partial, unmanaged transformers holding just those.
+     *
+     * @throws InvalidPageRequestException also for a name not in {@link #FIELDS}
+     */
+    KeysetPage<Transformer> findPage(TransformerFilter filter, String sort, boolean descending, String cursor, int limit,
+                                     Set<String> fields);
+
+    /** One partial transformer holding {@code fields}, read the way the sparse {@code findPage} reads rows. */
+    Optional<Transformer> findPartialById(String id, Set<String> fields);
+
+    /** As {@link #streamAll}, with rows read the way the sparse {@code findPage} reads them. */
+    Stream<Transformer> streamAll(TransformerFilter filter, String sort, boolean descending, int fetchSize,
+                                  Set<String> fields);
+}
@@ -0,0 +1,99 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.model.Transformer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+class TransformerRepoImpl implements TransformerRepoCustom {
+    // The legacy baseline view is derived: single reads fill it from transformer_baselines
+    static final Projection<Transformer> PROJECTION = new Projection<>(Transformer::new)
+            .column("id", "t.id", String.class, Transformer::setId)
+            .column("region", "t.region", String.class, Transformer::setRegion)
+            .column("transformerNumber", "t.transformerNumber", String.class, Transformer::setTransformerNumber)
+            .column("poleNumber", "t.poleNumber", String.class, Transformer::setPoleNumber)
+            .column("type", "t.type", String.class, Transformer::setType)
+            .column("location", "t.location", String.class, Transformer::setLocation)
+            .column("uploadedBy", "t.uploadedBy", String.class, Transformer::setUploadedBy)
+            .column("favourite", "t.favourite", Boolean.class, (t, value) -> t.setFavourite(Boolean.TRUE.equals(value)))
+            .derived("sunnyImage").derived("cloudyImage").derived("windyImage")
+            .derived("sunnyImageUploadedBy").derived("cloudyImageUploadedBy").derived("windyImageUploadedBy")
+            .derived("sunnyImageUploadedAt").derived("cloudyImageUploadedAt").derived("windyImageUploadedAt");
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public KeysetPage<Transformer> findPage(TransformerFilter filter, String sort, boolean descending, String cursor, int limit) {
+        return query(filter).page(em, Transformer.class, sort, "t." + sort, descending, sortValue(sort),
+                Transformer::getId, cursor, limit);
+    }
+
+    @Override
+    public List<String> findPageVersions(TransformerFilter filter, String sort, boolean descending, String cursor, int limit) {
+        sortValue(sort);
+        return query(filter).versions(em, "t.version", sort, "t." + sort, descending, cursor, limit);
+    }
+
+    @Override
+    public Stream<Transformer> streamAll(TransformerFilter filter, String sort, boolean descending, int fetchSize) {
+        if (!SORTS.contains(sort)) {
+            throw new InvalidPageRequestException("Unknown sort: " + sort);
+        }
+        return query(filter).stream(em, Transformer.class, sort, "t." + sort, descending, Transformer::getId,
+                "", fetchSize);
+    }
+
+    @Override
+    public KeysetPage<Transformer> findPage(TransformerFilter filter, String sort, boolean descending, String cursor, int limit,
+                                            Set<String> fields) {
+        sortValue(sort);
+        List<String> columns = PROJECTION.columns(fields, "id", sort);
+        return query(filter).page(em, PROJECTION.select(columns), tuple -> PROJECTION.read(tuple, columns), sort,
+                "t." + sort, descending, sortValue(sort), Transformer::getId, cursor, limit);
+    }
+
+    @Override
+    public Optional<Transformer> findPartialById(String id, Set<String> fields) {
+        List<String> columns = PROJECTION.columns(fields, "id");
+        return em.createQuery("select " + PROJECTION.select(columns) + " from Transformer t where t.id = :id", Tuple.class)
+                .setParameter("id", id)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList().stream()
+                .map(tuple -> PROJECTION.read(tuple, columns))
+                .findFirst();
+    }
+
+    @Override
+    public Stream<Transformer> streamAll(TransformerFilter filter, String sort, boolean descending, int fetchSize,
+                                         Set<String> fields) {
+        if (!SORTS.contains(sort)) {
+            throw new InvalidPageRequestException("Unknown sort: " + sort);
+        }
+        List<String> columns = PROJECTION.columns(fields, "id");
+        return query(filter).stream(em, PROJECTION.select(columns), tuple -> PROJECTION.read(tuple, columns), sort,
+                "t." + sort, descending, rows -> { }, fetchSize);
+    }
+
+    private static Function<Transformer, String> sortValue(String sort) {
+        return switch (sort) {
+            case "transformerNumber" -> Transformer::getTransformerNumber;
+            case "region" -> Transformer::getRegion;
+            default -> throw new InvalidPageRequestException("Unknown sort: " + sort);
+        };
+    }
+
+    private static KeysetQuery query(TransformerFilter filter) {
+        return new KeysetQuery("t", "from Transformer t")
+                .and("t.region = :region", "region", filter.region())
+                .and("t.type = :type", "type", filter.type())
+                .and("t.favourite = :favourite", "favourite", filter.favourite());
+    }
+}
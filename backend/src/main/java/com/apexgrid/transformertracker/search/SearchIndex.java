@@ -0,0 +1,467 @@
+package com.apexgrid.transformertracker.search;
+
+import com.apexgrid.transformertracker.annotation.SeverityBand;
+import com.apexgrid.transformertracker.change.InspectionChanged;
+import com.apexgrid.transformertracker.change.TransformerChanged;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.apexgrid.transformertracker.model.Transformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over transformers and inspections, so searching never touches the
+ * database. Every searchable field is split into lower-case words, and a sorted term map finds
+ * all words starting with a query word. An inspection also carries its transformer's number, pole
+ * number and region, so "north tx-12" finds the inspections of that transformer.
+ * <p>
+ * The index is loaded once after startup with three column-only queries (no images), then kept
+ * current from {@link InspectionChanged} and {@link TransformerChanged} events: each change
+ * removes the entity's old words and adds its new ones. Searches share a read lock; changes take
+ * the write lock for the few microseconds of one update. Each instance keeps its own index.
+ */
+@Component
+public class SearchIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchIndex.class);
+
+    public static final String TRANSFORMER = "transformer";
+    public static final String INSPECTION = "inspection";
+
+    private static final Comparator<Doc> ORDER = Comparator
+            .comparing((Doc doc) -> doc.kind.equals(INSPECTION))
+            .thenComparing(doc -> doc.number, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(doc -> doc.id);
+
+    private final JdbcTemplate jdbc;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Doc> transformers = new HashMap<>();
+    private final Map<String, Doc> inspections = new HashMap<>();
+    private final Map<String, Set<Doc>> inspectionsByTransformer = new HashMap<>();
+    private final TreeMap<String, Set<Doc>> postings = new TreeMap<>();
+
+    private volatile Instant builtAt;
+    private volatile long buildMillis;
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    public SearchIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Load every transformer and inspection, replacing whatever the index held. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            transformers.clear();
+            inspections.clear();
+            inspectionsByTransformer.clear();
+            postings.clear();
+            jdbc.query("select id, transformernumber, polenumber, region, type from transformers", rs -> {
+                Doc doc = Doc.transformer(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+                transformers.put(doc.id, doc);
+                add(doc);
+            });
+            Map<String, List<Fault>> faults = new HashMap<>();
+            jdbc.query("select inspection_id, faulttype, severity from inspection_box", rs -> {
+                double severity = rs.getDouble(3);
+                faults.computeIfAbsent(rs.getString(1), key -> new ArrayList<>())
+                        .add(new Fault(rs.getString(2), rs.wasNull() ? null : severity));
+            });
+            jdbc.query("select id, transformer_id, inspectionnumber, status, branch from inspections", rs -> {
+                String id = rs.getString(1);
+                putInspection(Doc.inspection(id, rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                        faults.getOrDefault(id, List.of())));
+            });
+            builtAt = Instant.now();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        buildMillis = (System.nanoTime() - started) / 1_000_000;
+        LOG.info("Search index built: {} transformers, {} inspections, {} terms in {} ms",
+                transformers.size(), inspections.size(), postings.size(), buildMillis);
+    }
+
+    @EventListener
+    public void onTransformerChanged(TransformerChanged change) {
+        if (change.cause() == TransformerChanged.Cause.BASELINES) {
+            return; // baselines are not searchable
+        }
+        lock.writeLock().lock();
+        try {
+            Doc previous = transformers.remove(change.id());
+            if (previous != null) {
+                remove(previous);
+            }
+            Set<Doc> children = inspectionsByTransformer.getOrDefault(change.id(), Set.of());
+            if (change.isDeleted()) {
+                // The database cascade deleted its inspections along with it
+                for (Doc child : List.copyOf(children)) {
+                    removeInspection(child.id);
+                }
+                return;
+            }
+            Transformer t = change.transformer();
+            Doc doc = Doc.transformer(t.getId(), t.getTransformerNumber(), t.getPoleNumber(), t.getRegion(), t.getType());
+            transformers.put(doc.id, doc);
+            add(doc);
+            for (Doc child : List.copyOf(children)) {
+                removeInspection(child.id);
+                putInspection(child.copy());
+            }
+        } finally {
+            lock.writeLock().unlock();
+            updates.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onInspectionChanged(InspectionChanged change) {
+        lock.writeLock().lock();
+        try {
+            removeInspection(change.id());
+            if (!change.isDeleted()) {
+                Inspection i = change.inspection();
+                List<Fault> faults = new ArrayList<>();
+                for (InspectionBox box : i.getBoxes()) {
+                    faults.add(new Fault(box.getFaultType(), box.getSeverity()));
+                }
+                String transformerId = i.getTransformer() != null ? i.getTransformer().getId() : null;
+                putInspection(Doc.inspection(i.getId(), transformerId, i.getInspectionNumber(), i.getStatus(),
+                        i.getBranch(), faults));
+            }
+        } finally {
+            lock.writeLock().unlock();
+            updates.incrementAndGet();
+        }
+    }
+
+    /**
+     * Documents matching every word of the text as a prefix and every given facet value, plus
+     * facet counts over all of them (not only the returned page). Transformers come first, then
+     * each kind by number.
+     */
+    public Result search(Query query) {
+        long started = System.nanoTime();
+        lock.readLock().lock();
+        List<Doc> matches = new ArrayList<>();
+        Facets facets = new Facets(new TreeMap<>(), new TreeMap<>(), new TreeMap<>());
+        try {
+            for (Doc doc : candidates(words(query.text()))) {
+                if (query.accepts(doc)) {
+                    matches.add(doc);
+                    facets.count(doc);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int limit = Math.max(0, query.limit());
+        List<Hit> hits = matches.stream().sorted(ORDER).limit(limit).map(Doc::hit).toList();
+        long nanos = System.nanoTime() - started;
+        searches.incrementAndGet();
+        searchNanos.addAndGet(nanos);
+        return new Result(matches.size(), hits, facets, nanos / 1_000_000.0);
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            long count = searches.get();
+            return new Stats(transformers.size(), inspections.size(), postings.size(), builtAt, buildMillis,
+                    updates.get(), count, count == 0 ? 0 : searchNanos.get() / 1_000_000.0 / count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Documents containing a word that starts with each query word; every document for no words. */
+    private Collection<Doc> candidates(List<String> words) {
+        if (words.isEmpty()) {
+            List<Doc> all = new ArrayList<>(transformers.values());
+            all.addAll(inspections.values());
+            return all;
+        }
+        Set<Doc> result = null;
+        for (String word : words) {
+            Set<Doc> matching = new HashSet<>();
+            for (Set<Doc> docs : postings.subMap(word, true, word + Character.MAX_VALUE, true).values()) {
+                if (result == null) {
+                    matching.addAll(docs);
+                } else {
+                    for (Doc doc : docs) {
+                        if (result.contains(doc)) {
+                            matching.add(doc);
+                        }
+                    }
+                }
+            }
+            result = matching;
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private void putInspection(Doc doc) {
+        doc.link(transformers.get(doc.transformerId));
+        inspections.put(doc.id, doc);
+        if (doc.transformerId != null) {
+            inspectionsByTransformer.computeIfAbsent(doc.transformerId, key -> new HashSet<>()).add(doc);
+        }
+        add(doc);
+    }
+
+    private void removeInspection(String id) {
+        Doc doc = inspections.remove(id);
+        if (doc == null) {
+            return;
+        }
+        Set<Doc> siblings = inspectionsByTransformer.get(doc.transformerId);
+        if (siblings != null) {
+            siblings.remove(doc);
+            if (siblings.isEmpty()) {
+                inspectionsByTransformer.remove(doc.transformerId);
+            }
+        }
+        remove(doc);
+    }
+
+    private void add(Doc doc) {
+        for (String term : doc.terms) {
+            postings.computeIfAbsent(term, key -> new HashSet<>()).add(doc);
+        }
+    }
+
+    private void remove(Doc doc) {
+        for (String term : doc.terms) {
+            Set<Doc> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(doc);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /** Lower-case letter/digit runs of the text, e.g. "TX-0042 North" gives [tx, 0042, north]. */
+    static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static boolean same(String wanted, String actual) {
+        return wanted == null || (actual != null && wanted.equalsIgnoreCase(actual.trim()));
+    }
+
+    private record Fault(String faultType, Double severity) { }
+
+    /** One indexed entity; identity equality, since each change replaces the whole document. */
+    private static final class Doc {
+        final String kind;
+        final String id;
+        final String number;
+        final String transformerId;
+        final String poleNumber;
+        final String type;
+        final String status;
+        final String branch;
+        final List<Fault> faults;
+        final Set<String> faultTypes = new LinkedHashSet<>();
+        final Set<SeverityBand> bands = EnumSet.noneOf(SeverityBand.class);
+        String region;
+        String transformerNumber;
+        Set<String> terms = Set.of();
+
+        private Doc(String kind, String id, String number, String transformerId, String poleNumber, String region,
+                    String type, String status, String branch, List<Fault> faults) {
+            this.kind = kind;
+            this.id = id;
+            this.number = number;
+            this.transformerId = transformerId;
+            this.poleNumber = poleNumber;
+            this.region = region;
+            this.type = type;
+            this.status = status;
+            this.branch = branch;
+            this.faults = faults;
+            for (Fault fault : faults) {
+                if (InspectionBox.isFault(fault.faultType())) {
+                    faultTypes.add(fault.faultType().trim());
+                    bands.add(SeverityBand.of(fault.severity()));
+                }
+            }
+            if (kind.equals(TRANSFORMER)) {
+                transformerNumber = number;
+                terms = terms(number, poleNumber, region, type);
+            }
+        }
+
+        static Doc transformer(String id, String number, String poleNumber, String region, String type) {
+            return new Doc(TRANSFORMER, id, number, id, poleNumber, region, type, null, null, List.of());
+        }
+
+        static Doc inspection(String id, String transformerId, String number, String status, String branch,
+                              List<Fault> faults) {
+            return new Doc(INSPECTION, id, number, transformerId, null, null, null, status, branch, faults);
+        }
+
+        /** A fresh inspection document with the same own fields, to relink after its transformer changed. */
+        Doc copy() {
+            return new Doc(kind, id, number, transformerId, null, null, null, status, branch, faults);
+        }
+
+        /** Take over the transformer's searchable fields; only called on documents not yet indexed. */
+        void link(Doc transformer) {
+            List<String> values = new ArrayList<>(List.of(nonNull(number), nonNull(status), nonNull(branch)));
+            values.addAll(faultTypes);
+            if (transformer != null) {
+                region = transformer.region;
+                transformerNumber = transformer.number;
+                values.add(nonNull(transformer.number));
+                values.add(nonNull(transformer.poleNumber));
+                values.add(nonNull(region));
+            }
+            terms = terms(values.toArray(String[]::new));
+        }
+
+        Hit hit() {
+            return new Hit(kind, id, number, transformerId, transformerNumber, region, type, status, branch,
+                    List.copyOf(faultTypes));
+        }
+
+        private static Set<String> terms(String... values) {
+            Set<String> terms = new HashSet<>();
+            for (String value : values) {
+                terms.addAll(words(value));
+            }
+            return terms;
+        }
+
+        private static String nonNull(String value) {
+            return value == null ? "" : value;
+        }
+    }
+
+    /**
+     * @param text words matched as prefixes of indexed words, all of which must match
+     * @param kind {@link #TRANSFORMER} or {@link #INSPECTION}, or null for both
+     * @param type transformer type; transformers only
+     * @param status inspection status; inspections only
+     * @param branch inspection branch; inspections only
+     * @param faultType inspections with a box of this fault type
+     * @param severity inspections with a fault box in this band
+     */
+    public record Query(
+            String text,
+            String kind,
+            String region,
+            String type,
+            String status,
+            String branch,
+            String faultType,
+            SeverityBand severity,
+            int limit
+    ) {
+        boolean accepts(Doc doc) {
+            if (kind != null && !kind.equals(doc.kind)) {
+                return false;
+            }
+            if ((type != null && !doc.kind.equals(TRANSFORMER))
+                    || ((status != null || branch != null || faultType != null || severity != null)
+                    && !doc.kind.equals(INSPECTION))) {
+                return false;
+            }
+            if (!same(region, doc.region) || !same(type, doc.type) || !same(status, doc.status) || !same(branch, doc.branch)) {
+                return false;
+            }
+            if (faultType != null && doc.faultTypes.stream().noneMatch(value -> value.equalsIgnoreCase(faultType))) {
+                return false;
+            }
+            return severity == null || doc.bands.contains(severity);
+        }
+    }
+
+    /**
+     * @param faultTypes fault types of the inspection's boxes, excluding "none"
+     */
+    public record Hit(
+            String kind,
+            String id,
+            String number,
+            String transformerId,
+            String transformerNumber,
+            String region,
+            String type,
+            String status,
+            String branch,
+            List<String> faultTypes
+    ) { }
+
+    /**
+     * Matching documents per facet value. Region counts both kinds; fault type and severity band
+     * count inspections, each once per value however many boxes share it.
+     */
+    public record Facets(Map<String, Integer> region, Map<String, Integer> faultType, Map<String, Integer> severity) {
+        void count(Doc doc) {
+            if (doc.region != null && !doc.region.isBlank()) {
+                region.merge(doc.region, 1, Integer::sum);
+            }
+            for (String value : doc.faultTypes) {
+                faultType.merge(value, 1, Integer::sum);
+            }
+            for (SeverityBand band : doc.bands) {
+                severity.merge(band.label(), 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * @param total every match, of which {@code hits} is the first page
+     */
+    public record Result(int total, List<Hit> hits, Facets facets, double tookMillis) { }
+
+    public record Stats(
+            int transformers,
+            int inspections,
+            int terms,
+            Instant builtAt,
+            long buildMillis,
+            long updates,
+            long searches,
+            double meanSearchMillis
+    ) { }
+}
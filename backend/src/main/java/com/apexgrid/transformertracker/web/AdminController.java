@@ -0,0 +1,96 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.annotation.OverlayRenderer;
+import com.apexgrid.transformertracker.changelog.ChangeLog;
+import com.apexgrid.transformertracker.dashboard.FleetCounters;
+import com.apexgrid.transformertracker.history.HistoryCompressionStats;
+import com.apexgrid.transformertracker.history.HistoryRetentionJob;
+import com.apexgrid.transformertracker.history.HistorySnapshotMigrator;
+import com.apexgrid.transformertracker.push.ChangeBroadcaster;
+import com.apexgrid.transformertracker.search.SearchIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+    private final HistoryCompressionStats historyCompressionStats;
+    private final HistorySnapshotMigrator historySnapshotMigrator;
+    private final HistoryRetentionJob historyRetentionJob;
+    private final OverlayRenderer overlayRenderer;
+    private final SearchIndex searchIndex;
+    private final FleetCounters fleetCounters;
+    private final ChangeBroadcaster changeBroadcaster;
+    private final ChangeLog changeLog;
+    private final EncodingComparison encodingComparison;
+
+    public AdminController(HistoryCompressionStats historyCompressionStats,
+                           HistorySnapshotMigrator historySnapshotMigrator,
+                           HistoryRetentionJob historyRetentionJob,
+                           OverlayRenderer overlayRenderer,
+                           SearchIndex searchIndex,
+                           FleetCounters fleetCounters,
+                           ChangeBroadcaster changeBroadcaster,
+                           ChangeLog changeLog,
+                           EncodingComparison encodingComparison) {
+        this.historyCompressionStats = historyCompressionStats;
+        this.historySnapshotMigrator = historySnapshotMigrator;
+        this.historyRetentionJob = historyRetentionJob;
+        this.overlayRenderer = overlayRenderer;
+        this.searchIndex = searchIndex;
+        this.fleetCounters = fleetCounters;
+        this.changeBroadcaster = changeBroadcaster;
+        this.changeLog = changeLog;
+        this.encodingComparison = encodingComparison;
+    }
+
+    @GetMapping("/history-compression")
+    public ResponseEntity<HistoryCompressionStats.Snapshot> historyCompression() {
+        return ResponseEntity.ok(historyCompressionStats.snapshot());
+    }
+
+    @GetMapping("/history-migration")
+    public ResponseEntity<HistorySnapshotMigrator.Status> historyMigration() {
+        return ResponseEntity.ok(historySnapshotMigrator.status());
+    }
+
+    @GetMapping("/history-retention")
+    public ResponseEntity<HistoryRetentionJob.Status> historyRetention() {
+        return ResponseEntity.ok(historyRetentionJob.status());
+    }
+
+    @GetMapping("/overlay-cache")
+    public ResponseEntity<OverlayRenderer.Stats> overlayCache() {
+        return ResponseEntity.ok(overlayRenderer.stats());
+    }
+
+    @GetMapping("/search-index")
+    public ResponseEntity<SearchIndex.Stats> searchIndex() {
+        return ResponseEntity.ok(searchIndex.stats());
+    }
+
+    @GetMapping("/dashboard-counters")
+    public ResponseEntity<FleetCounters.Stats> dashboardCounters() {
+        return ResponseEntity.ok(fleetCounters.stats());
+    }
+
+    @GetMapping("/push")
+    public ResponseEntity<ChangeBroadcaster.Stats> push() {
+        return ResponseEntity.ok(changeBroadcaster.stats());
+    }
+
+    @GetMapping("/change-log")
+    public ResponseEntity<ChangeLog.Stats> changeLog() {
+        return ResponseEntity.ok(changeLog.stats());
+    }
+
+    /** Encodes a sample of real inspections in every negotiable encoding; runs on demand, so keep the sample small. */
+    @GetMapping("/encodings")
+    public ResponseEntity<EncodingComparison.Report> encodings(@RequestParam(defaultValue = "5") int sample,
+                                                               @RequestParam(defaultValue = "3") int rounds) {
+        return ResponseEntity.ok(encodingComparison.compare(sample, rounds));
+    }
+}
@@ -0,0 +1,40 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.model.BoxMatch;
+import com.apexgrid.transformertracker.repo.InspectionBoxRepo;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/boxes")
+public class BoxController {
+    private static final int MAX_LIMIT = 1000;
+
+    private final InspectionBoxRepo boxRepo;
+
+    public BoxController(InspectionBoxRepo boxRepo) {
+        this.boxRepo = boxRepo;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<BoxMatch>> search(@RequestParam(required = false) String faultType,
+                                                 @RequestParam(required = false) Double minSeverity,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(MAX_LIMIT, limit)));
+        String type = faultType == null || faultType.isBlank() ? null : faultType.trim();
+        // Only a requested floor filters on severity; user-drawn boxes have none
+        List<BoxMatch> matches;
+        if (minSeverity == null) {
+            matches = type == null ? boxRepo.findMatches(page) : boxRepo.findMatches(type, page);
+        } else {
+            matches = type == null ? boxRepo.findMatches(minSeverity, page) : boxRepo.findMatches(type, minSeverity, page);
+        }
+        return ResponseEntity.ok(matches);
+    }
+}
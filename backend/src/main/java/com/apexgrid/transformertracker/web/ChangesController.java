@@ -0,0 +1,85 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.changelog.ChangeLog;
+import com.apexgrid.transformertracker.changelog.ChangeLogProperties;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+@RestController
+@RequestMapping("/api/changes")
+public class ChangesController {
+    private static final int MAX_LIMIT = 1000;
+
+    private final ChangeLog changeLog;
+    private final ChangeLogProperties properties;
+    private final Executor executor;
+
+    public ChangesController(ChangeLog changeLog,
+                             ChangeLogProperties properties,
+                             @Qualifier("applicationTaskExecutor") Executor executor) {
+        this.changeLog = changeLog;
+        this.properties = properties;
+        this.executor = executor;
+    }
+
+    /**
+     * Changes after the {@code since} cursor (from the start of the retained log when omitted).
+     * With {@code wait} (seconds) and nothing to return yet, the request is held without a
+     * thread until a change is numbered or the wait runs out, then answered as usual. The read
+     * after the wake-up runs on the task executor, not on the relay thread that woke it.
+     */
+    @GetMapping
+    public DeferredResult<ResponseEntity<?>> changes(@RequestParam(required = false) String since,
+                                                     @RequestParam(defaultValue = "100") int limit,
+                                                     @RequestParam(defaultValue = "0") long wait) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        String cursorValue = RequestParams.trimmed(since);
+        long after;
+        try {
+            after = cursorValue == null ? -1 : Long.parseLong(cursorValue);
+        } catch (NumberFormatException ex) {
+            after = -2;
+        }
+        if (after < -1) {
+            result.setResult(ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor")));
+            return result;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            result.setResult(ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + MAX_LIMIT)));
+            return result;
+        }
+        // Without a cursor the client asked for whatever is retained, so pruning is not an error
+        ChangeLog.Page page = after < 0 ? changeLog.readRetained(limit) : changeLog.read(after, limit);
+        long waitMillis = Math.min(Math.max(0, wait) * 1000, properties.getMaxWait().toMillis());
+        if (page == null || !page.changes().isEmpty() || waitMillis == 0) {
+            result.setResult(respond(page));
+            return result;
+        }
+
+        long cursor = Long.parseLong(page.cursor());
+        CompletableFuture<Void> ready = changeLog.changedAfter(cursor);
+        DeferredResult<ResponseEntity<?>> waiting = new DeferredResult<>(waitMillis);
+        waiting.onTimeout(() -> waiting.setResult(respond(page)));
+        waiting.onCompletion(() -> ready.cancel(false));
+        ready.thenRunAsync(() -> waiting.setResult(respond(changeLog.read(cursor, limit))), executor);
+        return waiting;
+    }
+
+    private static ResponseEntity<?> respond(ChangeLog.Page page) {
+        if (page == null) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                    .body(Map.of("error", "Cursor is older than the retained change log; re-read everything and start over"));
+        }
+        return ResponseEntity.ok(page);
+    }
+}
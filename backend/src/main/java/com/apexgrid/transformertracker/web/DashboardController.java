@@ -0,0 +1,22 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.dashboard.FleetCounters;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/dashboard")
+public class DashboardController {
+    private final FleetCounters fleetCounters;
+
+    public DashboardController(FleetCounters fleetCounters) {
+        this.fleetCounters = fleetCounters;
+    }
+
+    @GetMapping
+    public ResponseEntity<FleetCounters.Dashboard> dashboard() {
+        return ResponseEntity.ok(fleetCounters.dashboard());
+    }
+}
@@ -0,0 +1,186 @@
+package com.apexgrid.transformertracker.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strong entity tags built from version columns, and the two conditional request checks on them:
+ * {@code If-None-Match} on reads (answered with 304 before anything is loaded or serialized) and
+ * {@code If-Match} on updates (412 when the client edited an older version).
+ * <p>
+ * A strong tag names one sequence of bytes, so the CBOR and Smile bodies of a version get their
+ * own tags ({@code "7.3.cbor"}); JSON keeps the plain one. Reads tag their response with
+ * {@link #forAccept}, the encoding {@code Accept} negotiates, because Spring MVC compares
+ * {@code If-None-Match} with the response tag before any converter runs; {@link VaryOnAccept}
+ * retags the bodies of other methods with the encoding actually written.
+ */
+final class ETags {
+    static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    // In converter order, so an equally acceptable encoding goes to the first, as it does in MVC
+    private static final List<MediaType> ENCODINGS = List.of(MediaType.APPLICATION_JSON, CBOR, SMILE);
+    private static final List<String> SUFFIXES = List.of(".cbor", ".smile");
+
+    private ETags() { }
+
+    /** The tag for a single entity, its version parts joined with dots. */
+    static String of(Object... parts) {
+        StringBuilder tag = new StringBuilder("\"");
+        for (int idx = 0; idx < parts.length; idx++) {
+            if (idx > 0) {
+                tag.append('.');
+            }
+            tag.append(parts[idx]);
+        }
+        return tag.append('"').toString();
+    }
+
+    /** The tag for a collection: a digest of its members' (id, version) keys in order. */
+    static String digest(Iterable<?> keys) {
+        return of(hash(keys));
+    }
+
+    /** First 16 hex digits of the SHA-256 of the keys, one per line. */
+    static String hash(Iterable<?> keys) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (Object key : keys) {
+                sha.update(String.valueOf(key).getBytes(StandardCharsets.UTF_8));
+                sha.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(sha.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * The tag of a body written as {@code type}: JSON (or anything else) gets the plain tag. An
+     * encoding suffix {@code etag} already carries is replaced, so retagging is harmless.
+     */
+    static String forEncoding(String etag, MediaType type) {
+        if (etag == null || !etag.endsWith("\"")) {
+            return etag;
+        }
+        String base = etag.substring(0, etag.length() - 1);
+        for (String known : SUFFIXES) {
+            if (base.endsWith(known)) {
+                base = base.substring(0, base.length() - known.length());
+                break;
+            }
+        }
+        String suffix = CBOR.equalsTypeAndSubtype(type) ? ".cbor" : SMILE.equalsTypeAndSubtype(type) ? ".smile" : "";
+        return base + suffix + '"';
+    }
+
+    /** The tag of the body a request with this {@code Accept} header gets. */
+    static String forAccept(String etag, String accept) {
+        return forEncoding(etag, negotiated(accept));
+    }
+
+    /**
+     * The encoding content negotiation picks for {@code accept}: the one with the highest quality,
+     * taken from the most specific range that matches it; on a tie the more specific match wins,
+     * then converter order. JSON when nothing (or nothing valid) is accepted.
+     */
+    static MediaType negotiated(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> ranges;
+        try {
+            ranges = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException ex) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType best = MediaType.APPLICATION_JSON;
+        double bestQuality = 0;
+        int bestSpecificity = -1;
+        for (MediaType encoding : ENCODINGS) {
+            MediaType match = null;
+            for (MediaType range : ranges) {
+                if (range.includes(encoding) && (match == null || specificity(range) > specificity(match))) {
+                    match = range;
+                }
+            }
+            if (match == null || match.getQualityValue() <= 0) {
+                continue;
+            }
+            double quality = match.getQualityValue();
+            int specificity = specificity(match);
+            if (quality > bestQuality || quality == bestQuality && specificity > bestSpecificity) {
+                best = encoding;
+                bestQuality = quality;
+                bestSpecificity = specificity;
+            }
+        }
+        return best;
+    }
+
+    private static int specificity(MediaType range) {
+        return range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+    }
+
+    /**
+     * Whether {@code If-None-Match} names the current tag in the encoding {@code accept} gets; weak
+     * comparison, so {@code W/} prefixes match too.
+     */
+    static boolean notModified(String ifNoneMatch, String accept, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String current = forAccept(etag, accept);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an {@code If-Match} header is present and names neither the current tag, in any
+     * encoding, nor {@code *}; with no current version ({@code etag} null) any such header fails.
+     */
+    static boolean preconditionFailed(String ifMatch, String etag) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return false;
+        }
+        if (etag == null) {
+            return true;
+        }
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(forEncoding(etag, CBOR))
+                    || tag.equals(forEncoding(etag, SMILE))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 304 with the tag in the encoding {@code accept} gets; having no body, it never reaches {@link VaryOnAccept}. */
+    static <T> ResponseEntity<T> notModifiedResponse(String etag, String accept) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(forAccept(etag, accept)).build();
+    }
+
+    /** 412 with the current tag, when known, so the client can re-read and retry. */
+    static ResponseEntity<Map<String, String>> preconditionFailedResponse(String etag, String error) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.PRECONDITION_FAILED);
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.body(Map.of("error", error));
+    }
+}
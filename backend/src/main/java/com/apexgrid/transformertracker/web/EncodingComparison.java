@@ -0,0 +1,165 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.history.InspectionHistoryService;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.repo.InspectionFilter;
+import com.apexgrid.transformertracker.repo.InspectionRepo;
+import com.apexgrid.transformertracker.web.dto.BoxStateResponse;
+import com.apexgrid.transformertracker.web.dto.HistoryPageResponse;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the response encodings on this deployment's own data. The most recently inspected
+ * inspections, their box state (as the box endpoints return it) and their newest history page
+ * are encoded as JSON, CBOR and Smile with the mappers the converters use. The inspection's
+ * image is left out: its base64 data URL would dominate every figure and make each run as costly
+ * as that many image downloads. For each payload kind and encoding it reports the bytes, the
+ * gzipped bytes and the mean encode time. Times are taken over repeated in-process runs after a
+ * warm-up; read them relative to JSON, not as request latency.
+ */
+@Component
+public class EncodingComparison {
+    private static final int MAX_SAMPLE = 50;
+    private static final int MAX_ROUNDS = 20;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int HISTORY_PAGE = 20;
+
+    private final InspectionRepo inspections;
+    private final InspectionHistoryService history;
+    private final Map<String, ObjectWriter> writers = new LinkedHashMap<>();
+
+    public EncodingComparison(InspectionRepo inspections,
+                              InspectionHistoryService history,
+                              MappingJackson2HttpMessageConverter json,
+                              MappingJackson2CborHttpMessageConverter cbor,
+                              MappingJackson2SmileHttpMessageConverter smile) {
+        this.inspections = inspections;
+        this.history = history;
+        writers.put("json", withoutImage(json.getObjectMapper()));
+        writers.put("cbor", withoutImage(cbor.getObjectMapper()));
+        writers.put("smile", withoutImage(smile.getObjectMapper()));
+    }
+
+    private static ObjectWriter withoutImage(ObjectMapper mapper) {
+        return mapper.copy().addMixIn(Inspection.class, WithoutImage.class).writer();
+    }
+
+    @JsonIgnoreProperties("imageUrl")
+    private abstract static class WithoutImage { }
+
+    /**
+     * @param sample how many inspections to encode, newest inspected first (1 to 50)
+     * @param rounds timed passes over the sample per encoding (1 to 20)
+     */
+    public Report compare(int sample, int rounds) {
+        int size = Math.max(1, Math.min(MAX_SAMPLE, sample));
+        int passes = Math.max(1, Math.min(MAX_ROUNDS, rounds));
+        List<Inspection> rows = inspections.findPage(new InspectionFilter(null, null, null, null, null),
+                "inspectedDate", true, null, size).items();
+
+        Map<String, List<Object>> payloads = new LinkedHashMap<>();
+        payloads.put("inspection", new ArrayList<>(rows));
+        payloads.put("boxes", new ArrayList<>(rows.stream().map(BoxStateResponse::fromEntity).toList()));
+        payloads.put("history", new ArrayList<>(rows.stream()
+                .map(i -> HistoryPageResponse.fromPage(history.page(i.getId(), null, HISTORY_PAGE)))
+                .toList()));
+
+        List<Result> results = new ArrayList<>();
+        if (rows.isEmpty()) {
+            return new Report(0, passes, results);
+        }
+        for (Map.Entry<String, List<Object>> payload : payloads.entrySet()) {
+            Result json = null;
+            for (Map.Entry<String, ObjectWriter> writer : writers.entrySet()) {
+                Result result = measure(payload.getKey(), writer.getKey(), writer.getValue(), payload.getValue(), passes, json);
+                if (json == null) {
+                    json = result;
+                }
+                results.add(result);
+            }
+        }
+        return new Report(rows.size(), passes, results);
+    }
+
+    private static Result measure(String payload, String format, ObjectWriter writer, List<Object> values, int rounds,
+                                  Result json) {
+        long bytes = 0;
+        long gzipBytes = 0;
+        for (Object value : values) {
+            byte[] encoded = encode(writer, value);
+            bytes += encoded.length;
+            gzipBytes += gzippedSize(encoded);
+        }
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (Object value : values) {
+                encode(writer, value);
+            }
+        }
+        long started = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (Object value : values) {
+                encode(writer, value);
+            }
+        }
+        double micros = (System.nanoTime() - started) / 1000.0 / ((long) rounds * values.size());
+        return new Result(payload, format, bytes, gzipBytes, micros,
+                json == null ? 1.0 : ratio(bytes, json.bytes()),
+                json == null ? 1.0 : json.encodeMicros() == 0 ? 0 : micros / json.encodeMicros());
+    }
+
+    private static byte[] encode(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long gzippedSize(byte[] encoded) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(encoded);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.size();
+    }
+
+    private static double ratio(long value, long baseline) {
+        return baseline == 0 ? 0 : (double) value / baseline;
+    }
+
+    /**
+     * @param inspections how many inspections were sampled; 0 when there are none yet
+     * @param rounds      timed passes per encoding
+     */
+    public record Report(int inspections, int rounds, List<Result> results) { }
+
+    /**
+     * @param payload      {@code inspection}, {@code boxes} or {@code history}
+     * @param format       {@code json}, {@code cbor} or {@code smile}
+     * @param bytes        total encoded size over the sample
+     * @param gzipBytes    the same, gzipped per payload as a compressing proxy would send it
+     * @param encodeMicros mean time to encode one payload
+     * @param sizeVsJson   {@code bytes} relative to JSON's for the same payloads
+     * @param timeVsJson   {@code encodeMicros} relative to JSON's
+     */
+    public record Result(String payload, String format, long bytes, long gzipBytes, double encodeMicros,
+                         double sizeVsJson, double timeVsJson) { }
+}
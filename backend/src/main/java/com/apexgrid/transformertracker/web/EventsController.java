@@ -0,0 +1,33 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.push.ChangeBroadcaster;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+public class EventsController {
+    private final ChangeBroadcaster broadcaster;
+
+    public EventsController(ChangeBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@RequestParam(required = false) String inspectionId,
+                                                @RequestParam(required = false) String transformerId) {
+        SseEmitter emitter = broadcaster.subscribe(RequestParams.trimmed(inspectionId), RequestParams.trimmed(transformerId));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+        // Keep proxies such as nginx from buffering the stream
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").header(HttpHeaders.CACHE_CONTROL, "no-cache").body(emitter);
+    }
+}
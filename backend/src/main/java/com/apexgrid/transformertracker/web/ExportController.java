@@ -0,0 +1,91 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.export.BulkExporter;
+import com.apexgrid.transformertracker.export.DatasetExporter;
+import com.apexgrid.transformertracker.export.DatasetFormat;
+import com.apexgrid.transformertracker.export.ZipExportSink;
+import com.apexgrid.transformertracker.repo.InspectionFilter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.zip.ZipOutputStream;
+
+@RestController
+@RequestMapping("/api/exports")
+public class ExportController {
+    static final String CURSOR_HEADER = "X-Dataset-Cursor";
+
+    private final BulkExporter bulkExporter;
+    private final DatasetExporter datasetExporter;
+
+    public ExportController(BulkExporter bulkExporter, DatasetExporter datasetExporter) {
+        this.bulkExporter = bulkExporter;
+        this.datasetExporter = datasetExporter;
+    }
+
+    @GetMapping("/inspections")
+    public ResponseEntity<StreamingResponseBody> exportInspections(
+            @RequestParam(required = false) String transformerId,
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String faultType) {
+        InspectionFilter filter = new InspectionFilter(RequestParams.trimmed(transformerId), RequestParams.trimmed(region),
+                from, to, RequestParams.trimmed(faultType));
+        StreamingResponseBody body = out -> {
+            try (ZipOutputStream zos = new ZipOutputStream(out)) {
+                bulkExporter.export(filter, new ZipExportSink(zos));
+            }
+        };
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(ContentDisposition.attachment().filename("inspections-export.zip").build());
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    /**
+     * Training dataset of the current boxes. {@code since} takes the cursor of a previous export
+     * (also sent as {@value #CURSOR_HEADER}) and limits this one to what changed after it.
+     * {@code format} is coco or yolo; anything else is a 400.
+     */
+    @GetMapping("/dataset")
+    public ResponseEntity<StreamingResponseBody> exportDataset(
+            @RequestParam(defaultValue = "coco") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since,
+            @RequestParam(required = false) String transformerId,
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String faultType) {
+        DatasetFormat datasetFormat = DatasetFormat.parse(format);
+        if (datasetFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        InspectionFilter filter = new InspectionFilter(RequestParams.trimmed(transformerId), RequestParams.trimmed(region),
+                from, to, RequestParams.trimmed(faultType))
+                .changedSince(since);
+        Instant startedAt = Instant.now();
+        StreamingResponseBody body = out -> {
+            try (ZipOutputStream zos = new ZipOutputStream(out)) {
+                datasetExporter.export(datasetFormat, filter, new ZipExportSink(zos), startedAt);
+            }
+        };
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename("dataset-" + datasetFormat.name().toLowerCase(Locale.ROOT) + ".zip").build());
+        headers.set(CURSOR_HEADER, datasetExporter.cursorFor(startedAt).toString());
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+}
@@ -3,101 +3,306 @@ package com.apexgrid.transformertracker.web;
 import com.apexgrid.transformertracker.ai.AiParameterService;
 import com.apexgrid.transformertracker.ai.ParameterTuningService;
 import com.apexgrid.transformertracker.ai.PythonAnalyzerService;
+import com.apexgrid.transformertracker.annotation.AnnotationState;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec.BoxColumn;
+import com.apexgrid.transformertracker.annotation.BoxPatch;
+import com.apexgrid.transformertracker.annotation.JsonText;
+import com.apexgrid.transformertracker.annotation.OverlayRenderer;
+import com.apexgrid.transformertracker.baseline.BaselineService;
+import com.apexgrid.transformertracker.change.InspectionChanged;
+import com.apexgrid.transformertracker.change.MaintenanceRecordChanged;
+import com.apexgrid.transformertracker.export.InspectionExporter;
+import com.apexgrid.transformertracker.export.ZipExportSink;
+import com.apexgrid.transformertracker.history.InspectionEdits;
+import com.apexgrid.transformertracker.history.InspectionHistoryService;
+import com.apexgrid.transformertracker.image.ImageIngestService;
+import com.apexgrid.transformertracker.image.ImageNormalizer;
+import com.apexgrid.transformertracker.image.IngestedImage;
+import com.apexgrid.transformertracker.image.NormalizedImage;
 import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
 import com.apexgrid.transformertracker.model.MaintenanceRecord;
 import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.model.TransformerBaseline;
+import com.apexgrid.transformertracker.repo.InspectionFilter;
 import com.apexgrid.transformertracker.repo.InspectionRepo;
+import com.apexgrid.transformertracker.repo.InvalidPageRequestException;
+import com.apexgrid.transformertracker.repo.KeysetPage;
 import com.apexgrid.transformertracker.repo.MaintenanceRecordRepo;
 import com.apexgrid.transformertracker.repo.TransformerRepo;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.NullNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.apexgrid.transformertracker.web.dto.BoxBulkUpdateRequest;
+import com.apexgrid.transformertracker.web.dto.BoxPatchRequest;
+import com.apexgrid.transformertracker.web.dto.BoxStateResponse;
+import com.apexgrid.transformertracker.web.dto.HistoryPageResponse;
 import com.apexgrid.transformertracker.web.dto.MaintenanceRecordResponse;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.imageio.ImageIO;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.zip.ZipEntry;
+import java.util.Optional;
+import java.util.Set;
 import java.util.zip.ZipOutputStream;
 
 @RestController
 @RequestMapping("/api/inspections")
 public class InspectionController {
+    private static final int MAX_HISTORY_LIMIT = 200;
+    private static final int DEFAULT_LIST_LIMIT = 50;
+    private static final int MAX_LIST_LIMIT = 500;
+
     private final InspectionRepo repo;
     private final TransformerRepo transformerRepo;
     private final MaintenanceRecordRepo maintenanceRecordRepo;
     private final PythonAnalyzerService pythonAnalyzerService;
     private final ParameterTuningService parameterTuningService;
     private final AiParameterService aiParameterService;
+    private final ImageIngestService imageIngestService;
+    private final ImageNormalizer imageNormalizer;
+    private final BaselineService baselineService;
+    private final InspectionHistoryService historyService;
+    private final InspectionEdits inspectionEdits;
+    private final InspectionExporter inspectionExporter;
+    private final OverlayRenderer overlayRenderer;
+    private final ApplicationEventPublisher events;
+    private final ListStreamer listStreamer;
 
     public InspectionController(InspectionRepo repo,
                                 TransformerRepo transformerRepo,
                                 MaintenanceRecordRepo maintenanceRecordRepo,
                                 PythonAnalyzerService pythonAnalyzerService,
                                 ParameterTuningService parameterTuningService,
-                                AiParameterService aiParameterService) {
+                                AiParameterService aiParameterService,
+                                ImageIngestService imageIngestService,
+                                ImageNormalizer imageNormalizer,
+                                BaselineService baselineService,
+                                InspectionHistoryService historyService,
+                                InspectionEdits inspectionEdits,
+                                InspectionExporter inspectionExporter,
+                                OverlayRenderer overlayRenderer,
+                                ApplicationEventPublisher events,
+                                ListStreamer listStreamer) {
         this.repo = repo;
         this.transformerRepo = transformerRepo;
         this.maintenanceRecordRepo = maintenanceRecordRepo;
         this.pythonAnalyzerService = pythonAnalyzerService;
         this.parameterTuningService = parameterTuningService;
         this.aiParameterService = aiParameterService;
+        this.imageIngestService = imageIngestService;
+        this.imageNormalizer = imageNormalizer;
+        this.baselineService = baselineService;
+        this.historyService = historyService;
+        this.inspectionEdits = inspectionEdits;
+        this.inspectionExporter = inspectionExporter;
+        this.overlayRenderer = overlayRenderer;
+        this.events = events;
+        this.listStreamer = listStreamer;
     }
 
+    /**
+     * Filtered list in a stable order. With {@code limit} (or a {@code cursor}) it returns one
+     * keyset page and the cursor of the next; without, the whole list as a plain array. The ETag
+     * is a digest of the listed rows' versions, read before the rows themselves so that a
+     * matching {@code If-None-Match} costs one scalar query. With {@code fields}, only those
+     * properties are read and written.
+     */
     @GetMapping
-    public List<Inspection> list(@RequestParam(required = false) Boolean fav) {
-        if (Boolean.TRUE.equals(fav)) return repo.findByFavouriteTrue();
-        return repo.findAll();
+    public ResponseEntity<?> list(@RequestParam(required = false) Boolean fav,
+                                  @RequestParam(required = false) String transformerId,
+                                  @RequestParam(required = false) String region,
+                                  @RequestParam(required = false) String status,
+                                  @RequestParam(required = false) String branch,
+                                  @RequestParam(required = false) String weather,
+                                  @RequestParam(required = false) String faultType,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                  @RequestParam(defaultValue = "inspectedDate") String sort,
+                                  @RequestParam(defaultValue = "asc") String order,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(required = false) Integer limit,
+                                  @RequestParam(required = false) String fields,
+                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        InspectionFilter filter = listFilter(fav, transformerId, region, status, branch, weather, faultType, from, to);
+        boolean paged = limit != null || cursor != null;
+        int pageSize = paged ? Math.max(1, Math.min(MAX_LIST_LIMIT, limit != null ? limit : DEFAULT_LIST_LIMIT)) : 0;
+        boolean descending = "desc".equalsIgnoreCase(order);
+        try {
+            Set<String> names = SparseFields.parse(fields, InspectionRepo.FIELDS);
+            String etag = SparseFields.etag(ETags.digest(repo.findPageVersions(filter, sort, descending, cursor, pageSize)), names);
+            if (ETags.notModified(ifNoneMatch, accept, etag)) {
+                return ETags.notModifiedResponse(etag, accept);
+            }
+            if (names == null) {
+                KeysetPage<Inspection> page = repo.findPage(filter, sort, descending, cursor, pageSize);
+                return ResponseEntity.ok().eTag(ETags.forAccept(etag, accept)).body(paged ? page : page.items());
+            }
+            KeysetPage<Inspection> page = repo.findPage(filter, sort, descending, cursor, pageSize, names);
+            return ResponseEntity.ok().eTag(ETags.forAccept(etag, accept))
+                    .body(SparseFields.body(paged ? page : page.items(), SparseFields.INSPECTION, names));
+        } catch (InvalidPageRequestException | IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    /**
+     * The whole filtered list read through a database cursor and written as it is read, as a JSON
+     * array or NDJSON ({@code format=ndjson}), gzip-compressed when accepted, in full or limited
+     * to {@code fields}.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) Boolean fav,
+                                                        @RequestParam(required = false) String transformerId,
+                                                        @RequestParam(required = false) String region,
+                                                        @RequestParam(required = false) String status,
+                                                        @RequestParam(required = false) String branch,
+                                                        @RequestParam(required = false) String weather,
+                                                        @RequestParam(required = false) String faultType,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                        @RequestParam(defaultValue = "inspectedDate") String sort,
+                                                        @RequestParam(defaultValue = "asc") String order,
+                                                        @RequestParam(required = false) String format,
+                                                        @RequestParam(required = false) String fields,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!InspectionRepo.SORTS.contains(sort)) {
+            return ResponseEntity.badRequest().build();
+        }
+        Set<String> names;
+        try {
+            names = SparseFields.parse(fields, InspectionRepo.FIELDS);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        InspectionFilter filter = listFilter(fav, transformerId, region, status, branch, weather, faultType, from, to);
+        boolean descending = "desc".equalsIgnoreCase(order);
+        if (names == null) {
+            return listStreamer.stream(format, acceptEncoding, fetchSize -> repo.streamAll(filter, sort, descending, fetchSize));
+        }
+        return listStreamer.stream(format, acceptEncoding, SparseFields.filters(SparseFields.INSPECTION, names),
+                fetchSize -> repo.streamAll(filter, sort, descending, fetchSize, names));
+    }
+
+    private static String etag(Inspection i) {
+        return ETags.of(i.getVersion(), i.getTransformer().getVersion());
+    }
+
+    private static String etag(MaintenanceRecord record) {
+        return ETags.of(record.getId(), record.getVersion());
+    }
+
+    private static InspectionFilter listFilter(Boolean fav, String transformerId, String region, String status,
+                                               String branch, String weather, String faultType,
+                                               LocalDate from, LocalDate to) {
+        return new InspectionFilter(RequestParams.trimmed(transformerId), RequestParams.trimmed(region), from, to,
+                RequestParams.trimmed(faultType), RequestParams.trimmed(status), RequestParams.trimmed(branch),
+                Boolean.TRUE.equals(fav) ? true : null, RequestParams.trimmed(weather), null);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Inspection> getOne(@PathVariable String id) {
+    public ResponseEntity<?> getOne(@PathVariable String id,
+                                    @RequestParam(required = false) String fields,
+                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<String> names;
+        try {
+            names = SparseFields.parse(fields, InspectionRepo.FIELDS);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+        Optional<String> current = repo.findVersionKey(id);
+        if (current.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = SparseFields.etag(ETags.of(current.get()), names);
+        if (ETags.notModified(ifNoneMatch, accept, etag)) {
+            return ETags.notModifiedResponse(etag, accept);
+        }
+        if (names != null) {
+            // Tagged with the versions read above; the partial row carries no version of its own
+            return repo.findPartialById(id, names)
+                    .<ResponseEntity<?>>map(i -> ResponseEntity.ok().eTag(ETags.forAccept(etag, accept))
+                            .body(SparseFields.body(i, SparseFields.INSPECTION, names)))
+                    .orElse(ResponseEntity.notFound().build());
+        }
         return repo.findById(id)
-                .map(ResponseEntity::ok)
+                .map(i -> ResponseEntity.ok().eTag(ETags.forAccept(etag(i), accept)).body(i))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{id}/history")
+    public ResponseEntity<?> history(@PathVariable String id,
+                                     @RequestParam(required = false) Integer cursor,
+                                     @RequestParam(defaultValue = "20") int limit) {
+        if (!repo.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        int pageSize = Math.max(1, Math.min(MAX_HISTORY_LIMIT, limit));
+        return ResponseEntity.ok(HistoryPageResponse.fromPage(historyService.page(id, cursor, pageSize)));
+    }
+
+    /** The inspection's maintenance record, in full or limited to {@code fields}. */
     @GetMapping("/{id}/maintenance-record")
-    public ResponseEntity<?> getMaintenanceRecord(@PathVariable String id) {
+    public ResponseEntity<?> getMaintenanceRecord(@PathVariable String id,
+                                                  @RequestParam(required = false) String fields,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<String> names;
+        try {
+            names = SparseFields.parse(fields, MaintenanceRecordResponse.FIELDS);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
         if (!repo.existsById(id)) {
             return ResponseEntity.status(404).body(Map.of("error", "Inspection not found"));
         }
         var record = maintenanceRecordRepo.findByInspectionId(id);
         if (record.isPresent()) {
-            return ResponseEntity.ok(MaintenanceRecordResponse.fromEntity(record.get()));
+            String etag = SparseFields.etag(etag(record.get()), names);
+            if (ETags.notModified(ifNoneMatch, accept, etag)) {
+                return ETags.notModifiedResponse(etag, accept);
+            }
+            MaintenanceRecordResponse body = MaintenanceRecordResponse.fromEntity(record.get());
+            return ResponseEntity.ok().eTag(ETags.forAccept(etag, accept))
+                    .body(names == null ? body : SparseFields.body(body, SparseFields.MAINTENANCE_RECORD, names));
         }
         return ResponseEntity.status(404).body(Map.of("error", "Maintenance record not found"));
     }
 
     @PostMapping("/{id}/maintenance-record")
     public ResponseEntity<?> upsertMaintenanceRecord(@PathVariable String id,
-                                                     @RequestBody(required = false) MaintenanceRecordRequest payload) {
+                                                     @RequestBody(required = false) MaintenanceRecordRequest payload,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (payload == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Request body is required"));
         }
@@ -105,8 +310,12 @@ public class InspectionController {
         if (inspectionOpt.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("error", "Inspection not found"));
         }
-        MaintenanceRecord record = maintenanceRecordRepo.findByInspectionId(id)
-            .orElseGet(MaintenanceRecord::new);
+        Optional<MaintenanceRecord> existing = maintenanceRecordRepo.findByInspectionId(id);
+        String current = existing.map(InspectionController::etag).orElse(null);
+        if (ETags.preconditionFailed(ifMatch, current)) {
+            return ETags.preconditionFailedResponse(current, "Maintenance record was changed since it was read");
+        }
+        MaintenanceRecord record = existing.orElseGet(MaintenanceRecord::new);
         Inspection inspection = inspectionOpt.get();
         record.setInspection(inspection);
         record.setTransformerName(resolveTransformerName(inspection));
@@ -119,13 +328,20 @@ public class InspectionController {
         record.setEfficiency(payload.efficiency());
         record.setRecommendation(trimToNull(payload.recommendation()));
         record.setRemarks(trimToNull(payload.remarks()));
-        MaintenanceRecord saved = maintenanceRecordRepo.save(record);
-        return ResponseEntity.ok(MaintenanceRecordResponse.fromEntity(saved));
+        MaintenanceRecord saved;
+        try {
+            saved = maintenanceRecordRepo.save(record);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            return ETags.preconditionFailedResponse(null, "Maintenance record was changed since it was read");
+        }
+        events.publishEvent(MaintenanceRecordChanged.saved(inspection.getTransformer().getId(), saved));
+        return ResponseEntity.ok().eTag(etag(saved)).body(MaintenanceRecordResponse.fromEntity(saved));
     }
 
     @DeleteMapping("/{id}/maintenance-record")
     public ResponseEntity<?> deleteMaintenanceRecord(@PathVariable String id) {
-        if (!repo.existsById(id)) {
+        Optional<String> transformerId = repo.findTransformerId(id);
+        if (transformerId.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("error", "Inspection not found"));
         }
         var recordOpt = maintenanceRecordRepo.findByInspectionId(id);
@@ -133,185 +349,41 @@ public class InspectionController {
             return ResponseEntity.status(404).body(Map.of("error", "Maintenance record not found"));
         }
         maintenanceRecordRepo.delete(recordOpt.get());
+        events.publishEvent(MaintenanceRecordChanged.deleted(id, transformerId.get()));
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping(value = "/{id}/annotated.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> annotatedImage(@PathVariable String id) {
+        Inspection inspection = repo.findById(id).orElse(null);
+        if (inspection == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            byte[] png = overlayRenderer.render(inspection);
+            return png != null ? ResponseEntity.ok().contentType(MediaType.IMAGE_PNG).body(png) : ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/{id}/export")
-    public ResponseEntity<?> exportInspection(@PathVariable String id) {
+    public ResponseEntity<StreamingResponseBody> exportInspection(@PathVariable String id) {
         return repo.findById(id).map(inspection -> {
-            try {
-                ObjectMapper mapper = new ObjectMapper();
-                Instant generatedAt = Instant.now();
-
-                ObjectNode root = mapper.createObjectNode();
-                root.put("exportGeneratedAt", generatedAt.toString());
-
-                ObjectNode inspectionNode = root.putObject("inspection");
-                putNullable(inspectionNode, "id", inspection.getId());
-                putNullable(inspectionNode, "inspectionNumber", inspection.getInspectionNumber());
-                putNullable(inspectionNode, "branch", inspection.getBranch());
-                putNullable(inspectionNode, "status", inspection.getStatus());
-                putNullable(inspectionNode, "inspectedDate", inspection.getInspectedDate());
-                putNullable(inspectionNode, "maintainanceDate", inspection.getMaintainanceDate());
-                putNullable(inspectionNode, "uploadedBy", inspection.getUploadedBy());
-                putNullable(inspectionNode, "imageUploadedBy", inspection.getImageUploadedBy());
-                putNullable(inspectionNode, "imageUploadedAt",
-                        inspection.getImageUploadedAt() != null ? inspection.getImageUploadedAt().toString() : null);
-                putNullable(inspectionNode, "weather", inspection.getWeather());
-                putNullable(inspectionNode, "lastAnalysisWeather", inspection.getLastAnalysisWeather());
-                inspectionNode.put("favourite", inspection.isFavourite());
-
-                Transformer transformer = inspection.getTransformer();
-                if (transformer != null) {
-                    ObjectNode transformerNode = inspectionNode.putObject("transformer");
-                    putNullable(transformerNode, "id", transformer.getId());
-                    putNullable(transformerNode, "transformerNumber", transformer.getTransformerNumber());
-                    putNullable(transformerNode, "poleNumber", transformer.getPoleNumber());
-                    putNullable(transformerNode, "region", transformer.getRegion());
-                    putNullable(transformerNode, "type", transformer.getType());
-                } else {
-                    inspectionNode.putNull("transformer");
-                }
-                BaselineSelection baselineSelection = resolveBaselineSelection(inspection);
-                putNullable(inspectionNode, "baselineWeather",
-                        baselineSelection != null ? baselineSelection.weatherLabel() : null);
-
-                JsonNode currentBoxes = parseJsonNode(mapper, inspection.getBoundingBoxes());
-                JsonNode currentFaults = parseJsonNode(mapper, inspection.getFaultTypes());
-                JsonNode currentAnnotated = parseJsonNode(mapper, inspection.getAnnotatedBy());
-                JsonNode currentSeverity = parseJsonNode(mapper, inspection.getSeverity());
-                JsonNode currentComments = parseJsonNode(mapper, inspection.getComment());
-                JsonNode currentCreatedAt = parseJsonNode(mapper, inspection.getBoxCreatedAt());
-
-                ObjectNode currentNode = root.putObject("current");
-                putNullable(currentNode, "timestamp",
-                        inspection.getImageUploadedAt() != null ? inspection.getImageUploadedAt().toString() : generatedAt.toString());
-                currentNode.set("boundingBoxes", cloneNode(currentBoxes));
-                currentNode.set("faultTypes", cloneNode(currentFaults));
-                currentNode.set("annotatedBy", cloneNode(currentAnnotated));
-                currentNode.set("severity", cloneNode(currentSeverity));
-                currentNode.set("comments", cloneNode(currentComments));
-                currentNode.set("boxCreatedAt", cloneNode(currentCreatedAt));
-
-                ArrayNode boxHistory = asArrayNode(parseJsonNode(mapper, inspection.getBoundingBoxHistory()));
-                ArrayNode faultHistory = asArrayNode(parseJsonNode(mapper, inspection.getFaultTypeHistory()));
-                ArrayNode annotatedHistory = asArrayNode(parseJsonNode(mapper, inspection.getAnnotatedByHistory()));
-                ArrayNode severityHistory = asArrayNode(parseJsonNode(mapper, inspection.getSeverityHistory()));
-                ArrayNode commentHistory = asArrayNode(parseJsonNode(mapper, inspection.getCommentHistory()));
-                ArrayNode timestampHistory = asArrayNode(parseJsonNode(mapper, inspection.getTimestampHistory()));
-                ArrayNode createdAtHistory = asArrayNode(parseJsonNode(mapper, inspection.getBoxCreatedAtHistory()));
-
-                ArrayNode history = mapper.createArrayNode();
-                int snapshotCount = maxSize(boxHistory, faultHistory, annotatedHistory, severityHistory, commentHistory, timestampHistory, createdAtHistory);
-                for (int index = 0; index < snapshotCount; index++) {
-                    ObjectNode entry = mapper.createObjectNode();
-                    String ts = extractText(timestampHistory, index);
-                    putNullable(entry, "timestamp", ts);
-                    entry.put("isCurrent", false);
-                    entry.set("boundingBoxes", cloneNode(snapshotValue(boxHistory, index)));
-                    entry.set("faultTypes", cloneNode(snapshotValue(faultHistory, index)));
-                    entry.set("annotatedBy", cloneNode(snapshotValue(annotatedHistory, index)));
-                    entry.set("severity", cloneNode(snapshotValue(severityHistory, index)));
-                    entry.set("comments", cloneNode(snapshotValue(commentHistory, index)));
-                    entry.set("boxCreatedAt", cloneNode(snapshotValue(createdAtHistory, index)));
-                    history.add(entry);
-                }
-
-                ObjectNode currentEntry = mapper.createObjectNode();
-                putNullable(currentEntry, "timestamp",
-                        inspection.getImageUploadedAt() != null ? inspection.getImageUploadedAt().toString() : generatedAt.toString());
-                currentEntry.put("isCurrent", true);
-                currentEntry.set("boundingBoxes", cloneNode(currentBoxes));
-                currentEntry.set("faultTypes", cloneNode(currentFaults));
-                currentEntry.set("annotatedBy", cloneNode(currentAnnotated));
-                currentEntry.set("severity", cloneNode(currentSeverity));
-                currentEntry.set("comments", cloneNode(currentComments));
-                currentEntry.set("boxCreatedAt", cloneNode(currentCreatedAt));
-                history.add(currentEntry);
-
-                root.set("history", history);
-
-                byte[] metadataBytes = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(root);
-
-                StringBuilder csvBuilder = new StringBuilder();
-                csvBuilder.append("timestamp,isCurrent,boundingBoxes,faultTypes,annotatedBy,severity,comments\n");
-                for (JsonNode entry : history) {
-                    String timestamp = entry.path("timestamp").isNull() ? "" : entry.path("timestamp").asText("");
-                    String boxesJson = mapper.writeValueAsString(entry.path("boundingBoxes"));
-                    String faultsJson = mapper.writeValueAsString(entry.path("faultTypes"));
-                    String annotatedJson = mapper.writeValueAsString(entry.path("annotatedBy"));
-                    String severityJson = mapper.writeValueAsString(entry.path("severity"));
-                    String commentsJson = mapper.writeValueAsString(entry.path("comments"));
-                    csvBuilder.append('"').append(csvEscape(timestamp)).append('"').append(',');
-                    csvBuilder.append(entry.path("isCurrent").asBoolean(false) ? "true" : "false").append(',');
-                    csvBuilder.append('"').append(csvEscape(boxesJson)).append('"').append(',');
-                    csvBuilder.append('"').append(csvEscape(faultsJson)).append('"').append(',');
-                    csvBuilder.append('"').append(csvEscape(annotatedJson)).append('"').append(',');
-                    csvBuilder.append('"').append(csvEscape(severityJson)).append('"').append(',');
-                    csvBuilder.append('"').append(csvEscape(commentsJson)).append('"').append('\n');
-                }
-                byte[] csvBytes = csvBuilder.toString().getBytes(StandardCharsets.UTF_8);
-
-                byte[] imageBytes = decodeDataUrl(inspection.getImageUrl());
-                String imageExt = guessImageExtension(inspection.getImageUrl());
-
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-                    ZipEntry metadataEntry = new ZipEntry("metadata.json");
-                    zos.putNextEntry(metadataEntry);
-                    zos.write(metadataBytes);
-                    zos.closeEntry();
-
-                    ZipEntry csvEntry = new ZipEntry("history.csv");
-                    zos.putNextEntry(csvEntry);
-                    zos.write(csvBytes);
-                    zos.closeEntry();
-
-                    if (imageBytes != null && imageBytes.length > 0) {
-                        ZipEntry imageEntry = new ZipEntry("image-original." + imageExt);
-                        zos.putNextEntry(imageEntry);
-                        zos.write(imageBytes);
-                        zos.closeEntry();
-                    }
-
-                    if (baselineSelection != null) {
-                        byte[] baselineBytes = decodeDataUrl(baselineSelection.dataUrl());
-                        if (baselineBytes != null && baselineBytes.length > 0) {
-                            String baselineExt = guessImageExtension(baselineSelection.dataUrl());
-                            String weatherLabel = baselineSelection.weatherLabel() != null
-                                    ? sanitizeFilename(baselineSelection.weatherLabel())
-                                    : "baseline";
-                            if (weatherLabel.isBlank()) {
-                                weatherLabel = "baseline";
-                            }
-                            ZipEntry baselineEntry = new ZipEntry("baseline-" + weatherLabel + "." + baselineExt);
-                            zos.putNextEntry(baselineEntry);
-                            zos.write(baselineBytes);
-                            zos.closeEntry();
-                        }
-                    }
-
-                    writeResourceToZip(zos, "export/plot_bounding_boxes.py", "tools/plot_bounding_boxes.py");
-                    writeResourceToZip(zos, "export/README.md", "tools/README.md");
-                }
-
-                byte[] zipBytes = baos.toByteArray();
-                String filenameBase = inspection.getInspectionNumber();
-                if (filenameBase == null || filenameBase.isBlank()) {
-                    filenameBase = inspection.getId();
+            // Entries are written to the response as they are produced; nothing is buffered
+            StreamingResponseBody body = out -> {
+                try (ZipOutputStream zos = new ZipOutputStream(out)) {
+                    ZipExportSink sink = new ZipExportSink(zos);
+                    inspectionExporter.write(inspection, sink, "", Instant.now());
+                    inspectionExporter.writeTools(sink, "tools/");
                 }
-                String safeBase = sanitizeFilename(filenameBase);
-                String downloadName = safeBase + "-export.zip";
-
-                HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-                headers.setContentDisposition(ContentDisposition.attachment().filename(downloadName).build());
-                headers.setContentLength(zipBytes.length);
-                return ResponseEntity.ok().headers(headers).body(zipBytes);
-            } catch (Exception ex) {
-                return ResponseEntity.internalServerError().body(Map.of("error", "Failed to export inspection"));
-            }
-        }).orElse(ResponseEntity.notFound().build());
+            };
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename(InspectionExporter.baseName(inspection) + "-export.zip").build());
+            return ResponseEntity.ok().headers(headers).body(body);
+        }).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PostMapping
@@ -326,13 +398,21 @@ public class InspectionController {
         if (linked == null && t.getTransformerNumber() != null) linked = transformerRepo.findByTransformerNumber(t.getTransformerNumber()).orElse(null);
         if (linked == null) return ResponseEntity.badRequest().body(Map.of("error", "Transformer not found for the given transformerNumber"));
         i.setTransformer(linked);
-        return ResponseEntity.status(201).body(repo.save(i));
+        Inspection saved = repo.save(i);
+        events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.CREATED));
+        return ResponseEntity.status(201).body(saved);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Inspection i) {
-        return repo.findById(id).map(existing -> {
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Inspection i,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return repo.findById(id).<ResponseEntity<?>>map(existing -> {
+            if (ETags.preconditionFailed(ifMatch, etag(existing))) {
+                return ETags.preconditionFailedResponse(etag(existing), "Inspection was changed since it was read");
+            }
             i.setId(existing.getId());
+            // The version is never taken from the body; saving checks it is still the one just read
+            i.setVersion(existing.getVersion());
             // re-validate transformer
             Transformer t = i.getTransformer();
             if (t != null) {
@@ -344,14 +424,35 @@ public class InspectionController {
             } else {
                 i.setTransformer(existing.getTransformer());
             }
-            return ResponseEntity.ok(repo.save(i));
+            // Boxes are edited through the /boxes endpoints; a metadata update never drops them
+            i.replaceBoxes(existing.getBoxes());
+            i.setContentUpdatedAt(existing.getContentUpdatedAt());
+            // The image is set by upload and analysis, which also derive its hash, scale and kept
+            // original; taking any of them from the body would pair an image with another's hash
+            i.setImageUrl(existing.getImageUrl());
+            i.setImageHash(existing.getImageHash());
+            i.setImageScale(existing.getImageScale());
+            i.setOriginalImageUrl(existing.getOriginalImageUrl());
+            i.setImageUploadedBy(existing.getImageUploadedBy());
+            i.setImageUploadedAt(existing.getImageUploadedAt());
+            Inspection saved;
+            try {
+                saved = repo.save(i);
+            } catch (ObjectOptimisticLockingFailureException ex) {
+                return ETags.preconditionFailedResponse(null, "Inspection was changed since it was read");
+            }
+            events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.UPDATED));
+            return ResponseEntity.ok().eTag(etag(saved)).body(saved);
         }).orElse(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<?> delete(@PathVariable String id) {
-        if (!repo.existsById(id)) return ResponseEntity.notFound().build();
+        String transformerId = repo.findTransformerId(id).orElse(null);
+        if (transformerId == null) return ResponseEntity.notFound().build();
+        historyService.deleteAll(id);
         repo.deleteById(id);
+        events.publishEvent(InspectionChanged.deleted(id, transformerId));
         return ResponseEntity.ok(Map.of("ok", true));
     }
 
@@ -361,21 +462,48 @@ public class InspectionController {
                                     @RequestParam("weather") String weather,
                                     @AuthenticationPrincipal UserDetails principal,
                                     @RequestHeader(value = "x-username", required = false) String uploaderHeader) {
-        return repo.findById(id).map(i -> {
-            try {
-                String uploader = principal != null ? principal.getUsername() : uploaderHeader;
-                String base64 = Base64.getEncoder().encodeToString(file.getBytes());
-                String mime = file.getContentType() == null ? "application/octet-stream" : file.getContentType();
-                String imageUrl = "data:" + mime + ";base64," + base64;
-                i.setImageUrl(imageUrl);
+        if (!repo.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        try (IngestedImage image = imageIngestService.ingest(file)) {
+            String uploader = principal != null ? principal.getUsername() : uploaderHeader;
+            NormalizedImage normalized = imageNormalizer.normalize(image);
+            // Written under the same row lock as box edits, so neither overwrites the other
+            return inspectionEdits.apply(id, i -> {
+                try {
+                    storeInspectionImage(i, image, normalized);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
                 i.setWeather(weather);
                 i.setImageUploadedBy(uploader);
                 i.setImageUploadedAt(Instant.now());
-                return ResponseEntity.ok(repo.save(i));
-            } catch (Exception e) {
-                return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
-            }
-        }).orElse(ResponseEntity.notFound().build());
+            }).<ResponseEntity<?>>map(saved -> {
+                events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.IMAGE));
+                return ResponseEntity.ok(saved);
+            }).orElse(ResponseEntity.notFound().build());
+        } catch (ConcurrencyFailureException e) {
+            return editConflict();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
+        }
+    }
+
+    /**
+     * A concurrent request held or changed the inspection: a version conflict, or the row lock
+     * was not granted in time. Nothing was saved, so the client can re-read and retry.
+     */
+    private static ResponseEntity<?> editConflict() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Inspection was changed by another request; reload and retry"));
+    }
+
+    private void storeInspectionImage(Inspection i, IngestedImage upload, NormalizedImage normalized) throws IOException {
+        i.setImageUrl(normalized.toDataUrl());
+        i.setImageHash(normalized.getSha256());
+        i.setImageScale(normalized.getScale());
+        i.setOriginalImageUrl(imageNormalizer.keepOriginal() && normalized.isRewritten() ? upload.toDataUrl() : null);
+        i.setContentUpdatedAt(Instant.now());
     }
 
     private static String trimToNull(String value) {
@@ -414,34 +542,26 @@ public class InspectionController {
                                      @RequestParam("file") MultipartFile file,
                                      @RequestParam("weather") String weather) {
         return repo.findById(id).map(i -> {
-            try {
-                // Before performing a new AI analysis, archive any existing analysis to history with annotatedBy = "AI"
-                try {
-                    archivePreviousAnalysis(i, "AI", null);
-                } catch (Exception ignore) { }
+            try (IngestedImage upload = imageIngestService.ingest(file)) {
                 // Find baseline image from transformer based on weather
                 Transformer t = i.getTransformer();
                 if (t == null) {
                     return ResponseEntity.badRequest().body(Map.of("error", "Inspection not linked to a transformer"));
                 }
-                String baselineDataUrl = switch (weather == null ? "" : weather) {
-                    case "sunny" -> t.getSunnyImage();
-                    case "cloudy" -> t.getCloudyImage();
-                    case "rainy" -> t.getWindyImage();
-                    default -> {
-                        String any = t.getSunnyImage();
-                        if (any == null || any.isBlank()) any = t.getCloudyImage();
-                        if (any == null || any.isBlank()) any = t.getWindyImage();
-                        yield any;
-                    }
-                };
+                // Standard weathers must have their own baseline; anything else falls back to any baseline
+                Optional<TransformerBaseline> baselineRecord = baselineService.findLatest(t.getId(), weather);
+                if (baselineRecord.isEmpty()
+                        && !BaselineService.DEFAULT_WEATHER_ORDER.contains(BaselineService.normalizeWeather(weather))) {
+                    baselineRecord = baselineService.resolve(t.getId(), null);
+                }
+                String baselineDataUrl = baselineRecord.map(TransformerBaseline::getImageUrl).orElse(null);
                 if (baselineDataUrl == null || baselineDataUrl.isBlank()) {
                     return ResponseEntity.badRequest().body(Map.of("error", "No baseline image available for selected weather"));
                 }
 
                 BufferedImage baseline = readDataUrlToImage(baselineDataUrl);
-                byte[] candidateBytes = file.getBytes();
-                BufferedImage candidate = ImageIO.read(new ByteArrayInputStream(candidateBytes));
+                NormalizedImage normalized = imageNormalizer.normalize(upload);
+                BufferedImage candidate = normalized.decode();
                 if (baseline == null || candidate == null) {
                     return ResponseEntity.badRequest().body(Map.of("error", "Invalid images for analysis"));
                 }
@@ -453,81 +573,56 @@ public class InspectionController {
 
     var result = pythonAnalyzerService.analyze(baseResized, candidate);
 
-    // Persist last analysis weather and detected bounding boxes on the inspection
-    i.setLastAnalysisWeather(weather);
-    // Keep the inspection's weather in sync with the last used weather for convenience
-    i.setWeather(weather);
-    // Also persist the analyzed image as the current imageUrl so it becomes the default next time
-    try {
-        String mime = file.getContentType() == null ? "application/octet-stream" : file.getContentType();
-        String base64 = Base64.getEncoder().encodeToString(candidateBytes);
-        String imageUrl = "data:" + mime + ";base64," + base64;
-        i.setImageUrl(imageUrl);
-    } catch (Exception ignore) { }
-        ObjectMapper mapper = new ObjectMapper();
+        List<InspectionBox> detected = null;
         try {
-            // Persist only the boxes array as returned by Python
+            // One row per detected box; boxInfo[k] carries the fault label and severity for boxes[k]
             var boxesNode = result.path("boxes");
-            if (boxesNode != null && !boxesNode.isMissingNode()) {
-                // Serialize to compact JSON string
-                String boxesJson = boxesNode.toString();
-                i.setBoundingBoxes(boxesJson);
-            }
-            // Overall faultType column removed; we persist only per-box faultTypes
-            // Persist per-box fault types (map boxInfo[].boxFault when available)
             var boxInfoNode = result.path("boxInfo");
-            if (boxInfoNode != null && boxInfoNode.isArray()) {
-                // Build array of fault labels aligned with boxes
-                // When lengths mismatch, fall back to best-effort order
-                StringBuilder sb = new StringBuilder();
-                sb.append('[');
-                boolean first = true;
-                StringBuilder ann = new StringBuilder();
-                ann.append('[');
-                boolean firstAnn = true;
-                StringBuilder sev = new StringBuilder();
-                sev.append('[');
-                boolean firstSev = true;
-                StringBuilder created = new StringBuilder();
-                created.append('[');
-                boolean firstCreated = true;
-                for (var bi : boxInfoNode) {
-                    String label = bi.path("boxFault").asText("none");
-                    if (!first) sb.append(',');
-                    first = false;
-                    // JSON-escape minimal (labels are simple)
-                    sb.append('"').append(label.replace("\"", "\\\"")).append('"');
-                    // Per-box annotatedBy: analysis-generated boxes are attributed to AI
-                    String who = "AI";
-                    if (!firstAnn) ann.append(',');
-                    firstAnn = false;
-                    ann.append('"').append(who).append('"');
-                    // Per-box severity: extract from AI results (only AI-annotated faults have severity)
-                    if (!firstSev) sev.append(',');
-                    firstSev = false;
-                    var severityNode = bi.path("severity");
-                    if (severityNode != null && !severityNode.isMissingNode() && severityNode.isNumber()) {
-                        sev.append(severityNode.asDouble());
-                    } else {
-                        sev.append("null");
+            if (boxesNode != null && boxesNode.isArray()) {
+                Instant detectedAt = Instant.now();
+                detected = new ArrayList<>();
+                for (int k = 0; k < boxesNode.size(); k++) {
+                    JsonNode b = boxesNode.get(k);
+                    if (!(b instanceof ArrayNode) || b.size() < 4) {
+                        continue;
                     }
-                    if (!firstCreated) created.append(',');
-                    firstCreated = false;
-                    created.append('"').append(Instant.now().toString()).append('"');
+                    InspectionBox box = new InspectionBox(b.get(0).asDouble(), b.get(1).asDouble(), b.get(2).asDouble(), b.get(3).asDouble());
+                    JsonNode bi = boxInfoNode.path(k);
+                    box.setFaultType(bi.path("boxFault").asText("none"));
+                    // Only AI-annotated faults have severity
+                    var severityNode = bi.path("severity");
+                    box.setSeverity(severityNode.isNumber() ? severityNode.asDouble() : null);
+                    box.setAnnotatedBy("AI");
+                    box.setCreatedAt(detectedAt);
+                    detected.add(box);
                 }
-                sb.append(']');
-                i.setFaultTypes(sb.toString());
-                ann.append(']');
-                i.setAnnotatedBy(ann.toString());
-                sev.append(']');
-                i.setSeverity(sev.toString());
-                created.append(']');
-                i.setBoxCreatedAt(created.toString());
             }
             // analyzed image dimensions no longer persisted
-        } catch (Exception ignore) { }
-        i.setRecentStatus(null);
-        repo.save(i);
+        } catch (Exception ignore) {
+            detected = null;
+        }
+
+        // The previous analysis is archived with annotatedBy = "AI", in the same transaction as the new one
+        List<InspectionBox> analyzed = detected;
+        Optional<Inspection> stored = inspectionEdits.apply(id, current -> {
+            archivePreviousAnalysis(current, "AI", null);
+            // Persist last analysis weather and detected bounding boxes on the inspection
+            current.setLastAnalysisWeather(weather);
+            // Keep the inspection's weather in sync with the last used weather for convenience
+            current.setWeather(weather);
+            // Also persist the analyzed image as the current imageUrl so it becomes the default next time
+            try {
+                storeInspectionImage(current, upload, normalized);
+            } catch (Exception ignore) { }
+            if (analyzed != null) {
+                current.replaceBoxes(analyzed);
+            }
+        });
+        if (stored.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Inspection saved = stored.get();
+        events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.ANALYZED));
 
         // Pass through fields as-is from Python, including fault classification
     return ResponseEntity.ok(Map.of(
@@ -540,11 +635,13 @@ public class InspectionController {
         "imageHeight", result.path("imageHeight").asInt(H),
         "boxes", result.path("boxes"),
         "boxInfo", result.path("boxInfo"),
-        "boxCreatedAt", parseJsonNode(mapper, i.getBoxCreatedAt()),
+        "boxCreatedAt", rawJson(saved.getBoxCreatedAt()),
     // faultType removed from API; UI derives from per-box faultTypes if needed
         // 'annotated' from Python is ignored by the frontend; retain for debugging
         "annotated", result.path("annotated").asText("")
     ));
+            } catch (ConcurrencyFailureException e) {
+                return editConflict();
             } catch (Exception e) {
                 return ResponseEntity.internalServerError().body(Map.of("error", "Analysis failed"));
             }
@@ -552,339 +649,31 @@ public class InspectionController {
     }
 
     /**
-     * Append the current analysis (boundingBoxes + faultTypes) to history arrays,
-     * and add an aligned annotatedByHistory entry.
+     * Append the current boxes to history as one new snapshot row, before they are replaced.
      */
-    private void archivePreviousAnalysis(Inspection i, String annotatedBy, ArrayNode statusSnapshot) throws Exception {
-        String boxesJson = i.getBoundingBoxes();
-        String faultsJson = i.getFaultTypes();
-        String severityJson = i.getSeverity();
-        String commentJson = i.getComment();
-        if ((boxesJson == null || boxesJson.isBlank()) && (faultsJson == null || faultsJson.isBlank())) {
-            return; // nothing to archive
-        }
-        ObjectMapper mapper = new ObjectMapper();
-
-        // boundingBoxHistory as array of snapshots
-        ArrayNode boxHist;
-        String boxHistJson = i.getBoundingBoxHistory();
-        if (boxHistJson != null && !boxHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(boxHistJson);
-                boxHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                boxHist = mapper.createArrayNode();
-            }
-        } else {
-            boxHist = mapper.createArrayNode();
-        }
-        // push a snapshot (or null placeholder if empty)
-        if (boxesJson != null && !boxesJson.isBlank()) {
-            try {
-                boxHist.add(mapper.readTree(boxesJson));
-            } catch (Exception ex) {
-                boxHist.addNull();
-            }
-        } else {
-            boxHist.addNull();
-        }
-
-        // faultTypeHistory as array of snapshots
-        ArrayNode faultHist;
-        String faultHistJson = i.getFaultTypeHistory();
-        if (faultHistJson != null && !faultHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(faultHistJson);
-                faultHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                faultHist = mapper.createArrayNode();
-            }
-        } else {
-            faultHist = mapper.createArrayNode();
-        }
-        if (faultsJson != null && !faultsJson.isBlank()) {
-            try {
-                faultHist.add(mapper.readTree(faultsJson));
-            } catch (Exception ex) {
-                faultHist.addNull();
-            }
-        } else {
-            faultHist.addNull();
-        }
-
-        // annotatedByHistory as array of snapshots (each snapshot is an array aligned with boxes/faults)
-        ArrayNode annotatedHist;
-        String annotatedHistJson = i.getAnnotatedByHistory();
-        if (annotatedHistJson != null && !annotatedHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(annotatedHistJson);
-                annotatedHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                annotatedHist = mapper.createArrayNode();
-            }
-        } else {
-            annotatedHist = mapper.createArrayNode();
-        }
-        // Prefer current per-box annotatedBy array if present; otherwise, fallback to filling with provided actor
-        String currentAnn = i.getAnnotatedBy();
-        if (currentAnn != null && !currentAnn.isBlank()) {
-            try {
-                JsonNode annNode = mapper.readTree(currentAnn);
-                if (annNode instanceof ArrayNode) {
-                    // Store a snapshot of the existing per-box attribution
-                    annotatedHist.add(annNode);
-                } else {
-                    // Fallback: build by repeating actor to match faultTypes length
-                    ArrayNode snap = mapper.createArrayNode();
-                    JsonNode ftNode = (faultsJson != null && !faultsJson.isBlank()) ? mapper.readTree(faultsJson) : null;
-                    int n = (ftNode instanceof ArrayNode) ? ftNode.size() : 0;
-                    for (int k = 0; k < n; k++) snap.add(annotatedBy == null || annotatedBy.isBlank() ? "AI" : annotatedBy);
-                    if (n == 0) snap.add(annotatedBy == null || annotatedBy.isBlank() ? "AI" : annotatedBy);
-                    annotatedHist.add(snap);
-                }
-            } catch (Exception ex) {
-                ArrayNode snap = mapper.createArrayNode();
-                JsonNode ftNode;
-                try { ftNode = (faultsJson != null && !faultsJson.isBlank()) ? mapper.readTree(faultsJson) : null; } catch (Exception e2) { ftNode = null; }
-                int n = (ftNode instanceof ArrayNode) ? ftNode.size() : 0;
-                for (int k = 0; k < n; k++) snap.add(annotatedBy == null || annotatedBy.isBlank() ? "AI" : annotatedBy);
-                if (n == 0) snap.add(annotatedBy == null || annotatedBy.isBlank() ? "AI" : annotatedBy);
-                annotatedHist.add(snap);
-            }
-        } else {
-            // No current annotatedBy array; build snapshot by repeating actor to match faultTypes
-            ArrayNode snap = mapper.createArrayNode();
-            try {
-                JsonNode ftNode = (faultsJson != null && !faultsJson.isBlank()) ? mapper.readTree(faultsJson) : null;
-                int n = (ftNode instanceof ArrayNode) ? ftNode.size() : 0;
-                for (int k = 0; k < n; k++) snap.add(annotatedBy == null || annotatedBy.isBlank() ? "AI" : annotatedBy);
-                if (n == 0) snap.add(annotatedBy == null || annotatedBy.isBlank() ? "AI" : annotatedBy);
-            } catch (Exception ex) {
-                snap.add(annotatedBy == null || annotatedBy.isBlank() ? "AI" : annotatedBy);
-            }
-            annotatedHist.add(snap);
-        }
-
-        // severityHistory as array of snapshots aligned with boxes/faults
-        ArrayNode severityHist;
-        String severityHistJson = i.getSeverityHistory();
-        if (severityHistJson != null && !severityHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(severityHistJson);
-                severityHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                severityHist = mapper.createArrayNode();
-            }
-        } else {
-            severityHist = mapper.createArrayNode();
-        }
-        if (severityJson != null && !severityJson.isBlank()) {
-            try {
-                severityHist.add(mapper.readTree(severityJson));
-            } catch (Exception ex) {
-                severityHist.addNull();
-            }
-        } else {
-            severityHist.addNull();
-        }
-
-        // commentHistory as array of snapshots aligned with boxes/faults
-        ArrayNode commentHist;
-        String commentHistJson = i.getCommentHistory();
-        if (commentHistJson != null && !commentHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(commentHistJson);
-                commentHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                commentHist = mapper.createArrayNode();
-            }
-        } else {
-            commentHist = mapper.createArrayNode();
-        }
-        if (commentJson != null && !commentJson.isBlank()) {
-            try {
-                commentHist.add(mapper.readTree(commentJson));
-            } catch (Exception ex) {
-                commentHist.addNull();
-            }
-        } else {
-            commentHist.addNull();
-        }
-
-        // boxCreatedAtHistory aligns creation timestamps with snapshots
-        ArrayNode createdHist;
-        String createdHistJson = i.getBoxCreatedAtHistory();
-        if (createdHistJson != null && !createdHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(createdHistJson);
-                createdHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                createdHist = mapper.createArrayNode();
-            }
-        } else {
-            createdHist = mapper.createArrayNode();
-        }
-        String createdJson = i.getBoxCreatedAt();
-        if (createdJson != null && !createdJson.isBlank()) {
-            try {
-                createdHist.add(mapper.readTree(createdJson));
-            } catch (Exception ex) {
-                createdHist.addNull();
-            }
-        } else {
-            createdHist.addNull();
-        }
-
-        // recentStatusHistory captures per-box recent status flags aligned with snapshots
-        ArrayNode statusHist;
-        String statusHistJson = i.getRecentStatusHistory();
-        if (statusHistJson != null && !statusHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(statusHistJson);
-                statusHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                statusHist = mapper.createArrayNode();
-            }
-        } else {
-            statusHist = mapper.createArrayNode();
-        }
-
-        ArrayNode statusToArchive = null;
-        if (statusSnapshot != null) {
-            statusToArchive = statusSnapshot.deepCopy();
-        } else {
-            String recentStatusJson = i.getRecentStatus();
-            if (recentStatusJson != null && !recentStatusJson.isBlank()) {
-                try {
-                    JsonNode statusNode = mapper.readTree(recentStatusJson);
-                    if (statusNode instanceof ArrayNode) {
-                        statusToArchive = ((ArrayNode) statusNode).deepCopy();
-                    }
-                } catch (Exception ignore) { }
-            }
-        }
-        if (statusToArchive != null && hasMeaningfulStatus(statusToArchive)) {
-            statusHist.add(statusToArchive);
-        } else {
-            statusHist.addNull();
-        }
-
-        // timestampHistory records when each snapshot was archived
-        ArrayNode timestampHist;
-        String timestampHistJson = i.getTimestampHistory();
-        if (timestampHistJson != null && !timestampHistJson.isBlank()) {
-            try {
-                var node = mapper.readTree(timestampHistJson);
-                timestampHist = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-            } catch (Exception ex) {
-                timestampHist = mapper.createArrayNode();
-            }
-        } else {
-            timestampHist = mapper.createArrayNode();
-        }
-        timestampHist.add(Instant.now().toString());
-
-        // Persist updated histories ensuring alignment/order
-        i.setBoundingBoxHistory(boxHist.toString());
-        i.setFaultTypeHistory(faultHist.toString());
-        i.setAnnotatedByHistory(annotatedHist.toString());
-        i.setSeverityHistory(severityHist.toString());
-        i.setCommentHistory(commentHist.toString());
-    i.setBoxCreatedAtHistory(createdHist.toString());
-        i.setRecentStatusHistory(statusHist.toString());
-        i.setTimestampHistory(timestampHist.toString());
-    }
-
-    private static void putNullable(ObjectNode node, String field, String value) {
-        if (value == null) {
-            node.putNull(field);
-        } else {
-            node.put(field, value);
-        }
-    }
-
-    private static JsonNode parseJsonNode(ObjectMapper mapper, String raw) {
-        if (raw == null || raw.isBlank()) {
-            return NullNode.getInstance();
-        }
-        try {
-            JsonNode node = mapper.readTree(raw);
-            return node == null ? NullNode.getInstance() : node;
-        } catch (Exception ex) {
-            return NullNode.getInstance();
-        }
-    }
-
-    private static JsonNode cloneNode(JsonNode node) {
-        if (node == null || node.isMissingNode()) {
-            return NullNode.getInstance();
-        }
-        return node.deepCopy();
-    }
-
-    private static ArrayNode asArrayNode(JsonNode node) {
-        return node instanceof ArrayNode ? (ArrayNode) node : null;
-    }
-
-    private static JsonNode snapshotValue(ArrayNode array, int index) {
-        if (array == null || index < 0 || index >= array.size()) {
-            return NullNode.getInstance();
-        }
-        JsonNode node = array.get(index);
-        return node == null ? NullNode.getInstance() : node;
+    private void archivePreviousAnalysis(Inspection i, String annotatedBy, String[] statusSnapshot) {
+        historyService.archive(i, annotatedBy, statusSnapshot);
     }
 
-    private static int maxSize(ArrayNode... arrays) {
-        int max = 0;
-        if (arrays == null) {
-            return 0;
-        }
-        for (ArrayNode array : arrays) {
-            if (array != null && array.size() > max) {
-                max = array.size();
-            }
-        }
-        return max;
+    /**
+     * Archive before a single-box edit; rapid edits by the same user share one snapshot.
+     * Returns whether the edit starts a new session.
+     */
+    private boolean archiveEdit(Inspection i, String username, String[] statusSnapshot, String deletedBoxId) {
+        String actor = username == null || username.isBlank() ? "user" : username;
+        return historyService.archiveEdit(i, actor, statusSnapshot, deletedBoxId);
     }
 
-    private static String extractText(ArrayNode array, int index) {
-        if (array == null || index < 0 || index >= array.size()) {
-            return null;
-        }
-        JsonNode node = array.get(index);
-        return node != null && node.isValueNode() ? node.asText() : null;
+    private static Object rawJson(String json) {
+        return json == null ? NullNode.getInstance() : JsonText.value(json);
     }
 
-    private static ArrayNode parseArrayNode(ObjectMapper mapper, String json) {
-        if (json == null || json.isBlank()) {
-            return null;
-        }
-        try {
-            JsonNode node = mapper.readTree(json);
-            return node instanceof ArrayNode ? (ArrayNode) node : null;
-        } catch (Exception ex) {
-            return null;
-        }
-    }
+    private static StatusDiff computeStatusDiff(AnnotationState previous, AnnotationState current) {
+        List<BoxDescriptor> prevDescriptors = buildDescriptors(previous);
+        List<BoxDescriptor> currDescriptors = buildDescriptors(current);
 
-    private static StatusDiff computeStatusDiff(ArrayNode previousBoxes,
-                                                ArrayNode previousFaults,
-                                                ArrayNode previousComments,
-                                                ArrayNode currentBoxes,
-                                                ArrayNode currentFaults,
-                                                ArrayNode currentComments,
-                                                ObjectMapper mapper) {
-        List<BoxDescriptor> prevDescriptors = buildDescriptors(previousBoxes, previousFaults, previousComments);
-        List<BoxDescriptor> currDescriptors = buildDescriptors(currentBoxes, currentFaults, currentComments);
-
-        List<String> currentFlags = new ArrayList<>();
-        for (int idx = 0; idx < currDescriptors.size(); idx++) {
-            currentFlags.add(null);
-        }
-        List<String> historyFlags = new ArrayList<>();
-        for (int idx = 0; idx < prevDescriptors.size(); idx++) {
-            historyFlags.add(null);
-        }
+        String[] currentFlags = new String[currDescriptors.size()];
+        String[] historyFlags = new String[prevDescriptors.size()];
         int[] currentToPrevious = new int[currDescriptors.size()];
         Arrays.fill(currentToPrevious, -1);
         int[] previousToCurrent = new int[prevDescriptors.size()];
@@ -941,7 +730,7 @@ public class InspectionController {
                 continue;
             }
             if (!curr.matched) {
-                currentFlags.set(curr.index, "added");
+                currentFlags[curr.index] = "added";
                 curr.matched = true;
             }
         }
@@ -950,86 +739,43 @@ public class InspectionController {
         for (int idx = 0; idx < prevDescriptors.size(); idx++) {
             BoxDescriptor prev = prevDescriptors.get(idx);
             if (prev != null && !prev.matched) {
-                historyFlags.set(prev.index, "deleted");
-            }
-        }
-
-        ArrayNode currentStatus = mapper.createArrayNode();
-        for (String flag : currentFlags) {
-            if (flag == null || flag.isBlank()) {
-                currentStatus.addNull();
-            } else {
-                currentStatus.add(flag);
+                historyFlags[prev.index] = "deleted";
             }
         }
 
-        ArrayNode historyStatus = mapper.createArrayNode();
-        for (String flag : historyFlags) {
-            if (flag == null || flag.isBlank()) {
-                historyStatus.addNull();
-            } else {
-                historyStatus.add(flag);
-            }
-        }
-
-    return new StatusDiff(currentStatus, historyStatus, currentToPrevious, previousToCurrent);
+        return new StatusDiff(currentFlags, historyFlags, currentToPrevious, previousToCurrent);
     }
 
-    private static List<BoxDescriptor> buildDescriptors(ArrayNode boxes,
-                                                        ArrayNode faults,
-                                                        ArrayNode comments) {
-        int count = boxes != null ? boxes.size() : 0;
-        List<BoxDescriptor> descriptors = new ArrayList<>();
-        for (int idx = 0; idx < count; idx++) {
-            descriptors.add(null);
-        }
-        if (boxes == null) {
-            return descriptors;
-        }
-        for (int idx = 0; idx < count; idx++) {
-            JsonNode box = boxes.get(idx);
-            if (!(box instanceof ArrayNode) || box.size() < 4) {
-                continue;
-            }
-            double x = box.get(0).asDouble();
-            double y = box.get(1).asDouble();
-            double w = box.get(2).asDouble();
-            double h = box.get(3).asDouble();
-            String fault = faults != null && idx < faults.size() && faults.get(idx) != null && !faults.get(idx).isNull()
-                    ? faults.get(idx).asText("none")
-                    : "none";
-            String comment = null;
-            if (comments != null && idx < comments.size()) {
-                JsonNode commentNode = comments.get(idx);
-                if (commentNode != null && !commentNode.isNull()) {
-                    String raw = commentNode.asText(null);
-                    if (raw != null) {
-                        String trimmed = raw.trim();
-                        if (!trimmed.isEmpty()) {
-                            comment = trimmed;
-                        }
-                    }
+    private static List<BoxDescriptor> buildDescriptors(AnnotationState state) {
+        List<BoxDescriptor> descriptors = new ArrayList<>(state.size());
+        for (int idx = 0; idx < state.size(); idx++) {
+            String comment = state.comment(idx);
+            if (comment != null) {
+                comment = comment.trim();
+                if (comment.isEmpty()) {
+                    comment = null;
                 }
             }
-            descriptors.set(idx, new BoxDescriptor(idx, x, y, w, h, fault, comment));
+            descriptors.add(new BoxDescriptor(idx, state.x(idx), state.y(idx), state.w(idx), state.h(idx),
+                    state.faultType(idx), comment));
         }
         return descriptors;
     }
 
     private static void markEdited(BoxDescriptor curr,
                                    BoxDescriptor prev,
-                                   List<String> currentFlags,
-                                   List<String> historyFlags,
+                                   String[] currentFlags,
+                                   String[] historyFlags,
                                    int[] currentToPrevious,
                                    int[] previousToCurrent) {
         prev.matched = true;
         curr.matched = true;
         recordMatch(curr, prev, currentToPrevious, previousToCurrent);
-        if (curr.index >= 0 && curr.index < currentFlags.size()) {
-            currentFlags.set(curr.index, "edited");
+        if (curr.index >= 0 && curr.index < currentFlags.length) {
+            currentFlags[curr.index] = "edited";
         }
-        if (prev.index >= 0 && prev.index < historyFlags.size()) {
-            historyFlags.set(prev.index, "edited");
+        if (prev.index >= 0 && prev.index < historyFlags.length) {
+            historyFlags[prev.index] = "edited";
         }
     }
 
@@ -1105,8 +851,8 @@ public class InspectionController {
                 && Math.abs(a.h - b.h) <= epsilon;
     }
 
-    private record StatusDiff(ArrayNode currentStatus,
-                              ArrayNode historyStatus,
+    private record StatusDiff(String[] currentStatus,
+                              String[] historyStatus,
                               int[] currentToPrevious,
                               int[] previousToCurrent) {}
 
@@ -1132,175 +878,26 @@ public class InspectionController {
         }
     }
 
-    private static String csvEscape(String value) {
-        if (value == null) {
-            return "";
-        }
-        return value.replace("\"", "\"\"")
-                .replace('\n', ' ')
-                .replace('\r', ' ');
-    }
-
-    private static boolean hasMeaningfulStatus(ArrayNode node) {
-        if (node == null) {
-            return false;
-        }
-        for (JsonNode entry : node) {
-            if (entry != null && !entry.isNull()) {
-                String text = entry.asText(null);
-                if (text != null && !text.isBlank()) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private static byte[] decodeDataUrl(String dataUrl) {
-        if (dataUrl == null || dataUrl.isBlank()) {
-            return null;
-        }
-        int comma = dataUrl.indexOf(',');
-        if (comma < 0) {
-            return null;
-        }
-        String base64 = dataUrl.substring(comma + 1);
-        try {
-            return Base64.getDecoder().decode(base64);
-        } catch (IllegalArgumentException ex) {
-            return null;
-        }
-    }
-
-    private static String guessImageExtension(String dataUrl) {
-        if (dataUrl == null || dataUrl.isBlank()) {
-            return "bin";
-        }
-        int colon = dataUrl.indexOf(':');
-        int semi = dataUrl.indexOf(';');
-        if (colon >= 0 && semi > colon) {
-            String mime = dataUrl.substring(colon + 1, semi).toLowerCase();
-            switch (mime) {
-                case "image/png":
-                    return "png";
-                case "image/jpeg":
-                case "image/jpg":
-                    return "jpg";
-                case "image/webp":
-                    return "webp";
-                default:
-                    return "bin";
-            }
-        }
-        return "bin";
-    }
-
-    private static String sanitizeFilename(String value) {
-        if (value == null || value.isBlank()) {
-            return "inspection";
-        }
-        String sanitized = value.replaceAll("[^A-Za-z0-9._-]", "_");
-        return sanitized.isBlank() ? "inspection" : sanitized;
-    }
-
-    private static BaselineSelection resolveBaselineSelection(Inspection inspection) {
-        if (inspection == null) {
-            return null;
-        }
-        Transformer transformer = inspection.getTransformer();
-        if (transformer == null) {
-            return null;
-        }
-        String preferredWeather = determinePreferredWeather(inspection);
-        if (StringUtils.hasText(preferredWeather)) {
-            String candidate = lookupBaselineForWeather(transformer, preferredWeather);
-            if (StringUtils.hasText(candidate)) {
-                return new BaselineSelection(candidate, preferredWeather.toLowerCase(Locale.ROOT));
-            }
-        }
-        if (StringUtils.hasText(transformer.getSunnyImage())) {
-            return new BaselineSelection(transformer.getSunnyImage(), "sunny");
-        }
-        if (StringUtils.hasText(transformer.getCloudyImage())) {
-            return new BaselineSelection(transformer.getCloudyImage(), "cloudy");
-        }
-        if (StringUtils.hasText(transformer.getWindyImage())) {
-            return new BaselineSelection(transformer.getWindyImage(), "windy");
-        }
-        return null;
-    }
-
-    private static String determinePreferredWeather(Inspection inspection) {
-        String weather = inspection.getLastAnalysisWeather();
-        if (!StringUtils.hasText(weather)) {
-            weather = inspection.getWeather();
-        }
-        if (!StringUtils.hasText(weather)) {
-            return null;
-        }
-        return weather.trim().toLowerCase(Locale.ROOT);
-    }
-
-    private static String lookupBaselineForWeather(Transformer transformer, String weather) {
-        if (!StringUtils.hasText(weather) || transformer == null) {
-            return null;
-        }
-        return switch (weather.toLowerCase(Locale.ROOT)) {
-            case "sunny" -> transformer.getSunnyImage();
-            case "cloudy" -> transformer.getCloudyImage();
-            case "rainy", "windy" -> transformer.getWindyImage();
-            default -> null;
-        };
-    }
-
-    private static void writeResourceToZip(ZipOutputStream zos, String resourcePath, String entryName) throws IOException {
-        ClassPathResource resource = new ClassPathResource(resourcePath);
-        if (!resource.exists()) {
-            return;
-        }
-        ZipEntry entry = new ZipEntry(entryName);
-        zos.putNextEntry(entry);
-        try (InputStream is = resource.getInputStream()) {
-            is.transferTo(zos);
-        }
-        zos.closeEntry();
-    }
-
-    private record BaselineSelection(String dataUrl, String weatherLabel) {}
-
     private static final double BOX_MATCH_EPSILON = 0.5;
 
     @PostMapping("/{id}/clear-analysis")
     public ResponseEntity<?> clearAnalysis(@PathVariable String id) {
-        return repo.findById(id).map(i -> {
-            // Remove stored analysis artifacts
-            i.setImageUrl(null);
-            i.setBoundingBoxes(null);
-            // Also clear per-box fault types and dimensions if present
-            try {
-                // These setters exist but may be null in DB schema; safe to call
-                i.setFaultTypes(null);
+        try {
+            return inspectionEdits.apply(id, i -> {
+                // Remove stored analysis artifacts
+                i.setImageUrl(null);
+                i.replaceBoxes(List.of());
                 // Clear the last analysis weather since analysis has been cleared
                 i.setLastAnalysisWeather(null);
-                // Clear history fields as requested
-                i.setFaultTypeHistory(null);
-                i.setBoundingBoxHistory(null);
-                i.setAnnotatedBy(null);
-                i.setAnnotatedByHistory(null);
-                i.setSeverity(null);
-                i.setSeverityHistory(null);
-                i.setComment(null);
-                i.setCommentHistory(null);
-                i.setTimestampHistory(null);
-                i.setRecentStatus(null);
-                i.setRecentStatusHistory(null);
-                i.setBoxCreatedAt(null);
-                i.setBoxCreatedAtHistory(null);
-                // analyzed image dimensions removed; nothing to clear
-            } catch (Exception ignore) { }
-            repo.save(i);
-            return ResponseEntity.ok(Map.of("ok", true));
-        }).orElse(ResponseEntity.notFound().build());
+                // Clear history as requested, with the analysis it belonged to
+                historyService.deleteAll(id);
+            }).<ResponseEntity<?>>map(saved -> {
+                events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.ANALYSIS_CLEARED));
+                return ResponseEntity.ok(Map.of("ok", true));
+            }).orElse(ResponseEntity.notFound().build());
+        } catch (ConcurrencyFailureException e) {
+            return editConflict();
+        }
     }
     private static BufferedImage resize(BufferedImage src, int W, int H) {
         if (src.getWidth() == W && src.getHeight() == H) return src;
@@ -1325,122 +922,23 @@ public class InspectionController {
     public ResponseEntity<?> removeBox(@PathVariable String id,
                                        @PathVariable int index,
                                        @RequestHeader(value = "x-username", required = false) String username) {
-        return repo.findById(id).map(i -> {
-            try {
-                String boxesJson = i.getBoundingBoxes();
-                if (boxesJson == null || boxesJson.isBlank()) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "No bounding boxes to modify"));
-                }
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode node = mapper.readTree(boxesJson);
-                if (!(node instanceof ArrayNode)) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "boundingBoxes is not an array"));
-                }
-                ArrayNode arr = (ArrayNode) node;
-                if (index < 0 || index >= arr.size()) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Index out of range"));
-                }
-                ArrayNode statusSnapshot = mapper.createArrayNode();
-                for (int idx = 0; idx < arr.size(); idx++) {
-                    if (idx == index) {
-                        statusSnapshot.add("deleted");
-                    } else {
-                        statusSnapshot.addNull();
-                    }
-                }
-                try { archivePreviousAnalysis(i, username == null || username.isBlank() ? "user" : username, statusSnapshot); } catch (Exception ignore) { }
-                // Remove the box at index
-                arr.remove(index);
-                i.setBoundingBoxes(arr.toString());
-
-                // Update faultTypes if present and valid
-                String ftJson = i.getFaultTypes();
-                if (ftJson != null && !ftJson.isBlank()) {
-                    try {
-                        JsonNode ftNode = mapper.readTree(ftJson);
-                        if (ftNode instanceof ArrayNode) {
-                            ArrayNode ftArr = (ArrayNode) ftNode;
-                            if (index >= 0 && index < ftArr.size()) {
-                                ftArr.remove(index);
-                                i.setFaultTypes(ftArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed faultTypes */ }
-                }
-
-                // Update annotatedBy array to maintain alignment
-                String annJson = i.getAnnotatedBy();
-                if (annJson != null && !annJson.isBlank()) {
-                    try {
-                        JsonNode annNode = mapper.readTree(annJson);
-                        if (annNode instanceof ArrayNode) {
-                            ArrayNode annArr = (ArrayNode) annNode;
-                            if (index >= 0 && index < annArr.size()) {
-                                annArr.remove(index);
-                                i.setAnnotatedBy(annArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed annotatedBy */ }
-                }
-
-                // Update severity array to maintain alignment
-                String sevJson = i.getSeverity();
-                if (sevJson != null && !sevJson.isBlank()) {
-                    try {
-                        JsonNode sevNode = mapper.readTree(sevJson);
-                        if (sevNode instanceof ArrayNode) {
-                            ArrayNode sevArr = (ArrayNode) sevNode;
-                            if (index >= 0 && index < sevArr.size()) {
-                                sevArr.remove(index);
-                                i.setSeverity(sevArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed severity */ }
-                }
-
-                // Update comment array to maintain alignment
-                String commentJson = i.getComment();
-                if (commentJson != null && !commentJson.isBlank()) {
-                    try {
-                        JsonNode commentNode = mapper.readTree(commentJson);
-                        if (commentNode instanceof ArrayNode) {
-                            ArrayNode commentArr = (ArrayNode) commentNode;
-                            if (index >= 0 && index < commentArr.size()) {
-                                commentArr.remove(index);
-                                i.setComment(commentArr.isEmpty() ? null : commentArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed comment */ }
+        try {
+            return inspectionEdits.apply(id, i -> {
+                if (i.getBoxes().isEmpty()) {
+                    throw new IllegalArgumentException("No bounding boxes to modify");
                 }
-
-                String createdJson = i.getBoxCreatedAt();
-                if (createdJson != null && !createdJson.isBlank()) {
-                    try {
-                        JsonNode createdNode = mapper.readTree(createdJson);
-                        if (createdNode instanceof ArrayNode) {
-                            ArrayNode createdArr = (ArrayNode) createdNode;
-                            if (index >= 0 && index < createdArr.size()) {
-                                createdArr.remove(index);
-                                i.setBoxCreatedAt(createdArr.isEmpty() ? null : createdArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed boxCreatedAt */ }
+                if (index < 0 || index >= i.getBoxes().size()) {
+                    throw new IllegalArgumentException("Index out of range");
                 }
-
-                // Clear recent status for current state; deletion is represented only in history
-                i.setRecentStatus(null);
-
-                repo.save(i);
-                return ResponseEntity.ok(Map.of(
-                        "ok", true,
-                        "boundingBoxes", arr,
-                        "faultTypes", i.getFaultTypes(),
-            "recentStatus", null,
-            "boxCreatedAt", parseJsonNode(mapper, i.getBoxCreatedAt())));
-            } catch (Exception e) {
-                return ResponseEntity.internalServerError().body(Map.of("error", "Failed to remove box"));
-            }
-        }).orElse(ResponseEntity.notFound().build());
+                deleteBoxAt(i, index, username);
+            }).map(this::boxesSaved).orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        } catch (ConcurrencyFailureException e) {
+            return editConflict();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to remove box"));
+        }
     }
 
     @DeleteMapping("/{id}/boxes")
@@ -1450,451 +948,245 @@ public class InspectionController {
                                               @RequestParam("w") double w,
                                               @RequestParam("h") double h,
                                               @RequestHeader(value = "x-username", required = false) String username) {
-        return repo.findById(id).map(i -> {
-            try {
-                String boxesJson = i.getBoundingBoxes();
-                if (boxesJson == null || boxesJson.isBlank()) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "No bounding boxes to modify"));
-                }
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode node = mapper.readTree(boxesJson);
-                if (!(node instanceof ArrayNode)) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "boundingBoxes is not an array"));
+        try {
+            return inspectionEdits.apply(id, i -> {
+                List<InspectionBox> boxes = i.getBoxes();
+                if (boxes.isEmpty()) {
+                    throw new IllegalArgumentException("No bounding boxes to modify");
                 }
-                ArrayNode arr = (ArrayNode) node;
                 int matchIdx = -1;
                 final double EPS = 0.5; // tolerance for float vs int serialization
-                for (int idx = 0; idx < arr.size(); idx++) {
-                    JsonNode b = arr.get(idx);
-                    if (b instanceof ArrayNode && b.size() >= 4) {
-                        double bx = b.get(0).asDouble();
-                        double by = b.get(1).asDouble();
-                        double bw = b.get(2).asDouble();
-                        double bh = b.get(3).asDouble();
-                        if (Math.abs(bx - x) < EPS && Math.abs(by - y) < EPS && Math.abs(bw - w) < EPS && Math.abs(bh - h) < EPS) {
-                            matchIdx = idx;
-                            break;
-                        }
+                for (int idx = 0; idx < boxes.size(); idx++) {
+                    InspectionBox b = boxes.get(idx);
+                    if (Math.abs(b.getX() - x) < EPS && Math.abs(b.getY() - y) < EPS && Math.abs(b.getW() - w) < EPS && Math.abs(b.getH() - h) < EPS) {
+                        matchIdx = idx;
+                        break;
                     }
                 }
                 if (matchIdx < 0) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Box not found"));
-                }
-                ArrayNode statusSnapshot = mapper.createArrayNode();
-                for (int idx = 0; idx < arr.size(); idx++) {
-                    if (idx == matchIdx) {
-                        statusSnapshot.add("deleted");
-                    } else {
-                        statusSnapshot.addNull();
-                    }
-                }
-                try { archivePreviousAnalysis(i, username == null || username.isBlank() ? "user" : username, statusSnapshot); } catch (Exception ignore) { }
-                arr.remove(matchIdx);
-                i.setBoundingBoxes(arr.toString());
-
-                String ftJson = i.getFaultTypes();
-                if (ftJson != null && !ftJson.isBlank()) {
-                    try {
-                        JsonNode ftNode = mapper.readTree(ftJson);
-                        if (ftNode instanceof ArrayNode) {
-                            ArrayNode ftArr = (ArrayNode) ftNode;
-                            if (matchIdx >= 0 && matchIdx < ftArr.size()) {
-                                ftArr.remove(matchIdx);
-                                i.setFaultTypes(ftArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed faultTypes */ }
-                }
-
-                // Update annotatedBy alignment
-                String annJson = i.getAnnotatedBy();
-                if (annJson != null && !annJson.isBlank()) {
-                    try {
-                        JsonNode annNode = mapper.readTree(annJson);
-                        if (annNode instanceof ArrayNode) {
-                            ArrayNode annArr = (ArrayNode) annNode;
-                            if (matchIdx >= 0 && matchIdx < annArr.size()) {
-                                annArr.remove(matchIdx);
-                                i.setAnnotatedBy(annArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed annotatedBy */ }
-                }
-
-                // Update severity alignment
-                String sevJson = i.getSeverity();
-                if (sevJson != null && !sevJson.isBlank()) {
-                    try {
-                        JsonNode sevNode = mapper.readTree(sevJson);
-                        if (sevNode instanceof ArrayNode) {
-                            ArrayNode sevArr = (ArrayNode) sevNode;
-                            if (matchIdx >= 0 && matchIdx < sevArr.size()) {
-                                sevArr.remove(matchIdx);
-                                i.setSeverity(sevArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed severity */ }
-                }
-
-                // Update comment alignment
-                String commentJson = i.getComment();
-                if (commentJson != null && !commentJson.isBlank()) {
-                    try {
-                        JsonNode commentNode = mapper.readTree(commentJson);
-                        if (commentNode instanceof ArrayNode) {
-                            ArrayNode commentArr = (ArrayNode) commentNode;
-                            if (matchIdx >= 0 && matchIdx < commentArr.size()) {
-                                commentArr.remove(matchIdx);
-                                i.setComment(commentArr.isEmpty() ? null : commentArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed comment */ }
+                    throw new IllegalArgumentException("Box not found");
                 }
+                deleteBoxAt(i, matchIdx, username);
+            }).map(this::boxesSaved).orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        } catch (ConcurrencyFailureException e) {
+            return editConflict();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to remove box"));
+        }
+    }
 
-                String createdJson = i.getBoxCreatedAt();
-                if (createdJson != null && !createdJson.isBlank()) {
-                    try {
-                        JsonNode createdNode = mapper.readTree(createdJson);
-                        if (createdNode instanceof ArrayNode) {
-                            ArrayNode createdArr = (ArrayNode) createdNode;
-                            if (matchIdx >= 0 && matchIdx < createdArr.size()) {
-                                createdArr.remove(matchIdx);
-                                i.setBoxCreatedAt(createdArr.isEmpty() ? null : createdArr.toString());
-                            }
-                        }
-                    } catch (Exception ignore) { /* ignore malformed boxCreatedAt */ }
+    /**
+     * Archive the current state with the removed box flagged as deleted, then delete its row.
+     * The remaining rows are only rewritten if they still carried a recent status.
+     */
+    private void deleteBoxAt(Inspection i, int index, String username) {
+        List<InspectionBox> boxes = i.getBoxes();
+        String[] statusSnapshot = new String[boxes.size()];
+        statusSnapshot[index] = "deleted";
+        boolean newSession = archiveEdit(i, username, statusSnapshot, boxes.get(index).getId());
+        i.removeBoxAt(index);
+        // Deletion is represented only in history; statuses set earlier in the same session stay
+        if (newSession) {
+            for (InspectionBox box : boxes) {
+                if (box.getRecentStatus() != null) {
+                    box.setRecentStatus(null);
                 }
-
-                i.setRecentStatus(null);
-
-                repo.save(i);
-                return ResponseEntity.ok(Map.of(
-                        "ok", true,
-                        "boundingBoxes", arr,
-                        "faultTypes", i.getFaultTypes(),
-            "recentStatus", null,
-            "boxCreatedAt", parseJsonNode(mapper, i.getBoxCreatedAt())));
-            } catch (Exception e) {
-                return ResponseEntity.internalServerError().body(Map.of("error", "Failed to remove box"));
             }
-        }).orElse(ResponseEntity.notFound().build());
+        }
+    }
+
+    /** Announce a committed box edit and answer with the boxes as saved. */
+    private ResponseEntity<?> boxesSaved(Inspection saved) {
+        events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.BOXES));
+        return ResponseEntity.ok(BoxStateResponse.fromEntity(saved));
     }
 
     @PostMapping("/{id}/boxes")
     public ResponseEntity<?> addBox(@PathVariable String id,
                                     @RequestBody Map<String, Object> payload,
                                     @RequestHeader(value = "x-username", required = false) String username) {
-        return repo.findById(id).map(i -> {
-            try {
-                // Archive current analysis before modification by user
-                try { archivePreviousAnalysis(i, username == null || username.isBlank() ? "user" : username, null); } catch (Exception ignore) { }
-                double x = ((Number)payload.getOrDefault("x", 0)).doubleValue();
-                double y = ((Number)payload.getOrDefault("y", 0)).doubleValue();
-                double w = ((Number)payload.getOrDefault("w", 0)).doubleValue();
-                double h = ((Number)payload.getOrDefault("h", 0)).doubleValue();
-                String faultType = String.valueOf(payload.getOrDefault("faultType", "none"));
-                Object rawComment = payload.get("comment");
-                String commentValue = null;
-                if (rawComment instanceof String) {
-                    String trimmed = ((String) rawComment).trim();
-                    if (!trimmed.isEmpty()) {
-                        commentValue = trimmed;
-                    }
-                }
-
-                ObjectMapper mapper = new ObjectMapper();
-                ArrayNode boxesArr;
-                String boxesJson = i.getBoundingBoxes();
-                if (boxesJson != null && !boxesJson.isBlank()) {
-                    try {
-                        var node = mapper.readTree(boxesJson);
-                        boxesArr = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-                    } catch (Exception ex) {
-                        boxesArr = mapper.createArrayNode();
-                    }
-                } else {
-                    boxesArr = mapper.createArrayNode();
-                }
-                ArrayNode newBox = mapper.createArrayNode();
-                newBox.add(x).add(y).add(w).add(h);
-                boxesArr.add(newBox);
-                i.setBoundingBoxes(boxesArr.toString());
-
-                // Update faultTypes aligned with boxes
-                ArrayNode ftArr;
-                String ftJson = i.getFaultTypes();
-                if (ftJson != null && !ftJson.isBlank()) {
-                    try {
-                        var node = mapper.readTree(ftJson);
-                        ftArr = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-                    } catch (Exception ex) {
-                        ftArr = mapper.createArrayNode();
-                    }
-                } else {
-                    ftArr = mapper.createArrayNode();
-                }
-                ftArr.add(faultType);
-                i.setFaultTypes(ftArr.toString());
-
-                // Update per-box annotatedBy aligned with boxes
-                ArrayNode annArr;
-                String annJson = i.getAnnotatedBy();
-                if (annJson != null && !annJson.isBlank()) {
-                    try {
-                        var node = mapper.readTree(annJson);
-                        annArr = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-                    } catch (Exception ex) {
-                        annArr = mapper.createArrayNode();
-                    }
-                } else {
-                    annArr = mapper.createArrayNode();
-                }
-                String who = username == null || username.isBlank() ? "user" : username;
-                annArr.add(who);
-                i.setAnnotatedBy(annArr.toString());
-
-                // Update severity array aligned with boxes (user-added boxes have null severity)
-                ArrayNode sevArr;
-                String sevJson = i.getSeverity();
-                if (sevJson != null && !sevJson.isBlank()) {
-                    try {
-                        var node = mapper.readTree(sevJson);
-                        sevArr = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-                    } catch (Exception ex) {
-                        sevArr = mapper.createArrayNode();
-                    }
-                } else {
-                    sevArr = mapper.createArrayNode();
-                }
-                sevArr.addNull(); // User-added boxes have null severity
-                i.setSeverity(sevArr.toString());
-
-                // Update comment array aligned with boxes
-                ArrayNode commentArr;
-                String commentJson = i.getComment();
-                if (commentJson != null && !commentJson.isBlank()) {
-                    try {
-                        var node = mapper.readTree(commentJson);
-                        commentArr = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-                    } catch (Exception ex) {
-                        commentArr = mapper.createArrayNode();
-                    }
-                } else {
-                    commentArr = mapper.createArrayNode();
-                }
-                if (commentValue != null) {
-                    commentArr.add(commentValue);
-                } else {
-                    commentArr.addNull();
-                }
-                i.setComment(commentArr.isEmpty() ? null : commentArr.toString());
-
-                ArrayNode createdArr;
-                String createdJson = i.getBoxCreatedAt();
-                if (createdJson != null && !createdJson.isBlank()) {
-                    try {
-                        var node = mapper.readTree(createdJson);
-                        createdArr = node instanceof ArrayNode ? (ArrayNode) node : mapper.createArrayNode();
-                    } catch (Exception ex) {
-                        createdArr = mapper.createArrayNode();
-                    }
-                } else {
-                    createdArr = mapper.createArrayNode();
-                }
-                while (createdArr.size() < boxesArr.size() - 1) {
-                    createdArr.addNull();
+        try {
+            double x = ((Number)payload.getOrDefault("x", 0)).doubleValue();
+            double y = ((Number)payload.getOrDefault("y", 0)).doubleValue();
+            double w = ((Number)payload.getOrDefault("w", 0)).doubleValue();
+            double h = ((Number)payload.getOrDefault("h", 0)).doubleValue();
+            String faultType = String.valueOf(payload.getOrDefault("faultType", "none"));
+            Object rawComment = payload.get("comment");
+            String commentValue = null;
+            if (rawComment instanceof String) {
+                String trimmed = ((String) rawComment).trim();
+                if (!trimmed.isEmpty()) {
+                    commentValue = trimmed;
                 }
-                createdArr.add(Instant.now().toString());
-                i.setBoxCreatedAt(createdArr.isEmpty() ? null : createdArr.toString());
-
-                ArrayNode statusArr = mapper.createArrayNode();
-                for (int idx = 0; idx < boxesArr.size(); idx++) {
-                    if (idx == boxesArr.size() - 1) {
-                        statusArr.add("added");
-                    } else {
-                        statusArr.addNull();
+            }
+            String comment = commentValue;
+
+            return inspectionEdits.apply(id, i -> {
+                // Archive current analysis before modification by user, unless this continues an edit session
+                boolean newSession = archiveEdit(i, username, null, null);
+                // Only boxes added in this session are flagged as added
+                if (newSession) {
+                    for (InspectionBox existing : i.getBoxes()) {
+                        if (existing.getRecentStatus() != null) {
+                            existing.setRecentStatus(null);
+                        }
                     }
                 }
-                i.setRecentStatus(hasMeaningfulStatus(statusArr) ? statusArr.toString() : null);
-
-                repo.save(i);
-                return ResponseEntity.ok(Map.of(
-                        "ok", true,
-                        "boundingBoxes", boxesArr,
-                        "faultTypes", ftArr,
-                        "comments", commentArr,
-            "recentStatus", statusArr,
-            "boxCreatedAt", createdArr));
-            } catch (Exception e) {
-                return ResponseEntity.internalServerError().body(Map.of("error", "Failed to add box"));
-            }
-        }).orElse(ResponseEntity.notFound().build());
+                InspectionBox box = new InspectionBox(x, y, w, h);
+                box.setFaultType(faultType);
+                box.setAnnotatedBy(username == null || username.isBlank() ? "user" : username);
+                box.setComment(comment); // user-added boxes have null severity
+                box.setRecentStatus("added");
+                box.setCreatedAt(Instant.now());
+                i.addBox(box);
+            }).map(this::boxesSaved).orElse(ResponseEntity.notFound().build());
+        } catch (ConcurrencyFailureException e) {
+            return editConflict();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to add box"));
+        }
     }
 
     @PutMapping("/{id}/boxes/bulk")
     public ResponseEntity<?> bulkUpdateBoxes(@PathVariable String id,
-                                             @RequestBody Map<String, Object> payload,
+                                             @RequestBody BoxBulkUpdateRequest payload,
                                              @RequestHeader(value = "x-username", required = false) String username) {
-        return repo.findById(id).map(i -> {
-            try {
-                String previousBoxes = i.getBoundingBoxes();
-                String previousFaults = i.getFaultTypes();
-                String previousAnnotated = i.getAnnotatedBy();
-                String previousComments = i.getComment();
-                String actor = username == null || username.isBlank() ? "user" : username;
-                ObjectMapper mapper = new ObjectMapper();
-                ArrayNode prevBoxesNode = parseArrayNode(mapper, previousBoxes);
-                ArrayNode prevFaultsNode = parseArrayNode(mapper, previousFaults);
-                ArrayNode prevCommentsNode = parseArrayNode(mapper, previousComments);
-                ArrayNode prevCreatedNode = parseArrayNode(mapper, i.getBoxCreatedAt());
-                
-                // Parse incoming boxes, faultTypes, and annotatedBy from request
-                var boxesPayload = payload.get("boundingBoxes");
-                var faultsPayload = payload.get("faultTypes");
-                var annotatedByPayload = payload.get("annotatedBy");
-                var commentsPayload = payload.get("comments");
-                var tuneModelPayload = payload.get("tuneModel");
-                boolean tuneModel = true;
-                if (tuneModelPayload instanceof Boolean) {
-                    tuneModel = (Boolean) tuneModelPayload;
-                } else if (tuneModelPayload instanceof String) {
-                    tuneModel = Boolean.parseBoolean((String) tuneModelPayload);
-                }
+        String actor = username == null || username.isBlank() ? "user" : username;
+        AnnotationState requested = payload.state();
+        AnnotationState[] previous = new AnnotationState[1];
+        try {
+            Optional<Inspection> stored = inspectionEdits.apply(id, i -> {
+                List<InspectionBox> previousRows = new ArrayList<>(i.getBoxes());
+                previous[0] = AnnotationState.of(previousRows);
 
-                ArrayNode finalBoxes = mapper.createArrayNode();
-                if (boxesPayload instanceof List) {
-                    for (Object boxObj : (List<?>) boxesPayload) {
-                        if (boxObj instanceof List) {
-                            List<?> boxList = (List<?>) boxObj;
-                            if (boxList.size() >= 4) {
-                                ArrayNode boxNode = mapper.createArrayNode();
-                                boxNode.add(((Number) boxList.get(0)).doubleValue());
-                                boxNode.add(((Number) boxList.get(1)).doubleValue());
-                                boxNode.add(((Number) boxList.get(2)).doubleValue());
-                                boxNode.add(((Number) boxList.get(3)).doubleValue());
-                                finalBoxes.add(boxNode);
-                            }
-                        }
-                    }
-                }
+                StatusDiff statusDiff = computeStatusDiff(previous[0], requested);
 
-                ArrayNode finalFaults = mapper.createArrayNode();
-                if (faultsPayload instanceof List) {
-                    for (Object ft : (List<?>) faultsPayload) {
-                        finalFaults.add(ft != null ? ft.toString() : "none");
-                    }
-                }
+                // Archive before the rows below are updated in place
+                archivePreviousAnalysis(i, actor, statusDiff.historyStatus());
 
-                // Use annotatedBy from request if provided; otherwise fill with username
-                ArrayNode finalAnnotated = mapper.createArrayNode();
-                if (annotatedByPayload instanceof List) {
-                    for (Object ann : (List<?>) annotatedByPayload) {
-                        finalAnnotated.add(ann != null ? ann.toString() : actor);
-                    }
-                } else {
-                    // Fallback: fill with username for all boxes
-                    String who = actor;
-                    for (int k = 0; k < finalFaults.size(); k++) {
-                        finalAnnotated.add(who);
+                // Matched boxes keep their row (id, created-at, severity); only changed columns are written
+                List<InspectionBox> finalRows = new ArrayList<>();
+                int[] currentToPrevious = statusDiff.currentToPrevious();
+                String[] currentStatus = statusDiff.currentStatus();
+                Instant now = Instant.now();
+                for (int idx = 0; idx < requested.size(); idx++) {
+                    int prevIdx = currentToPrevious[idx];
+                    InspectionBox box = prevIdx >= 0 && prevIdx < previousRows.size() ? previousRows.get(prevIdx) : new InspectionBox();
+                    box.setX(requested.x(idx));
+                    box.setY(requested.y(idx));
+                    box.setW(requested.w(idx));
+                    box.setH(requested.h(idx));
+                    box.setFaultType(requested.faultType(idx));
+                    String annotator = requested.annotatedBy(idx);
+                    box.setAnnotatedBy(annotator != null ? annotator : actor);
+                    box.setComment(requested.comment(idx));
+                    box.setRecentStatus(currentStatus[idx]);
+                    if (box.getCreatedAt() == null) {
+                        box.setCreatedAt(now);
                     }
+                    finalRows.add(box);
                 }
 
-                ArrayNode finalComments = mapper.createArrayNode();
-                if (commentsPayload instanceof List) {
-                    for (Object commentObj : (List<?>) commentsPayload) {
-                        if (commentObj == null) {
-                            finalComments.addNull();
-                        } else {
-                            String text = commentObj.toString().trim();
-                            finalComments.add(text.isEmpty() ? null : text);
-                        }
-                    }
-                }
-                while (finalComments.size() < finalBoxes.size()) {
-                    finalComments.addNull();
-                }
-                while (finalComments.size() > finalBoxes.size()) {
-                    finalComments.remove(finalComments.size() - 1);
-                }
-                boolean hasCommentValue = false;
-                for (JsonNode node : finalComments) {
-                    if (node != null && !node.isNull() && !node.asText("").isBlank()) {
-                        hasCommentValue = true;
-                        break;
-                    }
-                }
+                // Persist final state
+                i.replaceBoxes(finalRows);
+            });
+            if (stored.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            Inspection saved = stored.get();
+            events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.BOXES));
 
-                StatusDiff statusDiff = computeStatusDiff(
-                        prevBoxesNode,
-                        prevFaultsNode,
-                        prevCommentsNode,
-                        finalBoxes,
-                        finalFaults,
-                        finalComments,
-                        mapper);
+            if (payload.tuneModel()) {
+                tuneFromEdit(saved, previous[0]);
+            }
 
-                ArrayNode historyStatusSnapshot = statusDiff.historyStatus();
-                ArrayNode currentStatusSnapshot = statusDiff.currentStatus();
+            return ResponseEntity.ok(BoxStateResponse.fromEntity(saved));
+        } catch (ConcurrencyFailureException e) {
+            return editConflict();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Bulk update failed"));
+        }
+    }
 
-                ArrayNode finalCreatedAt = mapper.createArrayNode();
-                int[] currentToPrevious = statusDiff.currentToPrevious();
-                for (int idx = 0; idx < finalBoxes.size(); idx++) {
-                    String ts = null;
-                    if (idx < currentToPrevious.length) {
-                        int prevIdx = currentToPrevious[idx];
-                        if (prevIdx >= 0 && prevCreatedNode != null && prevIdx < prevCreatedNode.size()) {
-                            JsonNode prevTs = prevCreatedNode.get(prevIdx);
-                            if (prevTs != null && !prevTs.isNull()) {
-                                ts = prevTs.asText(null);
-                            }
-                        }
-                    }
-                    if (ts == null || ts.isBlank()) {
-                        ts = Instant.now().toString();
-                    }
-                    finalCreatedAt.add(ts);
+    /**
+     * Apply box edits addressed by box id (see {@link BoxPatch}) instead of resending every box.
+     * The operations are checked as a whole first, so either all of them apply or none; the state
+     * before them is archived once, and only the named boxes are written. Honours {@code If-Match},
+     * checked against the locked inspection, so a failed precondition archives nothing.
+     */
+    @PatchMapping("/{id}/boxes")
+    public ResponseEntity<?> patchBoxes(@PathVariable String id,
+                                        @RequestBody(required = false) BoxPatchRequest payload,
+                                        @RequestHeader(value = "x-username", required = false) String username,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (payload == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Request body is required"));
+        }
+        String actor = username == null || username.isBlank() ? "user" : username;
+        AnnotationState[] previous = new AnnotationState[1];
+        try {
+            Optional<Inspection> stored = inspectionEdits.apply(id, i -> {
+                if (ETags.preconditionFailed(ifMatch, etag(i))) {
+                    throw new PreconditionFailed(etag(i));
+                }
+                BoxPatch patch = BoxPatch.plan(i.getBoxes(), payload.ops());
+                if (payload.shouldTuneModel() && patch.changesAnnotations()) {
+                    previous[0] = AnnotationState.of(i.getBoxes(),
+                            BoxColumn.BOUNDING_BOXES, BoxColumn.FAULT_TYPES, BoxColumn.ANNOTATED_BY);
                 }
-                String finalCreatedJson = finalCreatedAt.size() == 0 ? null : finalCreatedAt.toString();
+                // Archive before the rows below are updated in place
+                archivePreviousAnalysis(i, actor, patch.historyStatus());
+                patch.applyTo(i, actor, Instant.now());
+            });
+            if (stored.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            Inspection saved = stored.get();
+            events.publishEvent(InspectionChanged.saved(saved, InspectionChanged.Cause.BOXES));
+            if (previous[0] != null) {
+                tuneFromEdit(saved, previous[0]);
+            }
+            return ResponseEntity.ok().eTag(etag(saved)).body(BoxStateResponse.fromEntity(saved));
+        } catch (PreconditionFailed ex) {
+            return ETags.preconditionFailedResponse(ex.etag, "Inspection was changed since it was read");
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            return ETags.preconditionFailedResponse(null, "Inspection was changed since it was read");
+        } catch (ConcurrencyFailureException e) {
+            return editConflict();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Box update failed"));
+        }
+    }
 
-                try { archivePreviousAnalysis(i, actor, historyStatusSnapshot); } catch (Exception ignore) { }
+    /** An {@code If-Match} that names an older version, raised inside an edit to roll it back. */
+    private static final class PreconditionFailed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
 
-                String finalBoxesJson = finalBoxes.toString();
-                String finalFaultsJson = finalFaults.toString();
-                String finalAnnotatedJson = finalAnnotated.toString();
-                String finalCommentsJson = hasCommentValue ? finalComments.toString() : null;
+        final String etag;
 
-                // Persist final state
-                i.setBoundingBoxes(finalBoxesJson);
-                i.setFaultTypes(finalFaultsJson);
-                i.setAnnotatedBy(finalAnnotatedJson);
-                i.setComment(finalCommentsJson);
-                i.setBoxCreatedAt(finalCreatedJson);
-                i.setRecentStatus(hasMeaningfulStatus(currentStatusSnapshot) ? currentStatusSnapshot.toString() : null);
-                repo.save(i);
-
-                if (tuneModel) {
-                    parameterTuningService.processBulkUpdateFeedback(
-                            i,
-                            previousBoxes,
-                            previousFaults,
-                            previousAnnotated,
-                            finalBoxesJson,
-                            finalFaultsJson,
-                            finalAnnotatedJson
-                    );
-                }
+        PreconditionFailed(String etag) {
+            super(null, null, false, false);
+            this.etag = etag;
+        }
+    }
 
-                return ResponseEntity.ok(Map.of(
-                        "ok", true,
-                        "boundingBoxes", finalBoxes,
-                        "faultTypes", finalFaults,
-                        "comments", finalComments,
-            "recentStatus", currentStatusSnapshot,
-            "boxCreatedAt", finalCreatedAt));
-            } catch (Exception e) {
-                return ResponseEntity.internalServerError().body(Map.of("error", "Bulk update failed"));
-            }
-        }).orElse(ResponseEntity.notFound().build());
+    /** Feed a user's box edit to parameter tuning: the boxes before it against the saved ones. */
+    private void tuneFromEdit(Inspection saved, AnnotationState previous) {
+        AnnotationState result = AnnotationState.of(saved.getBoxes(),
+                BoxColumn.BOUNDING_BOXES, BoxColumn.FAULT_TYPES, BoxColumn.ANNOTATED_BY);
+        parameterTuningService.processBulkUpdateFeedback(
+                saved,
+                AnnotationStateCodec.toJson(previous, BoxColumn.BOUNDING_BOXES),
+                AnnotationStateCodec.toJson(previous, BoxColumn.FAULT_TYPES),
+                AnnotationStateCodec.toJson(previous, BoxColumn.ANNOTATED_BY),
+                AnnotationStateCodec.toJson(result, BoxColumn.BOUNDING_BOXES),
+                AnnotationStateCodec.toJson(result, BoxColumn.FAULT_TYPES),
+                AnnotationStateCodec.toJson(result, BoxColumn.ANNOTATED_BY)
+        );
     }
 
     @PostMapping("/model/reset")
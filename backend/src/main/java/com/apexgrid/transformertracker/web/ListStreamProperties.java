@@ -0,0 +1,22 @@
+package com.apexgrid.transformertracker.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.list-stream")
+public class ListStreamProperties {
+    /**
+     * Rows the JDBC driver fetches per round trip while a list streams; also how often the
+     * response is flushed. Bounds the rows held in memory at once.
+     */
+    private int fetchSize = 500;
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+}
@@ -0,0 +1,115 @@
+package com.apexgrid.transformertracker.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a whole entity list as it is read from a database cursor, for integrations that need
+ * everything at once. Rows are serialized one by one through a {@link JsonGenerator} inside a
+ * read-only transaction, so neither the entities nor the JSON are ever held in full: memory stays
+ * at about one fetch of rows whatever the row count. Output is a JSON array or NDJSON (one object
+ * per line), gzip-compressed when the client accepts it.
+ */
+@Component
+class ListStreamer {
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ObjectMapper mapper;
+    private final TransactionTemplate readOnly;
+    private final ListStreamProperties properties;
+
+    ListStreamer(ObjectMapper mapper, PlatformTransactionManager transactionManager, ListStreamProperties properties) {
+        this.mapper = mapper;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    <T> ResponseEntity<StreamingResponseBody> stream(String format, String acceptEncoding, IntFunction<Stream<T>> rows) {
+        return stream(format, acceptEncoding, null, rows);
+    }
+
+    /**
+     * @param format "json" (the default) or "ndjson"
+     * @param filters the property filters for a sparse read, or null to write rows in full
+     * @param rows opens the stream for a fetch size; called on the streaming thread inside the transaction
+     * @return 400 for an unknown format
+     */
+    <T> ResponseEntity<StreamingResponseBody> stream(String format, String acceptEncoding, FilterProvider filters,
+                                                     IntFunction<Stream<T>> rows) {
+        String kind = format == null || format.isBlank() ? "json" : format.trim().toLowerCase(Locale.ROOT);
+        if (!kind.equals("json") && !kind.equals("ndjson")) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean ndjson = kind.equals("ndjson");
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        int fetchSize = Math.max(1, properties.getFetchSize());
+        // Flushed every fetchSize rows below, not after each one
+        ObjectWriter writer = (filters != null ? mapper.writer(filters) : mapper.writer())
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 8192) : null;
+            OutputStream target = compressed != null ? compressed : out;
+            readOnly.executeWithoutResult(status -> {
+                try (Stream<T> stream = rows.apply(fetchSize)) {
+                    write(writer, stream.iterator(), target, ndjson, fetchSize);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            if (compressed != null) {
+                compressed.finish();
+            }
+        };
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON);
+        headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    private <T> void write(ObjectWriter writer, Iterator<T> rows, OutputStream out, boolean ndjson, int flushEvery)
+            throws IOException {
+        JsonGenerator generator = writer.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+        long written = 0;
+        while (rows.hasNext()) {
+            writer.writeValue(generator, rows.next());
+            if (ndjson) {
+                generator.writeRaw('\n');
+            }
+            if (++written % flushEvery == 0) {
+                generator.flush();
+            }
+        }
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+}
@@ -0,0 +1,13 @@
+package com.apexgrid.transformertracker.web;
+
+import org.springframework.util.StringUtils;
+
+/** Normalizing of optional query parameters. */
+final class RequestParams {
+    private RequestParams() { }
+
+    /** The trimmed value, or null when it is missing or blank so that it matches everything. */
+    static String trimmed(String value) {
+        return StringUtils.hasText(value) ? value.trim() : null;
+    }
+}
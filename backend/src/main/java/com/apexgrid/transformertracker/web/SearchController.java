@@ -0,0 +1,56 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.annotation.SeverityBand;
+import com.apexgrid.transformertracker.search.SearchIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+    private static final int MAX_LIMIT = 200;
+
+    private final SearchIndex searchIndex;
+
+    public SearchController(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> search(@RequestParam(required = false) String q,
+                                    @RequestParam(required = false) String kind,
+                                    @RequestParam(required = false) String region,
+                                    @RequestParam(required = false) String type,
+                                    @RequestParam(required = false) String status,
+                                    @RequestParam(required = false) String branch,
+                                    @RequestParam(required = false) String faultType,
+                                    @RequestParam(required = false) String severity,
+                                    @RequestParam(defaultValue = "20") int limit) {
+        String kindValue = RequestParams.trimmed(kind);
+        if (kindValue != null) {
+            kindValue = kindValue.toLowerCase(Locale.ROOT);
+            if (!kindValue.equals(SearchIndex.TRANSFORMER) && !kindValue.equals(SearchIndex.INSPECTION)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "kind must be transformer or inspection"));
+            }
+        }
+        SeverityBand band = null;
+        String severityValue = RequestParams.trimmed(severity);
+        if (severityValue != null) {
+            try {
+                band = SeverityBand.valueOf(severityValue.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unknown severity band"));
+            }
+        }
+        SearchIndex.Query query = new SearchIndex.Query(q, kindValue, RequestParams.trimmed(region),
+                RequestParams.trimmed(type), RequestParams.trimmed(status), RequestParams.trimmed(branch),
+                RequestParams.trimmed(faultType), band, Math.max(0, Math.min(MAX_LIMIT, limit)));
+        return ResponseEntity.ok(searchIndex.search(query));
+    }
+}
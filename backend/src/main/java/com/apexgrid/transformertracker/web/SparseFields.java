@@ -0,0 +1,67 @@
+package com.apexgrid.transformertracker.web;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The {@code fields} query parameter of the read endpoints: a comma-separated list of the
+ * properties to return, e.g. {@code fields=status,inspectedDate}. The id is always included.
+ * Lists and single reads select only those columns; serialization then writes only those
+ * properties through the resource's Jackson filter. Each field set has its own ETag.
+ */
+final class SparseFields {
+    // @JsonFilter ids on Inspection, Transformer and MaintenanceRecordResponse
+    static final String INSPECTION = "inspection";
+    static final String TRANSFORMER = "transformer";
+    static final String MAINTENANCE_RECORD = "maintenanceRecord";
+
+    private SparseFields() { }
+
+    /**
+     * The requested names with the id first, or null when the parameter is missing or blank.
+     *
+     * @throws IllegalArgumentException for a name not in {@code allowed}
+     */
+    static Set<String> parse(String fields, Set<String> allowed) {
+        if (RequestParams.trimmed(fields) == null) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        names.add("id");
+        for (String part : fields.split(",")) {
+            String name = part.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!allowed.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name + "; one of " + String.join(", ", allowed));
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    /** {@code etag} for the representation limited to {@code names}, so it never matches the full one. */
+    static String etag(String etag, Set<String> names) {
+        return names == null ? etag : etag.substring(0, etag.length() - 1) + '.' + ETags.hash(names) + '"';
+    }
+
+    /** Filters writing only {@code names} for beans with {@code filterId}, and everything else in full. */
+    static FilterProvider filters(String filterId, Set<String> names) {
+        return new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())
+                .addFilter(filterId, SimpleBeanPropertyFilter.filterOutAllExcept(names));
+    }
+
+    /** {@code body} to be written with {@link #filters}. */
+    static MappingJacksonValue body(Object body, String filterId, Set<String> names) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(filters(filterId, names));
+        return value;
+    }
+}
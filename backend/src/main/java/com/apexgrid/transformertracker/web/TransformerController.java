@@ -1,68 +1,225 @@
 package com.apexgrid.transformertracker.web;
 
+import com.apexgrid.transformertracker.baseline.BaselineService;
+import com.apexgrid.transformertracker.change.TransformerChanged;
+import com.apexgrid.transformertracker.image.ImageFormat;
+import com.apexgrid.transformertracker.image.ImageIngestService;
+import com.apexgrid.transformertracker.image.IngestedImage;
+import com.apexgrid.transformertracker.model.BaselineSummary;
 import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.model.TransformerBaseline;
+import com.apexgrid.transformertracker.repo.InvalidPageRequestException;
+import com.apexgrid.transformertracker.repo.KeysetPage;
 import com.apexgrid.transformertracker.repo.MaintenanceRecordRepo;
+import com.apexgrid.transformertracker.repo.TransformerFilter;
 import com.apexgrid.transformertracker.repo.TransformerRepo;
 import com.apexgrid.transformertracker.web.dto.MaintenanceRecordResponse;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Instant;
 import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/transformers")
 public class TransformerController {
+    private static final int DEFAULT_LIST_LIMIT = 50;
+    private static final int MAX_LIST_LIMIT = 500;
+    private static final Set<String> BASELINE_VIEW = Set.of("sunnyImage", "cloudyImage", "windyImage",
+            "sunnyImageUploadedBy", "cloudyImageUploadedBy", "windyImageUploadedBy",
+            "sunnyImageUploadedAt", "cloudyImageUploadedAt", "windyImageUploadedAt");
+
     private final TransformerRepo repo;
     private final MaintenanceRecordRepo maintenanceRecordRepo;
+    private final ImageIngestService imageIngestService;
+    private final BaselineService baselineService;
+    private final ApplicationEventPublisher events;
+    private final ListStreamer listStreamer;
 
     public TransformerController(TransformerRepo repo,
-                                 MaintenanceRecordRepo maintenanceRecordRepo) {
+                                 MaintenanceRecordRepo maintenanceRecordRepo,
+                                 ImageIngestService imageIngestService,
+                                 BaselineService baselineService,
+                                 ApplicationEventPublisher events,
+                                 ListStreamer listStreamer) {
         this.repo = repo;
         this.maintenanceRecordRepo = maintenanceRecordRepo;
+        this.imageIngestService = imageIngestService;
+        this.baselineService = baselineService;
+        this.events = events;
+        this.listStreamer = listStreamer;
     }
 
+    /**
+     * Filtered list in a stable order. With {@code limit} (or a {@code cursor}) it returns one
+     * keyset page and the cursor of the next; without, the whole list as a plain array.
+     * {@code tf} looks up a single transformer number through its unique index. The ETag is a
+     * digest of the listed rows' versions, read before the rows themselves. With {@code fields},
+     * only those properties are read and written.
+     */
     @GetMapping
-    public List<Transformer> list(@RequestParam(required = false) String tf,
-                                  @RequestParam(required = false) Boolean fav) {
+    public ResponseEntity<?> list(@RequestParam(required = false) String tf,
+                                  @RequestParam(required = false) Boolean fav,
+                                  @RequestParam(required = false) String region,
+                                  @RequestParam(required = false) String type,
+                                  @RequestParam(defaultValue = "transformerNumber") String sort,
+                                  @RequestParam(defaultValue = "asc") String order,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(required = false) Integer limit,
+                                  @RequestParam(required = false) String fields,
+                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<String> names;
+        try {
+            names = SparseFields.parse(fields, TransformerRepo.FIELDS);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
         if (tf != null && !tf.isBlank()) {
-            return repo.findAll().stream().filter(t -> tf.equals(t.getTransformerNumber())).toList();
+            List<Transformer> found = repo.findByTransformerNumber(tf).stream().toList();
+            return ResponseEntity.ok(names == null ? found : SparseFields.body(found, SparseFields.TRANSFORMER, names));
+        }
+        TransformerFilter filter = new TransformerFilter(RequestParams.trimmed(region), RequestParams.trimmed(type),
+                Boolean.TRUE.equals(fav) ? true : null);
+        boolean paged = limit != null || cursor != null;
+        int pageSize = paged ? Math.max(1, Math.min(MAX_LIST_LIMIT, limit != null ? limit : DEFAULT_LIST_LIMIT)) : 0;
+        boolean descending = "desc".equalsIgnoreCase(order);
+        try {
+            String etag = SparseFields.etag(ETags.digest(repo.findPageVersions(filter, sort, descending, cursor, pageSize)), names);
+            if (ETags.notModified(ifNoneMatch, accept, etag)) {
+                return ETags.notModifiedResponse(etag, accept);
+            }
+            if (names == null) {
+                KeysetPage<Transformer> page = repo.findPage(filter, sort, descending, cursor, pageSize);
+                return ResponseEntity.ok().eTag(ETags.forAccept(etag, accept)).body(paged ? page : page.items());
+            }
+            KeysetPage<Transformer> page = repo.findPage(filter, sort, descending, cursor, pageSize, names);
+            return ResponseEntity.ok().eTag(ETags.forAccept(etag, accept))
+                    .body(SparseFields.body(paged ? page : page.items(), SparseFields.TRANSFORMER, names));
+        } catch (InvalidPageRequestException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
         }
-        if (Boolean.TRUE.equals(fav)) {
-            return repo.findByFavouriteTrue();
+    }
+
+    /**
+     * The whole filtered list read through a database cursor and written as it is read, as a JSON
+     * array or NDJSON ({@code format=ndjson}), gzip-compressed when accepted, in full or limited
+     * to {@code fields}.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) Boolean fav,
+                                                        @RequestParam(required = false) String region,
+                                                        @RequestParam(required = false) String type,
+                                                        @RequestParam(defaultValue = "transformerNumber") String sort,
+                                                        @RequestParam(defaultValue = "asc") String order,
+                                                        @RequestParam(required = false) String format,
+                                                        @RequestParam(required = false) String fields,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!TransformerRepo.SORTS.contains(sort)) {
+            return ResponseEntity.badRequest().build();
+        }
+        Set<String> names;
+        try {
+            names = SparseFields.parse(fields, TransformerRepo.FIELDS);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
         }
-        return repo.findAll();
+        TransformerFilter filter = new TransformerFilter(RequestParams.trimmed(region), RequestParams.trimmed(type),
+                Boolean.TRUE.equals(fav) ? true : null);
+        boolean descending = "desc".equalsIgnoreCase(order);
+        if (names == null) {
+            return listStreamer.stream(format, acceptEncoding, fetchSize -> repo.streamAll(filter, sort, descending, fetchSize));
+        }
+        return listStreamer.stream(format, acceptEncoding, SparseFields.filters(SparseFields.TRANSFORMER, names),
+                fetchSize -> repo.streamAll(filter, sort, descending, fetchSize, names));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Transformer> getOne(@PathVariable String id) {
+    public ResponseEntity<?> getOne(@PathVariable String id,
+                                    @RequestParam(required = false) String fields,
+                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<String> names;
+        try {
+            names = SparseFields.parse(fields, TransformerRepo.FIELDS);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+        Optional<Long> version = repo.findVersion(id);
+        if (version.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = SparseFields.etag(etag(id, version.get()), names);
+        if (ETags.notModified(ifNoneMatch, accept, etag)) {
+            return ETags.notModifiedResponse(etag, accept);
+        }
+        if (names != null) {
+            // The baseline view is read only when one of its properties is asked for
+            boolean baselines = names.stream().anyMatch(BASELINE_VIEW::contains);
+            return repo.findPartialById(id, names)
+                    .map(t -> baselines ? baselineService.withBaselineView(t) : t)
+                    .<ResponseEntity<?>>map(t -> ResponseEntity.ok().eTag(ETags.forAccept(etag, accept))
+                            .body(SparseFields.body(t, SparseFields.TRANSFORMER, names)))
+                    .orElse(ResponseEntity.notFound().build());
+        }
         return repo.findById(id)
-                .map(ResponseEntity::ok)
+                .map(baselineService::withBaselineView)
+                .map(t -> ResponseEntity.ok()
+                        .eTag(ETags.forAccept(t.getVersion() == version.get() ? etag : etag(id, t.getVersion()), accept)).body(t))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping
-    public Transformer create(@RequestBody Transformer t) {
-        return repo.save(t);
+    public ResponseEntity<?> create(@RequestBody Transformer t,
+                                    @AuthenticationPrincipal UserDetails principal) {
+        Map<String, String> submitted = new LinkedHashMap<>(t.getSubmittedBaselines());
+        Transformer saved = repo.save(t);
+        events.publishEvent(TransformerChanged.saved(saved, TransformerChanged.Cause.CREATED));
+        return applyBaselines(saved, submitted, principal);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Transformer> update(@PathVariable String id, @RequestBody Transformer t) {
-        return repo.findById(id).map(existing -> {
-            t.setId(existing.getId());
-            return ResponseEntity.ok(repo.save(t));
-        }).orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Transformer t,
+                                    @AuthenticationPrincipal UserDetails principal,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Optional<Long> version = repo.findVersion(id);
+        if (version.isEmpty()) return ResponseEntity.notFound().build();
+        String current = etag(id, version.get());
+        if (ETags.preconditionFailed(ifMatch, current)) {
+            return ETags.preconditionFailedResponse(current, "Transformer was changed since it was read");
+        }
+        t.setId(id);
+        // The version is never taken from the body; saving checks it is still the one just read
+        t.setVersion(version.get());
+        Map<String, String> submitted = new LinkedHashMap<>(t.getSubmittedBaselines());
+        Transformer saved;
+        try {
+            saved = repo.save(t);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            return ETags.preconditionFailedResponse(null, "Transformer was changed since it was read");
+        }
+        events.publishEvent(TransformerChanged.saved(saved, TransformerChanged.Cause.UPDATED));
+        return applyBaselines(saved, submitted, principal);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<?> delete(@PathVariable String id) {
         if (!repo.existsById(id)) return ResponseEntity.notFound().build();
+        baselineService.deleteAll(id);
         repo.deleteById(id);
+        events.publishEvent(TransformerChanged.deleted(id));
         return ResponseEntity.ok(Map.of("ok", true));
     }
 
@@ -72,28 +229,96 @@ public class TransformerController {
                                             @RequestParam("weather") String weather,
                                             @AuthenticationPrincipal UserDetails principal,
                                             @RequestHeader(value = "x-username", required = false) String uploaderHeader) throws Exception {
-        return repo.findById(id).map(t -> {
-            try {
+        String key = BaselineService.normalizeWeather(weather);
+        if (key == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid weather"));
+        }
+        return repo.findById(id).<ResponseEntity<?>>map(t -> {
+            try (IngestedImage image = imageIngestService.ingest(file)) {
                 String uploader = principal != null ? principal.getUsername() : uploaderHeader;
-                String base64 = Base64.getEncoder().encodeToString(file.getBytes());
-                String mime = file.getContentType() == null ? "application/octet-stream" : file.getContentType();
-                String imageUrl = "data:" + mime + ";base64," + base64;
-                Instant now = Instant.now();
-                switch (weather) {
-                    case "sunny" -> { t.setSunnyImage(imageUrl); t.setSunnyImageUploadedBy(uploader); t.setSunnyImageUploadedAt(now); }
-                    case "cloudy" -> { t.setCloudyImage(imageUrl); t.setCloudyImageUploadedBy(uploader); t.setCloudyImageUploadedAt(now); }
-                    case "rainy" -> { t.setWindyImage(imageUrl); t.setWindyImageUploadedBy(uploader); t.setWindyImageUploadedAt(now); }
-                    default -> { }
-                }
-                return ResponseEntity.ok(repo.save(t));
+                baselineService.store(t, key, image, uploader);
+                events.publishEvent(TransformerChanged.saved(t, TransformerChanged.Cause.BASELINES));
+                return ResponseEntity.ok(baselineService.withBaselineView(t));
             } catch (Exception e) {
                 return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
             }
         }).orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{id}/baselines")
+    public ResponseEntity<?> listBaselines(@PathVariable String id) {
+        if (!repo.existsById(id)) {
+            return ResponseEntity.status(404).body(Map.of("error", "Transformer not found"));
+        }
+        return ResponseEntity.ok(baselineService.listSummaries(id));
+    }
+
+    @GetMapping("/{id}/baselines/{weather}/image")
+    public ResponseEntity<?> baselineImage(@PathVariable String id,
+                                           @PathVariable String weather,
+                                           @RequestParam(required = false) Integer version) {
+        Optional<TransformerBaseline> baseline = version != null
+                ? baselineService.findVersion(id, weather, version)
+                : baselineService.findLatest(id, weather);
+        if (baseline.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "Baseline not found"));
+        }
+        String dataUrl = baseline.get().getImageUrl();
+        int comma = dataUrl.indexOf(',');
+        int semi = dataUrl.indexOf(';');
+        if (!dataUrl.startsWith("data:") || comma < 0) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Stored baseline is not a data URL"));
+        }
+        String mime = semi > 5 && semi < comma ? dataUrl.substring(5, semi) : ImageFormat.PNG.getMimeType();
+        byte[] bytes = Base64.getMimeDecoder().decode(dataUrl.substring(comma + 1));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(mime))
+                .header("X-Baseline-Version", String.valueOf(baseline.get().getVersion()))
+                .body(bytes);
+    }
+
+    @DeleteMapping("/{id}/baselines/{weather}")
+    public ResponseEntity<?> deleteBaseline(@PathVariable String id, @PathVariable String weather) {
+        Optional<Transformer> transformer = repo.findById(id);
+        if (transformer.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "Transformer not found"));
+        }
+        int removed = baselineService.delete(id, weather);
+        if (removed > 0) {
+            events.publishEvent(TransformerChanged.saved(transformer.get(), TransformerChanged.Cause.BASELINES));
+        }
+        return ResponseEntity.ok(Map.of("ok", true, "removed", removed));
+    }
+
+    private ResponseEntity<?> applyBaselines(Transformer saved, Map<String, String> submitted, UserDetails principal) {
+        if (submitted.isEmpty()) {
+            return ResponseEntity.ok().eTag(etag(saved.getId(), saved.getVersion())).body(saved);
+        }
+        try {
+            String uploader = principal != null ? principal.getUsername() : saved.getUploadedBy();
+            baselineService.applySubmittedBaselines(saved, submitted, uploader);
+            events.publishEvent(TransformerChanged.saved(saved, TransformerChanged.Cause.BASELINES));
+            return ResponseEntity.ok().eTag(etag(saved.getId(), saved.getVersion()))
+                    .body(baselineService.withBaselineView(saved));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Baseline upload failed"));
+        }
+    }
+
+    /** The transformer's version and a digest of its baseline ids, since the single read embeds the latest baselines. */
+    private String etag(String id, long version) {
+        return ETags.of(version, ETags.hash(baselineService.listSummaries(id).stream().map(BaselineSummary::id).toList()));
+    }
+
     @GetMapping("/{id}/maintenance-records")
-    public ResponseEntity<?> listMaintenanceRecords(@PathVariable String id) {
+    public ResponseEntity<?> listMaintenanceRecords(@PathVariable String id,
+                                                    @RequestParam(required = false) String fields) {
+        Set<String> names;
+        try {
+            names = SparseFields.parse(fields, MaintenanceRecordResponse.FIELDS);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
         var transformer = repo.findById(id).or(() -> repo.findByTransformerNumber(id));
         if (transformer.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("error", "Transformer not found"));
@@ -103,6 +328,6 @@ public class TransformerController {
                 .stream()
                 .map(MaintenanceRecordResponse::fromEntity)
                 .toList();
-        return ResponseEntity.ok(payload);
+        return ResponseEntity.ok(names == null ? payload : SparseFields.body(payload, SparseFields.MAINTENANCE_RECORD, names));
     }
 }
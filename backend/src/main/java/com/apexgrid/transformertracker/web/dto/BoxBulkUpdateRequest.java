@@ -0,0 +1,57 @@
+package com.apexgrid.transformertracker.web.dto;
+
+import com.apexgrid.transformertracker.annotation.AnnotationState;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec.BoxColumn;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Body of {@code PUT /api/inspections/{id}/boxes/bulk}: the full list of boxes the user kept,
+ * with {@code faultTypes}, {@code annotatedBy} and {@code comments} aligned to
+ * {@code boundingBoxes}, plus {@code tuneModel} (default true). Read in one streaming pass.
+ */
+@JsonDeserialize(using = BoxBulkUpdateRequest.Deserializer.class)
+public record BoxBulkUpdateRequest(AnnotationState state, boolean tuneModel) {
+    private static final Set<BoxColumn> COLUMNS = EnumSet.of(
+            BoxColumn.BOUNDING_BOXES, BoxColumn.FAULT_TYPES, BoxColumn.ANNOTATED_BY, BoxColumn.COMMENTS);
+
+    static final class Deserializer extends StdDeserializer<BoxBulkUpdateRequest> {
+        private static final long serialVersionUID = 1L;
+
+        Deserializer() {
+            super(BoxBulkUpdateRequest.class);
+        }
+
+        @Override
+        public BoxBulkUpdateRequest deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (BoxBulkUpdateRequest) ctxt.handleUnexpectedToken(BoxBulkUpdateRequest.class, parser);
+            }
+            AnnotationStateCodec.Reader reader = new AnnotationStateCodec.Reader();
+            boolean tuneModel = true;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                BoxColumn column = BoxColumn.forField(field);
+                if (column != null && COLUMNS.contains(column)) {
+                    reader.readColumn(parser, column);
+                } else if ("tuneModel".equals(field) && value == JsonToken.VALUE_STRING) {
+                    tuneModel = Boolean.parseBoolean(parser.getText());
+                } else if ("tuneModel".equals(field) && value.isBoolean()) {
+                    tuneModel = value == JsonToken.VALUE_TRUE;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new BoxBulkUpdateRequest(reader.finish(), tuneModel);
+        }
+    }
+}
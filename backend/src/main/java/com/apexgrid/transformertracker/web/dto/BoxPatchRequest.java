@@ -0,0 +1,16 @@
+package com.apexgrid.transformertracker.web.dto;
+
+import com.apexgrid.transformertracker.annotation.BoxPatch;
+
+import java.util.List;
+
+/**
+ * Body of {@code PATCH /api/inspections/{id}/boxes}: the operations to apply in order, e.g.
+ * {@code { "ops": [ { "op": "relabel", "id": "...", "faultType": "Loose Joint" } ] }}, plus
+ * {@code tuneModel} (default true).
+ */
+public record BoxPatchRequest(List<BoxPatch.Operation> ops, Boolean tuneModel) {
+    public boolean shouldTuneModel() {
+        return tuneModel == null || tuneModel;
+    }
+}
@@ -0,0 +1,44 @@
+package com.apexgrid.transformertracker.web.dto;
+
+import com.apexgrid.transformertracker.annotation.AnnotationState;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec;
+import com.apexgrid.transformertracker.annotation.AnnotationStateCodec.BoxColumn;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Current box state as returned by the box mutation endpoints:
+ * {@code { ok, boundingBoxes, boxIds, faultTypes, comments, recentStatus, boxCreatedAt }}.
+ * The arrays are written straight from the rows, null when the inspection has no boxes.
+ */
+@JsonSerialize(using = BoxStateResponse.Serializer.class)
+public record BoxStateResponse(AnnotationState state) {
+    public static BoxStateResponse fromEntity(Inspection inspection) {
+        return new BoxStateResponse(AnnotationState.of(inspection.getBoxes(),
+                BoxColumn.BOUNDING_BOXES, BoxColumn.BOX_IDS, BoxColumn.FAULT_TYPES, BoxColumn.COMMENTS,
+                BoxColumn.RECENT_STATUS, BoxColumn.BOX_CREATED_AT));
+    }
+
+    static final class Serializer extends StdSerializer<BoxStateResponse> {
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(BoxStateResponse.class);
+        }
+
+        @Override
+        public void serialize(BoxStateResponse value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeBooleanField("ok", true);
+            AnnotationStateCodec.writeFields(gen, value.state(),
+                    BoxColumn.BOUNDING_BOXES, BoxColumn.BOX_IDS, BoxColumn.FAULT_TYPES, BoxColumn.COMMENTS,
+                    BoxColumn.RECENT_STATUS, BoxColumn.BOX_CREATED_AT);
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.apexgrid.transformertracker.web.dto;
+
+import com.apexgrid.transformertracker.history.HistoryPage;
+
+import java.util.List;
+
+public record HistoryPageResponse(
+        List<HistorySnapshotResponse> items,
+        Integer nextCursor
+) {
+    public static HistoryPageResponse fromPage(HistoryPage page) {
+        return new HistoryPageResponse(
+                page.items().stream().map(HistorySnapshotResponse::fromEntry).toList(),
+                page.nextCursor()
+        );
+    }
+}
@@ -0,0 +1,46 @@
+package com.apexgrid.transformertracker.web.dto;
+
+import com.apexgrid.transformertracker.model.HistoryEntry;
+import com.apexgrid.transformertracker.annotation.JsonText;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.Instant;
+
+/**
+ * One history snapshot as served by {@code GET /api/inspections/{id}/history}. The per-box
+ * arrays are aligned and named like the inspection's current-state arrays; JSON responses write
+ * them as stored instead of parsing and re-serializing them.
+ */
+public record HistorySnapshotResponse(
+        int seq,
+        Instant timestamp,
+        String archivedBy,
+        @JsonSerialize(using = JsonText.Raw.class) String boxIds,
+        @JsonSerialize(using = JsonText.Raw.class) String boundingBoxes,
+        @JsonSerialize(using = JsonText.Raw.class) String faultTypes,
+        @JsonSerialize(using = JsonText.Raw.class) String annotatedBy,
+        @JsonSerialize(using = JsonText.Raw.class) String severity,
+        @JsonSerialize(using = JsonText.Raw.class) String comment,
+        @JsonSerialize(using = JsonText.Raw.class) String recentStatus,
+        @JsonSerialize(using = JsonText.Raw.class) String boxCreatedAt
+) {
+    public static HistorySnapshotResponse fromEntry(HistoryEntry entry) {
+        return new HistorySnapshotResponse(
+                entry.seq(),
+                entry.archivedAt(),
+                entry.archivedBy(),
+                rawOrNull(entry.boxIds()),
+                rawOrNull(entry.boundingBoxes()),
+                rawOrNull(entry.faultTypes()),
+                rawOrNull(entry.annotatedBy()),
+                rawOrNull(entry.severity()),
+                rawOrNull(entry.comments()),
+                rawOrNull(entry.recentStatus()),
+                rawOrNull(entry.boxCreatedAt())
+        );
+    }
+
+    private static String rawOrNull(String json) {
+        return json == null || json.isBlank() ? null : json;
+    }
+}
@@ -1,9 +1,16 @@
 package com.apexgrid.transformertracker.web.dto;
 
 import com.apexgrid.transformertracker.model.MaintenanceRecord;
+import com.fasterxml.jackson.annotation.JsonFilter;
 
+import java.lang.reflect.RecordComponent;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+@JsonFilter("maintenanceRecord")
 public record MaintenanceRecordResponse(
         String id,
         String inspectionId,
@@ -18,6 +25,11 @@ public record MaintenanceRecordResponse(
         String recommendation,
         String remarks
 ) {
+    /** Property names a sparse read ({@code fields=...}) can ask for. */
+    public static final Set<String> FIELDS = Arrays.stream(MaintenanceRecordResponse.class.getRecordComponents())
+            .map(RecordComponent::getName)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+
     public static MaintenanceRecordResponse fromEntity(MaintenanceRecord record) {
         if (record == null) {
             return null;
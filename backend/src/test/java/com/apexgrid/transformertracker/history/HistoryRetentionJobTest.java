@@ -0,0 +1,130 @@
+package com.apexgrid.transformertracker.history;
+
+import com.apexgrid.transformertracker.model.HistoryEntry;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.apexgrid.transformertracker.model.InspectionSnapshot;
+import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.repo.InspectionRepo;
+import com.apexgrid.transformertracker.repo.InspectionSnapshotRepo;
+import com.apexgrid.transformertracker.repo.TransformerRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.history.keyframe-interval=4",
+        "app.history.retention.keep-latest=2",
+        "app.history.retention.daily-for=1d"
+})
+class HistoryRetentionJobTest {
+    @Autowired
+    private TransformerRepo transformers;
+    @Autowired
+    private InspectionRepo inspections;
+    @Autowired
+    private InspectionSnapshotRepo snapshots;
+    @Autowired
+    private InspectionEdits edits;
+    @Autowired
+    private InspectionHistoryService history;
+    @Autowired
+    private HistoryRetentionJob job;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void survivorsReconstructToTheirEntriesBeforeCompaction() {
+        String id = inspectionWithBoxes(6);
+        for (int version = 0; version < 10; version++) {
+            int v = version;
+            edits.apply(id, inspection -> {
+                history.archive(inspection, "u", null);
+                inspection.replaceBoxes(nextVersion(inspection.getBoxes(), v));
+            });
+        }
+        // Weeks A, B and C keep their newest snapshot (1, 5, 7); 8 and 9 are the latest two
+        Instant week = LocalDate.now(ZoneOffset.UTC).with(DayOfWeek.MONDAY).minusWeeks(20)
+                .atStartOfDay(ZoneOffset.UTC).toInstant();
+        int[] weekOf = {0, 0, 1, 1, 1, 1, 2, 2};
+        for (int seq = 0; seq < 10; seq++) {
+            Instant archivedAt = seq < weekOf.length
+                    ? week.plus(Duration.ofDays(7L * weekOf[seq])).plus(Duration.ofHours(seq))
+                    : Instant.now().minus(Duration.ofHours(10 - seq));
+            jdbc.update("update inspection_snapshot set archivedat = ? where inspection_id = ? and seq = ?",
+                    Timestamp.from(archivedAt), id, seq);
+        }
+
+        List<InspectionSnapshot> before = snapshots.findByInspectionId(id);
+        assertEquals(List.of(0, 4, 8), keyframeSeqs(before));
+        Map<Integer, HistoryEntry> expected = new HashMap<>();
+        for (HistoryEntry entry : InspectionHistoryService.reconstruct(before)) {
+            expected.put(entry.seq(), entry);
+        }
+
+        HistoryRetentionJob.Run run = job.runOnce();
+
+        assertEquals(5, run.snapshotsRemoved());
+        assertTrue(run.bytesReclaimed() > 0);
+        List<InspectionSnapshot> after = snapshots.findByInspectionId(id);
+        assertEquals(List.of(1, 5, 7, 8, 9), after.stream().map(InspectionSnapshot::getSeq).toList());
+        assertTrue(after.get(0).isKeyframe());
+        for (HistoryEntry entry : InspectionHistoryService.reconstruct(after)) {
+            assertEquals(expected.get(entry.seq()), entry);
+            assertEquals(entry, history.find(id, entry.seq()).orElseThrow());
+        }
+    }
+
+    /** Each version edits one box's fault; versions 3 and 6 also reorder and 5 deletes one. */
+    private static List<InspectionBox> nextVersion(List<InspectionBox> current, int version) {
+        List<InspectionBox> next = new ArrayList<>(current);
+        next.get(version % next.size()).setFaultType("Fault " + version);
+        if (version == 3 || version == 6) {
+            Collections.rotate(next, 1);
+        }
+        if (version == 5) {
+            next.remove(2);
+        }
+        return next;
+    }
+
+    private String inspectionWithBoxes(int count) {
+        Transformer transformer = new Transformer();
+        transformer.setTransformerNumber("TX-1");
+        transformer.setRegion("North");
+        transformer = transformers.save(transformer);
+
+        Inspection inspection = new Inspection();
+        inspection.setTransformer(transformer);
+        inspection.setInspectionNumber("IN-1");
+        for (int k = 0; k < count; k++) {
+            InspectionBox box = new InspectionBox(100.25 + k, 200.5 + k, 30.75, 40.125);
+            box.setFaultType("Point overload");
+            box.setAnnotatedBy("AI");
+            box.setSeverity(0.5);
+            box.setCreatedAt(Instant.parse("2024-01-01T00:00:00Z"));
+            inspection.addBox(box);
+        }
+        return inspections.save(inspection).getId();
+    }
+
+    private static List<Integer> keyframeSeqs(List<InspectionSnapshot> rows) {
+        return rows.stream().filter(InspectionSnapshot::isKeyframe).map(InspectionSnapshot::getSeq).toList();
+    }
+}
@@ -0,0 +1,175 @@
+package com.apexgrid.transformertracker.history;
+
+import com.apexgrid.transformertracker.model.HistoryEntry;
+import com.apexgrid.transformertracker.model.InspectionSnapshot;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotDeltaCodecTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    @Test
+    void reorderIsStoredAsRunsOnly() {
+        List<ObjectNode> previous = List.of(box("a", 1), box("b", 2), box("c", 3));
+        List<ObjectNode> next = List.of(box("c", 3), box("a", 1), box("b", 2));
+
+        ObjectNode delta = roundTrip(previous, next);
+
+        assertEquals("[[2,1],[0,2]]", delta.get("runs").toString());
+        assertFalse(delta.has("set"));
+    }
+
+    @Test
+    void insertCarriesEveryFieldOfTheNewBox() {
+        List<ObjectNode> previous = List.of(box("a", 1), box("b", 2));
+        List<ObjectNode> next = List.of(box("a", 1), box("n", 9), box("b", 2));
+
+        ObjectNode delta = roundTrip(previous, next);
+
+        assertEquals("[[0,1],[-1,1],[1,1]]", delta.get("runs").toString());
+        assertEquals(next.get(1), delta.get("set").get("1"));
+    }
+
+    @Test
+    void deletedBoxesAreNeverReferenced() {
+        List<ObjectNode> previous = List.of(box("a", 1), box("b", 2), box("c", 3));
+        List<ObjectNode> next = List.of(box("a", 1), box("c", 3));
+
+        ObjectNode delta = roundTrip(previous, next);
+
+        assertEquals("[[0,1],[2,1]]", delta.get("runs").toString());
+    }
+
+    @Test
+    void editCarriesOnlyTheChangedFields() {
+        List<ObjectNode> previous = List.of(box("a", 1), box("b", 2));
+        ObjectNode edited = box("b", 2).put("fault", "Loose joint").put("comment", "checked");
+        List<ObjectNode> next = List.of(box("a", 1), edited);
+
+        ObjectNode delta = roundTrip(previous, next);
+
+        assertEquals("{\"1\":{\"fault\":\"Loose joint\",\"comment\":\"checked\"}}", delta.get("set").toString());
+    }
+
+    @Test
+    void losingAFieldNeedsAKeyframe() {
+        List<ObjectNode> previous = List.of(box("a", 1));
+        ObjectNode withoutComment = box("a", 1);
+        withoutComment.remove("comment");
+
+        assertNull(SnapshotDeltaCodec.diff(previous, List.of(withoutComment)));
+    }
+
+    @Test
+    void legacyBoxesWithoutIdsAreMatchedByContent() {
+        List<ObjectNode> previous = List.of(legacy(box("a", 1)), legacy(box("b", 2)));
+        List<ObjectNode> next = List.of(box("b", 2), box("a", 1));
+
+        ObjectNode delta = roundTrip(previous, next);
+
+        assertEquals("[[1,1],[0,1]]", delta.get("runs").toString());
+        assertEquals("{\"0\":{\"id\":\"b\"},\"1\":{\"id\":\"a\"}}", delta.get("set").toString());
+    }
+
+    @Test
+    void renderKeepsCommentsSparse() {
+        List<ObjectNode> state = List.of(box("a", 1), box("b", 2));
+        ObjectNode delta = SnapshotDeltaCodec.diff(List.of(), state);
+
+        HistoryEntry entry = SnapshotDeltaCodec.render(row(3), delta, state);
+
+        assertNull(entry.comments());
+        assertEquals("[\"a\",\"b\"]", entry.boxIds());
+        assertEquals(state, SnapshotDeltaCodec.stateOf(entry));
+
+        state.get(1).put("comment", "hot spot");
+        entry = SnapshotDeltaCodec.render(row(3), delta, state);
+
+        assertEquals("[null,\"hot spot\"]", entry.comments());
+        assertEquals(state, SnapshotDeltaCodec.stateOf(entry));
+    }
+
+    @Test
+    void statusIsEmbeddedSparselyAndExpandedByRender() {
+        List<ObjectNode> state = List.of(box("a", 1), box("b", 2), box("c", 3));
+        ObjectNode delta = SnapshotDeltaCodec.diff(List.of(), state);
+        ArrayNode status = NODES.arrayNode().add("added").addNull().add("edited");
+
+        assertFalse(SnapshotDeltaCodec.embedStatus(delta, status, 2));
+        assertFalse(delta.has("status"));
+        assertTrue(SnapshotDeltaCodec.embedStatus(delta, status, 3));
+        assertEquals("{\"0\":\"added\",\"2\":\"edited\"}", delta.get("status").toString());
+
+        HistoryEntry entry = SnapshotDeltaCodec.render(row(4), delta, state);
+
+        assertEquals("[\"added\",null,\"edited\"]", entry.recentStatus());
+        assertEquals(4, entry.seq());
+    }
+
+    @Test
+    void storedStatusWinsOverTheEmbeddedOne() {
+        List<ObjectNode> state = List.of(box("a", 1));
+        ObjectNode delta = SnapshotDeltaCodec.diff(List.of(), state);
+        SnapshotDeltaCodec.embedStatus(delta, NODES.arrayNode().add("added"), 1);
+        InspectionSnapshot row = row(1);
+        row.setRecentStatus("[\"deleted\"]");
+
+        assertEquals("[\"deleted\"]", SnapshotDeltaCodec.render(row, delta, state).recentStatus());
+    }
+
+    private static ObjectNode roundTrip(List<ObjectNode> previous, List<ObjectNode> next) {
+        ObjectNode delta = SnapshotDeltaCodec.diff(previous, next);
+        assertNotNull(delta);
+        // Through text, as the delta is stored
+        JsonNode stored = parse(delta.toString());
+        assertEquals(next, SnapshotDeltaCodec.apply(previous, stored));
+        return delta;
+    }
+
+    private static ObjectNode box(String id, double x) {
+        ObjectNode box = NODES.objectNode();
+        box.put("id", id);
+        box.putArray("box").add(x).add(x * 2).add(10.0).add(20.0);
+        box.put("fault", "Point overload");
+        box.put("by", "AI");
+        box.put("sev", 0.5);
+        box.putNull("comment");
+        box.put("createdAt", "2024-01-01T00:00:00Z");
+        return box;
+    }
+
+    private static ObjectNode legacy(ObjectNode box) {
+        box.remove("id");
+        return box;
+    }
+
+    private static InspectionSnapshot row(int seq) {
+        InspectionSnapshot row = new InspectionSnapshot();
+        row.setSeq(seq);
+        row.setArchivedAt(Instant.parse("2024-01-02T00:00:00Z"));
+        row.setArchivedBy("u");
+        return row;
+    }
+
+    private static JsonNode parse(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
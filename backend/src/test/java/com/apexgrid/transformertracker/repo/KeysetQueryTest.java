@@ -0,0 +1,150 @@
+package com.apexgrid.transformertracker.repo;
+
+import com.apexgrid.transformertracker.auth.JwtService;
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Keyset paging through {@link InspectionRepo#findPage} over a sort column with nulls and
+ * duplicate values, in both directions and at page sizes that split every group of equal values.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class KeysetQueryTest {
+    // Three nulls, three equal dates, two equal dates and one unique date
+    private static final String[] DATES = {null, "2024-02-01", "2024-01-01", null, "2024-03-01",
+            "2024-01-01", "2024-02-01", null, "2024-01-01"};
+
+    @Autowired
+    private TransformerRepo transformers;
+    @Autowired
+    private InspectionRepo inspections;
+    @Autowired
+    private UserRepo users;
+    @Autowired
+    private UserDetailsService userDetails;
+    @Autowired
+    private PasswordEncoder encoder;
+    @Autowired
+    private JwtService jwt;
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void pagesVisitEveryRowOnceInBothDirections() {
+        String transformerId = transformerWithInspections();
+        InspectionFilter filter = new InspectionFilter(transformerId, null, null, null, null);
+        List<String> ascending = inspections.findPage(filter, "inspectedDate", false, null, 0).items().stream()
+                .sorted(Comparator.comparing(Inspection::getInspectedDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(Inspection::getId))
+                .map(Inspection::getId)
+                .toList();
+        List<String> descending = new ArrayList<>(ascending);
+        Collections.reverse(descending);
+
+        for (int limit = 1; limit <= DATES.length + 1; limit++) {
+            assertEquals(ascending, pageThrough(filter, false, limit, null), "ascending, limit " + limit);
+            assertEquals(descending, pageThrough(filter, true, limit, null), "descending, limit " + limit);
+        }
+        Set<String> fields = Set.of("inspectionNumber", "inspectedDate");
+        assertEquals(ascending, pageThrough(filter, false, 2, fields));
+        assertEquals(descending, pageThrough(filter, true, 2, fields));
+    }
+
+    @Test
+    void cursorFromAnotherSortIsRejected() {
+        String transformerId = transformerWithInspections();
+        InspectionFilter filter = new InspectionFilter(transformerId, null, null, null, null);
+        String byNumber = inspections.findPage(filter, "inspectionNumber", false, null, 2).nextCursor();
+        String ascending = inspections.findPage(filter, "inspectedDate", false, null, 2).nextCursor();
+        assertNotNull(byNumber);
+
+        assertThrows(InvalidPageRequestException.class,
+                () -> inspections.findPage(filter, "inspectedDate", false, byNumber, 2));
+        assertThrows(InvalidPageRequestException.class,
+                () -> inspections.findPage(filter, "inspectedDate", true, ascending, 2));
+        assertThrows(InvalidPageRequestException.class,
+                () -> inspections.findPage(filter, "inspectedDate", false, "not a cursor", 2));
+    }
+
+    @Test
+    void listAnswers400ForACursorFromAnotherSort() throws Exception {
+        String transformerId = transformerWithInspections();
+        String byNumber = inspections.findPage(new InspectionFilter(transformerId, null, null, null, null),
+                "inspectionNumber", false, null, 2).nextCursor();
+        String token = "Bearer " + token();
+
+        mvc.perform(get("/api/inspections").header(HttpHeaders.AUTHORIZATION, token)
+                        .param("transformerId", transformerId).param("sort", "inspectionNumber")
+                        .param("cursor", byNumber).param("limit", "2"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/inspections").header(HttpHeaders.AUTHORIZATION, token)
+                        .param("transformerId", transformerId).param("sort", "inspectedDate")
+                        .param("cursor", byNumber).param("limit", "2"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/inspections").header(HttpHeaders.AUTHORIZATION, token)
+                        .param("transformerId", transformerId).param("sort", "inspectionNumber").param("order", "desc")
+                        .param("cursor", byNumber).param("limit", "2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<String> pageThrough(InspectionFilter filter, boolean descending, int limit, Set<String> fields) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<Inspection> page = fields == null
+                    ? inspections.findPage(filter, "inspectedDate", descending, cursor, limit)
+                    : inspections.findPage(filter, "inspectedDate", descending, cursor, limit, fields);
+            page.items().forEach(i -> ids.add(i.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null && ids.size() <= DATES.length);
+        return ids;
+    }
+
+    private String transformerWithInspections() {
+        Transformer transformer = new Transformer();
+        transformer.setTransformerNumber("TX-" + UUID.randomUUID());
+        transformer = transformers.save(transformer);
+        for (String date : DATES) {
+            Inspection inspection = new Inspection();
+            inspection.setTransformer(transformer);
+            inspection.setInspectionNumber("IN-" + UUID.randomUUID());
+            inspection.setInspectedDate(date);
+            inspections.save(inspection);
+        }
+        return transformer.getId();
+    }
+
+    private String token() {
+        if (users.findByUsername("pager").isEmpty()) {
+            User user = new User();
+            user.setUsername("pager");
+            user.setPasswordHash(encoder.encode("secret"));
+            user.setRole("engineer");
+            users.save(user);
+        }
+        return jwt.generateToken(userDetails.loadUserByUsername("pager"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.apexgrid.transformertracker.web;
+
+import com.apexgrid.transformertracker.auth.JwtService;
+import com.apexgrid.transformertracker.model.Transformer;
+import com.apexgrid.transformertracker.model.User;
+import com.apexgrid.transformertracker.repo.TransformerRepo;
+import com.apexgrid.transformertracker.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Per-encoding tags: the encoding {@code Accept} negotiates, the tag each body is sent with, and
+ * the conditional checks against them.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ETagsTest {
+    @Autowired
+    private TransformerRepo transformers;
+    @Autowired
+    private UserRepo users;
+    @Autowired
+    private UserDetailsService userDetails;
+    @Autowired
+    private PasswordEncoder encoder;
+    @Autowired
+    private JwtService jwt;
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void negotiatesLikeTheConverters() {
+        assertEquals(MediaType.APPLICATION_JSON, ETags.negotiated(null));
+        assertEquals(MediaType.APPLICATION_JSON, ETags.negotiated("*/*"));
+        assertEquals(MediaType.APPLICATION_JSON, ETags.negotiated("text/html, */*;q=0.8"));
+        assertEquals(MediaType.APPLICATION_JSON, ETags.negotiated("not a media type"));
+        assertEquals(ETags.CBOR, ETags.negotiated("application/cbor"));
+        assertEquals(ETags.SMILE, ETags.negotiated("application/json;q=0.5, application/x-jackson-smile"));
+        assertEquals(ETags.CBOR, ETags.negotiated("application/*, application/json;q=0"));
+        assertEquals(ETags.CBOR, ETags.negotiated("*/*;q=0.5, application/cbor;q=0.5"));
+    }
+
+    @Test
+    void binaryBodiesHaveTheirOwnTags() {
+        assertEquals("\"7.3\"", ETags.forEncoding("\"7.3\"", MediaType.APPLICATION_JSON));
+        assertEquals("\"7.3.cbor\"", ETags.forEncoding("\"7.3\"", ETags.CBOR));
+        assertEquals("\"7.3.smile\"", ETags.forAccept("\"7.3\"", "application/x-jackson-smile"));
+        assertEquals("\"7.3.smile\"", ETags.forEncoding("\"7.3.cbor\"", ETags.SMILE));
+        assertEquals("\"7.3\"", ETags.forEncoding("\"7.3.smile\"", MediaType.APPLICATION_JSON));
+
+        assertTrue(ETags.notModified("\"7.3.cbor\"", "application/cbor", "\"7.3\""));
+        assertTrue(ETags.notModified("W/\"7.3\"", null, "\"7.3\""));
+        assertFalse(ETags.notModified("\"7.3\"", "application/cbor", "\"7.3\""));
+        assertFalse(ETags.notModified("\"7.3.cbor\"", "application/json", "\"7.3\""));
+
+        assertFalse(ETags.preconditionFailed("\"7.3\"", "\"7.3\""));
+        assertFalse(ETags.preconditionFailed("\"7.3.smile\"", "\"7.3\""));
+        assertTrue(ETags.preconditionFailed("\"7.2.cbor\"", "\"7.3\""));
+    }
+
+    @Test
+    void readsAnswer304OnlyForTheTagOfTheirEncoding() throws Exception {
+        Transformer transformer = new Transformer();
+        transformer.setTransformerNumber("TX-" + UUID.randomUUID());
+        String path = "/api/transformers/" + transformers.save(transformer).getId();
+        String token = "Bearer " + token();
+
+        String json = mvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String cbor = mvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, token).accept(ETags.CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals(ETags.forEncoding(json, ETags.CBOR), cbor);
+        assertNotEquals(json, cbor);
+
+        mvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, token).accept(ETags.CBOR)
+                        .header(HttpHeaders.IF_NONE_MATCH, cbor))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, cbor));
+        mvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, token)
+                        .header(HttpHeaders.IF_NONE_MATCH, cbor))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, json));
+        mvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, token).accept(ETags.SMILE)
+                        .header(HttpHeaders.IF_NONE_MATCH, json))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.forEncoding(json, ETags.SMILE)));
+    }
+
+    private String token() {
+        if (users.findByUsername("tagger").isEmpty()) {
+            User user = new User();
+            user.setUsername("tagger");
+            user.setPasswordHash(encoder.encode("secret"));
+            user.setRole("engineer");
+            users.save(user);
+        }
+        return jwt.generateToken(userDetails.loadUserByUsername("tagger"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.apexgrid.transformertracker.web.dto;
+
+import com.apexgrid.transformertracker.model.Inspection;
+import com.apexgrid.transformertracker.model.InspectionBox;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bytes allocated per bulk box edit (parsing the request and writing the response) with 50
+ * boxes, against the JSON tree round trip the endpoints used before: the body read as a tree and
+ * the response assembled from each column rendered to a string and parsed back.
+ */
+class BoxStateAllocationTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int BOXES = 50;
+    private static final int WARMUP = 5_000;
+    private static final int ROUNDS = 2_000;
+
+    @Test
+    void streamingEditAllocatesWellUnderTheTreeRoundTrip() throws Exception {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        byte[] body = bulkBody();
+        Inspection inspection = inspection();
+
+        BoxBulkUpdateRequest request = MAPPER.readValue(body, BoxBulkUpdateRequest.class);
+        assertEquals(BOXES, request.state().size());
+        assertEquals(MAPPER.readTree(treeEdit(body, inspection)), MAPPER.readTree(streamingEdit(body, inspection)));
+
+        long streaming = bytesPerEdit(threads, () -> streamingEdit(body, inspection));
+        long tree = bytesPerEdit(threads, () -> treeEdit(body, inspection));
+
+        // About half at the time of writing; the margin keeps JIT noise from failing the build
+        assertTrue(streaming * 10 < tree * 7, "streaming " + streaming + " B vs tree " + tree + " B per edit");
+    }
+
+    private static byte[] streamingEdit(byte[] body, Inspection inspection) throws Exception {
+        MAPPER.readValue(body, BoxBulkUpdateRequest.class);
+        return MAPPER.writeValueAsBytes(BoxStateResponse.fromEntity(inspection));
+    }
+
+    private static byte[] treeEdit(byte[] body, Inspection inspection) throws Exception {
+        MAPPER.readTree(body);
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("ok", true);
+        response.set("boundingBoxes", MAPPER.readTree(inspection.getBoundingBoxes()));
+        response.set("boxIds", MAPPER.readTree(inspection.getBoxIds()));
+        response.set("faultTypes", MAPPER.readTree(inspection.getFaultTypes()));
+        response.set("comments", comments(inspection.getComment()));
+        response.set("recentStatus", MAPPER.readTree(inspection.getRecentStatus()));
+        response.set("boxCreatedAt", MAPPER.readTree(inspection.getBoxCreatedAt()));
+        return MAPPER.writeValueAsBytes(response);
+    }
+
+    private static JsonNode comments(String json) throws Exception {
+        return json == null ? MAPPER.nullNode() : MAPPER.readTree(json);
+    }
+
+    private static long bytesPerEdit(com.sun.management.ThreadMXBean threads, Edit edit) throws Exception {
+        long sink = 0;
+        for (int k = 0; k < WARMUP; k++) {
+            sink += edit.run().length;
+        }
+        long thread = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int k = 0; k < ROUNDS; k++) {
+            sink += edit.run().length;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(sink > 0);
+        return allocated / ROUNDS;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "per-thread allocation counters are not available");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "per-thread allocation counters are disabled");
+        return threads;
+    }
+
+    private static byte[] bulkBody() throws Exception {
+        ObjectNode body = MAPPER.createObjectNode();
+        var boxes = body.putArray("boundingBoxes");
+        var faults = body.putArray("faultTypes");
+        var annotatedBy = body.putArray("annotatedBy");
+        var comments = body.putArray("comments");
+        for (int k = 0; k < BOXES; k++) {
+            boxes.addArray().add(12.5 + k).add(40.25 + k).add(31.0).add(18.75);
+            faults.add(k % 3 == 0 ? "Loose joint" : "Point overload");
+            annotatedBy.add(k % 2 == 0 ? "AI" : "engineer");
+            comments.add(k % 5 == 0 ? "checked on site" : null);
+        }
+        body.put("tuneModel", false);
+        return MAPPER.writeValueAsBytes(body);
+    }
+
+    private static Inspection inspection() {
+        Inspection inspection = new Inspection();
+        for (int k = 0; k < BOXES; k++) {
+            InspectionBox box = new InspectionBox(12.5 + k, 40.25 + k, 31.0, 18.75);
+            box.setId("00000000-0000-0000-0000-" + String.format("%012d", k));
+            box.setFaultType(k % 3 == 0 ? "Loose joint" : "Point overload");
+            box.setAnnotatedBy(k % 2 == 0 ? "AI" : "engineer");
+            box.setSeverity(k % 2 == 0 ? 0.75 : null);
+            box.setComment(k % 5 == 0 ? "checked on site" : null);
+            box.setRecentStatus(k % 7 == 0 ? "edited" : null);
+            box.setCreatedAt(Instant.parse("2024-03-01T08:00:00Z").plusSeconds(k));
+            inspection.addBox(box);
+        }
+        return inspection;
+    }
+
+    @FunctionalInterface
+    private interface Edit {
+        byte[] run() throws Exception;
+    }
+}
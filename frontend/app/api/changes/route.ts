@@ -0,0 +1,33 @@
+import { NextResponse } from "next/server";
+import { apiUrl } from "@/lib/api";
+
+// Always serve fresh data
+export const dynamic = "force-dynamic";
+export const revalidate = 0;
+
+// Change feed: pass since/limit/wait through so callers sync deltas instead of re-pulling lists
+export async function GET(req: Request) {
+  const { searchParams } = new URL(req.url);
+  const url = new URL(apiUrl("/api/changes"));
+  for (const key of ["since", "limit", "wait"]) {
+    const value = searchParams.get(key);
+    if (value) url.searchParams.set(key, value);
+  }
+
+  const res = await fetch(url.toString(), {
+    cache: "no-store",
+    headers: {
+      ...(req.headers.get("authorization")
+        ? { authorization: req.headers.get("authorization") as string }
+        : {}),
+    },
+  });
+  const data = await res.json().catch(() => null);
+  if (!res.ok) {
+    return NextResponse.json(
+      data ?? { error: "Upstream error", status: res.status },
+      { status: res.status }
+    );
+  }
+  return NextResponse.json(data);
+}
@@ -32,13 +32,47 @@ export async function POST(req: Request, { params }: { params: Promise<{ id: str
   return NextResponse.json(data, { headers: { "Cache-Control": "no-store" } });
 }
 
+export async function PATCH(req: Request, { params }: { params: Promise<{ id: string }> }) {
+  const { id } = await params;
+  const body = await req.json();
+  const res = await fetch(apiUrl(`/api/inspections/${id}/boxes`), {
+    method: "PATCH",
+    headers: {
+      "content-type": "application/json",
+      ...(req.headers.get("authorization")
+        ? { authorization: req.headers.get("authorization") as string }
+        : {}),
+      ...(req.headers.get("x-username")
+        ? { "x-username": req.headers.get("x-username") as string }
+        : {}),
+      ...(req.headers.get("if-match")
+        ? { "if-match": req.headers.get("if-match") as string }
+        : {}),
+    },
+    body: JSON.stringify(body),
+    cache: "no-store",
+  });
+  if (!res.ok) {
+    const text = await res.text().catch(() => "");
+    return NextResponse.json(
+      { error: "Upstream error", details: text || undefined },
+      { status: res.status }
+    );
+  }
+  const data = await res.json();
+  const etag = res.headers.get("etag");
+  return NextResponse.json(data, {
+    headers: { "Cache-Control": "no-store", ...(etag ? { ETag: etag } : {}) },
+  });
+}
+
 // Allow CORS preflight if ever triggered in edge cases
 export async function OPTIONS() {
   return new NextResponse(null, {
     status: 204,
     headers: {
-      "Access-Control-Allow-Methods": "POST, OPTIONS",
-      "Access-Control-Allow-Headers": "content-type, authorization",
+      "Access-Control-Allow-Methods": "POST, PATCH, OPTIONS",
+      "Access-Control-Allow-Headers": "content-type, authorization, x-username, if-match",
       "Cache-Control": "no-store",
     },
   });
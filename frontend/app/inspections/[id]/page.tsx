@@ -93,10 +93,11 @@ const InspectionDetailPage = () => {
       const matchesCurrent =
         currentIdentifiers.size > 0 &&
         Array.from(candidateKeys).some((key) => currentIdentifiers.has(key));
-      if (!matchesCurrent) {
-        setIsLoading(true);
-        setLoadingMessage("Loading inspection...");
-      }
+      // The list changes with every edit in the fleet; the panel follows its own inspection's
+      // changes, so only a different inspection is fetched
+      if (matchesCurrent) return;
+      setIsLoading(true);
+      setLoadingMessage("Loading inspection...");
       let resolved: Inspection | null = existing ?? currentInspection ?? null;
       try {
         const fetched = await fetchInspectionById(targetId);
@@ -27,7 +27,13 @@ import {
   useCallback,
 } from "react";
 import { apiUrl, authHeaders } from "@/lib/api";
+import { useBaselineImages } from "@/lib/baselines";
 import { downloadMaintenanceReportPdf } from "@/lib/maintenance-report";
+import {
+  INSPECTION_CHANGED_EVENT,
+  InspectionChangeDetail,
+  subscribeToChanges,
+} from "@/lib/events";
 
 const faultToToggleKey = (
   fault: string | null | undefined
@@ -206,19 +212,6 @@ const buildBoxInfo = (
     };
   });
 
-const parseHistoryEntries = (raw: unknown): unknown[] => {
-  if (raw == null) return [];
-  let source: unknown = raw;
-  if (typeof source === "string") {
-    try {
-      source = JSON.parse(source);
-    } catch {
-      return [];
-    }
-  }
-  return Array.isArray(source) ? (source as unknown[]) : [];
-};
-
 type HistorySnapshot = {
   boxes: number[][];
   faults: string[];
@@ -230,6 +223,63 @@ type HistorySnapshot = {
   timestamp: string | null;
 };
 
+// One item of GET /api/inspections/{id}/history; arrays are aligned like the current-state fields
+type HistoryItem = {
+  seq: number;
+  timestamp?: string | null;
+  archivedBy?: string | null;
+  boundingBoxes?: Inspection["boundingBoxes"];
+  faultTypes?: Inspection["faultTypes"];
+  annotatedBy?: string | string[] | null;
+  severity?: Inspection["severity"];
+  comment?: Inspection["comment"];
+  recentStatus?: string | (string | null)[] | null;
+  boxCreatedAt?: string | (string | null)[] | null;
+};
+
+type HistoryPageResponse = {
+  items?: HistoryItem[];
+  nextCursor?: number | null;
+};
+
+const HISTORY_PAGE_SIZE = 20;
+
+// The per-box arrays of an inspection, as read with it or received in a change event
+type StoredBoxSource = Pick<
+  Inspection,
+  "boundingBoxes" | "faultTypes" | "annotatedBy" | "severity" | "comment" | "recentStatus" | "boxCreatedAt"
+>;
+
+const toHistorySnapshot = (item: HistoryItem): HistorySnapshot | null => {
+  const boxes = parseBoundingBoxes(item.boundingBoxes ?? null);
+  const lengthOf = (value: unknown) => (Array.isArray(value) ? value.length : 0);
+  const targetLength = Math.max(
+    boxes.length,
+    lengthOf(item.faultTypes),
+    lengthOf(item.annotatedBy),
+    lengthOf(item.severity),
+    lengthOf(item.comment),
+    lengthOf(item.recentStatus),
+    lengthOf(item.boxCreatedAt)
+  );
+  const faults = parseFaultTypes(item.faultTypes ?? null, targetLength);
+  const timestamp = typeof item.timestamp === "string" ? item.timestamp : null;
+  const hasFaultData = faults.some((fault) => canonicalizeFault(fault) !== "none");
+  if (boxes.length === 0 && !hasFaultData && !timestamp) {
+    return null;
+  }
+  return {
+    boxes,
+    faults,
+    annotatedBy: parseAnnotatedBy(item.annotatedBy ?? null, targetLength),
+    severity: parseSeverities(item.severity ?? null, targetLength),
+    comments: parseComments(item.comment ?? null, targetLength),
+    statuses: parseStatuses(item.recentStatus as string | string[] | null | undefined, targetLength),
+    createdAt: parseCreatedAt(item.boxCreatedAt ?? null, targetLength),
+    timestamp,
+  };
+};
+
 const formatTimestamp = (timestamp: string | null | undefined): string => {
   if (!timestamp) return "";
   const date = new Date(timestamp);
@@ -405,6 +455,8 @@ const InspectionDetailsPanel = ({
   const [tuneModelEnabled, setTuneModelEnabled] = useState(true);
   const [historySnapshots, setHistorySnapshots] = useState<HistorySnapshot[]>([]);
   const [selectedSnapshotIndex, setSelectedSnapshotIndex] = useState<number | null>(null);
+  const [historyCursor, setHistoryCursor] = useState<number | null>(null);
+  const [historyLoading, setHistoryLoading] = useState(false);
   // Queue changes to persist on close (X)
   const [pendingAdds, setPendingAdds] = useState<
     { x: number; y: number; w: number; h: number; faultType: string; comment?: string | null }[]
@@ -500,27 +552,34 @@ const InspectionDetailsPanel = ({
     return inspection.imageUrl || uploadedUrl || previewUrl || null;
   }, [inspection.imageUrl, uploadedUrl, previewUrl]);
 
+  const hasBaselineView = (t?: Transformer) =>
+    Boolean(t && (t.sunnyImage || t.cloudyImage || t.windyImage));
+  const baselineView = hasBaselineView(transformer)
+    ? transformer
+    : hasBaselineView(nestedTransformer)
+      ? nestedTransformer
+      : undefined;
+  // Lists and the embedded transformer carry no baseline images; read them when neither has any
+  const [baselineRefresh, setBaselineRefresh] = useState(0);
+  const storedBaselines = useBaselineImages(
+    baselineView ? null : transformer?.id ?? nestedTransformer?.id ?? null,
+    baselineRefresh
+  );
+
   const baselineForWeather = (weather?: string | null) => {
-    const source =
-      transformer &&
-      (transformer.sunnyImage ||
-        transformer.cloudyImage ||
-        transformer.windyImage)
-        ? transformer
-        : (nestedTransformer as Transformer | undefined);
-    if (!source) return null;
+    const sunny = baselineView ? baselineView.sunnyImage : storedBaselines.sunny;
+    const cloudy = baselineView ? baselineView.cloudyImage : storedBaselines.cloudy;
+    // "windy" is the legacy name of the rainy baseline
+    const rainy = baselineView ? baselineView.windyImage : storedBaselines.rainy;
     switch (weather) {
       case "sunny":
-        return source.sunnyImage || null;
+        return sunny || null;
       case "cloudy":
-        return source.cloudyImage || null;
+        return cloudy || null;
       case "rainy":
-        // Map rainy to windy baseline if rainy is not modeled; adjust if needed
-        return source.windyImage || null;
+        return rainy || null;
       default:
-        return (
-          source.sunnyImage || source.cloudyImage || source.windyImage || null
-        );
+        return sunny || cloudy || rainy || null;
     }
   };
 
@@ -665,6 +724,7 @@ const InspectionDetailsPanel = ({
     setSelectedSnapshotIndex(idx);
   };
 
+  const hasSessionChangesRef = useRef(false);
   const hasSessionChanges = useMemo(() => {
     const initialSnapshot = initialStoredRef.current;
     const boxesChanged = !jsonEqual(storedBoxes, initialSnapshot.boxes);
@@ -716,50 +776,32 @@ const InspectionDetailsPanel = ({
     setPendingRect(null);
   };
 
-  useEffect(() => {
-    if (typeof window !== "undefined") {
-      setUserRole(localStorage.getItem("userRole"));
-    }
-  }, []);
-
-  // When switching to a different inspection, reinitialize weather and image state
-  useEffect(() => {
-    setTuneModelEnabled(true);
-    setSelectedWeather(
-      (inspection.lastAnalysisWeather as string) ||
-        inspection.weather ||
-        "sunny"
-    );
-    setUploadedUrl(inspection.imageUrl || null);
-    setUploadedAt(inspection.imageUploadedAt || null);
-    setUploadedBy(inspection.imageUploadedBy || null);
-    setAiStats(null);
-    setPreviewUrl(null);
-    // initialize stored analysis states from inspection
+  // Show `source` as the stored boxes, and take it as the state unsaved edits are compared against
+  const showStoredState = (source: StoredBoxSource) => {
     try {
-      const parsedBoxes = parseBoundingBoxes(inspection.boundingBoxes);
+      const parsedBoxes = parseBoundingBoxes(source.boundingBoxes);
       const parsedFaults = parseFaultTypes(
-        inspection.faultTypes,
+        source.faultTypes,
         parsedBoxes.length
       );
       const parsedAnnotatedBy = parseAnnotatedBy(
-        inspection.annotatedBy as string | null | undefined,
+        source.annotatedBy as string | null | undefined,
         parsedBoxes.length
       );
       const parsedSeverity = parseSeverities(
-        inspection.severity,
+        source.severity,
         parsedBoxes.length
       );
       const parsedComments = parseComments(
-        inspection.comment as string | (string | null)[] | null,
+        source.comment as string | (string | null)[] | null,
         parsedBoxes.length
       );
       const parsedStatuses = parseStatuses(
-        inspection.recentStatus as string | string[] | null | undefined,
+        source.recentStatus as string | string[] | null | undefined,
         parsedBoxes.length
       );
       const parsedCreatedAt = parseCreatedAt(
-        inspection.boxCreatedAt as string | (string | null)[] | null,
+        source.boxCreatedAt as string | (string | null)[] | null,
         parsedBoxes.length
       );
       const clonedBoxes = cloneBoxes(parsedBoxes);
@@ -803,170 +845,112 @@ const InspectionDetailsPanel = ({
         statuses: [],
       };
     }
-    try {
-      const boxHistoryEntries = parseHistoryEntries(
-        inspection.boundingBoxHistory
-      );
-      const faultHistoryEntries = parseHistoryEntries(
-        inspection.faultTypeHistory
-      );
-      const annotatedHistoryEntries = parseHistoryEntries(
-        inspection.annotatedByHistory
-      );
-      const severityHistoryEntries = parseHistoryEntries(
-        inspection.severityHistory
-      );
-      const commentHistoryEntries = parseHistoryEntries(
-        inspection.commentHistory
-      );
-      const statusHistoryEntries = parseHistoryEntries(
-        inspection.recentStatusHistory
-      );
-      const timestampHistoryEntries = parseHistoryEntries(
-        inspection.timestampHistory
-      );
-      const createdHistoryEntries = parseHistoryEntries(
-        inspection.boxCreatedAtHistory
-      );
-      const maxSnapshots = Math.max(
-        boxHistoryEntries.length,
-        faultHistoryEntries.length,
-        annotatedHistoryEntries.length,
-        severityHistoryEntries.length,
-        commentHistoryEntries.length,
-        statusHistoryEntries.length,
-        timestampHistoryEntries.length,
-        createdHistoryEntries.length
-      );
-      const snapshots: HistorySnapshot[] = [];
-      for (let idx = 0; idx < maxSnapshots; idx += 1) {
-        const boxesRaw = boxHistoryEntries[idx] as Inspection["boundingBoxes"];
-        const faultsRaw = faultHistoryEntries[idx] as Inspection["faultTypes"];
-        const annotatedRaw = annotatedHistoryEntries[idx] as
-          | string
-          | string[]
-          | null
-          | undefined;
-        const severityRaw = severityHistoryEntries[idx] as Inspection["severity"];
-        const commentRaw = commentHistoryEntries[idx] as
-          | Inspection["comment"]
-          | null
-          | undefined;
-        const boxes = parseBoundingBoxes(boxesRaw);
-        const faultsFallbackLength = Array.isArray(faultsRaw)
-          ? (faultsRaw as unknown[]).length
-          : 0;
-        const annotatedFallbackLength = Array.isArray(annotatedRaw)
-          ? (annotatedRaw as unknown[]).length
-          : 0;
-        const severityFallbackLength = Array.isArray(severityRaw)
-          ? (severityRaw as unknown[]).length
-          : 0;
-        const commentFallbackLength = Array.isArray(commentRaw)
-          ? (commentRaw as unknown[]).length
-          : 0;
-        const statusRawEntry = statusHistoryEntries[idx];
-        const statusFallbackLength = Array.isArray(statusRawEntry)
-          ? (statusRawEntry as unknown[]).length
-          : 0;
-        const createdRawEntry = createdHistoryEntries[idx];
-        const createdFallbackLength = Array.isArray(createdRawEntry)
-          ? (createdRawEntry as unknown[]).length
-          : 0;
-        const targetLength = Math.max(
-          boxes.length,
-          faultsFallbackLength,
-          annotatedFallbackLength,
-          severityFallbackLength,
-          commentFallbackLength,
-          statusFallbackLength,
-          createdFallbackLength
-        );
-        const effectiveLength = targetLength > 0 ? targetLength : boxes.length;
-        const faults = parseFaultTypes(faultsRaw, effectiveLength);
-        const annotated = parseAnnotatedBy(annotatedRaw, effectiveLength);
-        const severitySnapshot = parseSeverities(severityRaw, effectiveLength);
-        const commentsSnapshot = parseComments(commentRaw ?? null, effectiveLength);
-        const statusRaw = statusRawEntry as
-          | string
-          | string[]
-          | null
-          | undefined;
-        const statusesSnapshot = parseStatuses(statusRaw, effectiveLength);
-        const createdSnapshot = parseCreatedAt(
-          createdRawEntry as string | (string | null)[] | null,
-          effectiveLength
-        );
-        const timestampEntry = timestampHistoryEntries[idx];
-        const timestamp =
-          typeof timestampEntry === "string"
-            ? timestampEntry
-            : timestampEntry != null
-            ? String(timestampEntry)
-            : null;
-        const hasBoxes = boxes.length > 0;
-        const hasTimestamp = typeof timestamp === "string" && timestamp.length > 0;
-        const hasFaultData = faults.some(
-          (fault) => canonicalizeFault(fault) !== "none"
-        );
-        if (!hasBoxes && !hasFaultData && !hasTimestamp) {
-          continue;
-        }
-        snapshots.push({
-          boxes,
-          faults,
-          annotatedBy: annotated,
-          severity: severitySnapshot,
-          comments: commentsSnapshot,
-          statuses: statusesSnapshot,
-          createdAt: createdSnapshot,
-          timestamp,
-        });
-      }
-      const sortedSnapshots = snapshots
-        .map((snapshot, index) => ({ snapshot, index }))
-        .sort((a, b) => {
-          const tsA = a.snapshot.timestamp ? Date.parse(a.snapshot.timestamp) : Number.NaN;
-          const tsB = b.snapshot.timestamp ? Date.parse(b.snapshot.timestamp) : Number.NaN;
-          const aValid = Number.isFinite(tsA);
-          const bValid = Number.isFinite(tsB);
-          if (aValid && bValid) {
-            if (tsA !== tsB) return tsB - tsA;
-            return b.index - a.index;
-          }
-          if (aValid) return -1;
-          if (bValid) return 1;
-          return b.index - a.index;
-        })
-        .map(({ snapshot }) => snapshot);
-      setHistorySnapshots(sortedSnapshots);
-    } catch {
-      setHistorySnapshots([]);
+  };
+
+  useEffect(() => {
+    if (typeof window !== "undefined") {
+      setUserRole(localStorage.getItem("userRole"));
     }
+  }, []);
+
+  // When switching to a different inspection, reinitialize weather and image state
+  useEffect(() => {
+    setTuneModelEnabled(true);
+    setSelectedWeather(
+      (inspection.lastAnalysisWeather as string) ||
+        inspection.weather ||
+        "sunny"
+    );
+    setUploadedUrl(inspection.imageUrl || null);
+    setUploadedAt(inspection.imageUploadedAt || null);
+    setUploadedBy(inspection.imageUploadedBy || null);
+    setAiStats(null);
+    setPreviewUrl(null);
+    // initialize stored analysis states from inspection
+    showStoredState(inspection);
     setSelectedSnapshotIndex(null);
   setIsDrawMode(false);
   setDrawTarget(null);
   setPendingRect(null);
-    // reset any queued changes when inspection changes or reloads
+    // reset any queued changes when switching inspections
     setPendingAdds([]);
     setPendingDeletes([]);
-    // Also update when boundingBoxes/faultTypes/imageUrl change on the same inspection id
+    // Later box changes of the same inspection arrive through the change feed handler below,
+    // which leaves unsaved edits alone
     // eslint-disable-next-line react-hooks/exhaustive-deps
-  }, [
-    inspection.id,
-    inspection.boundingBoxes,
-    inspection.faultTypes,
-    inspection.imageUrl,
-    inspection.boundingBoxHistory,
-    inspection.faultTypeHistory,
-    inspection.annotatedByHistory,
-    inspection.severityHistory,
-    inspection.comment,
-    inspection.commentHistory,
-    inspection.recentStatus,
-    inspection.recentStatusHistory,
-    inspection.timestampHistory,
-  ]);
+  }, [inspection.id]);
+
+  const loadHistoryPage = useCallback(
+    async (cursor: number | null) => {
+      const params = new URLSearchParams({ limit: String(HISTORY_PAGE_SIZE) });
+      if (cursor !== null) params.set("cursor", String(cursor));
+      setHistoryLoading(true);
+      try {
+        const res = await fetch(
+          apiUrl(`/api/inspections/${inspection.id}/history?${params.toString()}`),
+          { headers: authHeaders() }
+        );
+        if (!res.ok) throw new Error(`History request failed (${res.status})`);
+        const page = (await res.json()) as HistoryPageResponse;
+        const snapshots = (page.items ?? [])
+          .map(toHistorySnapshot)
+          .filter((snapshot): snapshot is HistorySnapshot => snapshot !== null);
+        setHistorySnapshots((prev) => (cursor === null ? snapshots : [...prev, ...snapshots]));
+        setHistoryCursor(page.nextCursor ?? null);
+      } catch {
+        if (cursor === null) {
+          setHistorySnapshots([]);
+          setHistoryCursor(null);
+        }
+      } finally {
+        setHistoryLoading(false);
+      }
+    },
+    [inspection.id]
+  );
+
+  // History is fetched page by page (newest first); a new snapshot is archived whenever the
+  // stored boxes change, so the change feed handler below reloads the first page then
+  useEffect(() => {
+    if (!inspection.id) {
+      setHistorySnapshots([]);
+      setHistoryCursor(null);
+      return;
+    }
+    void loadHistoryPage(null);
+  }, [loadHistoryPage, inspection.id]);
+
+  useEffect(() => {
+    hasSessionChangesRef.current = hasSessionChanges;
+  }, [hasSessionChanges]);
+
+  // Boxes changed elsewhere (another user or tab) replace the ones shown, unless this panel holds
+  // unsaved edits of its own. The stream is the one the list contexts already share.
+  useEffect(() => {
+    if (!inspection.id) return;
+    const unsubscribe = subscribeToChanges();
+    const onInspectionChanged = (event: Event) => {
+      const detail = (event as CustomEvent<InspectionChangeDetail>).detail;
+      if (!detail || detail.id !== inspection.id || !("boundingBoxes" in detail)) return;
+      if (hasSessionChangesRef.current) return;
+      showStoredState({
+        boundingBoxes: detail.boundingBoxes,
+        faultTypes: detail.faultTypes,
+        annotatedBy: detail.annotatedBy,
+        severity: detail.severity,
+        comment: detail.comments,
+        recentStatus: detail.recentStatus,
+        boxCreatedAt: detail.boxCreatedAt,
+      });
+      void loadHistoryPage(null);
+    };
+    window.addEventListener(INSPECTION_CHANGED_EVENT, onInspectionChanged as EventListener);
+    return () => {
+      window.removeEventListener(INSPECTION_CHANGED_EVENT, onInspectionChanged as EventListener);
+      unsubscribe();
+    };
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [inspection.id, loadHistoryPage]);
 
   useEffect(() => {
     if (aiStats || visibleBoxInfo.length === 0) return;
@@ -1738,6 +1722,7 @@ const InspectionDetailsPanel = ({
       headers: authHeaders(),
     });
     await reloadTransformers();
+    setBaselineRefresh((n) => n + 1);
     // After successful upload and reload, clear local preview to show persisted baseline
     setBaselinePreviewUrl((prev) => {
       if (prev) URL.revokeObjectURL(prev);
@@ -2601,6 +2586,18 @@ const InspectionDetailsPanel = ({
                             Return to latest
                           </button>
                         )}
+                        {historyCursor !== null && (
+                          <button
+                            type="button"
+                            className={`details-panel inline-flex items-center gap-1 rounded border border-gray-300 px-2 py-1 transition-colors ${
+                              historyLoading ? "opacity-50 cursor-not-allowed" : "hover:bg-gray-50"
+                            }`}
+                            onClick={() => void loadHistoryPage(historyCursor)}
+                            disabled={historyLoading}
+                          >
+                            {historyLoading ? "Loading…" : "Load older"}
+                          </button>
+                        )}
                       </>
                     )}
                     <button
@@ -4,6 +4,7 @@ import { Transformer } from "@/types/transformer";
 import { Inspection } from "@/types/inspection";
 import { MaintenanceRecord } from "@/types/maintenance-record";
 import { apiUrl, authHeaders } from "@/lib/api";
+import { useBaselineImages } from "@/lib/baselines";
 import { useCallback, useEffect, useMemo, useState } from "react";
 import MaintenanceAnnotationPreview from "@/components/MaintenanceAnnotationPreview";
 import {
@@ -45,10 +46,28 @@ const TransformerDetailsPanel = ({
   const [annotationLoading, setAnnotationLoading] = useState(false);
   const [annotationError, setAnnotationError] = useState<string | null>(null);
 
+  // A transformer read on its own carries its latest baselines; one taken from the list does not
+  const hasBaselineView = Boolean(
+    transformer.sunnyImage || transformer.cloudyImage || transformer.windyImage
+  );
+  const storedBaselines = useBaselineImages(
+    hasBaselineView ? null : transformer.id ?? null,
+    transformer
+  );
   const baselineImages = {
-    sunny: transformer.sunnyImage || null,
-    cloudy: transformer.cloudyImage || null,
-    windy: transformer.windyImage || null,
+    sunny: transformer.sunnyImage || storedBaselines.sunny,
+    cloudy: transformer.cloudyImage || storedBaselines.cloudy,
+    windy: transformer.windyImage || storedBaselines.rainy,
+  };
+
+  // Without the view its null image fields mean "not loaded"; sent back, they would remove those baselines
+  const editableTransformer = (): Transformer => {
+    if (hasBaselineView) return transformer;
+    const copy: Transformer = { ...transformer };
+    delete copy.sunnyImage;
+    delete copy.cloudyImage;
+    delete copy.windyImage;
+    return copy;
   };
 
   const canLoadMaintenance = Boolean(transformer.id || transformer.transformerNumber);
@@ -271,7 +290,7 @@ const TransformerDetailsPanel = ({
       [uploadedAtKey]: null,
     } as Partial<Transformer>;
     if (onUpdateTransformer) {
-      onUpdateTransformer({ ...transformer, ...patch });
+      onUpdateTransformer({ ...editableTransformer(), ...patch });
     }
   };
 
@@ -302,7 +321,7 @@ const TransformerDetailsPanel = ({
         }
 
         if (onUpdateTransformer) {
-          onUpdateTransformer({ ...transformer, ...patch });
+          onUpdateTransformer({ ...editableTransformer(), ...patch });
         }
 
         console.log(
@@ -5,19 +5,14 @@ import { Inspection } from "@/types/inspection";
 import { apiUrl, authHeaders } from "@/lib/api";
 import { isClientLoggedIn } from "@/lib/auth";
 import {
+  CHANGES_RESYNC_EVENT,
+  INSPECTION_CHANGED_EVENT,
+  InspectionChangeDetail,
   TRANSFORMER_REMOVED_EVENT,
   TransformerRemovedDetail,
+  subscribeToChanges,
 } from "@/lib/events";
 
-const parseMaybeJson = (value: unknown): unknown => {
-  if (typeof value !== "string") return value;
-  try {
-    return JSON.parse(value);
-  } catch {
-    return value;
-  }
-};
-
 type InspectionsContextValue = {
   inspections: Inspection[];
   addInspection: (i: Inspection) => void;
@@ -75,11 +70,6 @@ export function InspectionsProvider({ children }: { children: React.ReactNode })
           if (typeof severity === 'string') {
             try { severity = JSON.parse(severity); } catch { /* keep as string if invalid */ }
           }
-          const boundingBoxHistory = parseMaybeJson((obj as any).boundingBoxHistory);
-          const faultTypeHistory = parseMaybeJson((obj as any).faultTypeHistory);
-          const annotatedByHistory = parseMaybeJson((obj as any).annotatedByHistory);
-          const severityHistory = parseMaybeJson((obj as any).severityHistory);
-          const timestampHistory = parseMaybeJson((obj as any).timestampHistory);
           // faultType (string) comes straight from the API; include via spread
           return {
             ...(obj as object),
@@ -87,11 +77,6 @@ export function InspectionsProvider({ children }: { children: React.ReactNode })
             boundingBoxes,
             faultTypes,
             severity,
-            boundingBoxHistory,
-            faultTypeHistory,
-            annotatedByHistory,
-            severityHistory,
-            timestampHistory,
           } as Inspection;
         }
         return {
@@ -172,6 +157,69 @@ export function InspectionsProvider({ children }: { children: React.ReactNode })
     };
   }, []);
 
+  // Follow changes made elsewhere: box changes are applied to their row, anything else re-reads the list
+  useEffect(() => {
+    if (typeof window === "undefined") return;
+    let unsubscribe = isClientLoggedIn() ? subscribeToChanges() : () => {};
+    let reloadTimer: ReturnType<typeof setTimeout> | undefined;
+    // Bursts of events (a bulk import, a reconnect) cost one re-read
+    const reloadSoon = () => {
+      clearTimeout(reloadTimer);
+      reloadTimer = setTimeout(() => { void load({ silent: true }); }, 300);
+    };
+    const onInspectionChanged = (event: Event) => {
+      const detail = (event as CustomEvent<InspectionChangeDetail>).detail;
+      if (!detail?.id) return;
+      if (detail.change === "deleted") {
+        setInspections((prev) => prev.filter((item) => item.id !== detail.id));
+        return;
+      }
+      if (!("boundingBoxes" in detail)) {
+        reloadSoon();
+        return;
+      }
+      setInspections((prev) => {
+        const index = prev.findIndex((item) => item.id === detail.id);
+        // Keep the same array when the row is not listed, so nothing depending on it re-renders
+        if (index < 0) return prev;
+        const item = prev[index];
+        const next = prev.slice();
+        next[index] = {
+          ...item,
+          status: detail.status ?? item.status,
+          boundingBoxes: detail.boundingBoxes,
+          faultTypes: detail.faultTypes,
+          annotatedBy: detail.annotatedBy,
+          severity: detail.severity,
+          comment: detail.comments,
+          recentStatus: detail.recentStatus,
+          boxCreatedAt: detail.boxCreatedAt,
+        };
+        return next;
+      });
+    };
+    const onLoggedIn = () => {
+      unsubscribe();
+      unsubscribe = subscribeToChanges();
+    };
+    const onLoggedOut = () => {
+      unsubscribe();
+      unsubscribe = () => {};
+    };
+    window.addEventListener(INSPECTION_CHANGED_EVENT, onInspectionChanged as EventListener);
+    window.addEventListener(CHANGES_RESYNC_EVENT, reloadSoon);
+    window.addEventListener('app:logged-in', onLoggedIn);
+    window.addEventListener('app:logged-out', onLoggedOut);
+    return () => {
+      window.removeEventListener(INSPECTION_CHANGED_EVENT, onInspectionChanged as EventListener);
+      window.removeEventListener(CHANGES_RESYNC_EVENT, reloadSoon);
+      window.removeEventListener('app:logged-in', onLoggedIn);
+      window.removeEventListener('app:logged-out', onLoggedOut);
+      clearTimeout(reloadTimer);
+      unsubscribe();
+    };
+  }, []);
+
   const fetchInspectionById = async (id: string): Promise<Inspection | null> => {
     try {
       const res = await fetch(apiUrl(`/api/inspections/${id}`), {
@@ -196,22 +244,12 @@ export function InspectionsProvider({ children }: { children: React.ReactNode })
           if (typeof severity === 'string') {
             try { severity = JSON.parse(severity); } catch {}
           }
-          const boundingBoxHistory = parseMaybeJson((obj as any).boundingBoxHistory);
-          const faultTypeHistory = parseMaybeJson((obj as any).faultTypeHistory);
-          const annotatedByHistory = parseMaybeJson((obj as any).annotatedByHistory);
-          const severityHistory = parseMaybeJson((obj as any).severityHistory);
-          const timestampHistory = parseMaybeJson((obj as any).timestampHistory);
           return {
             ...(obj as object),
             transformerNumber,
             boundingBoxes,
             faultTypes,
             severity,
-            boundingBoxHistory,
-            faultTypeHistory,
-            annotatedByHistory,
-            severityHistory,
-            timestampHistory,
           } as Inspection;
         }
         return raw as Inspection;
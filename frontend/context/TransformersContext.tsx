@@ -4,14 +4,20 @@ import React, { createContext, useContext, useEffect, useMemo, useState } from "
 import { Transformer } from "@/types/transformer";
 import { apiUrl, authHeaders } from "@/lib/api";
 import { isClientLoggedIn } from "@/lib/auth";
-import { dispatchTransformerRemoved } from "@/lib/events";
+import {
+  CHANGES_RESYNC_EVENT,
+  TRANSFORMER_CHANGED_EVENT,
+  TransformerChangeDetail,
+  dispatchTransformerRemoved,
+  subscribeToChanges,
+} from "@/lib/events";
 
 type TransformersContextValue = {
   transformers: Transformer[];
   addTransformer: (t: Transformer) => void;
   updateTransformer: (index: number, t: Transformer) => void;
   deleteTransformer: (index: number) => void;
-  reload: () => Promise<void>;
+  reload: (options?: { silent?: boolean }) => Promise<void>;
   lastError: string | null;
   loading: boolean;
   fetchTransformerById: (id: string) => Promise<Transformer | null>;
@@ -26,16 +32,17 @@ export function TransformersProvider({ children }: { children: React.ReactNode }
   const [loading, setLoading] = useState<boolean>(false);
 
   // load from API
-  const load = async () => {
+  const load = async (options?: { silent?: boolean }) => {
+    const silent = options?.silent ?? false;
     if (!isClientLoggedIn()) {
       setTransformers([]);
       setLastError(null);
-      setLoading(false);
+      if (!silent) setLoading(false);
       return;
     }
     try {
       setLastError(null);
-      setLoading(true);
+      if (!silent) setLoading(true);
       // Ask the local API for summary only to reduce payload
       const res = await fetch(apiUrl("/api/transformers?summary=1"), {
         cache: "no-store",
@@ -64,7 +71,7 @@ export function TransformersProvider({ children }: { children: React.ReactNode }
       console.error('[TransformersContext] load failed:', err);
       setLastError(msg);
     } finally {
-      setLoading(false);
+      if (!silent) setLoading(false);
     }
   };
 
@@ -90,6 +97,49 @@ export function TransformersProvider({ children }: { children: React.ReactNode }
 
   // Do not refetch on route change; list is cached in memory and can be refreshed explicitly
 
+  // Follow changes made elsewhere: deletes drop the row, anything else re-reads the list
+  useEffect(() => {
+    if (typeof window === 'undefined') return;
+    let unsubscribe = isClientLoggedIn() ? subscribeToChanges() : () => {};
+    let reloadTimer: ReturnType<typeof setTimeout> | undefined;
+    // Bursts of events (a bulk import, a reconnect) cost one re-read
+    const reloadSoon = () => {
+      clearTimeout(reloadTimer);
+      reloadTimer = setTimeout(() => { void load({ silent: true }); }, 300);
+    };
+    const onTransformerChanged = (event: Event) => {
+      const detail = (event as CustomEvent<TransformerChangeDetail>).detail;
+      if (!detail?.id) return;
+      if (detail.change !== 'deleted') {
+        reloadSoon();
+        return;
+      }
+      setTransformers((prev) => prev.filter((item) => item.id !== detail.id));
+      // Its inspections go too, as after a local delete
+      dispatchTransformerRemoved({ id: detail.id });
+    };
+    const onLoggedIn = () => {
+      unsubscribe();
+      unsubscribe = subscribeToChanges();
+    };
+    const onLoggedOut = () => {
+      unsubscribe();
+      unsubscribe = () => {};
+    };
+    window.addEventListener(TRANSFORMER_CHANGED_EVENT, onTransformerChanged as EventListener);
+    window.addEventListener(CHANGES_RESYNC_EVENT, reloadSoon);
+    window.addEventListener('app:logged-in', onLoggedIn);
+    window.addEventListener('app:logged-out', onLoggedOut);
+    return () => {
+      window.removeEventListener(TRANSFORMER_CHANGED_EVENT, onTransformerChanged as EventListener);
+      window.removeEventListener(CHANGES_RESYNC_EVENT, reloadSoon);
+      window.removeEventListener('app:logged-in', onLoggedIn);
+      window.removeEventListener('app:logged-out', onLoggedOut);
+      clearTimeout(reloadTimer);
+      unsubscribe();
+    };
+  }, []);
+
   const fetchTransformerById = async (id: string): Promise<Transformer | null> => {
     try {
       const res = await fetch(apiUrl(`/api/transformers/${id}`), {
@@ -0,0 +1,88 @@
+import { useEffect, useRef, useState } from "react";
+import { apiUrl, authHeaders } from "@/lib/api";
+
+export type BaselineImages = {
+  sunny: string | null;
+  cloudy: string | null;
+  rainy: string | null;
+};
+
+const NO_BASELINES: BaselineImages = { sunny: null, cloudy: null, rainy: null };
+
+type BaselineSummary = { weather?: string | null; version?: number | null };
+
+/**
+ * Latest baseline image per weather, as object URLs. Baselines are kept apart from the transformer
+ * row, so transformer lists and the transformer embedded in an inspection do not carry them; they
+ * are read from `/api/transformers/{id}/baselines/{weather}/image` with the auth header, which an
+ * `<img>` cannot send. Pass a null id to skip loading, and change `refreshKey` after an upload.
+ */
+export const useBaselineImages = (
+  transformerId?: string | null,
+  refreshKey?: unknown
+): BaselineImages => {
+  const [images, setImages] = useState<BaselineImages>(NO_BASELINES);
+  const shown = useRef<string[]>([]);
+
+  // Object URLs are released when they are replaced or the component goes away
+  const show = (next: BaselineImages, urls: string[]) => {
+    shown.current.forEach((url) => URL.revokeObjectURL(url));
+    shown.current = urls;
+    setImages(next);
+  };
+
+  useEffect(() => () => shown.current.forEach((url) => URL.revokeObjectURL(url)), []);
+
+  useEffect(() => {
+    if (!transformerId) {
+      show(NO_BASELINES, []);
+      return;
+    }
+    let active = true;
+    const created: string[] = [];
+    const base = `/api/transformers/${encodeURIComponent(transformerId)}/baselines`;
+
+    const load = async () => {
+      try {
+        const res = await fetch(apiUrl(base), { cache: "no-store", headers: authHeaders() });
+        if (!res.ok) return;
+        const summaries = (await res.json()) as BaselineSummary[];
+        const latest: Record<string, number> = {};
+        for (const summary of Array.isArray(summaries) ? summaries : []) {
+          const weather = summary?.weather;
+          if (weather && weather in NO_BASELINES) {
+            latest[weather] = Math.max(latest[weather] ?? 0, summary.version ?? 0);
+          }
+        }
+        const next: BaselineImages = { ...NO_BASELINES };
+        await Promise.all(
+          Object.entries(latest).map(async ([weather, version]) => {
+            // The version keeps the URL stable per upload, so the browser can cache the bytes
+            const image = await fetch(apiUrl(`${base}/${weather}/image?version=${version}`), {
+              headers: authHeaders(),
+            });
+            if (!image.ok) return;
+            const url = URL.createObjectURL(await image.blob());
+            created.push(url);
+            next[weather as keyof BaselineImages] = url;
+          })
+        );
+        if (active) {
+          show(next, created);
+        } else {
+          created.forEach((url) => URL.revokeObjectURL(url));
+        }
+      } catch {
+        // Keep what is shown; the panels fall back to "No baseline"
+      }
+    };
+    void load();
+
+    return () => {
+      active = false;
+    };
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [transformerId, refreshKey]);
+
+  return images;
+};
@@ -1,3 +1,5 @@
+import { apiUrl, authHeaders } from "@/lib/api";
+
 export const TRANSFORMER_REMOVED_EVENT = "transformer:removed" as const;
 
 export type TransformerRemovedDetail = {
@@ -9,3 +11,141 @@ export const dispatchTransformerRemoved = (detail: TransformerRemovedDetail) =>
   if (typeof window === "undefined") return;
   window.dispatchEvent(new CustomEvent(TRANSFORMER_REMOVED_EVENT, { detail }));
 };
+
+export const INSPECTION_CHANGED_EVENT = "change:inspection" as const;
+export const TRANSFORMER_CHANGED_EVENT = "change:transformer" as const;
+export const MAINTENANCE_RECORD_CHANGED_EVENT = "change:maintenance-record" as const;
+export const CHANGES_RESYNC_EVENT = "change:resync" as const;
+
+export type ChangeFilter = {
+  inspectionId?: string;
+  transformerId?: string;
+};
+
+// Detail of a `change:inspection` event; the box arrays are only present for box changes
+export type InspectionChangeDetail = {
+  id: string;
+  transformerId?: string | null;
+  change: string;
+  version?: number;
+  status?: string | null;
+  boxIds?: string[] | null;
+  boundingBoxes?: number[][] | null;
+  faultTypes?: string[] | null;
+  annotatedBy?: string[] | null;
+  severity?: (number | null)[] | null;
+  comments?: (string | null)[] | null;
+  recentStatus?: (string | null)[] | null;
+  boxCreatedAt?: (string | null)[] | null;
+};
+
+export type TransformerChangeDetail = {
+  id: string;
+  change: string;
+  version?: number;
+};
+
+type SharedStream = { subscribers: number; close: () => void };
+
+// One connection per filter, however many components subscribe with it
+const streams = new Map<string, SharedStream>();
+
+/**
+ * Streams `/api/events` and re-dispatches each event on `window` as `change:<event name>` with the
+ * parsed JSON as detail. `EventSource` cannot send the Authorization header, so the stream is read
+ * with `fetch`. Subscribers with the same filter share one stream, which reconnects with backoff
+ * until the last of them calls its returned function; after a reconnect (or a `resync` event)
+ * listeners should re-read what they show, as events in between are lost.
+ */
+export const subscribeToChanges = (filter: ChangeFilter = {}): (() => void) => {
+  if (typeof window === "undefined") return () => {};
+  const params = new URLSearchParams();
+  if (filter.inspectionId) params.set("inspectionId", filter.inspectionId);
+  if (filter.transformerId) params.set("transformerId", filter.transformerId);
+  const query = params.toString();
+  let stream = streams.get(query);
+  if (!stream) {
+    const opened: SharedStream = { subscribers: 0, close: () => {} };
+    // A stream refused for auth ends by itself; the next subscriber opens a fresh one
+    opened.close = openStream(query, () => {
+      if (streams.get(query) === opened) streams.delete(query);
+    });
+    streams.set(query, opened);
+    stream = opened;
+  }
+  const shared = stream;
+  shared.subscribers += 1;
+  let subscribed = true;
+  return () => {
+    if (!subscribed) return;
+    subscribed = false;
+    shared.subscribers -= 1;
+    if (shared.subscribers === 0) {
+      shared.close();
+      if (streams.get(query) === shared) streams.delete(query);
+    }
+  };
+};
+
+const openStream = (query: string, onRefused: () => void): (() => void) => {
+  const controller = new AbortController();
+  const url = apiUrl(`/api/events${query ? `?${query}` : ""}`);
+  let delay = 1000;
+  let connectedBefore = false;
+
+  const dispatch = (name: string, data: string) => {
+    let detail: unknown = null;
+    try {
+      detail = data ? JSON.parse(data) : null;
+    } catch {
+      return;
+    }
+    window.dispatchEvent(new CustomEvent(`change:${name}`, { detail }));
+  };
+
+  const connect = async () => {
+    while (!controller.signal.aborted) {
+      try {
+        const res = await fetch(url, {
+          headers: { Accept: "text/event-stream", ...authHeaders() },
+          signal: controller.signal,
+        });
+        if (res.ok && res.body) {
+          if (connectedBefore) dispatch("resync", "{}");
+          connectedBefore = true;
+          delay = 1000;
+          const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+          let buffer = "";
+          for (;;) {
+            const { value, done } = await reader.read();
+            if (done) break;
+            buffer += value;
+            let end: number;
+            while ((end = buffer.indexOf("\n\n")) >= 0) {
+              const block = buffer.slice(0, end);
+              buffer = buffer.slice(end + 2);
+              let name = "message";
+              const data: string[] = [];
+              for (const line of block.split("\n")) {
+                if (line.startsWith("event:")) name = line.slice(6).trim();
+                else if (line.startsWith("data:")) data.push(line.slice(5));
+                else if (line.startsWith("retry:")) delay = Number(line.slice(6)) || delay;
+              }
+              if (data.length) dispatch(name, data.join("\n"));
+            }
+          }
+        } else if (res.status === 401 || res.status === 403) {
+          onRefused();
+          return;
+        }
+      } catch {
+        if (controller.signal.aborted) return;
+      }
+      await new Promise((resolve) => setTimeout(resolve, delay));
+      delay = Math.min(delay * 2, 30000);
+    }
+  };
+
+  void connect();
+  return () => controller.abort();
+};
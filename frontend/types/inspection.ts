@@ -28,14 +28,6 @@ export interface Inspection {
     // Per-box timestamps, aligned with boundingBoxes order
     boxCreatedAt?: string | (string | null)[] | null;
     favourite?: boolean;
-    // History snapshots stored as JSON strings or parsed arrays
-    boundingBoxHistory?: string | (number[][] | null)[] | null;
-    faultTypeHistory?: string | (string[] | null)[] | null;
-    annotatedByHistory?: string | (string[] | null)[] | null;
-    severityHistory?: string | ((number | null)[] | null)[] | null;
-    commentHistory?: string | ((string | null)[] | null)[] | null;
-    timestampHistory?: string | (string | null)[] | null;
+    // History snapshots are not part of the inspection; see GET /api/inspections/{id}/history
     recentStatus?: string | (string | null)[] | null;
-    recentStatusHistory?: string | ((string | null)[] | null)[] | null;
-    boxCreatedAtHistory?: string | ((string | null)[] | null)[] | null;
 }